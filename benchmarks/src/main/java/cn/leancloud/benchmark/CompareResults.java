@@ -0,0 +1,84 @@
+package cn.leancloud.benchmark;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import java.io.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compare two JMH result files generated with "-rf json", and print score change of every benchmark.
+ *
+ * usage: java -cp benchmarks.jar cn.leancloud.benchmark.CompareResults before.json after.json
+ */
+public class CompareResults {
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("usage: CompareResults <before.json> <after.json>");
+      System.exit(1);
+    }
+    Map<String, JSONObject> before = load(args[0]);
+    Map<String, JSONObject> after = load(args[1]);
+    System.out.println(String.format("%-80s %14s %14s %9s  %s", "Benchmark", "Before", "After", "Change", "Unit"));
+    for (Map.Entry<String, JSONObject> entry : after.entrySet()) {
+      JSONObject current = entry.getValue().getJSONObject("primaryMetric");
+      JSONObject base = before.containsKey(entry.getKey()) ?
+              before.get(entry.getKey()).getJSONObject("primaryMetric") : null;
+      double score = current.getDoubleValue("score");
+      if (null == base) {
+        System.out.println(String.format("%-80s %14s %14.3f %9s  %s", entry.getKey(), "-", score, "new",
+                current.getString("scoreUnit")));
+        continue;
+      }
+      double baseScore = base.getDoubleValue("score");
+      String change = baseScore == 0 ? "-" : String.format("%+.1f%%", (score - baseScore) * 100 / baseScore);
+      System.out.println(String.format("%-80s %14.3f %14.3f %9s  %s", entry.getKey(), baseScore, score, change,
+              current.getString("scoreUnit")));
+    }
+    for (String name : before.keySet()) {
+      if (!after.containsKey(name)) {
+        System.out.println(String.format("%-80s %14s %14s %9s", name, "", "-", "removed"));
+      }
+    }
+  }
+
+  /**
+   * load result file, keyed by benchmark name with mode and params, e.g. "QueryBenchmark.cacheHit(avgt)".
+   */
+  private static Map<String, JSONObject> load(String path) throws IOException {
+    JSONArray results = JSON.parseArray(read(path));
+    Map<String, JSONObject> map = new LinkedHashMap<String, JSONObject>();
+    for (int i = 0; i < results.size(); i++) {
+      JSONObject result = results.getJSONObject(i);
+      StringBuilder name = new StringBuilder(result.getString("benchmark").replace("cn.leancloud.benchmark.", ""));
+      name.append('(').append(result.getString("mode"));
+      JSONObject params = result.getJSONObject("params");
+      if (null != params) {
+        for (Map.Entry<String, Object> param : new TreeMap<String, Object>(params).entrySet()) {
+          name.append(", ").append(param.getKey()).append('=').append(param.getValue());
+        }
+      }
+      name.append(')');
+      map.put(name.toString(), result);
+    }
+    return map;
+  }
+
+  private static String read(String path) throws IOException {
+    Reader reader = new InputStreamReader(new FileInputStream(path), "UTF-8");
+    try {
+      StringBuilder sb = new StringBuilder();
+      char[] buffer = new char[8192];
+      int length;
+      while ((length = reader.read(buffer)) > 0) {
+        sb.append(buffer, 0, length);
+      }
+      return sb.toString();
+    } finally {
+      reader.close();
+    }
+  }
+}
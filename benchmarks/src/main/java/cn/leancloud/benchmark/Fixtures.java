@@ -0,0 +1,187 @@
+package cn.leancloud.benchmark;
+
+import cn.leancloud.AVLogger;
+import cn.leancloud.AVObject;
+import cn.leancloud.cache.InMemorySetting;
+import cn.leancloud.core.AVOSCloud;
+import cn.leancloud.core.AppConfiguration;
+import cn.leancloud.types.AVGeoPoint;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * Deterministic fixtures shared by benchmarks.
+ *
+ * Every fixture is generated from a Random with fixed seed, so that runs on different commits measure the same data.
+ * SDK is initialized with a fake application, cache directories are created in a temporary directory and nothing
+ * is sent to network.
+ */
+public final class Fixtures {
+  public static final long SEED = 20200913l;
+  public static final String APP_ID = "benchmarkAppId0000000000-gzGzoHsz";
+  public static final String APP_KEY = "benchmarkAppKey000000000";
+  public static final String CLASS_NAME = "Student";
+
+  private static final String[] WORDS = {"leancloud", "storage", "realtime", "engine", "query", "cache",
+          "object", "message", "conversation", "benchmark", "fixture", "protocol"};
+  private static boolean initialized = false;
+
+  private Fixtures() {
+  }
+
+  public static synchronized void initialize() {
+    if (initialized) {
+      return;
+    }
+    File root = createTempDir();
+    String base = root.getAbsolutePath() + "/";
+    AppConfiguration.configCacheSettings(base + "persistFiles/", base + "data/", base + "file/",
+            base + "PaasKeyValueCache/", base + "command/", base + "stats/", new InMemorySetting());
+    AVOSCloud.setLogLevel(AVLogger.Level.OFF);
+    AVOSCloud.initialize(APP_ID, APP_KEY);
+    initialized = true;
+  }
+
+  private static File createTempDir() {
+    try {
+      File dir = File.createTempFile("leancloud-benchmark", "");
+      if (!dir.delete() || !dir.mkdirs()) {
+        throw new IOException("failed to create directory " + dir);
+      }
+      dir.deleteOnExit();
+      return dir;
+    } catch (IOException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  public static Random random() {
+    return new Random(SEED);
+  }
+
+  public static String word(Random random) {
+    return WORDS[random.nextInt(WORDS.length)];
+  }
+
+  public static String objectId(Random random) {
+    StringBuilder sb = new StringBuilder(24);
+    for (int i = 0; i < 24; i++) {
+      sb.append(Character.forDigit(random.nextInt(16), 16));
+    }
+    return sb.toString();
+  }
+
+  private static String isoDate(Random random) {
+    SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+    return format.format(new Date(1500000000000l + (random.nextInt() & 0x7fffffff) * 100l));
+  }
+
+  /**
+   * fields with all kinds of value types, as held in AVObject.
+   * @param random random generator.
+   * @param fieldCount count of plain fields besides typed ones.
+   * @return field map.
+   */
+  public static Map<String, Object> newFields(Random random, int fieldCount) {
+    Map<String, Object> fields = new LinkedHashMap<String, Object>();
+    for (int i = 0; i < fieldCount; i++) {
+      switch (i % 4) {
+        case 0:
+          fields.put("str" + i, word(random) + " " + word(random));
+          break;
+        case 1:
+          fields.put("num" + i, random.nextInt(100000));
+          break;
+        case 2:
+          fields.put("flag" + i, random.nextBoolean());
+          break;
+        default:
+          fields.put("tags" + i, Arrays.asList(word(random), word(random), word(random)));
+          break;
+      }
+    }
+    fields.put("location", new AVGeoPoint(random.nextDouble() * 90, random.nextDouble() * 180));
+    fields.put("birthday", new Date(1000000000000l + random.nextInt(100000000)));
+    fields.put("leader", AVObject.createWithoutData(CLASS_NAME, objectId(random)));
+    return fields;
+  }
+
+  /**
+   * object json as returned by REST API.
+   * @param random random generator.
+   * @param fieldCount count of plain fields besides typed ones.
+   * @return json object.
+   */
+  public static JSONObject serverObject(Random random, int fieldCount) {
+    JSONObject object = new JSONObject(true);
+    object.put("objectId", objectId(random));
+    object.put("createdAt", isoDate(random));
+    object.put("updatedAt", isoDate(random));
+    for (int i = 0; i < fieldCount; i++) {
+      switch (i % 4) {
+        case 0:
+          object.put("str" + i, word(random) + " " + word(random));
+          break;
+        case 1:
+          object.put("num" + i, random.nextInt(100000));
+          break;
+        case 2:
+          object.put("flag" + i, random.nextBoolean());
+          break;
+        default:
+          object.put("tags" + i, Arrays.asList(word(random), word(random), word(random)));
+          break;
+      }
+    }
+    JSONObject location = new JSONObject(true);
+    location.put("__type", "GeoPoint");
+    location.put("latitude", random.nextDouble() * 90);
+    location.put("longitude", random.nextDouble() * 180);
+    object.put("location", location);
+    JSONObject birthday = new JSONObject(true);
+    birthday.put("__type", "Date");
+    birthday.put("iso", isoDate(random));
+    object.put("birthday", birthday);
+    JSONObject leader = new JSONObject(true);
+    leader.put("__type", "Pointer");
+    leader.put("className", CLASS_NAME);
+    leader.put("objectId", objectId(random));
+    object.put("leader", leader);
+    return object;
+  }
+
+  /**
+   * cloud function response, result is a list of objects as LeanEngine returns.
+   * @param random random generator.
+   * @param count object count.
+   * @return json string.
+   */
+  public static String functionResponse(Random random, int count) {
+    JSONArray results = new JSONArray();
+    for (int i = 0; i < count; i++) {
+      JSONObject object = serverObject(random, 8);
+      object.put("className", CLASS_NAME);
+      object.put("__type", "Object");
+      results.add(object);
+    }
+    JSONObject response = new JSONObject(true);
+    response.put("result", results);
+    return response.toJSONString();
+  }
+
+  public static Map<String, String> queryParameters(Random random) {
+    Map<String, String> query = new HashMap<String, String>();
+    query.put("where", "{\"age\":{\"$gte\":" + random.nextInt(30) + "},\"name\":\"" + word(random) + "\"}");
+    query.put("limit", "100");
+    query.put("skip", String.valueOf(random.nextInt(1000)));
+    query.put("order", "-updatedAt");
+    query.put("include", "leader");
+    return query;
+  }
+}
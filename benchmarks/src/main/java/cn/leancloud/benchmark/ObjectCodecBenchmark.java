@@ -0,0 +1,50 @@
+package cn.leancloud.benchmark;
+
+import cn.leancloud.AVObject;
+import com.alibaba.fastjson.JSON;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AVObject encoding and decoding, both the archived format(toJSONString/parseAVObject) and REST API response format.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ObjectCodecBenchmark {
+  @Param({"8", "64"})
+  public int fieldCount;
+
+  private AVObject object;
+  private String archivedJson;
+  private String serverJson;
+
+  @Setup
+  public void setup() {
+    Fixtures.initialize();
+    Random random = Fixtures.random();
+    serverJson = Fixtures.serverObject(random, fieldCount).toJSONString();
+    object = JSON.parseObject(serverJson, AVObject.class);
+    archivedJson = object.toJSONString();
+  }
+
+  @Benchmark
+  public String encodeArchived() {
+    return object.toJSONString();
+  }
+
+  @Benchmark
+  public AVObject decodeArchived() {
+    return AVObject.parseAVObject(archivedJson);
+  }
+
+  @Benchmark
+  public AVObject decodeServerResponse() {
+    return JSON.parseObject(serverJson, AVObject.class);
+  }
+}
@@ -0,0 +1,43 @@
+package cn.leancloud.benchmark;
+
+import cn.leancloud.ops.Utils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * conversion between java values and REST API representation, which is done for every field of request and response.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OpsUtilsBenchmark {
+  @Param({"8", "64"})
+  public int fieldCount;
+
+  private Map<String, Object> javaMap;
+  private Map<String, Object> serverMap;
+
+  @Setup
+  public void setup() {
+    Fixtures.initialize();
+    Random random = Fixtures.random();
+    javaMap = Fixtures.newFields(random, fieldCount);
+    serverMap = Fixtures.serverObject(random, fieldCount);
+  }
+
+  @Benchmark
+  public Map<String, Object> encodeFields() {
+    return Utils.getParsedMap(javaMap);
+  }
+
+  @Benchmark
+  public Object decodeFields() {
+    return Utils.getObjectFrom(serverMap);
+  }
+}
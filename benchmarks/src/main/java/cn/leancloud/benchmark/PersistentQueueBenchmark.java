@@ -0,0 +1,43 @@
+package cn.leancloud.benchmark;
+
+import cn.leancloud.session.PersistentQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PersistentQueue serializes the whole queue on every mutation, so cost of offer/poll grows with queue depth.
+ * Fixtures use in memory setting, so the result covers serialization only, not disk writing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersistentQueueBenchmark {
+  @Param({"10", "200"})
+  public int depth;
+
+  private PersistentQueue<String> queue;
+  private String messageId;
+
+  @Setup
+  public void setup() {
+    Fixtures.initialize();
+    Random random = Fixtures.random();
+    queue = new PersistentQueue<String>("benchmark." + depth, String.class);
+    queue.clear();
+    for (int i = 0; i < depth; i++) {
+      queue.offer(Fixtures.objectId(random));
+    }
+    messageId = Fixtures.objectId(random);
+  }
+
+  @Benchmark
+  public String offerAndPoll() {
+    queue.offer(messageId);
+    return queue.poll();
+  }
+}
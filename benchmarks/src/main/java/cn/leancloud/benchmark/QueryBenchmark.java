@@ -0,0 +1,58 @@
+package cn.leancloud.benchmark;
+
+import cn.leancloud.cache.QueryResultCache;
+import cn.leancloud.query.QueryConditions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * query parameter assembling and query result cache, the local cost paid by every AVQuery.find.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+  private Map<String, String> queryParameters;
+  private String cacheKey;
+
+  @Setup
+  public void setup() {
+    Fixtures.initialize();
+    Random random = Fixtures.random();
+    queryParameters = Fixtures.queryParameters(random);
+    cacheKey = QueryResultCache.generateKeyForQueryCondition(Fixtures.CLASS_NAME, queryParameters);
+    QueryResultCache.getInstance().cacheResult(Fixtures.CLASS_NAME, cacheKey,
+            Fixtures.functionResponse(random, 100));
+  }
+
+  @Benchmark
+  public Map<String, String> assembleParameters() {
+    QueryConditions conditions = new QueryConditions();
+    conditions.whereEqualTo("name", "leancloud");
+    conditions.whereGreaterThanOrEqualTo("age", 18);
+    conditions.whereContainedIn("tags", Arrays.asList("storage", "realtime", "engine"));
+    conditions.setLimit(100);
+    conditions.setSkip(200);
+    conditions.orderByDescending("updatedAt");
+    conditions.include("leader");
+    return conditions.assembleParameters();
+  }
+
+  @Benchmark
+  public String generateCacheKey() {
+    return QueryResultCache.generateKeyForQueryCondition(Fixtures.CLASS_NAME, queryParameters);
+  }
+
+  @Benchmark
+  public String cacheHit() {
+    return QueryResultCache.getInstance().getCacheRawResult(Fixtures.CLASS_NAME, cacheKey, 0, true)
+            .blockingFirst();
+  }
+}
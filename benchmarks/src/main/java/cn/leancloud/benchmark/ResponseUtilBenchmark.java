@@ -0,0 +1,33 @@
+package cn.leancloud.benchmark;
+
+import cn.leancloud.ResponseUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LeanEngine response filtering, applied to result of every cloud function.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseUtilBenchmark {
+  @Param({"1", "100"})
+  public int resultCount;
+
+  private String response;
+
+  @Setup
+  public void setup() {
+    Fixtures.initialize();
+    response = Fixtures.functionResponse(Fixtures.random(), resultCount);
+  }
+
+  @Benchmark
+  public String filterResponse() {
+    return ResponseUtil.filterResponse(response);
+  }
+}
@@ -0,0 +1,54 @@
+package cn.leancloud.benchmark;
+
+import cn.leancloud.Messages;
+import cn.leancloud.im.WindTalker;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * decoding of incoming realtime messages, which happens on the websocket thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WindTalkerBenchmark {
+  @Param({"64", "4096"})
+  public int messageLength;
+
+  private ByteBuffer packet;
+
+  @Setup
+  public void setup() {
+    Fixtures.initialize();
+    Random random = Fixtures.random();
+    StringBuilder content = new StringBuilder(messageLength);
+    while (content.length() < messageLength) {
+      content.append(Fixtures.word(random)).append(' ');
+    }
+    Messages.DirectCommand direct = Messages.DirectCommand.newBuilder()
+            .setMsg("{\"_lctype\":-1,\"_lctext\":\"" + content.substring(0, messageLength) + "\"}")
+            .setFromPeerId("sender")
+            .setCid(Fixtures.objectId(random))
+            .setId(Fixtures.objectId(random))
+            .setTimestamp(1599955200000l)
+            .build();
+    Messages.GenericCommand command = Messages.GenericCommand.newBuilder()
+            .setCmd(Messages.CommandType.direct)
+            .setPeerId("receiver")
+            .setI(1)
+            .setDirectMessage(direct)
+            .build();
+    packet = ByteBuffer.wrap(command.toByteArray());
+  }
+
+  @Benchmark
+  public Messages.GenericCommand disassemble() {
+    return WindTalker.getInstance().disassemblePacket(packet.duplicate());
+  }
+}
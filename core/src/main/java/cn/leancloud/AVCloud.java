@@ -1,6 +1,7 @@
 package cn.leancloud;
 
 import cn.leancloud.core.PaasClient;
+import cn.leancloud.execution.DirectExecution;
 import cn.leancloud.ops.Utils;
 import io.reactivex.Observable;
 
@@ -33,6 +34,22 @@ public class AVCloud {
     return PaasClient.getStorageClient().callFunction(name, Utils.getParsedMap(params));
   }
 
+  /**
+   * Call Cloud Function in blocking mode, request is executed on current thread.
+   * @param name function name.
+   * @param params invoke parameters.
+   * @param <T> template type.
+   * @return function result.
+   */
+  public static <T> T callFunction(String name, Map<String, Object> params) {
+    DirectExecution.enter();
+    try {
+      return AVCloud.<T>callFunctionInBackground(name, params).blockingFirst();
+    } finally {
+      DirectExecution.exit();
+    }
+  }
+
   public static <T> Observable<T> callFunctionWithCacheInBackground(String name, Map<String, Object> params,
                                                                     AVQuery.CachePolicy cachePolicy, long maxCacheAge) {
     return PaasClient.getStorageClient().callFunctionWithCachePolicy(name, Utils.getParsedMap(params), cachePolicy, maxCacheAge);
@@ -49,6 +66,22 @@ public class AVCloud {
     return PaasClient.getStorageClient().callRPC(name, Utils.getParsedObject(params));
   }
 
+  /**
+   * Call Cloud RPC Function in blocking mode, request is executed on current thread.
+   * @param name function name.
+   * @param params invoke parameters.
+   * @param <T> template type.
+   * @return function result.
+   */
+  public static <T> T callRPC(String name, Object params) {
+    DirectExecution.enter();
+    try {
+      return AVCloud.<T>callRPCInBackground(name, params).blockingFirst();
+    } finally {
+      DirectExecution.exit();
+    }
+  }
+
   public static <T> Observable<T> callRPCWithCacheInBackground(String name, Map<String, Object> params,
                                                                AVQuery.CachePolicy cachePolicy, long maxCacheAge) {
     return PaasClient.getStorageClient().callRPCWithCachePolicy(name, Utils.getParsedMap(params), cachePolicy, maxCacheAge);
@@ -34,8 +34,6 @@ import io.reactivex.Scheduler;
 import io.reactivex.annotations.NonNull;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.functions.Function;
-import io.reactivex.schedulers.Schedulers;
-import sun.util.resources.sr.CalendarData_sr_Latn_BA;
 
 @AVClassName("_File")
 @JSONType(deserializer = ObjectTypeAdapter.class, serializer = ObjectTypeAdapter.class)
@@ -577,9 +575,11 @@ public final class AVFile extends AVObject {
       filePath = cachePath;
     } else if (!StringUtil.isEmpty(getUrl())) {
       File cacheFile = FileCache.getIntance().getCacheFile(getUrl());
-      if (null == cacheFile || !cacheFile.exists()) {
-        FileDownloader downloader = new FileDownloader();
-        downloader.execute(getUrl(), cacheFile);
+      if (null != cacheFile && !cacheFile.exists()) {
+        AVException error = new FileDownloader().execute(getUrl(), cacheFile);
+        if (null != error) {
+          logger.w("failed to download file. cause: " + error.getMessage());
+        }
       }
       if (null != cacheFile) {
         filePath = cacheFile.getAbsolutePath();
@@ -603,7 +603,7 @@ public final class AVFile extends AVObject {
       }
     });
     if (AppConfiguration.isAsynchronized()) {
-      observable = observable.subscribeOn(Schedulers.io());
+      observable = observable.subscribeOn(AppConfiguration.getSubscribeScheduler());
     }
     AppConfiguration.SchedulerCreator defaultScheduler = AppConfiguration.getDefaultScheduler();
     if (null != defaultScheduler) {
@@ -612,6 +612,20 @@ public final class AVFile extends AVObject {
     return observable;
   }
 
+  /**
+   * Get local file which holds data of current object, remote file is not downloaded.
+   * @return local file, null if data is not available locally.
+   */
+  @JSONField(serialize = false)
+  public File getLocalFile() {
+    String filePath = !StringUtil.isEmpty(localPath) ? localPath : cachePath;
+    if (StringUtil.isEmpty(filePath)) {
+      return null;
+    }
+    File result = new File(filePath);
+    return result.exists() ? result : null;
+  }
+
   /**
    * Get data stream in blocking mode.
    * @return data stream.
@@ -627,12 +641,10 @@ public final class AVFile extends AVObject {
     } else if (!StringUtil.isEmpty(getUrl())) {
       File cacheFile = FileCache.getIntance().getCacheFile(getUrl());
       if (null == cacheFile || !cacheFile.exists()) {
-        FileDownloader downloader = new FileDownloader();
-        downloader.execute(getUrl(), cacheFile);
-      }
-      if (null != cacheFile) {
-        filePath = cacheFile.getAbsolutePath();
+        // stream from network and write into cache at the same time.
+        return new FileDownloader().openStream(getUrl(), cacheFile);
       }
+      filePath = cacheFile.getAbsolutePath();
     }
     if(!StringUtil.isEmpty(filePath)) {
       logger.d("dest file path=" + filePath);
@@ -654,7 +666,7 @@ public final class AVFile extends AVObject {
       }
     });
     if (AppConfiguration.isAsynchronized()) {
-      observable = observable.subscribeOn(Schedulers.io());
+      observable = observable.subscribeOn(AppConfiguration.getSubscribeScheduler());
     }
     AppConfiguration.SchedulerCreator defaultScheduler = AppConfiguration.getDefaultScheduler();
     if (null != defaultScheduler) {
@@ -0,0 +1,390 @@
+package cn.leancloud;
+
+import cn.leancloud.cache.LocalStorage;
+import cn.leancloud.cache.ObjectStore;
+import cn.leancloud.cache.SystemSetting;
+import cn.leancloud.codec.MD5;
+import cn.leancloud.core.AppConfiguration;
+import cn.leancloud.utils.LogUtil;
+import cn.leancloud.utils.StringUtil;
+import io.reactivex.Observable;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Mirror of objects matched by a query, which is refreshed incrementally.
+ *
+ * Every sync only fetches objects whose (updatedAt, objectId) is greater than the high-water mark of
+ * last sync, page by page with cursor(no skip), and merges them into local store. So refresh costs are
+ * proportional to changes instead of the size of class.
+ * Synced objects are merged into ObjectStore, so they share canonical instances with query/fetch results
+ * when object identity map is enabled. In persistent mode, only changed objects are appended to a local log
+ * with the watermark, and the log is compacted once it grows larger than twice of live objects.
+ * A sync without where conditions and selected keys is a complete mirror of its class, once it is synced or
+ * restored, CACHE_ONLY/CACHE_ELSE_NETWORK queries of that class which miss query result cache are evaluated
+ * against it locally(if it is not older than maxCacheAge), and copies of matched objects are returned.
+ * Notice: deletion can not be detected by updatedAt, use soft-delete flag or invoke reset() to do a
+ * full sync if necessary.
+ *
+ * @param <T> template type.
+ */
+public class AVIncrementalSync<T extends AVObject> {
+  private static final AVLogger LOGGER = LogUtil.getLogger(AVIncrementalSync.class);
+  private static final String WATERMARK_ZONE = "com.avoscloud.incrementalSync";
+  private static final String KEY_UPDATED_AT_SUFFIX = ".updatedAt";
+  private static final String KEY_OBJECT_ID_SUFFIX = ".objectId";
+  private static final String SNAPSHOT_DIR = "sync/";
+  public static final int DEFAULT_PAGE_SIZE = 100;
+  private static final int MIN_COMPACT_LINES = 1000;
+  private static final ConcurrentMap<String, WeakReference<AVIncrementalSync<?>>> classMirrors =
+          new ConcurrentHashMap<String, WeakReference<AVIncrementalSync<?>>>();
+
+  private final AVQuery<T> query;
+  private final String syncName;
+  private final ConcurrentMap<String, T> objects = new ConcurrentHashMap<String, T>();
+  private final Object syncLock = new Object();
+  private int pageSize = DEFAULT_PAGE_SIZE;
+  private boolean persistent = false;
+  private boolean restored = false;
+  private volatile Date lastUpdatedAt = null;
+  private volatile String lastObjectId = null;
+  // time of last sync(or last snapshot write if restored), used by maxCacheAge of local queries.
+  private volatile long syncedAt = 0;
+  // count of lines in snapshot log, including stale versions of the same object.
+  private int logLines = 0;
+
+  public AVIncrementalSync(AVQuery<T> query) {
+    this(query, query.getClassName());
+  }
+
+  /**
+   * constructor.
+   * @param query base query, its where/selectKeys/include conditions are respected, order/skip/limit are ignored.
+   * @param syncName name of the sync, which is used as key of persistent watermark.
+   */
+  public AVIncrementalSync(AVQuery<T> query, String syncName) {
+    if (null == query || StringUtil.isEmpty(syncName)) {
+      throw new IllegalArgumentException("query and syncName must not be empty.");
+    }
+    this.query = query;
+    this.syncName = syncName;
+  }
+
+  public String getSyncName() {
+    return this.syncName;
+  }
+
+  /**
+   * set page size of every delta request.
+   * @param pageSize page size(max 1000).
+   * @return this instance.
+   */
+  public AVIncrementalSync<T> setPageSize(int pageSize) {
+    if (pageSize <= 0 || pageSize > 1000) {
+      throw new IllegalArgumentException("pageSize must be between 1 and 1000");
+    }
+    this.pageSize = pageSize;
+    return this;
+  }
+
+  /**
+   * set persistent flag. If enabled, changed objects are appended to local snapshot log and watermark is saved
+   * through SystemSetting after every sync, so that a restarted process continues from last watermark.
+   * Notice: it must be invoked before the first sync.
+   * @param persistent flag.
+   * @return this instance.
+   */
+  public AVIncrementalSync<T> setPersistent(boolean persistent) {
+    this.persistent = persistent;
+    return this;
+  }
+
+  /**
+   * get updatedAt of high-water mark.
+   * @return updatedAt, null if not synced yet.
+   */
+  public Date getLastUpdatedAt() {
+    return this.lastUpdatedAt;
+  }
+
+  public String getLastObjectId() {
+    return this.lastObjectId;
+  }
+
+  /**
+   * fetch changes in blocking mode.
+   * @return count of changed objects.
+   */
+  public int sync() {
+    synchronized (syncLock) {
+      restoreIfNeeded();
+      int changed = 0;
+      List<T> changedObjects = persistent ? new ArrayList<T>() : null;
+      try {
+        while (true) {
+          // results of find are merged into ObjectStore already. it runs on current thread, so that
+          // syncInBackground doesn't wait for another worker of the same execution provider.
+          List<T> page = this.query.generateDeltaQuery(lastUpdatedAt, lastObjectId, pageSize).find();
+          for (T object : page) {
+            objects.put(object.getObjectId(), object);
+          }
+          if (null != changedObjects) {
+            changedObjects.addAll(page);
+          }
+          if (!page.isEmpty()) {
+            T last = page.get(page.size() - 1);
+            if (null == last.getUpdatedAt()) {
+              throw new IllegalStateException("updatedAt is missing in results of sync query.");
+            }
+            lastUpdatedAt = last.getUpdatedAt();
+            lastObjectId = last.getObjectId();
+            changed += page.size();
+          }
+          if (page.size() < pageSize) {
+            break;
+          }
+        }
+      } catch (CloneNotSupportedException ex) {
+        throw new IllegalStateException(ex);
+      }
+      syncedAt = System.currentTimeMillis();
+      registerMirrorIfNeeded();
+      LOGGER.d("sync " + syncName + " finished. changed=" + changed + ", total=" + objects.size());
+      if (changed > 0 && persistent) {
+        persist(changedObjects);
+      }
+      return changed;
+    }
+  }
+
+  /**
+   * fetch changes in async mode.
+   * @return observable instance, which emits count of changed objects.
+   */
+  public Observable<Integer> syncInBackground() {
+    return Observable.fromCallable(new Callable<Integer>() {
+      public Integer call() throws Exception {
+        return sync();
+      }
+    }).subscribeOn(AppConfiguration.getSubscribeScheduler());
+  }
+
+  public T get(String objectId) {
+    restoreIfNeeded();
+    return null == objectId ? null : objects.get(objectId);
+  }
+
+  public Collection<T> getObjects() {
+    restoreIfNeeded();
+    return Collections.unmodifiableCollection(objects.values());
+  }
+
+  public int size() {
+    restoreIfNeeded();
+    return objects.size();
+  }
+
+  /**
+   * query local objects.
+   * @param localQuery query, which is evaluated locally.
+   * @return matched objects.
+   * @see AVQuery#findInCollection(Collection)
+   */
+  public List<T> find(AVQuery<T> localQuery) {
+    return localQuery.findInCollection(getObjects());
+  }
+
+  /**
+   * clear local objects and watermark, the next sync fetches all objects again.
+   */
+  public void reset() {
+    synchronized (syncLock) {
+      objects.clear();
+      lastUpdatedAt = null;
+      lastObjectId = null;
+      syncedAt = 0;
+      logLines = 0;
+      restored = true;
+      WeakReference<AVIncrementalSync<?>> reference = classMirrors.get(query.getClassName());
+      if (null != reference && reference.get() == this) {
+        classMirrors.remove(query.getClassName(), reference);
+      }
+      SystemSetting setting = AppConfiguration.getDefaultSetting();
+      if (null != setting) {
+        setting.removeKey(WATERMARK_ZONE, syncName + KEY_UPDATED_AT_SUFFIX);
+        setting.removeKey(WATERMARK_ZONE, syncName + KEY_OBJECT_ID_SUFFIX);
+      }
+      LocalStorage storage = getSnapshotStorage();
+      File snapshot = null == storage ? null : storage.getCacheFile(getSnapshotKey());
+      if (null != snapshot && snapshot.exists()) {
+        snapshot.delete();
+      }
+    }
+  }
+
+  private LocalStorage getSnapshotStorage() {
+    String documentDir = AppConfiguration.getDocumentDir();
+    return null == documentDir ? null : new LocalStorage(documentDir + SNAPSHOT_DIR);
+  }
+
+  private boolean isCompleteMirror() {
+    return query.conditions.compileWhereOperationMap().isEmpty()
+            && (null == query.getSelectedKeys() || query.getSelectedKeys().isEmpty());
+  }
+
+  private void registerMirrorIfNeeded() {
+    if (null != lastUpdatedAt && isCompleteMirror()) {
+      classMirrors.put(query.getClassName(), new WeakReference<AVIncrementalSync<?>>(this));
+    }
+  }
+
+  /**
+   * evaluate query against complete local mirror of its class.
+   * it reads a snapshot of mirror without waiting for running sync, and returns copies, so that canonical
+   * instances in mirror are never changed by caller.
+   * @param localQuery query.
+   * @param maxCacheAge max age of mirror in milliseconds, non-positive value means no limit.
+   * @param <E> template type.
+   * @return matched objects, or null if there is no mirror, or it is too old, or its includes are not covered by
+   * mirror, or it can not be evaluated locally.
+   */
+  static <E extends AVObject> List<E> findInMirror(AVQuery<E> localQuery, long maxCacheAge) {
+    WeakReference<AVIncrementalSync<?>> reference = classMirrors.get(localQuery.getClassName());
+    AVIncrementalSync<?> mirror = null == reference ? null : reference.get();
+    if (null == mirror) {
+      return null;
+    }
+    if (maxCacheAge > 0 && System.currentTimeMillis() - mirror.syncedAt > maxCacheAge) {
+      LOGGER.d("local mirror of " + localQuery.getClassName() + " is expired.");
+      return null;
+    }
+    List<String> includes = localQuery.conditions.getInclude();
+    if (null != includes && !includes.isEmpty()) {
+      List<String> mirrorIncludes = mirror.query.conditions.getInclude();
+      if (null == mirrorIncludes || !mirrorIncludes.containsAll(includes)) {
+        return null;
+      }
+    }
+    try {
+      // mirror is registered after it is synced or restored, so objects are read without restoreIfNeeded.
+      Collection<E> snapshot = new ArrayList<E>((Collection<E>) (Collection) mirror.objects.values());
+      List<E> matched = localQuery.findInCollection(snapshot);
+      List<E> result = new ArrayList<E>(matched.size());
+      for (E object : matched) {
+        result.add(Transformer.<E>transform(object, localQuery.getClassName()));
+      }
+      return result;
+    } catch (UnsupportedOperationException ex) {
+      LOGGER.d("query can not be evaluated locally. cause: " + ex.getMessage());
+      return null;
+    }
+  }
+
+  private List<T> mergeIntoObjectStore(List<T> items) {
+    if (!AppConfiguration.isObjectStoreEnabled()) {
+      return items;
+    }
+    Set<String> selectedKeys = query.getSelectedKeys();
+    return ObjectStore.getInstance().mergeAll(items, null == selectedKeys || selectedKeys.isEmpty());
+  }
+
+  private String getSnapshotKey() {
+    return MD5.computeMD5(WATERMARK_ZONE + ":" + syncName);
+  }
+
+  private void restoreIfNeeded() {
+    synchronized (syncLock) {
+      if (restored) {
+        return;
+      }
+      restored = true;
+      SystemSetting setting = AppConfiguration.getDefaultSetting();
+      LocalStorage storage = getSnapshotStorage();
+      if (!persistent || null == setting || null == storage) {
+        return;
+      }
+      long updatedAt = setting.getLong(WATERMARK_ZONE, syncName + KEY_UPDATED_AT_SUFFIX, 0L);
+      byte[] data = storage.readData(getSnapshotKey());
+      if (updatedAt <= 0 || null == data) {
+        // watermark is meaningless without local objects, and objects without watermark are discarded,
+        // so that the first sync does not append to stale log.
+        storage.clearCachedFile(getSnapshotKey());
+        return;
+      }
+      try {
+        // the log contains every version of changed objects, the latest one wins.
+        String[] lines = new String(data, "UTF-8").split("\n");
+        Map<String, T> latest = new LinkedHashMap<String, T>();
+        for (int i = 0; i < lines.length; i++) {
+          AVObject object;
+          try {
+            object = AVObject.parseAVObject(lines[i]);
+          } catch (Exception ex) {
+            if (i < lines.length - 1) {
+              throw ex;
+            }
+            // the last line is incomplete if process exited while appending, watermark was not saved then.
+            break;
+          }
+          if (null != object) {
+            T item = Transformer.transform(object, query.getClassName());
+            latest.put(item.getObjectId(), item);
+          }
+          logLines++;
+        }
+        for (T item : mergeIntoObjectStore(new ArrayList<T>(latest.values()))) {
+          objects.put(item.getObjectId(), item);
+        }
+      } catch (Exception ex) {
+        LOGGER.w("failed to restore sync snapshot, fallback to full sync. cause: " + ex.getMessage());
+        objects.clear();
+        logLines = 0;
+        return;
+      }
+      lastUpdatedAt = new Date(updatedAt);
+      lastObjectId = setting.getString(WATERMARK_ZONE, syncName + KEY_OBJECT_ID_SUFFIX, null);
+      File snapshot = storage.getCacheFile(getSnapshotKey());
+      syncedAt = null == snapshot ? 0 : snapshot.lastModified();
+      registerMirrorIfNeeded();
+      LOGGER.d("restore sync " + syncName + ". total=" + objects.size() + ", watermark=" + updatedAt);
+    }
+  }
+
+  private void persist(List<T> changedObjects) {
+    SystemSetting setting = AppConfiguration.getDefaultSetting();
+    LocalStorage storage = getSnapshotStorage();
+    if (null == setting || null == storage || null == lastUpdatedAt) {
+      return;
+    }
+    boolean compact = logLines + changedObjects.size() > Math.max(MIN_COMPACT_LINES, 2 * objects.size());
+    Collection<T> rows = compact ? objects.values() : changedObjects;
+    StringBuilder sb = new StringBuilder();
+    for (T object : rows) {
+      sb.append(object.toJSONString()).append("\n");
+    }
+    try {
+      // snapshot must be saved before watermark.
+      byte[] content = sb.toString().getBytes("UTF-8");
+      String path = compact ? storage.saveData(getSnapshotKey(), content)
+              : storage.appendData(getSnapshotKey(), content);
+      if (null == path) {
+        return;
+      }
+    } catch (Exception ex) {
+      LOGGER.w("failed to save sync snapshot. cause: " + ex.getMessage());
+      return;
+    }
+    logLines = compact ? rows.size() : logLines + rows.size();
+    setting.saveLong(WATERMARK_ZONE, syncName + KEY_UPDATED_AT_SUFFIX, lastUpdatedAt.getTime());
+    setting.saveString(WATERMARK_ZONE, syncName + KEY_OBJECT_ID_SUFFIX, lastObjectId);
+  }
+
+  int getLogLines() {
+    return logLines;
+  }
+}
@@ -1,5 +1,6 @@
 package cn.leancloud;
 
+import cn.leancloud.cache.ObjectStore;
 import cn.leancloud.core.AVOSCloud;
 import cn.leancloud.core.AppConfiguration;
 import cn.leancloud.network.NetworkingDetector;
@@ -7,6 +8,7 @@ import cn.leancloud.ops.*;
 import cn.leancloud.types.AVDate;
 import cn.leancloud.types.AVGeoPoint;
 import cn.leancloud.core.PaasClient;
+import cn.leancloud.execution.DirectExecution;
 import cn.leancloud.types.AVNull;
 import cn.leancloud.utils.AVUtils;
 import cn.leancloud.utils.LogUtil;
@@ -22,14 +24,11 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
-import com.alibaba.fastjson.parser.Feature;
-import com.alibaba.fastjson.serializer.SerializerFeature;
 import io.reactivex.Observable;
 import io.reactivex.ObservableSource;
 import io.reactivex.Observer;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.functions.Function;
-import io.reactivex.schedulers.Schedulers;
 
 @JSONType(deserializer = ObjectTypeAdapter.class, serializer = ObjectTypeAdapter.class)
 public class AVObject {
@@ -53,7 +52,7 @@ public class AVObject {
   protected String endpointClassName = null;
 
   protected String objectId = "";
-  protected ConcurrentMap<String, Object> serverData = new ConcurrentHashMap<String, Object>();
+  protected volatile ConcurrentMap<String, Object> serverData = new ConcurrentHashMap<String, Object>();
   protected ConcurrentMap<String, ObjectFieldOperation> operations = new ConcurrentHashMap<String, ObjectFieldOperation>();
   protected AVACL acl = null;
   private String uuid = null;
@@ -268,7 +267,11 @@ public class AVObject {
    * @return the bytes value associated with specified key.
    */
   public byte[] getBytes(String key) {
-    return (byte[]) (get(key));
+    Object res = get(key);
+    if (res instanceof Map && "Bytes".equals(((Map) res).get("__type"))) {
+      return Utils.dataFromMap((Map<String, Object>) res);
+    }
+    return (byte[]) res;
   }
 
   /**
@@ -674,6 +677,9 @@ public class AVObject {
     if (null == op) {
       return;
     }
+    if (this.serverData instanceof CompactServerData) {
+      this.serverData = ((CompactServerData) this.serverData).upgrade();
+    }
     if (totallyOverwrite) {
       if ("Delete".equalsIgnoreCase(op.getOperation())) {
         this.serverData.remove(op.getField());
@@ -795,7 +801,7 @@ public class AVObject {
         result.addAll(operationValues);
       }
     }
-    return Observable.just(result).subscribeOn(Schedulers.io());
+    return Observable.just(result).subscribeOn(AppConfiguration.getSubscribeScheduler());
   }
 
   protected List<AVFile> extractUnsavedFiles(Object o) {
@@ -985,7 +991,12 @@ public class AVObject {
    * Save in blocking mode.
    */
   public void save() {
-    saveInBackground().blockingSubscribe();
+    DirectExecution.enter();
+    try {
+      saveInBackground().blockingSubscribe();
+    } finally {
+      DirectExecution.exit();
+    }
   }
 
   /**
@@ -994,7 +1005,12 @@ public class AVObject {
    * @throws AVException error happened.
    */
   public static void saveAll(Collection<? extends AVObject> objects) throws AVException {
-    saveAllInBackground(objects).blockingSubscribe();
+    DirectExecution.enter();
+    try {
+      saveAllInBackground(objects).blockingSubscribe();
+    } finally {
+      DirectExecution.exit();
+    }
   }
 
   private static Observable<List<AVFile>> extractSaveAheadFiles(Collection<? extends AVObject> objects) {
@@ -1005,7 +1021,7 @@ public class AVObject {
         needSaveAheadFiles.addAll(cascadingSaveFiles);
       }
     }
-    return Observable.just(needSaveAheadFiles).subscribeOn(Schedulers.io());
+    return Observable.just(needSaveAheadFiles).subscribeOn(AppConfiguration.getSubscribeScheduler());
   }
 
   /**
@@ -1180,7 +1196,12 @@ public class AVObject {
    * Delete current object in blocking mode.
    */
   public void delete() {
-    deleteInBackground().blockingSubscribe();
+    DirectExecution.enter();
+    try {
+      deleteInBackground().blockingSubscribe();
+    } finally {
+      DirectExecution.exit();
+    }
   }
 
   /**
@@ -1189,7 +1210,12 @@ public class AVObject {
    * @throws AVException error happened.
    */
   public static void deleteAll(Collection<? extends AVObject> objects) throws AVException {
-    deleteAllInBackground(objects).blockingSubscribe();
+    DirectExecution.enter();
+    try {
+      deleteAllInBackground(objects).blockingSubscribe();
+    } finally {
+      DirectExecution.exit();
+    }
   }
 
   /**
@@ -1232,7 +1258,12 @@ public class AVObject {
    * @param includeKeys include keys, which object will be return together.
    */
   public void refresh(String includeKeys) {
-    refreshInBackground(includeKeys).blockingSubscribe();
+    DirectExecution.enter();
+    try {
+      refreshInBackground(includeKeys).blockingSubscribe();
+    } finally {
+      DirectExecution.exit();
+    }
   }
 
   /**
@@ -1277,6 +1308,9 @@ public class AVObject {
                 }
                 AVObject.this.serverData.putAll(avObject.serverData);
                 AVObject.this.onDataSynchronized();
+                if (AppConfiguration.isObjectStoreEnabled()) {
+                  ObjectStore.getInstance().merge(AVObject.this, true);
+                }
                 return AVObject.this;
               }
             });
@@ -1324,11 +1358,26 @@ public class AVObject {
   public Observable<AVObject> fetchIfNeededInBackground() {
     if (!StringUtil.isEmpty(getObjectId()) && this.serverData.size() > 1) {
       return Observable.just(this);
+    } else if (fillFromObjectStore()) {
+      return Observable.just(this);
     } else {
       return refreshInBackground();
     }
   }
 
+  private boolean fillFromObjectStore() {
+    if (StringUtil.isEmpty(getObjectId()) || !AppConfiguration.isObjectStoreEnabled()) {
+      return false;
+    }
+    AVObject local = ObjectStore.getInstance().get(this.className, getObjectId());
+    if (null == local || local == this) {
+      return false;
+    }
+    logger.d("fetch object from local store. className=" + this.className + ", objectId=" + getObjectId());
+    this.serverData.putAll(local.serverData);
+    return true;
+  }
+
   /**
    * Fetch current object if needed in async mode.
    * @param includeKeys include keys, which object will be return together.
@@ -1347,10 +1396,39 @@ public class AVObject {
    * @return current object.
    */
   public AVObject fetchIfNeeded() {
-    fetchIfNeededInBackground().blockingSubscribe();
+    DirectExecution.enter();
+    try {
+      fetchIfNeededInBackground().blockingSubscribe();
+    } finally {
+      DirectExecution.exit();
+    }
     return this;
   }
 
+  /**
+   * Switch server data(including nested objects) to compact read-only layout.
+   * It is upgraded to mutable map automatically on first modification.
+   */
+  void compactServerData() {
+    if (this.serverData instanceof CompactServerData || !this.operations.isEmpty()) {
+      return;
+    }
+    // install compact layout before recursion, so that cyclic object graphs(e.g. back-pointers between
+    // canonical instances in object identity map) stop at visited objects.
+    this.serverData = CompactServerData.from(this.className, this.serverData);
+    for (Object value : this.serverData.values()) {
+      if (value instanceof AVObject) {
+        ((AVObject) value).compactServerData();
+      } else if (value instanceof Collection) {
+        for (Object item : (Collection) value) {
+          if (item instanceof AVObject) {
+            ((AVObject) item).compactServerData();
+          }
+        }
+      }
+    }
+  }
+
   protected void resetAll() {
     this.objectId = "";
     this.acl = null;
@@ -1393,6 +1471,17 @@ public class AVObject {
     this.operations.clear();
   }
 
+  /**
+   * Replace server data as a whole, concurrent readers see either the old or the new data, never a partial one.
+   * Pending operations are kept.
+   * @param data new server data.
+   */
+  public void replaceServerData(Map<String, Object> data) {
+    ConcurrentMap<String, Object> replacement = new ConcurrentHashMap<String, Object>();
+    AVUtils.mergeConcurrentMap(replacement, data);
+    this.serverData = replacement;
+  }
+
   /**
    * Get request endpoint.
    * @return endpoint.
@@ -1489,14 +1578,7 @@ public class AVObject {
    * @return json string.
    */
   public String toJSONString() {
-    if (AVOSCloud.isEnableCircularReferenceDetect()) {
-      return JSON.toJSONString(this, ObjectValueFilter.instance,
-              SerializerFeature.WriteClassName);
-    } else {
-      return JSON.toJSONString(this, ObjectValueFilter.instance,
-              SerializerFeature.WriteClassName,
-              SerializerFeature.DisableCircularReferenceDetect);
-    }
+    return AppConfiguration.getJSONCodec().toJSONStringWithType(this);
   }
 
   /**
@@ -1523,7 +1605,7 @@ public class AVObject {
 
     objectString = objectString.replaceAll("\"@type\":\\s*\"com.avos.avoscloud.ops.[A-Za-z]+Op\",", "");
 
-    return JSON.parseObject(objectString, AVObject.class, Feature.SupportAutoType);
+    return AppConfiguration.getJSONCodec().parseObjectWithType(objectString, AVObject.class);
   }
 
   /**
@@ -2,6 +2,7 @@ package cn.leancloud;
 
 import cn.leancloud.callback.SendCallback;
 import cn.leancloud.core.PaasClient;
+import cn.leancloud.execution.DirectExecution;
 import cn.leancloud.utils.AVUtils;
 import cn.leancloud.utils.LogUtil;
 import cn.leancloud.utils.StringUtil;
@@ -380,7 +381,12 @@ public class AVPush {
    * instead of this, unless you are managing your own threading.
    */
   public void send() {
-    sendInBackground().blockingFirst();
+    DirectExecution.enter();
+    try {
+      sendInBackground().blockingFirst();
+    } finally {
+      DirectExecution.exit();
+    }
   }
 
   /**
@@ -1,9 +1,14 @@
 package cn.leancloud;
 
+import cn.leancloud.cache.ObjectStore;
 import cn.leancloud.cache.QueryResultCache;
+import cn.leancloud.core.AppConfiguration;
 import cn.leancloud.core.PaasClient;
+import cn.leancloud.execution.DirectExecution;
 import cn.leancloud.query.AVCloudQueryResult;
+import cn.leancloud.query.QueryColumnConsumer;
 import cn.leancloud.query.QueryConditions;
+import cn.leancloud.query.QueryEvaluator;
 import cn.leancloud.query.QueryOperation;
 import cn.leancloud.types.AVGeoPoint;
 import cn.leancloud.types.AVNull;
@@ -12,17 +17,28 @@ import cn.leancloud.utils.LogUtil;
 import cn.leancloud.utils.StringUtil;
 
 import java.util.*;
+import java.util.concurrent.Callable;
 
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.ObservableSource;
+import io.reactivex.functions.BiFunction;
 import io.reactivex.functions.Function;
 
 public class AVQuery<T extends AVObject> implements Cloneable {
   private static final AVLogger LOGGER = LogUtil.getLogger(AVQuery.class);
+  private static final int MAX_PAGE_SIZE = 1000;
 
+  /**
+   * cache policy.
+   * STALE_WHILE_REVALIDATE returns cached result(not older than maxCacheAge) at once and refreshes
+   * the cache in background if it is older than AppConfiguration.getStaleWhileRevalidateFreshAge(), only waits
+   * for networking when nothing is cached.
+   */
   public enum CachePolicy {
     CACHE_ELSE_NETWORK, CACHE_ONLY, CACHE_THEN_NETWORK, IGNORE_CACHE, NETWORK_ELSE_CACHE,
-    NETWORK_ONLY;
+    NETWORK_ONLY, STALE_WHILE_REVALIDATE;
   }
 
   private Class<T> clazz;
@@ -31,6 +47,7 @@ public class AVQuery<T extends AVObject> implements Cloneable {
   private CachePolicy cachePolicy = CachePolicy.IGNORE_CACHE;
   private long maxCacheAge = -1;
   private boolean includeACL = false;
+  private boolean compactResults = false;
 
   QueryConditions conditions;
 
@@ -55,6 +72,7 @@ public class AVQuery<T extends AVObject> implements Cloneable {
     query.isRunning = false;
     query.cachePolicy = this.cachePolicy;
     query.maxCacheAge = this.maxCacheAge;
+    query.compactResults = this.compactResults;
     query.conditions = null != this.conditions? this.conditions.clone(): null;
     return query;
   }
@@ -351,6 +369,26 @@ public class AVQuery<T extends AVObject> implements Cloneable {
   }
 
 
+  /**
+   * Flag to indicate results are kept in compact read-only layout.
+   * @return compact flag.
+   */
+  public boolean isCompactResults() {
+    return compactResults;
+  }
+
+  /**
+   * Keep results in compact read-only layout, which shares field names among objects with same class
+   * and uses much less memory than default. Objects are upgraded to normal mutable state automatically
+   * on first modification(put/increment/etc.). It is suitable for read-heavy scenarios.
+   * @param compactResults flag to enable compact results.
+   * @return this query.
+   */
+  public AVQuery<T> setCompactResults(boolean compactResults) {
+    this.compactResults = compactResults;
+    return this;
+  }
+
   /**
    * Include nested AVObjects for the provided key. You can use dot notation to specify which fields
    * in the included object that are also fetched.
@@ -911,7 +949,12 @@ public class AVQuery<T extends AVObject> implements Cloneable {
    * @return result of list.
    */
   public List<T> find() {
-    return findInBackground().blockingLast();
+    DirectExecution.enter();
+    try {
+      return findInBackground().blockingLast();
+    } finally {
+      DirectExecution.exit();
+    }
   }
 
   /**
@@ -922,8 +965,8 @@ public class AVQuery<T extends AVObject> implements Cloneable {
     return findInBackground(0);
   }
 
-  protected Observable<List<T>> findInBackground(int explicitLimit) {
-    Map<String, String> query = assembleParameters();
+  protected Observable<List<T>> findInBackground(final int explicitLimit) {
+    final Map<String, String> query = assembleParameters();
     if (this.includeACL && null != query) {
       query.put("returnACL", "true");
     }
@@ -931,27 +974,254 @@ public class AVQuery<T extends AVObject> implements Cloneable {
       query.put("limit", Integer.toString(explicitLimit));
     }
     LOGGER.d("Query: " + query);
+    if ((CachePolicy.CACHE_ONLY == this.cachePolicy || CachePolicy.CACHE_ELSE_NETWORK == this.cachePolicy)
+            && !this.includeACL) {
+      // local mirror is checked at subscription, as query result cache is.
+      return Observable.defer(new Callable<ObservableSource<List<T>>>() {
+        public ObservableSource<List<T>> call() throws Exception {
+          List<T> local = findInMirror(query, explicitLimit);
+          return null != local ? Observable.just(local) : queryObjects(query);
+        }
+      });
+    }
+    return queryObjects(query);
+  }
+
+  /**
+   * evaluate against local mirror of the class if query result is not cached.
+   */
+  private List<T> findInMirror(Map<String, String> query, int explicitLimit) {
+    if (QueryResultCache.getInstance().hasCachedResult(getClassName(), query, this.maxCacheAge)) {
+      return null;
+    }
+    List<T> local = AVIncrementalSync.findInMirror(this, this.maxCacheAge);
+    if (null != local) {
+      LOGGER.d("invoke within AVQuery.findInBackground(). evaluated locally, resultSize=" + local.size());
+      if (explicitLimit > 0 && local.size() > explicitLimit) {
+        local = new ArrayList<T>(local.subList(0, explicitLimit));
+      }
+    }
+    return local;
+  }
+
+  private Observable<List<T>> queryObjects(Map<String, String> query) {
     return PaasClient.getStorageClient().queryObjects(getClassName(), query, this.cachePolicy, this.maxCacheAge)
             .map(new Function<List<AVObject>, List<T>>() {
               public List<T> apply(List<AVObject> var1) throws Exception {
                 LOGGER.d("invoke within AVQuery.findInBackground(). resultSize=" + var1.size());
                 List<T> result = new ArrayList<T>(var1.size());
                 for (AVObject obj: var1) {
-                  T tmp = Transformer.transform(obj, getClassName());
-                  result.add(tmp);
+                  result.add(Transformer.<T>transform(obj, getClassName()));
+                }
+                if (AppConfiguration.isObjectStoreEnabled()) {
+                  Set<String> selectedKeys = getSelectedKeys();
+                  result = ObjectStore.getInstance().mergeAll(result, null == selectedKeys || selectedKeys.isEmpty());
+                }
+                if (compactResults) {
+                  for (T tmp : result) {
+                    tmp.compactServerData();
+                  }
                 }
                 return result;
               }
             });
   }
 
+  /**
+   * Execute query in async mode, and emit every result as soon as it is decoded from response stream,
+   * the whole response is never buffered in memory.
+   * Notice: cache policy is ignored.
+   * @return observable instance.
+   */
+  public Observable<T> findInStream() {
+    Map<String, String> query = assembleParameters();
+    if (this.includeACL && null != query) {
+      query.put("returnACL", "true");
+    }
+    LOGGER.d("Query: " + query);
+    return PaasClient.getStorageClient().queryObjectsInStream(getClassName(), query)
+            .map(new Function<AVObject, T>() {
+              public T apply(AVObject avObject) throws Exception {
+                T result = Transformer.transform(avObject, getClassName());
+                if (compactResults) {
+                  result.compactServerData();
+                }
+                return result;
+              }
+            });
+  }
+
+  /**
+   * Iterate all matched objects in blocking mode.
+   * @see #findAllInBackground(int)
+   * @param pageSize page size(max 1000).
+   * @return iterable instance, which fetches pages lazily.
+   */
+  public Iterable<T> findAll(int pageSize) {
+    return findAllInBackground(pageSize).blockingIterable(pageSize);
+  }
+
+  /**
+   * Iterate all matched objects in async mode.
+   *
+   * Objects are fetched page by page with objectId cursor(instead of skip, which gets slower
+   * linearly on server), and the next page is prefetched while current page is consumed. Pages are
+   * only requested on demand of downstream, so at most two pages are kept in memory.
+   * Notice: results are always sorted by objectId ascending, and order/skip/limit/cache policy
+   * of current query are ignored. where/selectKeys/include conditions are respected.
+   *
+   * @param pageSize page size(max 1000).
+   * @return flowable instance.
+   */
+  public Flowable<T> findAllInBackground(final int pageSize) {
+    if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+      throw new IllegalArgumentException("pageSize must be between 1 and " + MAX_PAGE_SIZE);
+    }
+    Flowable<List<T>> pages = Flowable.generate(new Callable<PageCursor>() {
+      public PageCursor call() throws Exception {
+        return new PageCursor();
+      }
+    }, new BiFunction<PageCursor, Emitter<List<T>>, PageCursor>() {
+      public PageCursor apply(PageCursor cursor, Emitter<List<T>> emitter) throws Exception {
+        if (cursor.finished) {
+          emitter.onComplete();
+          return cursor;
+        }
+        // page is queried on current thread, a nested subscription on a bounded provider may never be scheduled.
+        List<T> page = generateCursorQuery(cursor.lastObjectId, pageSize).find();
+        cursor.finished = page.size() < pageSize;
+        if (page.isEmpty()) {
+          emitter.onComplete();
+        } else {
+          cursor.lastObjectId = page.get(page.size() - 1).getObjectId();
+          emitter.onNext(page);
+        }
+        return cursor;
+      }
+    });
+    return pages.subscribeOn(AppConfiguration.getSubscribeScheduler())
+            .concatMapIterable(new Function<List<T>, Iterable<T>>() {
+              public Iterable<T> apply(List<T> page) throws Exception {
+                return page;
+              }
+            }, 2);
+  }
+
+  private static class PageCursor {
+    String lastObjectId = null;
+    boolean finished = false;
+  }
+
+  private AVQuery<T> generateCursorQuery(String lastObjectId, int pageSize) throws CloneNotSupportedException {
+    AVQuery<T> query = (AVQuery<T>) clone();
+    query.cachePolicy = CachePolicy.IGNORE_CACHE;
+    query.conditions.setSkip(0);
+    query.conditions.setLimit(pageSize);
+    query.conditions.setOrder(AVObject.KEY_OBJECT_ID);
+    if (!StringUtil.isEmpty(lastObjectId)) {
+      query.conditions.whereGreaterThan(AVObject.KEY_OBJECT_ID, lastObjectId);
+    }
+    return query;
+  }
+
+  /**
+   * generate query for objects changed after watermark, ordered by updatedAt and objectId.
+   * @param lastUpdatedAt updatedAt of watermark, null means from the beginning.
+   * @param lastObjectId objectId of watermark.
+   * @param pageSize page size.
+   * @return query instance.
+   * @throws CloneNotSupportedException never.
+   */
+  AVQuery<T> generateDeltaQuery(Date lastUpdatedAt, String lastObjectId, int pageSize)
+          throws CloneNotSupportedException {
+    AVQuery<T> query = (AVQuery<T>) clone();
+    query.cachePolicy = CachePolicy.IGNORE_CACHE;
+    query.conditions.setSkip(0);
+    query.conditions.setLimit(pageSize);
+    query.conditions.setOrder(AVObject.KEY_UPDATED_AT + "," + AVObject.KEY_OBJECT_ID);
+    if (null != lastUpdatedAt) {
+      AVQuery<T> newer = new AVQuery<T>(getClassName());
+      newer.whereGreaterThan(AVObject.KEY_UPDATED_AT, lastUpdatedAt);
+      AVQuery<T> sameTime = new AVQuery<T>(getClassName());
+      sameTime.whereEqualTo(AVObject.KEY_UPDATED_AT, lastUpdatedAt);
+      sameTime.whereGreaterThan(AVObject.KEY_OBJECT_ID, StringUtil.isEmpty(lastObjectId) ? "" : lastObjectId);
+      // wrap with $and, so that $or conditions of current query are kept untouched.
+      query.addAndItems(AVQuery.or(Arrays.asList(newer, sameTime)));
+    }
+    return query;
+  }
+
+  /**
+   * Evaluate current query(where/order/skip/limit/selectKeys) against local objects, without
+   * round-trip to server.
+   * @param objects local objects.
+   * @return matched objects.
+   * @throws UnsupportedOperationException if query contains sub-query, which can not be evaluated locally.
+   */
+  public List<T> findInCollection(Collection<T> objects) {
+    return QueryEvaluator.compile(conditions).evaluate(objects);
+  }
+
+  /**
+   * Execute query and decode results into projection class in blocking mode.
+   * @param clazz projection class, such as POJO which has no-arg constructor.
+   * @param <E> projection type.
+   * @return result of list.
+   */
+  public <E> List<E> findProjection(Class<E> clazz) {
+    DirectExecution.enter();
+    try {
+      return findProjectionInBackground(clazz).blockingLast();
+    } finally {
+      DirectExecution.exit();
+    }
+  }
+
+  /**
+   * Execute query and decode results into projection class in async mode.
+   * Result columns are mapped to setters/fields with the same name directly, there is no
+   * intermediate AVObject, so it is suitable for data export with selectKeys.
+   * Notice: cache policy is ignored.
+   * @param clazz projection class, such as POJO which has no-arg constructor.
+   * @param <E> projection type.
+   * @return observable instance.
+   */
+  public <E> Observable<List<E>> findProjectionInBackground(Class<E> clazz) {
+    Map<String, String> query = assembleParameters();
+    if (this.includeACL && null != query) {
+      query.put("returnACL", "true");
+    }
+    LOGGER.d("Query: " + query);
+    return PaasClient.getStorageClient().queryProjection(getClassName(), query, clazz);
+  }
+
+  /**
+   * Execute query and send result columns to consumer in async mode.
+   * Notice: cache policy is ignored.
+   * @param consumer column consumer.
+   * @return observable instance, which emits row count.
+   */
+  public Observable<Integer> findColumnsInBackground(QueryColumnConsumer consumer) {
+    Map<String, String> query = assembleParameters();
+    if (this.includeACL && null != query) {
+      query.put("returnACL", "true");
+    }
+    LOGGER.d("Query: " + query);
+    return PaasClient.getStorageClient().queryColumns(getClassName(), query, consumer);
+  }
+
   /**
    * Get Object with specified objectId in blocking mode.
    * @param objectId object id.
    * @return object instance.
    */
   public T get(String objectId) {
-    return getInBackground(objectId).blockingFirst();
+    DirectExecution.enter();
+    try {
+      return getInBackground(objectId).blockingFirst();
+    } finally {
+      DirectExecution.exit();
+    }
   }
 
   /**
@@ -980,10 +1250,13 @@ public class AVQuery<T extends AVObject> implements Cloneable {
    * @return first result.
    */
   public T getFirst() {
+    DirectExecution.enter();
     try {
       return getFirstInBackground().blockingFirst();
     } catch (NoSuchElementException ex) {
       return null;
+    } finally {
+      DirectExecution.exit();
     }
   }
 
@@ -1006,7 +1279,12 @@ public class AVQuery<T extends AVObject> implements Cloneable {
    * @return result count.
    */
   public int count() {
-    return countInBackground().blockingFirst();
+    DirectExecution.enter();
+    try {
+      return countInBackground().blockingFirst();
+    } finally {
+      DirectExecution.exit();
+    }
   }
 
   /**
@@ -1024,7 +1302,12 @@ public class AVQuery<T extends AVObject> implements Cloneable {
    * Delete all query result in blocking mode.
    */
   public void deleteAll() {
-    this.deleteAllInBackground().blockingSubscribe();
+    DirectExecution.enter();
+    try {
+      this.deleteAllInBackground().blockingSubscribe();
+    } finally {
+      DirectExecution.exit();
+    }
   }
 
   /**
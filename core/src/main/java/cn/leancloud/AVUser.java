@@ -6,6 +6,7 @@ import cn.leancloud.callback.AVCallback;
 import cn.leancloud.callback.FollowersAndFolloweesCallback;
 import cn.leancloud.core.AppConfiguration;
 import cn.leancloud.core.PaasClient;
+import cn.leancloud.execution.DirectExecution;
 import cn.leancloud.ops.Utils;
 import cn.leancloud.sms.AVSMS;
 import cn.leancloud.sms.AVSMSOption;
@@ -238,7 +239,12 @@ public class AVUser extends AVObject {
    * sign up(blocking).
    */
   public void signUp() {
-    signUpInBackground().blockingSubscribe();
+    DirectExecution.enter();
+    try {
+      signUpInBackground().blockingSubscribe();
+    } finally {
+      DirectExecution.exit();
+    }
   }
 
   /**
@@ -278,7 +284,12 @@ public class AVUser extends AVObject {
    * @return user instance.
    */
   public static <T extends AVUser> T signUpOrLoginByMobilePhone(String mobilePhoneNumber, String smsCode, Class<T> clazz) {
-    return signUpOrLoginByMobilePhoneInBackground(mobilePhoneNumber, smsCode, clazz).blockingSingle();
+    DirectExecution.enter();
+    try {
+      return signUpOrLoginByMobilePhoneInBackground(mobilePhoneNumber, smsCode, clazz).blockingSingle();
+    } finally {
+      DirectExecution.exit();
+    }
   }
 
   /**
@@ -673,8 +684,13 @@ public class AVUser extends AVObject {
   }
 
   public static AVUser becomeWithSessionToken(String sessionToken) {
-    AVUser usr = becomeWithSessionTokenInBackground(sessionToken).blockingFirst();
-    return usr;
+    DirectExecution.enter();
+    try {
+      AVUser usr = becomeWithSessionTokenInBackground(sessionToken).blockingFirst();
+      return usr;
+    } finally {
+      DirectExecution.exit();
+    }
   }
 
   public static Observable<? extends AVUser> becomeWithSessionTokenInBackground(String sessionToken) {
@@ -682,8 +698,13 @@ public class AVUser extends AVObject {
   }
 
   public static <T extends AVUser> T becomeWithSessionToken(String sessionToken, Class<T> clazz) {
-    T result = becomeWithSessionTokenInBackground(sessionToken, clazz).blockingFirst();
-    return result;
+    DirectExecution.enter();
+    try {
+      T result = becomeWithSessionTokenInBackground(sessionToken, clazz).blockingFirst();
+      return result;
+    } finally {
+      DirectExecution.exit();
+    }
   }
 
   public static <T extends AVUser> Observable<T> becomeWithSessionTokenInBackground(String sessionToken, Class<T> clazz) {
@@ -811,6 +832,14 @@ public class AVUser extends AVObject {
         logger.w(ex);
       }
     }
+    if (null == user) {
+      // remember that nobody logged in, avoid to check archive file again.
+      synchronized (AVUser.class) {
+        if (null == PaasClient.getStorageClient().getCurrentUser()) {
+          PaasClient.getStorageClient().setCurrentUser(null);
+        }
+      }
+    }
     return (T) Transformer.transform(user, userClass);
   }
 
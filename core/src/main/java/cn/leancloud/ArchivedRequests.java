@@ -187,7 +187,7 @@ public class ArchivedRequests {
               SerializerFeature.DisableCircularReferenceDetect));
     }
 
-    return JSON.toJSONString(content);
+    return AppConfiguration.getJSONCodec().toJSONString(content);
   }
 
   private void parseArchiveFile(File file) {
@@ -204,7 +204,7 @@ public class ArchivedRequests {
       return;
     }
     try {
-      Map<String, String> contentMap = JSON.parseObject(content, Map.class);
+      Map<String, String> contentMap = AppConfiguration.getJSONCodec().parseObject(content, Map.class);
       String method = contentMap.get(ATTR_METHOD);
       AVObject resultObj = parseAVObject(contentMap);
       logger.d("get archived request. method=" + method + ", object=" + resultObj.toString());
@@ -220,7 +220,7 @@ public class ArchivedRequests {
 
   // just for serializer test.
   protected static AVObject parseAVObject(String content) {
-    Map<String, String> contentMap = JSON.parseObject(content, Map.class);
+    Map<String, String> contentMap = AppConfiguration.getJSONCodec().parseObject(content, Map.class);
     return parseAVObject(contentMap);
   }
 
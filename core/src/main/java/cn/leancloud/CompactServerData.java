@@ -0,0 +1,233 @@
+package cn.leancloud;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Read-optimized server data of AVObject.
+ *
+ * Values are stored in a plain array, and field names/positions are kept in a layout which is
+ * shared by all objects of the same className. The first modification upgrades the instance to
+ * a ConcurrentHashMap, after that all operations are delegated to it.
+ */
+class CompactServerData extends AbstractMap<String, Object> implements ConcurrentMap<String, Object> {
+  /**
+   * layout larger than this is not cached, to avoid memory explosion for schema-less classes.
+   */
+  static final int MAX_SHARED_FIELDS = 128;
+
+  private static final ConcurrentMap<String, Layout> sharedLayouts = new ConcurrentHashMap<String, Layout>();
+
+  static final class Layout {
+    final String[] keys;
+    final Map<String, Integer> index;
+
+    Layout(Collection<String> fields) {
+      this.keys = fields.toArray(new String[fields.size()]);
+      this.index = new HashMap<String, Integer>(this.keys.length * 2);
+      for (int i = 0; i < this.keys.length; i++) {
+        this.index.put(this.keys[i], i);
+      }
+    }
+
+    boolean covers(Set<String> fields) {
+      return index.keySet().containsAll(fields);
+    }
+  }
+
+  private final Layout layout;
+  private final Object[] values;
+  private final int size;
+  private volatile ConcurrentHashMap<String, Object> delegate = null;
+
+  private CompactServerData(Layout layout, Map<String, Object> data) {
+    this.layout = layout;
+    this.values = new Object[layout.keys.length];
+    int count = 0;
+    for (Map.Entry<String, Object> entry : data.entrySet()) {
+      if (null == entry.getKey() || null == entry.getValue()) {
+        continue;
+      }
+      this.values[layout.index.get(entry.getKey())] = entry.getValue();
+      count++;
+    }
+    this.size = count;
+  }
+
+  /**
+   * create compact copy of data.
+   * @param className class name, which is used to share field layout.
+   * @param data server data.
+   * @return compact map.
+   */
+  static CompactServerData from(String className, Map<String, Object> data) {
+    return new CompactServerData(layoutFor(className, data.keySet()), data);
+  }
+
+  static void clearLayouts() {
+    sharedLayouts.clear();
+  }
+
+  static Layout layoutFor(String className, Set<String> fields) {
+    if (null == className) {
+      return new Layout(fields);
+    }
+    Layout current = sharedLayouts.get(className);
+    if (null != current && current.covers(fields)) {
+      return current;
+    }
+    Set<String> merged = new LinkedHashSet<String>();
+    if (null != current) {
+      merged.addAll(Arrays.asList(current.keys));
+    }
+    merged.addAll(fields);
+    if (merged.size() > MAX_SHARED_FIELDS) {
+      return new Layout(fields);
+    }
+    Layout result = new Layout(merged);
+    sharedLayouts.put(className, result);
+    return result;
+  }
+
+  boolean isUpgraded() {
+    return null != delegate;
+  }
+
+  /**
+   * upgrade to mutable map.
+   * @return mutable map which has same content.
+   */
+  ConcurrentHashMap<String, Object> upgrade() {
+    ConcurrentHashMap<String, Object> result = delegate;
+    if (null != result) {
+      return result;
+    }
+    synchronized (this) {
+      if (null == delegate) {
+        ConcurrentHashMap<String, Object> tmp = new ConcurrentHashMap<String, Object>(Math.max(16, size * 2));
+        for (int i = 0; i < values.length; i++) {
+          if (null != values[i]) {
+            tmp.put(layout.keys[i], values[i]);
+          }
+        }
+        delegate = tmp;
+      }
+      return delegate;
+    }
+  }
+
+  @Override
+  public Object get(Object key) {
+    ConcurrentHashMap<String, Object> d = delegate;
+    if (null != d) {
+      return d.get(key);
+    }
+    Integer pos = layout.index.get(key);
+    return null == pos ? null : values[pos];
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return null != get(key);
+  }
+
+  @Override
+  public int size() {
+    ConcurrentHashMap<String, Object> d = delegate;
+    return null != d ? d.size() : size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return 0 == size();
+  }
+
+  @Override
+  public Object put(String key, Object value) {
+    return upgrade().put(key, value);
+  }
+
+  @Override
+  public void putAll(Map<? extends String, ?> m) {
+    upgrade().putAll(m);
+  }
+
+  @Override
+  public Object remove(Object key) {
+    return upgrade().remove(key);
+  }
+
+  @Override
+  public void clear() {
+    upgrade().clear();
+  }
+
+  public Object putIfAbsent(String key, Object value) {
+    return upgrade().putIfAbsent(key, value);
+  }
+
+  public boolean remove(Object key, Object value) {
+    return upgrade().remove(key, value);
+  }
+
+  public boolean replace(String key, Object oldValue, Object newValue) {
+    return upgrade().replace(key, oldValue, newValue);
+  }
+
+  public Object replace(String key, Object value) {
+    return upgrade().replace(key, value);
+  }
+
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    ConcurrentHashMap<String, Object> d = delegate;
+    if (null != d) {
+      return d.entrySet();
+    }
+    return new AbstractSet<Entry<String, Object>>() {
+      @Override
+      public Iterator<Entry<String, Object>> iterator() {
+        return new CompactIterator();
+      }
+
+      @Override
+      public int size() {
+        return CompactServerData.this.size();
+      }
+    };
+  }
+
+  private class CompactIterator implements Iterator<Entry<String, Object>> {
+    private int next = advance(0);
+    private int last = -1;
+
+    private int advance(int from) {
+      while (from < values.length && null == values[from]) {
+        from++;
+      }
+      return from;
+    }
+
+    public boolean hasNext() {
+      return next < values.length;
+    }
+
+    public Entry<String, Object> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      last = next;
+      next = advance(next + 1);
+      return new SimpleImmutableEntry<String, Object>(layout.keys[last], values[last]);
+    }
+
+    public void remove() {
+      if (last < 0) {
+        throw new IllegalStateException();
+      }
+      upgrade().remove(layout.keys[last]);
+      last = -1;
+    }
+  }
+}
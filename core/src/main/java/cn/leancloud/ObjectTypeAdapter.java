@@ -51,10 +51,15 @@ public class ObjectTypeAdapter implements ObjectSerializer, ObjectDeserializer{
     writer.writeString(avObject.getClassName());
     writer.write(',');
     writer.writeFieldName(KEY_SERVERDATA, false);
+    Map<String, Object> serverData = avObject.serverData;
+    if (serverData instanceof CompactServerData) {
+      // keep the same output as normal object, so that it can be restored as usual.
+      serverData = new ConcurrentHashMap<String, Object>(serverData);
+    }
     if (AVOSCloud.isEnableCircularReferenceDetect()) {
-      writer.write(JSON.toJSONString(avObject.serverData, ObjectValueFilter.instance, SerializerFeature.WriteClassName));
+      writer.write(JSON.toJSONString(serverData, ObjectValueFilter.instance, SerializerFeature.WriteClassName));
     } else {
-      writer.write(JSON.toJSONString(avObject.serverData, ObjectValueFilter.instance, SerializerFeature.WriteClassName,
+      writer.write(JSON.toJSONString(serverData, ObjectValueFilter.instance, SerializerFeature.WriteClassName,
               SerializerFeature.DisableCircularReferenceDetect));
     }
 
@@ -39,6 +39,20 @@ public class LocalStorage {
     return path;
   }
 
+  public String appendData(String key, byte[] content) {
+    if (disableLocalCache) {
+      return null;
+    }
+    if (StringUtil.isEmpty(key) || null == content) {
+      return null;
+    }
+    String path = baseDir + key;
+    if (!PersistenceUtil.sharedInstance().appendContentToFile(content, new File(path))) {
+      return null;
+    }
+    return path;
+  }
+
   public String saveFile(String key, File localFile) {
     if (disableLocalCache) {
       return null;
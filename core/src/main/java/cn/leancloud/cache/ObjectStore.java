@@ -0,0 +1,427 @@
+package cn.leancloud.cache;
+
+import cn.leancloud.AVLogger;
+import cn.leancloud.AVObject;
+import cn.leancloud.AVUser;
+import cn.leancloud.codec.MD5;
+import cn.leancloud.core.AppConfiguration;
+import cn.leancloud.utils.LogUtil;
+import cn.leancloud.utils.StringUtil;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Local store of AVObject which is keyed by className/objectId.
+ *
+ * It consists of two optional layers:
+ *   - identity map, bounded LRU of weak references, so that the same object fetched by different
+ *     queries/includes shares one instance.
+ *   - persistent store, which keeps the latest server data on disk, and is used to serve
+ *     fetchIfNeeded when the entry is not older than max age.
+ * New data is merged into existing entry only when its updatedAt is not older than current one.
+ * Both layers are disabled by default, and the store is only created after one of them is enabled through
+ * AppConfiguration. Disk writes are done in a background thread, and consecutive writes of the same entry are
+ * coalesced.
+ */
+public class ObjectStore extends LocalStorage {
+  private static final AVLogger LOGGER = LogUtil.getLogger(ObjectStore.class);
+  private static final String STORE_DIR = "objects/";
+  private static volatile ObjectStore INSTANCE = null;
+
+  private volatile int identityMapCapacity = 0;
+  private volatile long persistentMaxAge = 0;
+  private volatile LinkedHashMap<String, WeakReference<AVObject>> identityMap = null;
+  private final ConcurrentMap<String, Long> storedVersions = new ConcurrentHashMap<String, Long>();
+  // objects waiting to be written, keyed by store key.
+  private final ConcurrentMap<String, AVObject> pendingWrites = new ConcurrentHashMap<String, AVObject>();
+  private ExecutorService writeExecutor = null;
+
+  /**
+   * get store instance, which is created with current configuration at the first call.
+   * callers should check AppConfiguration.isObjectStoreEnabled() at first, so that nothing is created while
+   * store is disabled.
+   * @return store instance.
+   */
+  public static ObjectStore getInstance() {
+    ObjectStore store = INSTANCE;
+    if (null == store) {
+      synchronized (ObjectStore.class) {
+        if (null == INSTANCE) {
+          String documentDir = AppConfiguration.getDocumentDir();
+          ObjectStore newStore = new ObjectStore(null == documentDir ? null : documentDir + STORE_DIR);
+          newStore.setIdentityMapCapacity(AppConfiguration.getObjectIdentityMapCapacity());
+          newStore.setPersistentMaxAge(AppConfiguration.getObjectStoreMaxAge());
+          INSTANCE = newStore;
+        }
+        store = INSTANCE;
+      }
+    }
+    return store;
+  }
+
+  /**
+   * @return store instance if it has been created, otherwise null.
+   */
+  public static ObjectStore peekInstance() {
+    return INSTANCE;
+  }
+
+  ObjectStore(String baseDir) {
+    super(baseDir);
+  }
+
+  /**
+   * set capacity of identity map.
+   * @param capacity max count of tracked objects, 0 means disabled.
+   */
+  public synchronized void setIdentityMapCapacity(final int capacity) {
+    this.identityMapCapacity = Math.max(0, capacity);
+    if (this.identityMapCapacity <= 0) {
+      this.identityMap = null;
+      return;
+    }
+    LinkedHashMap<String, WeakReference<AVObject>> newMap =
+            new LinkedHashMap<String, WeakReference<AVObject>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, WeakReference<AVObject>> eldest) {
+        return size() > identityMapCapacity;
+      }
+    };
+    if (null != this.identityMap) {
+      newMap.putAll(this.identityMap);
+    }
+    this.identityMap = newMap;
+  }
+
+  public int getIdentityMapCapacity() {
+    return this.identityMapCapacity;
+  }
+
+  /**
+   * set max age of persistent entries which can be used without networking.
+   * @param maxAgeInMilliseconds max age, 0 means persistent store is disabled.
+   */
+  public synchronized void setPersistentMaxAge(long maxAgeInMilliseconds) {
+    this.persistentMaxAge = Math.max(0, maxAgeInMilliseconds);
+  }
+
+  public long getPersistentMaxAge() {
+    return this.persistentMaxAge;
+  }
+
+  public boolean isEnabled() {
+    return null != this.identityMap || this.persistentMaxAge > 0;
+  }
+
+  static String generateKey(String className, String objectId) {
+    return className + "/" + objectId;
+  }
+
+  private static boolean isNotOlder(AVObject object, AVObject existed) {
+    return isNotOlder(object.getUpdatedAt(), existed.getUpdatedAt());
+  }
+
+  private static boolean isNotOlder(Date updated, Date current) {
+    return null == current || (null != updated && !updated.before(current));
+  }
+
+  /**
+   * merge object(including nested objects) into store, the data of object is treated as partial.
+   * @param object object from server.
+   * @param <T> template type.
+   * @return canonical instance, which is the instance in identity map if it exists, otherwise object itself.
+   */
+  public <T extends AVObject> T merge(T object) {
+    return merge(object, false);
+  }
+
+  /**
+   * merge object(including nested objects) into store.
+   * @param object object from server.
+   * @param complete whether object contains all fields(e.g. fetched without keys selection), in which case
+   *                 data of existing instance is replaced, so that fields unset on server are removed too.
+   * @param <T> template type.
+   * @return canonical instance, which is the instance in identity map if it exists, otherwise object itself.
+   */
+  public <T extends AVObject> T merge(T object, boolean complete) {
+    if (null == object || !isEnabled()) {
+      return object;
+    }
+    return merge(object, complete, Collections.newSetFromMap(new IdentityHashMap<AVObject, Boolean>()));
+  }
+
+  /**
+   * merge objects into store, the data of objects is treated as partial.
+   * @param objects objects from server.
+   * @param <T> template type.
+   * @return canonical instances with the same order.
+   */
+  public <T extends AVObject> List<T> mergeAll(List<T> objects) {
+    return mergeAll(objects, false);
+  }
+
+  /**
+   * merge objects into store.
+   * @param objects objects from server.
+   * @param complete whether objects contain all fields.
+   * @param <T> template type.
+   * @return canonical instances with the same order.
+   */
+  public <T extends AVObject> List<T> mergeAll(List<T> objects, boolean complete) {
+    if (null == objects || !isEnabled()) {
+      return objects;
+    }
+    Set<AVObject> visited = Collections.newSetFromMap(new IdentityHashMap<AVObject, Boolean>());
+    List<T> result = new ArrayList<T>(objects.size());
+    for (T object : objects) {
+      result.add(merge(object, complete, visited));
+    }
+    return result;
+  }
+
+  private <T extends AVObject> T merge(T object, boolean complete, Set<AVObject> visited) {
+    if (!visited.add(object)) {
+      return object;
+    }
+    // canonicalize nested objects(pointer includes) first.
+    for (Map.Entry<String, Object> entry : object.getServerData().entrySet()) {
+      Object value = entry.getValue();
+      if (value instanceof AVObject) {
+        AVObject canonical = merge((AVObject) value, false, visited);
+        if (canonical != value) {
+          object.getServerData().put(entry.getKey(), canonical);
+        }
+      } else if (value instanceof List) {
+        List<Object> items = (List<Object>) value;
+        for (int i = 0; i < items.size(); i++) {
+          if (items.get(i) instanceof AVObject) {
+            AVObject item = (AVObject) items.get(i);
+            AVObject canonical = merge(item, false, visited);
+            if (canonical != item) {
+              items.set(i, canonical);
+            }
+          }
+        }
+      }
+    }
+    String objectId = object.getObjectId();
+    if (StringUtil.isEmpty(objectId) || StringUtil.isEmpty(object.getClassName())) {
+      return object;
+    }
+    String key = generateKey(object.getClassName(), objectId);
+    T result = object;
+    if (null != identityMap) {
+      synchronized (this) {
+        if (null != identityMap) {
+          WeakReference<AVObject> reference = identityMap.get(key);
+          AVObject existed = null == reference ? null : reference.get();
+          if (null != existed && existed != object && object.getClass().isInstance(existed)) {
+            if (isNotOlder(object, existed)) {
+              if (complete) {
+                replaceServerData(existed, object);
+              } else {
+                existed.getServerData().putAll(object.getServerData());
+              }
+            }
+            result = (T) existed;
+          } else {
+            identityMap.put(key, new WeakReference<AVObject>(object));
+          }
+        }
+      }
+    }
+    if (getPersistentMaxAge() > 0 && object.getServerData().size() > 1) {
+      scheduleSave(MD5.computeMD5(key), result);
+    }
+    return result;
+  }
+
+  private static void replaceServerData(AVObject existed, AVObject object) {
+    // canonical instance is read by other threads without lock, so build new data first and swap it in.
+    Map<String, Object> data = new HashMap<String, Object>(object.getServerData());
+    Object sessionToken = existed instanceof AVUser ? existed.getServerData().get(AVUser.ATTR_SESSION_TOKEN) : null;
+    if (null != sessionToken && !data.containsKey(AVUser.ATTR_SESSION_TOKEN)) {
+      data.put(AVUser.ATTR_SESSION_TOKEN, sessionToken);
+    }
+    existed.replaceServerData(data);
+  }
+
+  private synchronized ExecutorService getWriteExecutor() {
+    if (null == writeExecutor) {
+      writeExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "leancloud-object-store");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return writeExecutor;
+  }
+
+  /**
+   * save object in background, it is skipped if the entry is replaced or removed before written.
+   */
+  private void scheduleSave(final String storeKey, final AVObject object) {
+    while (true) {
+      AVObject pending = pendingWrites.putIfAbsent(storeKey, object);
+      if (null == pending || pending == object) {
+        break;
+      }
+      if (!isNotOlder(object, pending)) {
+        return;
+      }
+      if (pendingWrites.replace(storeKey, pending, object)) {
+        break;
+      }
+    }
+    getWriteExecutor().submit(new Runnable() {
+      public void run() {
+        if (pendingWrites.get(storeKey) != object) {
+          return;
+        }
+        save(storeKey, object);
+        pendingWrites.remove(storeKey, object);
+      }
+    });
+  }
+
+  /**
+   * wait until all scheduled writes are done.
+   */
+  void flush() throws Exception {
+    getWriteExecutor().submit(new Runnable() {
+      public void run() {
+      }
+    }).get();
+  }
+
+  private void save(String storeKey, AVObject object) {
+    Long storedVersion = storedVersions.get(storeKey);
+    Date current = null;
+    if (null != storedVersion) {
+      current = new Date(storedVersion);
+    } else {
+      AVObject existed = load(storeKey, 0);
+      current = null == existed ? null : existed.getUpdatedAt();
+    }
+    Date updated = object.getUpdatedAt();
+    if (!isNotOlder(updated, current)) {
+      LOGGER.d("ignore outdated object. key=" + storeKey);
+      return;
+    }
+    try {
+      saveData(storeKey, object.toJSONString().getBytes("UTF-8"));
+      if (null != updated) {
+        storedVersions.put(storeKey, updated.getTime());
+      }
+    } catch (Exception ex) {
+      LOGGER.w("failed to save object. cause: " + ex.getMessage());
+    }
+  }
+
+  private AVObject load(String storeKey, long maxAge) {
+    File file = getCacheFile(storeKey);
+    if (null == file || !file.exists()) {
+      return null;
+    }
+    if (maxAge > 0 && System.currentTimeMillis() - file.lastModified() > maxAge) {
+      LOGGER.d("stored object is expired. key=" + storeKey);
+      return null;
+    }
+    byte[] data = readData(file);
+    if (null == data || data.length < 1) {
+      return null;
+    }
+    try {
+      return AVObject.parseAVObject(new String(data, "UTF-8"));
+    } catch (Exception ex) {
+      LOGGER.w("failed to parse stored object. cause: " + ex.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * get local copy of object, which is looked up in identity map at first, then persistent store.
+   * @param className class name.
+   * @param objectId object id.
+   * @return local object, null if not found or persistent entry is expired.
+   */
+  public AVObject get(String className, String objectId) {
+    if (StringUtil.isEmpty(className) || StringUtil.isEmpty(objectId) || !isEnabled()) {
+      return null;
+    }
+    String key = generateKey(className, objectId);
+    synchronized (this) {
+      if (null != identityMap) {
+        WeakReference<AVObject> reference = identityMap.get(key);
+        AVObject existed = null == reference ? null : reference.get();
+        if (null != existed && existed.getServerData().size() > 1) {
+          return existed;
+        }
+      }
+    }
+    long maxAge = getPersistentMaxAge();
+    if (maxAge <= 0) {
+      return null;
+    }
+    String storeKey = MD5.computeMD5(key);
+    AVObject pending = pendingWrites.get(storeKey);
+    if (null != pending) {
+      return pending;
+    }
+    return load(storeKey, maxAge);
+  }
+
+  /**
+   * remove object from store, it should be called after object is deleted.
+   * @param className class name.
+   * @param objectId object id.
+   */
+  public void remove(String className, String objectId) {
+    if (StringUtil.isEmpty(className) || StringUtil.isEmpty(objectId)) {
+      return;
+    }
+    String key = generateKey(className, objectId);
+    synchronized (this) {
+      if (null != identityMap) {
+        identityMap.remove(key);
+      }
+    }
+    final String storeKey = MD5.computeMD5(key);
+    pendingWrites.remove(storeKey);
+    storedVersions.remove(storeKey);
+    deleteFile(storeKey);
+    if (getPersistentMaxAge() > 0) {
+      // the write which is running now may recreate file.
+      getWriteExecutor().submit(new Runnable() {
+        public void run() {
+          deleteFile(storeKey);
+        }
+      });
+    }
+  }
+
+  private void deleteFile(String storeKey) {
+    File file = getCacheFile(storeKey);
+    if (null != file && file.exists()) {
+      file.delete();
+    }
+  }
+
+  /**
+   * clear identity map.
+   */
+  public synchronized void clearIdentityMap() {
+    if (null != identityMap) {
+      identityMap.clear();
+    }
+  }
+}
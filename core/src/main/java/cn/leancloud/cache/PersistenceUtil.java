@@ -86,6 +86,30 @@ public class PersistenceUtil {
     return succeed;
   }
 
+  public boolean appendContentToFile(byte[] content, File fileForSave) {
+    boolean succeed = true;
+    FileOutputStream out = null;
+    Lock writeLock = getLock(fileForSave.getAbsolutePath()).writeLock();
+    if (writeLock.tryLock()) {
+      try {
+        out = new FileOutputStream(fileForSave, true);
+        out.write(content);
+        out.flush();
+      } catch (Exception e) {
+        succeed = false;
+      } finally {
+        if (out != null) {
+          closeQuietly(out);
+        }
+        writeLock.unlock();
+      }
+    } else {
+      gLogger.w("failed to lock writeLocker, skip append content to file:" + fileForSave.getAbsolutePath());
+      succeed = false;
+    }
+    return succeed;
+  }
+
   public String readContentFromFile(File fileForRead) {
     byte[] data = this.readContentBytesFromFile(fileForRead);
     if (null == data || data.length < 1) {
@@ -4,18 +4,22 @@ import cn.leancloud.AVLogger;
 import cn.leancloud.AVObject;
 import cn.leancloud.codec.MD5;
 import cn.leancloud.core.AppConfiguration;
+import cn.leancloud.execution.DirectExecution;
 import cn.leancloud.query.AVQueryResult;
 import cn.leancloud.utils.LogUtil;
 import cn.leancloud.utils.StringUtil;
 import io.reactivex.Observable;
-import io.reactivex.schedulers.Schedulers;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.FutureTask;
@@ -23,7 +27,12 @@ import java.util.concurrent.FutureTask;
 public class QueryResultCache extends LocalStorage {
   private static final AVLogger LOGGER = LogUtil.getLogger(QueryResultCache.class);
   private static QueryResultCache INSTANCE = null;
+  private static final String INVALIDATION_ZONE = "com.avoscloud.queryResultCache.invalidation";
+  // sidecar of cache entry, which keeps invalidation stamp of the class when entry is written.
+  private static final String STAMP_SUFFIX = ".stamp";
   private ExecutorService executor = Executors.newFixedThreadPool(2);
+  private final ConcurrentMap<String, Set<String>> classCacheKeys = new ConcurrentHashMap<String, Set<String>>();
+  private final ConcurrentMap<String, Long> invalidationTimes = new ConcurrentHashMap<String, Long>();
 
   public static synchronized QueryResultCache getInstance() {
     if (null == INSTANCE) {
@@ -46,6 +55,106 @@ public class QueryResultCache extends LocalStorage {
     }
   }
 
+  /**
+   * save query result, and track the entry by className so that it can be invalidated by write.
+   * @param className class name.
+   * @param key cache key.
+   * @param content result content.
+   * @return cache file path.
+   */
+  public String cacheResult(String className, String key, String content) {
+    if (!StringUtil.isEmpty(className)) {
+      Set<String> keys = classCacheKeys.get(className);
+      if (null == keys) {
+        keys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        Set<String> existed = classCacheKeys.putIfAbsent(className, keys);
+        if (null != existed) {
+          keys = existed;
+        }
+      }
+      keys.add(key);
+      try {
+        saveData(key + STAMP_SUFFIX, Long.toString(getInvalidationTime(className)).getBytes("UTF-8"));
+      } catch (Exception ex) {
+        LOGGER.w(ex);
+      }
+    }
+    return cacheResult(key, content);
+  }
+
+  /**
+   * invalidate all cached query results of specified class.
+   * entries written in current process are removed, and older entries(include ones written by
+   * previous process) are treated as expired.
+   * @param className class name.
+   */
+  public void invalidate(String className) {
+    if (StringUtil.isEmpty(className)) {
+      return;
+    }
+    // stamp is increased strictly, so that entries written before this invalidation always have smaller stamp.
+    long now = Math.max(System.currentTimeMillis(), getInvalidationTime(className) + 1);
+    invalidationTimes.put(className, now);
+    SystemSetting setting = AppConfiguration.getDefaultSetting();
+    if (null != setting) {
+      setting.saveLong(INVALIDATION_ZONE, className, now);
+    }
+    Set<String> keys = classCacheKeys.remove(className);
+    if (null != keys) {
+      for (String key : keys) {
+        File cacheFile = getCacheFile(key);
+        if (null != cacheFile && cacheFile.exists()) {
+          cacheFile.delete();
+        }
+        clearCachedFile(key + STAMP_SUFFIX);
+      }
+      LOGGER.d("invalidate query cache for class:" + className + ", removed entries:" + keys.size());
+    }
+  }
+
+  /**
+   * @param cacheKey cache key.
+   * @return milliseconds since the entry was written, -1 if it is not cached.
+   */
+  public long getCacheAge(String cacheKey) {
+    File cacheFile = getCacheFile(cacheKey);
+    if (null == cacheFile || !cacheFile.exists()) {
+      return -1;
+    }
+    return Math.max(0, System.currentTimeMillis() - cacheFile.lastModified());
+  }
+
+  private long getInvalidationTime(String className) {
+    if (StringUtil.isEmpty(className)) {
+      return 0;
+    }
+    Long result = invalidationTimes.get(className);
+    if (null == result) {
+      SystemSetting setting = AppConfiguration.getDefaultSetting();
+      result = null == setting ? 0L : setting.getLong(INVALIDATION_ZONE, className, 0L);
+      invalidationTimes.put(className, result);
+    }
+    return result;
+  }
+
+  private boolean isInvalidated(String className, File cacheFile) {
+    long invalidationTime = getInvalidationTime(className);
+    if (invalidationTime <= 0) {
+      return false;
+    }
+    byte[] stamp = readData(cacheFile.getName() + STAMP_SUFFIX);
+    if (null != stamp) {
+      try {
+        return Long.parseLong(new String(stamp, "UTF-8").trim()) < invalidationTime;
+      } catch (Exception ex) {
+        LOGGER.w("invalid cache stamp of file: " + cacheFile.getName());
+      }
+    }
+    // entry without stamp(e.g. written by previous version), file modified time maybe truncated to second,
+    // so treat the same time as invalidated.
+    return cacheFile.lastModified() <= invalidationTime;
+  }
+
   public static String generateKeyForQueryCondition(String className, Map<String, String> query) {
     StringBuilder sb = new StringBuilder();
     sb.append(className);
@@ -83,6 +192,10 @@ public class QueryResultCache extends LocalStorage {
       LOGGER.d("cache file(key=" + cacheKey + ") is expired.");
       return false;
     }
+    if (isInvalidated(className, cacheFile)) {
+      LOGGER.d("cache file(key=" + cacheKey + ") is invalidated.");
+      return false;
+    }
     return true;
   }
 
@@ -135,8 +248,11 @@ public class QueryResultCache extends LocalStorage {
     FutureTask<String> futureTask = new FutureTask<>(callable);
     executor.submit(futureTask);
     Observable result = Observable.fromFuture(futureTask);
+    if (DirectExecution.isActive()) {
+      return result;
+    }
     if (isAsync) {
-      result = result.subscribeOn(Schedulers.io());
+      result = result.subscribeOn(AppConfiguration.getSubscribeScheduler());
     }
     if (null != creator) {
       result = result.observeOn(creator.create());
@@ -159,7 +275,8 @@ public class QueryResultCache extends LocalStorage {
             throw new FileNotFoundException("cache is not existed.");
           }
         }
-        if (maxAgeInMilliseconds > 0 && (System.currentTimeMillis() - cacheFile.lastModified() > maxAgeInMilliseconds)) {
+        if ((maxAgeInMilliseconds > 0 && (System.currentTimeMillis() - cacheFile.lastModified() > maxAgeInMilliseconds))
+                || isInvalidated(className, cacheFile)) {
           LOGGER.d("cache file(key=" + cacheKey + ") is expired.");
           if (isFinal) {
             return new ArrayList<>();
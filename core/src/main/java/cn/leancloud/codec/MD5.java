@@ -10,6 +10,19 @@ import java.security.NoSuchAlgorithmException;
 
 public class MD5 {
   private static final int MAX_FILE_BUF_SIZE = 1024*1024*2;
+  private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+
+  // MessageDigest.getInstance is expensive and digest is not thread-safe, so reuse one per thread.
+  private static final ThreadLocal<MessageDigest> threadDigest = new ThreadLocal<MessageDigest>() {
+    @Override
+    protected MessageDigest initialValue() {
+      try {
+        return MessageDigest.getInstance("MD5");
+      } catch (NoSuchAlgorithmException ex) {
+        throw new RuntimeException(ex);
+      }
+    }
+  };
 
   public static String computeMD5(String data) {
     if (null == data) {
@@ -21,15 +34,10 @@ public class MD5 {
     if (null == data) {
       return null;
     }
-    try {
-      MessageDigest md = MessageDigest.getInstance("MD5");
-      md.update(data, 0, data.length);
-      byte[] md5bytes = md.digest();
-
-      return hexEncodeBytes(md5bytes);
-    } catch (NoSuchAlgorithmException ex) {
-      throw new RuntimeException(ex);
-    }
+    MessageDigest md = threadDigest.get();
+    md.reset();
+    md.update(data, 0, data.length);
+    return hexEncodeBytes(md.digest());
   }
 
   public static String computeFileMD5(File localFile) {
@@ -62,13 +70,13 @@ public class MD5 {
     if (null == md5bytes) {
       return "";
     }
-    StringBuffer hexString = new StringBuffer();
+    char[] hexChars = new char[md5bytes.length * 2];
     for (int i = 0; i < md5bytes.length; i++) {
-      String hex = Integer.toHexString(0xff & md5bytes[i]);
-      if (hex.length() == 1) hexString.append('0');
-      hexString.append(hex);
+      int value = md5bytes[i] & 0xff;
+      hexChars[i * 2] = HEX_CHARS[value >>> 4];
+      hexChars[i * 2 + 1] = HEX_CHARS[value & 0x0f];
     }
-    return hexString.toString();
+    return new String(hexChars);
   }
 
   public static MD5 getInstance() {
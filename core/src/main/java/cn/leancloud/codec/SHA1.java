@@ -1,5 +1,9 @@
 package cn.leancloud.codec;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -27,4 +31,26 @@ public class SHA1 {
     byte[] sha1hash = md.digest();
     return convertToHex(sha1hash);
   }
+
+  /**
+   * compute sha1 of file content, file is read with fixed buffer.
+   * @param file local file.
+   * @return hex string of sha1.
+   * @throws NoSuchAlgorithmException if sha-1 is not supported.
+   * @throws IOException if failed to read file.
+   */
+  public static String compute(File file) throws NoSuchAlgorithmException, IOException {
+    MessageDigest md = MessageDigest.getInstance("SHA-1");
+    InputStream is = new FileInputStream(file);
+    try {
+      byte[] buf = new byte[64 * 1024];
+      int len;
+      while ((len = is.read(buf)) != -1) {
+        md.update(buf, 0, len);
+      }
+    } finally {
+      is.close();
+    }
+    return convertToHex(md.digest());
+  }
 }
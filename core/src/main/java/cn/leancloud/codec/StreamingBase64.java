@@ -0,0 +1,158 @@
+package cn.leancloud.codec;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Table driven Base64 codec(standard alphabet, no line wrap) for large binary payloads.
+ *
+ * Encoder writes characters to Writer chunk by chunk, so no intermediate byte array or String is created.
+ * Decoder reads characters directly and fills an exactly sized output array.
+ */
+public class StreamingBase64 {
+  private static final int CHUNK_BYTES = 3 * 1024;
+
+  private static final char[] ENCODE_TABLE = {
+          'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', 'K', 'L', 'M', 'N', 'O', 'P',
+          'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z', 'a', 'b', 'c', 'd', 'e', 'f',
+          'g', 'h', 'i', 'j', 'k', 'l', 'm', 'n', 'o', 'p', 'q', 'r', 's', 't', 'u', 'v',
+          'w', 'x', 'y', 'z', '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', '+', '/',
+  };
+
+  private static final byte[] DECODE_TABLE = new byte[128];
+  static {
+    for (int i = 0; i < DECODE_TABLE.length; i++) {
+      DECODE_TABLE[i] = -1;
+    }
+    for (int i = 0; i < ENCODE_TABLE.length; i++) {
+      DECODE_TABLE[ENCODE_TABLE[i]] = (byte) i;
+    }
+  }
+
+  private StreamingBase64() {
+  }
+
+  /**
+   * length of encoded text(with padding).
+   * @param len input length.
+   * @return encoded length.
+   */
+  public static long encodedLength(int len) {
+    return ((long) len + 2) / 3 * 4;
+  }
+
+  /**
+   * encode data and write result to writer.
+   * @param input data.
+   * @param offset start offset.
+   * @param len data length.
+   * @param out target writer.
+   * @throws IOException if writer failed.
+   */
+  public static void encode(byte[] input, int offset, int len, Writer out) throws IOException {
+    char[] buffer = new char[(int) encodedLength(Math.min(len, CHUNK_BYTES))];
+    int end = offset + len;
+    int position = offset;
+    while (position < end) {
+      int chunk = Math.min(CHUNK_BYTES, end - position);
+      int written = encodeChunk(input, position, chunk, buffer);
+      out.write(buffer, 0, written);
+      position += chunk;
+    }
+  }
+
+  /**
+   * encode data to String, without intermediate byte array.
+   * @param input data.
+   * @return encoded string.
+   */
+  public static String encodeToString(byte[] input) {
+    char[] output = new char[(int) encodedLength(input.length)];
+    encodeChunk(input, 0, input.length, output);
+    return new String(output);
+  }
+
+  private static int encodeChunk(byte[] input, int offset, int len, char[] output) {
+    int op = 0;
+    int end = offset + len;
+    int fullEnd = offset + len / 3 * 3;
+    int ip = offset;
+    while (ip < fullEnd) {
+      int value = ((input[ip] & 0xff) << 16) | ((input[ip + 1] & 0xff) << 8) | (input[ip + 2] & 0xff);
+      output[op] = ENCODE_TABLE[(value >> 18) & 0x3f];
+      output[op + 1] = ENCODE_TABLE[(value >> 12) & 0x3f];
+      output[op + 2] = ENCODE_TABLE[(value >> 6) & 0x3f];
+      output[op + 3] = ENCODE_TABLE[value & 0x3f];
+      ip += 3;
+      op += 4;
+    }
+    int remaining = end - ip;
+    if (remaining == 1) {
+      int value = (input[ip] & 0xff) << 16;
+      output[op++] = ENCODE_TABLE[(value >> 18) & 0x3f];
+      output[op++] = ENCODE_TABLE[(value >> 12) & 0x3f];
+      output[op++] = '=';
+      output[op++] = '=';
+    } else if (remaining == 2) {
+      int value = ((input[ip] & 0xff) << 16) | ((input[ip + 1] & 0xff) << 8);
+      output[op++] = ENCODE_TABLE[(value >> 18) & 0x3f];
+      output[op++] = ENCODE_TABLE[(value >> 12) & 0x3f];
+      output[op++] = ENCODE_TABLE[(value >> 6) & 0x3f];
+      output[op++] = '=';
+    }
+    return op;
+  }
+
+  /**
+   * decode Base64 text. padding is optional.
+   * text containing line breaks or other characters outside of alphabet goes through the general Base64 decoder.
+   * @param input encoded text.
+   * @return decoded data.
+   * @throws IllegalArgumentException if input is not valid Base64 text.
+   */
+  public static byte[] decode(CharSequence input) {
+    int len = input.length();
+    while (len > 0 && input.charAt(len - 1) == '=') {
+      len--;
+    }
+    if (input.length() - len > 2 || len % 4 == 1) {
+      return Base64.decode(input.toString(), Base64.DEFAULT);
+    }
+    byte[] output = new byte[(int) ((long) len * 3 / 4)];
+    int op = 0;
+    int fullEnd = len / 4 * 4;
+    int ip = 0;
+    while (ip < fullEnd) {
+      int value = (decodeChar(input.charAt(ip)) << 18) | (decodeChar(input.charAt(ip + 1)) << 12)
+              | (decodeChar(input.charAt(ip + 2)) << 6) | decodeChar(input.charAt(ip + 3));
+      if (value < 0) {
+        return Base64.decode(input.toString(), Base64.DEFAULT);
+      }
+      output[op] = (byte) (value >> 16);
+      output[op + 1] = (byte) (value >> 8);
+      output[op + 2] = (byte) value;
+      ip += 4;
+      op += 3;
+    }
+    int remaining = len - ip;
+    if (remaining > 0) {
+      int value = (decodeChar(input.charAt(ip)) << 18) | (decodeChar(input.charAt(ip + 1)) << 12);
+      if (remaining == 3) {
+        value |= decodeChar(input.charAt(ip + 2)) << 6;
+      }
+      if (value < 0) {
+        return Base64.decode(input.toString(), Base64.DEFAULT);
+      }
+      output[op++] = (byte) (value >> 16);
+      if (remaining == 3) {
+        output[op] = (byte) (value >> 8);
+      }
+    }
+    return output;
+  }
+
+  private static int decodeChar(char c) {
+    // negative result makes the whole group negative, so error check is done once per group.
+    return c < 128 ? DECODE_TABLE[c] : -1;
+  }
+}
@@ -4,14 +4,25 @@ import cn.leancloud.AVACL;
 import cn.leancloud.logging.InternalLoggerAdapter;
 import cn.leancloud.cache.InMemorySetting;
 import cn.leancloud.cache.LastModifyCache;
+import cn.leancloud.cache.ObjectStore;
 import cn.leancloud.cache.SystemSetting;
+import cn.leancloud.execution.DefaultExecutionProvider;
+import cn.leancloud.execution.DirectExecution;
+import cn.leancloud.execution.ExecutionProvider;
+import cn.leancloud.json.FastJsonCodec;
+import cn.leancloud.json.JSONCodec;
+import cn.leancloud.metrics.MetricsCollector;
+import cn.leancloud.metrics.NoopMetricsCollector;
 import cn.leancloud.logging.SimpleLoggerAdapter;
 import cn.leancloud.network.NetworkingDetector;
 import cn.leancloud.network.SimpleNetworkingDetector;
 import cn.leancloud.utils.FileUtil;
 import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
 
 import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class AppConfiguration {
   public interface SchedulerCreator{
@@ -34,6 +45,22 @@ public class AppConfiguration {
   private static String analyticsCacheDir = "./stats/";
   private static String queryResultCacheDir = "./PaasKeyValueCache";
   private static SystemSetting defaultSetting = new InMemorySetting();
+  private static JSONCodec jsonCodec = new FastJsonCodec();
+  private static volatile ExecutionProvider executionProvider = new DefaultExecutionProvider();
+  private static final Map<AVOSService, Double> requestRateLimits = new ConcurrentHashMap<AVOSService, Double>();
+  private static volatile long requestRateLimitMaxWait = 5000;
+  private static volatile int maxRetries = 0;
+  private static volatile int circuitBreakerThreshold = 0;
+  private static volatile long circuitBreakerOpenDuration = 30000;
+  private static volatile double hedgingPercentile = 0;
+  private static volatile double hedgingMaxExtraLoad = 0.05;
+  private static volatile boolean hedgingToAlternateEndpoint = false;
+  private static final Map<AVOSService, Boolean> requestCompressions = new ConcurrentHashMap<AVOSService, Boolean>();
+  private static volatile long requestCompressionThreshold = 16 * 1024;
+  private static volatile long staleWhileRevalidateFreshAge = 10000;
+  private static volatile MetricsCollector metricsCollector = new NoopMetricsCollector();
+  private static volatile int objectIdentityMapCapacity = 0;
+  private static volatile long objectStoreMaxAge = 0;
 
   private static boolean enableLocalCache = true;
 
@@ -55,6 +82,50 @@ public class AppConfiguration {
     return LastModifyCache.getInstance().isLastModifyEnabled();
   }
 
+  /**
+   * enable identity map, so that objects with the same className/objectId returned by queries and
+   * includes share one instance.
+   * @param capacity max count of tracked objects, 0 means disabled(default).
+   */
+  public static void setObjectIdentityMapCapacity(int capacity) {
+    objectIdentityMapCapacity = Math.max(0, capacity);
+    applyObjectStoreSettings();
+  }
+
+  public static int getObjectIdentityMapCapacity() {
+    return objectIdentityMapCapacity;
+  }
+
+  /**
+   * enable persistent object store, objects fetched from server are saved locally and fetchIfNeeded
+   * is served from local store if the copy is not older than max age.
+   * @param maxAgeInMilliseconds max age, 0 means disabled(default).
+   */
+  public static void setObjectStoreMaxAge(long maxAgeInMilliseconds) {
+    objectStoreMaxAge = Math.max(0, maxAgeInMilliseconds);
+    applyObjectStoreSettings();
+  }
+
+  public static long getObjectStoreMaxAge() {
+    return objectStoreMaxAge;
+  }
+
+  /**
+   * @return whether identity map or persistent object store is enabled, object store is only touched if true.
+   */
+  public static boolean isObjectStoreEnabled() {
+    return objectIdentityMapCapacity > 0 || objectStoreMaxAge > 0;
+  }
+
+  private static void applyObjectStoreSettings() {
+    // store is created lazily, so that nothing is created while both layers are disabled.
+    ObjectStore store = isObjectStoreEnabled() ? ObjectStore.getInstance() : ObjectStore.peekInstance();
+    if (null != store) {
+      store.setIdentityMapCapacity(objectIdentityMapCapacity);
+      store.setPersistentMaxAge(objectStoreMaxAge);
+    }
+  }
+
   public static AVACL getDefaultACL() {
     return defaultACL;
   }
@@ -68,6 +139,189 @@ public class AppConfiguration {
   public static InternalLoggerAdapter getLogAdapter() {
     return logAdapter;
   }
+  /**
+   * set json codec, which is used by Retrofit conversion, object serialization and cache persistence.
+   * Notice: it must be invoked before AVOSCloud.initialize.
+   * @param codec json codec.
+   */
+  public static void setJSONCodec(JSONCodec codec) {
+    if (null != codec) {
+      jsonCodec = codec;
+    }
+  }
+  public static JSONCodec getJSONCodec() {
+    return jsonCodec;
+  }
+  /**
+   * set execution provider, which supplies the scheduler for blocking network and disk calls.
+   * default is RxJava io scheduler.
+   * @param provider execution provider, null to restore default.
+   */
+  public static void setExecutionProvider(ExecutionProvider provider) {
+    executionProvider = null == provider ? new DefaultExecutionProvider() : provider;
+  }
+  public static ExecutionProvider getExecutionProvider() {
+    return executionProvider;
+  }
+
+  /**
+   * get scheduler for subscribe side.
+   * @return scheduler from current execution provider, or trampoline scheduler within blocking api.
+   */
+  public static Scheduler getSubscribeScheduler() {
+    if (DirectExecution.isActive()) {
+      return Schedulers.trampoline();
+    }
+    return executionProvider.getScheduler();
+  }
+
+  /**
+   * set client side request rate limit for specified service(API, ENGINE or PUSH), requests exceeding the rate
+   * are queued, and the rate is lowered automatically when server responds with 429.
+   * rate limit is disabled by default.
+   * @param service service type, requests to functions/call are ENGINE, push are PUSH, others are API.
+   * @param permitsPerSecond max requests per second, non-positive value to disable.
+   */
+  public static void setRequestRateLimit(AVOSService service, double permitsPerSecond) {
+    if (null == service) {
+      return;
+    }
+    if (permitsPerSecond > 0) {
+      requestRateLimits.put(service, permitsPerSecond);
+    } else {
+      requestRateLimits.remove(service);
+    }
+  }
+  public static double getRequestRateLimit(AVOSService service) {
+    Double rate = null == service ? null : requestRateLimits.get(service);
+    return null == rate ? 0 : rate;
+  }
+
+  /**
+   * set max time a request waits in local queue, request is rejected with RATE_LIMITED error if it would wait longer.
+   * @param milliseconds max wait time, 0 to reject immediately. default is 5000.
+   */
+  public static void setRequestRateLimitMaxWait(long milliseconds) {
+    requestRateLimitMaxWait = Math.max(0, milliseconds);
+  }
+  public static long getRequestRateLimitMaxWait() {
+    return requestRateLimitMaxWait;
+  }
+
+  /**
+   * set max retry times for idempotent requests(GET/HEAD/DELETE, PUT and batch without Increment/Add like operations),
+   * which failed for network error or 502/503/504 response. retry is disabled by default.
+   * @param retries max retry times, 0 to disable.
+   */
+  public static void setMaxRetries(int retries) {
+    maxRetries = Math.max(0, retries);
+  }
+  public static int getMaxRetries() {
+    return maxRetries;
+  }
+
+  /**
+   * enable per host circuit breaker, requests to the host fail fast with CONNECTION_FAILED error while circuit is open.
+   * circuit breaker is disabled by default.
+   * @param failureThreshold consecutive failures to open circuit, 0 to disable.
+   * @param openMilliseconds how long circuit stays open before a trial request.
+   */
+  public static void setCircuitBreaker(int failureThreshold, long openMilliseconds) {
+    circuitBreakerThreshold = Math.max(0, failureThreshold);
+    circuitBreakerOpenDuration = Math.max(0, openMilliseconds);
+  }
+  public static int getCircuitBreakerThreshold() {
+    return circuitBreakerThreshold;
+  }
+  public static long getCircuitBreakerOpenDuration() {
+    return circuitBreakerOpenDuration;
+  }
+
+  /**
+   * enable hedging for GET requests to API service. if a request doesn't respond within the specified percentile
+   * of recent latencies, a duplicate is sent, the first response is used and the other is cancelled.
+   * hedging is disabled by default.
+   * @param percentile latency percentile(e.g. 95) used as hedge delay, non-positive value to disable.
+   * @param maxExtraLoadRatio max ratio of hedged requests to all requests, e.g. 0.05.
+   */
+  public static void setRequestHedging(double percentile, double maxExtraLoadRatio) {
+    hedgingPercentile = Math.min(100, Math.max(0, percentile));
+    hedgingMaxExtraLoad = Math.max(0, maxExtraLoadRatio);
+  }
+  public static double getRequestHedgingPercentile() {
+    return hedgingPercentile;
+  }
+  public static double getRequestHedgingMaxExtraLoad() {
+    return hedgingMaxExtraLoad;
+  }
+
+  /**
+   * send hedged request to built-in API endpoint instead of the same host.
+   * it takes effect only when endpoint is not specified by user.
+   * @param flag true to use alternate endpoint. default is false.
+   */
+  public static void setRequestHedgingToAlternateEndpoint(boolean flag) {
+    hedgingToAlternateEndpoint = flag;
+  }
+  public static boolean isRequestHedgingToAlternateEndpoint() {
+    return hedgingToAlternateEndpoint;
+  }
+
+  /**
+   * enable gzip compression of request body for specified service, e.g. batch save to API service.
+   * compression is disabled by default.
+   * @param service service type, requests to functions/call are ENGINE, push are PUSH, others are API.
+   * @param enabled true to compress request body larger than threshold.
+   */
+  public static void setRequestCompression(AVOSService service, boolean enabled) {
+    if (null == service) {
+      return;
+    }
+    if (enabled) {
+      requestCompressions.put(service, Boolean.TRUE);
+    } else {
+      requestCompressions.remove(service);
+    }
+  }
+  public static boolean isRequestCompressionEnabled(AVOSService service) {
+    return null != service && requestCompressions.containsKey(service);
+  }
+
+  /**
+   * set min size of request body to be compressed.
+   * @param bytes threshold in bytes, default is 16KB.
+   */
+  public static void setRequestCompressionThreshold(long bytes) {
+    requestCompressionThreshold = Math.max(0, bytes);
+  }
+  public static long getRequestCompressionThreshold() {
+    return requestCompressionThreshold;
+  }
+
+  /**
+   * set fresh age of STALE_WHILE_REVALIDATE, cached result younger than it is returned without refreshing,
+   * older one(but not older than maxCacheAge) is returned and refreshed in background.
+   * @param freshAgeInMilliseconds fresh age, default is 10 seconds, 0 means refreshing on every hit.
+   */
+  public static void setStaleWhileRevalidateFreshAge(long freshAgeInMilliseconds) {
+    staleWhileRevalidateFreshAge = Math.max(0, freshAgeInMilliseconds);
+  }
+  public static long getStaleWhileRevalidateFreshAge() {
+    return staleWhileRevalidateFreshAge;
+  }
+
+  /**
+   * set metrics collector, which receives latency breakdown of every http call and StorageClient operation.
+   * default collector does nothing.
+   * @param collector metrics collector, e.g. InMemoryMetricsCollector, null to restore default.
+   */
+  public static void setMetricsCollector(MetricsCollector collector) {
+    metricsCollector = null == collector ? new NoopMetricsCollector() : collector;
+  }
+  public static MetricsCollector getMetricsCollector() {
+    return metricsCollector;
+  }
+
   public static String getUserAgent() {
     return DEFAULT_USER_AGENT;
   }
@@ -14,11 +14,9 @@ import com.alibaba.fastjson.JSON;
 import io.reactivex.Observable;
 
 import io.reactivex.functions.Function;
-import io.reactivex.schedulers.Schedulers;
 import okhttp3.OkHttpClient;
 import retrofit2.Retrofit;
 import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
-import retrofit2.converter.fastjson.FastJsonConverterFactory;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -101,7 +99,7 @@ public class AppRouter {
             .build();
     retrofit = new Retrofit.Builder()
             .baseUrl(APP_ROUTER_HOST)
-            .addConverterFactory(FastJsonConverterFactory.create())
+            .addConverterFactory(AppConfiguration.getJSONCodec().createConverterFactory())
             .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
             .client(httpClient)
             .build();
@@ -178,10 +176,45 @@ public class AppRouter {
     this.customizedEndpoint.freezeEndpoint(service, host);
   }
 
+  /**
+   * get built-in endpoint of the service, as an alternate of the one returned by app router.
+   * @param appId application id.
+   * @param service service type.
+   * @return endpoint url, or null if endpoint is specified by user.
+   */
+  public String getAlternateEndpoint(final String appId, final AVOSService service) {
+    if (!StringUtil.isEmpty(this.customizedEndpoint.getServerHost(service))) {
+      return null;
+    }
+    AppAccessEndpoint endpoint = buildDefaultEndpoint(appId);
+    return null == endpoint ? null : endpoint.getServerHost(service);
+  }
+
   public Observable<String> getEndpoint(final String appId, final AVOSService service) {
     return getEndpoint(appId, service, false);
   }
 
+  String getFrozenEndpoint(final AVOSService service) {
+    return this.customizedEndpoint.getServerHost(service);
+  }
+
+  /**
+   * get current endpoint of the service without requesting app router.
+   * @param appId application id.
+   * @param service service type.
+   * @return endpoint url, or null if application id is invalid.
+   */
+  String peekEndpoint(final String appId, final AVOSService service) {
+    String fixedHost = getFrozenEndpoint(service);
+    if (!StringUtil.isEmpty(fixedHost)) {
+      return fixedHost;
+    }
+    if (StringUtil.isEmpty(appId) || appId.length() <= 8) {
+      return null;
+    }
+    return getEndpoint(appId, service, false).blockingFirst();
+  }
+
   private Observable<String> getEndpoint(final String appId, final AVOSService service, boolean forceUpdate) {
     if (StringUtil.isEmpty(appId)) {
       LOGGER.e("application id is empty.");
@@ -249,7 +282,7 @@ public class AppRouter {
     AppRouterService service = retrofit.create(AppRouterService.class);
     Observable<AppAccessEndpoint> result = service.getRouter(appId);
     if (AppConfiguration.isAsynchronized()) {
-      result = result.subscribeOn(Schedulers.io());
+      result = result.subscribeOn(AppConfiguration.getSubscribeScheduler());
     }
     AppConfiguration.SchedulerCreator creator = AppConfiguration.getDefaultScheduler();
     if (null != creator) {
@@ -280,7 +313,7 @@ public class AppRouter {
     AppRouterService tmpService = tmpRetrofit.create(AppRouterService.class);
     Observable<RTMConnectionServerResponse> result = tmpService.getRTMConnectionServer(appId, installationId, secure);
     if (AppConfiguration.isAsynchronized()) {
-      result = result.subscribeOn(Schedulers.io());
+      result = result.subscribeOn(AppConfiguration.getSubscribeScheduler());
     }
     AppConfiguration.SchedulerCreator creator = AppConfiguration.getDefaultScheduler();
     if (null != creator) {
@@ -0,0 +1,206 @@
+package cn.leancloud.core;
+
+import cn.leancloud.AVLogger;
+import cn.leancloud.AVObject;
+import cn.leancloud.AVUser;
+import cn.leancloud.Transformer;
+import cn.leancloud.cache.ObjectStore;
+import cn.leancloud.cache.QueryResultCache;
+import cn.leancloud.ops.Utils;
+import cn.leancloud.query.AVQueryResult;
+import cn.leancloud.service.AsyncAPIService;
+import cn.leancloud.types.AVNull;
+import cn.leancloud.utils.ErrorUtils;
+import cn.leancloud.utils.LogUtil;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.HttpException;
+import retrofit2.Response;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * CompletableFuture based storage client, requests are enqueued to OkHttp directly without RxJava.
+ *
+ * Futures are completed on OkHttp dispatcher thread, cancelling a future cancels the underlying call.
+ * Result conversion, query cache and object store maintenance are the same as StorageClient.
+ * Notice: it requires Java 8+ or Android API level 24+.
+ */
+public class AsyncStorageClient {
+  private static AVLogger LOGGER = LogUtil.getLogger(AsyncStorageClient.class);
+
+  private final AsyncAPIService apiService;
+
+  public AsyncStorageClient(AsyncAPIService apiService) {
+    this.apiService = apiService;
+  }
+
+  /**
+   * convert response body to future result.
+   */
+  interface ResultConverter<S, R> {
+    R convert(S body) throws Exception;
+  }
+
+  static class CallFuture<T> extends CompletableFuture<T> {
+    private final Call<?> call;
+
+    CallFuture(Call<?> call) {
+      this.call = call;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      boolean result = super.cancel(mayInterruptIfRunning);
+      call.cancel();
+      return result;
+    }
+  }
+
+  static <S, R> CompletableFuture<R> enqueue(Call<S> call, final ResultConverter<S, R> converter) {
+    final CallFuture<R> future = new CallFuture<R>(call);
+    call.enqueue(new Callback<S>() {
+      @Override
+      public void onResponse(Call<S> call, Response<S> response) {
+        if (!response.isSuccessful()) {
+          future.completeExceptionally(ErrorUtils.propagateException(new HttpException(response)));
+          return;
+        }
+        try {
+          future.complete(converter.convert(response.body()));
+        } catch (Exception ex) {
+          future.completeExceptionally(ex);
+        }
+      }
+
+      @Override
+      public void onFailure(Call<S> call, Throwable throwable) {
+        future.completeExceptionally(ErrorUtils.propagateException(throwable));
+      }
+    });
+    return future;
+  }
+
+  public CompletableFuture<AVObject> fetchObject(final String className, String objectId, String includeKeys) {
+    return enqueue(apiService.fetchObject(className, objectId, includeKeys), new ResultConverter<AVObject, AVObject>() {
+      public AVObject convert(AVObject avObject) {
+        return Transformer.transform(avObject, className);
+      }
+    });
+  }
+
+  /**
+   * query objects from server, result is written to query cache as StorageClient does.
+   * @param className class name.
+   * @param query query parameters.
+   * @return future of result list.
+   */
+  public CompletableFuture<List<AVObject>> queryObjects(final String className, Map<String, String> query) {
+    final String cacheKey = QueryResultCache.generateKeyForQueryCondition(className, query);
+    Call<AVQueryResult> call = AVUser.CLASS_NAME.equalsIgnoreCase(className) ?
+            apiService.queryUsers(query) : apiService.queryObjects(className, query);
+    return enqueue(call, new ResultConverter<AVQueryResult, List<AVObject>>() {
+      public List<AVObject> convert(AVQueryResult result) {
+        result.setClassName(className);
+        for (AVObject obj : result.getResults()) {
+          obj.setClassName(className);
+        }
+        QueryResultCache.getInstance().cacheResult(className, cacheKey, result.toJSONString());
+        return result.getResults();
+      }
+    });
+  }
+
+  public CompletableFuture<AVObject> createObject(final String className, JSONObject data, boolean fetchFlag,
+                                                  JSONObject where) {
+    return enqueue(apiService.createObject(className, data, fetchFlag, where), new ResultConverter<AVObject, AVObject>() {
+      public AVObject convert(AVObject avObject) {
+        QueryResultCache.getInstance().invalidate(className);
+        return Transformer.transform(avObject, className);
+      }
+    });
+  }
+
+  public CompletableFuture<AVObject> saveObject(final String className, String objectId, JSONObject data,
+                                                boolean fetchFlag, JSONObject where) {
+    return enqueue(apiService.updateObject(className, objectId, data, fetchFlag, where),
+            new ResultConverter<AVObject, AVObject>() {
+      public AVObject convert(AVObject avObject) {
+        QueryResultCache.getInstance().invalidate(className);
+        return Transformer.transform(avObject, className);
+      }
+    });
+  }
+
+  public CompletableFuture<AVNull> deleteObject(final String className, final String objectId,
+                                                Map<String, Object> param) {
+    return enqueue(apiService.deleteObject(className, objectId, param), new ResultConverter<AVNull, AVNull>() {
+      public AVNull convert(AVNull avNull) {
+        QueryResultCache.getInstance().invalidate(className);
+        ObjectStore objectStore = ObjectStore.peekInstance();
+        if (null != objectStore) {
+          objectStore.remove(className, objectId);
+        }
+        return avNull;
+      }
+    });
+  }
+
+  public CompletableFuture<JSONArray> batchSave(final JSONObject parameter) {
+    return enqueue(apiService.batchCreate(parameter), new ResultConverter<JSONArray, JSONArray>() {
+      public JSONArray convert(JSONArray result) {
+        invalidateBatchClasses(parameter);
+        return result;
+      }
+    });
+  }
+
+  public CompletableFuture<JSONObject> batchUpdate(final JSONObject parameter) {
+    return enqueue(apiService.batchUpdate(parameter), new ResultConverter<JSONObject, JSONObject>() {
+      public JSONObject convert(JSONObject result) {
+        invalidateBatchClasses(parameter);
+        return result;
+      }
+    });
+  }
+
+  public <T> CompletableFuture<T> callFunction(String name, Map<String, Object> params) {
+    return enqueue(apiService.cloudFunction(name, Utils.getParsedMap(params)),
+            new ResultConverter<Map<String, Object>, T>() {
+      public T convert(Map<String, Object> resultMap) {
+        return AsyncStorageClient.<T>parseCloudResult(resultMap);
+      }
+    });
+  }
+
+  public <T> CompletableFuture<T> callRPC(String name, Object params) {
+    return enqueue(apiService.cloudRPC(name, Utils.getParsedObject(params)),
+            new ResultConverter<Map<String, Object>, T>() {
+      public T convert(Map<String, Object> resultMap) {
+        return AsyncStorageClient.<T>parseCloudResult(resultMap);
+      }
+    });
+  }
+
+  private static void invalidateBatchClasses(JSONObject parameter) {
+    for (String className : StorageClient.classNamesInBatchRequest(parameter)) {
+      QueryResultCache.getInstance().invalidate(className);
+    }
+  }
+
+  private static <T> T parseCloudResult(Map<String, Object> resultMap) {
+    Object resultValue = null == resultMap ? null : resultMap.get("result");
+    if (resultValue instanceof Collection) {
+      return (T) Utils.getObjectFrom((Collection) resultValue);
+    } else if (resultValue instanceof Map) {
+      return (T) Utils.getObjectFrom((Map) resultValue);
+    } else {
+      return (T) resultValue;
+    }
+  }
+}
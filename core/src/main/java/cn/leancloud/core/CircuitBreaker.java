@@ -0,0 +1,118 @@
+package cn.leancloud.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * per host circuit breaker.
+ *
+ * circuit opens after consecutive failures(network error or 502/503/504) reach threshold, and requests fail fast
+ * while it is open. after open duration, one trial request is allowed(half open), the circuit closes if it succeeds,
+ * otherwise opens again.
+ * all time values are in nanoseconds.
+ */
+public class CircuitBreaker {
+  public enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private static final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<String, CircuitBreaker>();
+
+  private State state = State.CLOSED;
+  private int consecutiveFailures = 0;
+  private long openedAt = 0;
+  private boolean trialInFlight = false;
+  private long rejectedCount = 0;
+
+  static CircuitBreaker forHost(String host) {
+    CircuitBreaker breaker = breakers.get(host);
+    if (null == breaker) {
+      CircuitBreaker newBreaker = new CircuitBreaker();
+      breaker = breakers.putIfAbsent(host, newBreaker);
+      if (null == breaker) {
+        breaker = newBreaker;
+      }
+    }
+    return breaker;
+  }
+
+  /**
+   * get circuit state of all hosts which have been requested.
+   * @return map from host to state.
+   */
+  public static Map<String, State> getStates() {
+    Map<String, State> result = new HashMap<String, State>();
+    for (Map.Entry<String, CircuitBreaker> entry : breakers.entrySet()) {
+      result.put(entry.getKey(), entry.getValue().getState());
+    }
+    return result;
+  }
+
+  static void resetAll() {
+    breakers.clear();
+  }
+
+  /**
+   * check whether request can be sent.
+   * @param now current time.
+   * @param openDuration how long circuit stays open.
+   * @return true if allowed.
+   */
+  synchronized boolean allowRequest(long now, long openDuration) {
+    switch (state) {
+      case CLOSED:
+        return true;
+      case OPEN:
+        if (now - openedAt >= openDuration) {
+          state = State.HALF_OPEN;
+          trialInFlight = true;
+          return true;
+        }
+        break;
+      case HALF_OPEN:
+        if (!trialInFlight) {
+          trialInFlight = true;
+          return true;
+        }
+        break;
+    }
+    rejectedCount++;
+    return false;
+  }
+
+  synchronized void onSuccess() {
+    state = State.CLOSED;
+    consecutiveFailures = 0;
+    trialInFlight = false;
+  }
+
+  synchronized void onFailure(long now, int failureThreshold) {
+    consecutiveFailures++;
+    trialInFlight = false;
+    if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+      state = State.OPEN;
+      openedAt = now;
+    }
+  }
+
+  /**
+   * request finished without telling anything about host health, e.g. cancelled.
+   */
+  synchronized void onIgnored() {
+    trialInFlight = false;
+  }
+
+  public synchronized State getState() {
+    return state;
+  }
+
+  public synchronized int getConsecutiveFailures() {
+    return consecutiveFailures;
+  }
+
+  public synchronized long getRejectedCount() {
+    return rejectedCount;
+  }
+}
@@ -5,18 +5,37 @@ import cn.leancloud.utils.AVUtils;
 import cn.leancloud.utils.StringUtil;
 
 public class GeneralRequestSignature implements RequestSignature {
-  private static boolean useMasterKey = false;
-  private static String masterKey = null;
+  private static volatile boolean useMasterKey = false;
+  private static volatile String masterKey = null;
+
+  /**
+   * signature only changes every millisecond, so the last one is reused by requests sent in the same millisecond.
+   */
+  private static class CachedSign {
+    final long timestamp;
+    final String key;
+    final boolean master;
+    final String sign;
+
+    CachedSign(long timestamp, String key, boolean master, String sign) {
+      this.timestamp = timestamp;
+      this.key = key;
+      this.master = master;
+      this.sign = sign;
+    }
+  }
+
+  private static volatile CachedSign lastSign = null;
 
   public String generateSign() {
     return requestSign(AVUtils.getCurrentTimestamp(), isUseMasterKey());
   }
 
   public static String requestSign(String key, long ts, String suffix) {
-    StringBuilder builder = new StringBuilder();
-    StringBuilder result = new StringBuilder();
-    result.append(MD5.computeMD5(builder.append(ts).append(key).toString()).toLowerCase());
-    result.append(',').append(ts);
+    String tsString = String.valueOf(ts);
+    String md5 = MD5.computeMD5(tsString + key);
+    StringBuilder result = new StringBuilder(md5.length() + tsString.length() + 16);
+    result.append(md5).append(',').append(tsString);
     if (null != suffix) {
       result.append(',').append(suffix);
     }
@@ -26,7 +45,15 @@ public class GeneralRequestSignature implements RequestSignature {
   public static String requestSign(long ts, boolean useMasterKey) {
     String appKey = AVOSCloud.getApplicationKey();
     String usedKey = useMasterKey ? masterKey : appKey;
-    return requestSign(usedKey, ts, useMasterKey?"master":null);
+    CachedSign cached = lastSign;
+    // key instance is compared, it changes only when configuration changes.
+    if (null != cached && cached.timestamp == ts && cached.key == usedKey
+            && cached.master == useMasterKey) {
+      return cached.sign;
+    }
+    String sign = requestSign(usedKey, ts, useMasterKey?"master":null);
+    lastSign = new CachedSign(ts, usedKey, useMasterKey, sign);
+    return sign;
   }
 
   public static void setMasterKey(String masKey) {
@@ -0,0 +1,71 @@
+package cn.leancloud.core;
+
+import okhttp3.*;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.Okio;
+
+import java.io.IOException;
+
+/**
+ * gzip request body larger than threshold for services enabled by AppConfiguration.setRequestCompression,
+ * and ask for gzip response explicitly, response body is decompressed as stream while converter reads it.
+ *
+ * it should be the last interceptor, so that retry and logging see the uncompressed request body.
+ */
+public class GzipInterceptor implements Interceptor {
+  static final String HEADER_KEY_CONTENT_ENCODING = "Content-Encoding";
+  static final String HEADER_KEY_ACCEPT_ENCODING = "Accept-Encoding";
+  static final String HEADER_KEY_CONTENT_LENGTH = "Content-Length";
+  static final String GZIP = "gzip";
+
+  public Response intercept(Interceptor.Chain chain) throws IOException {
+    Request request = chain.request();
+    Request.Builder builder = request.newBuilder();
+    RequestBody body = request.body();
+    if (null != body && null == request.header(HEADER_KEY_CONTENT_ENCODING)
+            && AppConfiguration.isRequestCompressionEnabled(RateLimitInterceptor.serviceOf(request.url()))) {
+      long length = body.contentLength();
+      if (length >= AppConfiguration.getRequestCompressionThreshold() && !body.isDuplex() && !body.isOneShot()) {
+        builder.header(HEADER_KEY_CONTENT_ENCODING, GZIP)
+                .method(request.method(), gzip(body));
+      }
+    }
+    boolean acceptGzip = null == request.header(HEADER_KEY_ACCEPT_ENCODING);
+    if (acceptGzip) {
+      builder.header(HEADER_KEY_ACCEPT_ENCODING, GZIP);
+    }
+
+    Response response = chain.proceed(builder.build());
+    if (!acceptGzip || !GZIP.equalsIgnoreCase(response.header(HEADER_KEY_CONTENT_ENCODING))
+            || null == response.body() || !hasBody(request, response)) {
+      return response;
+    }
+    ResponseBody compressed = response.body();
+    ResponseBody decompressed = ResponseBody.create(compressed.contentType(), -1,
+            Okio.buffer(new GzipSource(compressed.source())));
+    return response.newBuilder()
+            .removeHeader(HEADER_KEY_CONTENT_ENCODING)
+            .removeHeader(HEADER_KEY_CONTENT_LENGTH)
+            .body(decompressed)
+            .build();
+  }
+
+  private static boolean hasBody(Request request, Response response) {
+    int code = response.code();
+    return !"HEAD".equals(request.method()) && code != 204 && code != 304;
+  }
+
+  /**
+   * compress body in memory, so that content length is known and body can be written again by retry.
+   */
+  static RequestBody gzip(RequestBody body) throws IOException {
+    Buffer buffer = new Buffer();
+    BufferedSink sink = Okio.buffer(new GzipSink(buffer));
+    body.writeTo(sink);
+    sink.close();
+    return RequestBody.create(body.contentType(), buffer.readByteString());
+  }
+}
@@ -0,0 +1,294 @@
+package cn.leancloud.core;
+
+import cn.leancloud.AVLogger;
+import cn.leancloud.utils.LogUtil;
+import okhttp3.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * hedge GET requests to API service.
+ * only requests sent to the resolved API endpoint(or its built-in alternate) are hedged, so that GETs to other
+ * hosts(e.g. file CDN) through the shared client are never duplicated or rewritten.
+ *
+ * when hedging is enabled, request is enqueued to a delegate client. if it doesn't respond within the configured
+ * percentile of recent latencies, a duplicate is sent to the same host(or built-in alternate endpoint), the first
+ * response wins and the other call is cancelled. hedges are limited to a ratio of all requests.
+ * it must be the first interceptor, the delegate client runs the rest of interceptors. delegate uses a dedicated
+ * dispatcher without request limits, so that enqueued calls are not blocked by the outer call which holds a slot of
+ * original dispatcher, and concurrency of API GETs is the same as without hedging.
+ * requests of delegate calls are tagged with Attempt, so that event listeners can tell them from the outer call.
+ */
+public class HedgingInterceptor implements Interceptor {
+  private static AVLogger LOGGER = LogUtil.getLogger(HedgingInterceptor.class);
+
+  static final int SAMPLE_SIZE = 256;
+  static final int MIN_SAMPLES = 20;
+  static final long MIN_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final long CANCEL_CHECK_MILLIS = 200;
+
+  static final LatencyTracker latencyTracker = new LatencyTracker(SAMPLE_SIZE);
+  static final HedgeBudget budget = new HedgeBudget(10);
+
+  private final OkHttpClient delegate;
+
+  /**
+   * tag of requests which are sent by delegate client.
+   */
+  public enum Attempt {
+    PRIMARY, HEDGE
+  }
+
+  public HedgingInterceptor(OkHttpClient client) {
+    // default limit(5 per host) would cap all API GETs and count queue time as latency.
+    Dispatcher dispatcher = new Dispatcher();
+    dispatcher.setMaxRequests(Integer.MAX_VALUE);
+    dispatcher.setMaxRequestsPerHost(Integer.MAX_VALUE);
+    this.delegate = client.newBuilder().dispatcher(dispatcher).build();
+  }
+
+  /**
+   * ring buffer of recent latencies, percentile is recomputed every 16 samples.
+   */
+  static class LatencyTracker {
+    private final long[] samples;
+    private int count = 0;
+    private int next = 0;
+    private int sinceSorted = 0;
+    private long[] sorted = null;
+
+    LatencyTracker(int size) {
+      this.samples = new long[size];
+    }
+
+    synchronized void record(long latency) {
+      samples[next] = latency;
+      next = (next + 1) % samples.length;
+      count = Math.min(samples.length, count + 1);
+      if (++sinceSorted >= 16) {
+        sorted = null;
+        sinceSorted = 0;
+      }
+    }
+
+    /**
+     * @param percentile percentile in (0, 100].
+     * @return latency at percentile, or -1 if there are not enough samples.
+     */
+    synchronized long percentile(double percentile) {
+      if (count < MIN_SAMPLES) {
+        return -1;
+      }
+      if (null == sorted) {
+        sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+      }
+      int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+      return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    synchronized void reset() {
+      count = 0;
+      next = 0;
+      sinceSorted = 0;
+      sorted = null;
+    }
+  }
+
+  /**
+   * every request deposits ratio tokens, and every hedge withdraws one.
+   */
+  static class HedgeBudget {
+    private final double maxTokens;
+    private double tokens;
+
+    HedgeBudget(double maxTokens) {
+      this.maxTokens = maxTokens;
+      this.tokens = 0;
+    }
+
+    synchronized void deposit(double ratio) {
+      tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    synchronized boolean tryWithdraw() {
+      if (tokens < 1) {
+        return false;
+      }
+      tokens -= 1;
+      return true;
+    }
+
+    synchronized void reset() {
+      tokens = 0;
+    }
+  }
+
+  private static class Outcome {
+    final Call call;
+    final Response response;
+    final IOException error;
+
+    Outcome(Call call, Response response, IOException error) {
+      this.call = call;
+      this.response = response;
+      this.error = error;
+    }
+  }
+
+  /**
+   * collects outcomes of racing calls, responses arriving after the winner is taken are closed.
+   */
+  private static class Race implements Callback {
+    private final BlockingQueue<Outcome> outcomes = new LinkedBlockingQueue<Outcome>();
+    private boolean finished = false;
+
+    public void onResponse(Call call, Response response) {
+      synchronized (this) {
+        if (!finished) {
+          outcomes.offer(new Outcome(call, response, null));
+          return;
+        }
+      }
+      response.close();
+    }
+
+    public void onFailure(Call call, IOException e) {
+      outcomes.offer(new Outcome(call, null, e));
+    }
+
+    Outcome poll(long timeout, TimeUnit unit) throws InterruptedException {
+      return outcomes.poll(timeout, unit);
+    }
+
+    synchronized void finish() {
+      finished = true;
+      Outcome outcome;
+      while (null != (outcome = outcomes.poll())) {
+        if (null != outcome.response) {
+          outcome.response.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * whether request is hedged, in which case the outer call only waits for delegate calls.
+   * @param request request of outer call.
+   * @return true if request is hedged.
+   */
+  public static boolean isHedged(Request request) {
+    return AppConfiguration.getRequestHedgingPercentile() > 0 && null == request.tag(Attempt.class)
+            && "GET".equals(request.method())
+            && RateLimitInterceptor.serviceOf(request.url()) == AVOSService.API && isApiHost(request.url());
+  }
+
+  public Response intercept(Interceptor.Chain chain) throws IOException {
+    Request request = chain.request();
+    if (!isHedged(request)) {
+      return chain.proceed(request);
+    }
+    budget.deposit(AppConfiguration.getRequestHedgingMaxExtraLoad());
+    long start = System.nanoTime();
+    long delay = latencyTracker.percentile(AppConfiguration.getRequestHedgingPercentile());
+    // without enough samples, the request is still sent by delegate but never hedged.
+    boolean hedgeAllowed = delay >= 0;
+    delay = Math.max(MIN_DELAY_NANOS, delay);
+
+    Race race = new Race();
+    Call primary = delegate.newCall(request.newBuilder().tag(Attempt.class, Attempt.PRIMARY).build());
+    Call hedge = null;
+    Call winner = null;
+    int inFlight = 1;
+    IOException firstError = null;
+    primary.enqueue(race);
+    try {
+      while (inFlight > 0) {
+        long wait = TimeUnit.MILLISECONDS.toNanos(CANCEL_CHECK_MILLIS);
+        if (null == hedge && hedgeAllowed) {
+          long untilHedge = delay - (System.nanoTime() - start);
+          if (untilHedge <= 0) {
+            if (budget.tryWithdraw()) {
+              hedge = delegate.newCall(hedgeRequest(request).newBuilder().tag(Attempt.class, Attempt.HEDGE).build());
+              hedge.enqueue(race);
+              inFlight++;
+              LOGGER.d("request is hedged. url=" + request.url());
+            } else {
+              hedgeAllowed = false;
+            }
+            continue;
+          }
+          wait = Math.min(wait, untilHedge);
+        }
+        Outcome outcome = race.poll(wait, TimeUnit.NANOSECONDS);
+        if (null == outcome) {
+          if (chain.call().isCanceled()) {
+            throw new IOException("Canceled");
+          }
+          continue;
+        }
+        inFlight--;
+        if (null != outcome.response) {
+          winner = outcome.call;
+          if (outcome.response.isSuccessful()) {
+            latencyTracker.record(System.nanoTime() - start);
+          }
+          return outcome.response;
+        }
+        if (null == firstError) {
+          firstError = outcome.error;
+        }
+      }
+      throw firstError;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while waiting for hedged request.");
+    } finally {
+      race.finish();
+      if (primary != winner) {
+        primary.cancel();
+      }
+      if (null != hedge && hedge != winner) {
+        hedge.cancel();
+      }
+    }
+  }
+
+  static boolean isApiHost(HttpUrl url) {
+    String appId = AVOSCloud.getApplicationId();
+    AppRouter router = AppRouter.getInstance();
+    return hostEquals(router.peekEndpoint(appId, AVOSService.API), url)
+            || hostEquals(router.getAlternateEndpoint(appId, AVOSService.API), url);
+  }
+
+  private static boolean hostEquals(String endpoint, HttpUrl url) {
+    if (null == endpoint || endpoint.isEmpty()) {
+      return false;
+    }
+    HttpUrl endpointUrl = HttpUrl.parse(endpoint.startsWith("http") ? endpoint : "https://" + endpoint);
+    return null != endpointUrl && endpointUrl.host().equalsIgnoreCase(url.host())
+            && endpointUrl.port() == url.port();
+  }
+
+  private static Request hedgeRequest(Request request) {
+    if (!AppConfiguration.isRequestHedgingToAlternateEndpoint()) {
+      return request;
+    }
+    String alternate = AppRouter.getInstance().getAlternateEndpoint(AVOSCloud.getApplicationId(), AVOSService.API);
+    HttpUrl alternateUrl = null == alternate ? null : HttpUrl.parse(alternate);
+    if (null == alternateUrl || alternateUrl.host().equals(request.url().host())) {
+      return request;
+    }
+    HttpUrl url = request.url().newBuilder()
+            .scheme(alternateUrl.scheme())
+            .host(alternateUrl.host())
+            .port(alternateUrl.port())
+            .build();
+    return request.newBuilder().url(url).build();
+  }
+}
@@ -1,15 +1,17 @@
 package cn.leancloud.core;
 
+import cn.leancloud.metrics.MetricsEventListener;
 import cn.leancloud.network.DNSDetoxicant;
 import cn.leancloud.service.APIService;
+import cn.leancloud.service.AsyncAPIService;
 import cn.leancloud.service.PushService;
 import io.reactivex.functions.Consumer;
 import okhttp3.OkHttpClient;
 import retrofit2.Retrofit;
-import retrofit2.converter.fastjson.*;
 import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
 import cn.leancloud.core.AppConfiguration.SchedulerCreator;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -24,17 +26,25 @@ public class PaasClient {
   private static OkHttpClient globalHttpClient = null;
   private static PushService pushService = null;
   private static PushClient pushClient = null;
+  private static AsyncStorageClient asyncStorageClient = null;
 
   public static OkHttpClient getGlobalOkHttpClient() {
     if (null == globalHttpClient) {
-      globalHttpClient = new OkHttpClient.Builder()
+      OkHttpClient baseClient = new OkHttpClient.Builder()
               .connectTimeout(15, TimeUnit.SECONDS)
               .readTimeout(10, TimeUnit.SECONDS)
               .writeTimeout(10, TimeUnit.SECONDS)
               .addInterceptor(new RequestPaddingInterceptor())
+              .addInterceptor(new RetryInterceptor())
+              .addInterceptor(new RateLimitInterceptor())
               .addInterceptor(new LoggingInterceptor())
+              .addInterceptor(new GzipInterceptor())
+              .eventListenerFactory(MetricsEventListener.FACTORY)
               .dns(new DNSDetoxicant())
               .build();
+      OkHttpClient.Builder builder = baseClient.newBuilder();
+      builder.interceptors().add(0, new HedgingInterceptor(baseClient));
+      globalHttpClient = builder.build();
     }
     return globalHttpClient;
   }
@@ -49,7 +59,7 @@ public class PaasClient {
                   OkHttpClient okHttpClient = getGlobalOkHttpClient();
                   Retrofit retrofit = new Retrofit.Builder()
                           .baseUrl(apiHost)
-                          .addConverterFactory(FastJsonConverterFactory.create())
+                          .addConverterFactory(AppConfiguration.getJSONCodec().createConverterFactory())
                           .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
                           .client(okHttpClient)
                           .build();
@@ -67,7 +77,7 @@ public class PaasClient {
       String apiHost = appRouter.getEndpoint(AVOSCloud.getApplicationId(), AVOSService.API).blockingFirst();// donot block current thread.
       Retrofit retrofit = new Retrofit.Builder()
               .baseUrl(apiHost)
-              .addConverterFactory(FastJsonConverterFactory.create())
+              .addConverterFactory(AppConfiguration.getJSONCodec().createConverterFactory())
               .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
               .client(okHttpClient)
               .build();
@@ -77,6 +87,32 @@ public class PaasClient {
     return storageClient;
   }
 
+  /**
+   * get CompletableFuture based storage client, it requires Java 8+ or Android API level 24+.
+   * @return async storage client.
+   */
+  public static synchronized AsyncStorageClient getAsyncStorageClient() {
+    if (null == asyncStorageClient) {
+      OkHttpClient okHttpClient = getGlobalOkHttpClient();
+      AppRouter appRouter = AppRouter.getInstance();
+      String apiHost = appRouter.getEndpoint(AVOSCloud.getApplicationId(), AVOSService.API).blockingFirst();
+      Retrofit retrofit = new Retrofit.Builder()
+              .baseUrl(apiHost)
+              .addConverterFactory(AppConfiguration.getJSONCodec().createConverterFactory())
+              .callbackExecutor(new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                  // complete futures on OkHttp dispatcher thread, no extra thread hop.
+                  command.run();
+                }
+              })
+              .client(okHttpClient)
+              .build();
+      asyncStorageClient = new AsyncStorageClient(retrofit.create(AsyncAPIService.class));
+    }
+    return asyncStorageClient;
+  }
+
   public static PushClient getPushClient() {
     if (null == pushService) {
       OkHttpClient okHttpClient = getGlobalOkHttpClient();
@@ -84,7 +120,7 @@ public class PaasClient {
       String apiHost = appRouter.getEndpoint(AVOSCloud.getApplicationId(), AVOSService.PUSH).blockingFirst();// donot block current thread.
       Retrofit retrofit = new Retrofit.Builder()
               .baseUrl(apiHost)
-              .addConverterFactory(FastJsonConverterFactory.create())
+              .addConverterFactory(AppConfiguration.getJSONCodec().createConverterFactory())
               .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
               .client(okHttpClient)
               .build();
@@ -1,12 +1,12 @@
 package cn.leancloud.core;
 
+import cn.leancloud.execution.DirectExecution;
 import cn.leancloud.service.PushService;
 import cn.leancloud.utils.ErrorUtils;
 import com.alibaba.fastjson.JSONObject;
 import io.reactivex.Observable;
 import io.reactivex.ObservableSource;
 import io.reactivex.functions.Function;
-import io.reactivex.schedulers.Schedulers;
 import okhttp3.OkHttpClient;
 
 import java.util.Map;
@@ -31,10 +31,11 @@ public class PushClient {
     if (null == observable) {
       return null;
     }
-    if (asynchronized) {
-      observable = observable.subscribeOn(Schedulers.io());
+    boolean direct = DirectExecution.isActive();
+    if (asynchronized && !direct) {
+      observable = observable.subscribeOn(AppConfiguration.getSubscribeScheduler());
     }
-    if (null != defaultCreator) {
+    if (null != defaultCreator && !direct) {
       observable = observable.observeOn(defaultCreator.create());
     }
     observable = observable.onErrorResumeNext(new Function<Throwable, ObservableSource>() {
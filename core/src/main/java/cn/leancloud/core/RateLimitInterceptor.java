@@ -0,0 +1,121 @@
+package cn.leancloud.core;
+
+import cn.leancloud.AVException;
+import cn.leancloud.AVLogger;
+import cn.leancloud.utils.LogUtil;
+import cn.leancloud.utils.StringUtil;
+import okhttp3.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * client side rate limiter, one adaptive token bucket per app and service(API, ENGINE, PUSH).
+ *
+ * requests wait in local queue until a permit is available, or are rejected with RATE_LIMITED error
+ * if they would wait longer than AppConfiguration.getRequestRateLimitMaxWait().
+ * 429 responses lower the rate and pause the bucket for Retry-After, successful responses raise it again.
+ * it must be added after RequestPaddingInterceptor, which fills the app id header.
+ */
+public class RateLimitInterceptor implements Interceptor {
+  private static AVLogger LOGGER = LogUtil.getLogger(RateLimitInterceptor.class);
+
+  static final int HTTP_TOO_MANY_REQUESTS = 429;
+  private static final MediaType JSON_TYPE = MediaType.parse("application/json; charset=utf-8");
+  private static final String LOCAL_LIMITED_BODY = "{\"code\":" + AVException.RATE_LIMITED
+          + ",\"error\":\"Too many requests, rejected by client rate limiter.\"}";
+
+  private static final ConcurrentMap<String, RequestRateLimiter> limiters =
+          new ConcurrentHashMap<String, RequestRateLimiter>();
+
+  public Response intercept(Interceptor.Chain chain) throws IOException {
+    Request request = chain.request();
+    AVOSService service = serviceOf(request.url());
+    double maxRate = AppConfiguration.getRequestRateLimit(service);
+    if (maxRate <= 0) {
+      return chain.proceed(request);
+    }
+    RequestRateLimiter limiter = getLimiter(appIdOf(request), service, maxRate);
+    long maxWait = TimeUnit.MILLISECONDS.toNanos(AppConfiguration.getRequestRateLimitMaxWait());
+    long wait = limiter.reserve(System.nanoTime(), maxWait);
+    if (wait < 0) {
+      LOGGER.w("request is rejected by client rate limiter. service=" + service + ", rate=" + limiter.getRate());
+      return new Response.Builder()
+              .request(request)
+              .protocol(Protocol.HTTP_1_1)
+              .code(HTTP_TOO_MANY_REQUESTS)
+              .message("Too Many Requests")
+              .body(ResponseBody.create(JSON_TYPE, LOCAL_LIMITED_BODY))
+              .build();
+    }
+    if (wait > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(wait);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted while waiting for rate limit permit.");
+      }
+    }
+
+    long sentAt = System.nanoTime();
+    Response response = chain.proceed(request);
+    if (response.code() == HTTP_TOO_MANY_REQUESTS) {
+      long retryAfter = parseRetryAfter(response.header("Retry-After"));
+      if (limiter.onRateLimited(System.nanoTime(), sentAt, retryAfter)) {
+        LOGGER.w("server rate limited. service=" + service + ", lower rate to " + limiter.getRate());
+      }
+    } else if (response.isSuccessful()) {
+      limiter.onSuccess(System.nanoTime());
+    }
+    return response;
+  }
+
+  static RequestRateLimiter getLimiter(String appId, AVOSService service, double maxRate) {
+    String key = appId + "/" + service;
+    RequestRateLimiter limiter = limiters.get(key);
+    if (null == limiter) {
+      RequestRateLimiter newLimiter = new RequestRateLimiter(maxRate, System.nanoTime());
+      limiter = limiters.putIfAbsent(key, newLimiter);
+      if (null == limiter) {
+        limiter = newLimiter;
+      }
+    }
+    limiter.setMaxRate(maxRate);
+    return limiter;
+  }
+
+  static AVOSService serviceOf(HttpUrl url) {
+    String path = url.encodedPath();
+    if (path.startsWith("/1.1/functions") || path.startsWith("/1.1/call")) {
+      return AVOSService.ENGINE;
+    }
+    if (path.startsWith("/1.1/push")) {
+      return AVOSService.PUSH;
+    }
+    return AVOSService.API;
+  }
+
+  /**
+   * parse Retry-After header, only delta-seconds format is supported.
+   * @param value header value.
+   * @return nanoseconds to wait, 0 if absent or invalid.
+   */
+  static long parseRetryAfter(String value) {
+    if (StringUtil.isEmpty(value)) {
+      return 0;
+    }
+    try {
+      return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(value.trim())));
+    } catch (NumberFormatException ex) {
+      return 0;
+    }
+  }
+
+  private static String appIdOf(Request request) {
+    String appId = request.header(RequestPaddingInterceptor.HEADER_KEY_LC_APPID);
+    return StringUtil.isEmpty(appId) ? AVOSCloud.getApplicationId() : appId;
+  }
+}
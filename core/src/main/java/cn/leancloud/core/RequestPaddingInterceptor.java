@@ -3,6 +3,7 @@ package cn.leancloud.core;
 import cn.leancloud.AVCloud;
 import cn.leancloud.AVUser;
 import cn.leancloud.utils.StringUtil;
+import okhttp3.Headers;
 import okhttp3.Interceptor;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -21,27 +22,74 @@ public class RequestPaddingInterceptor implements Interceptor {
   private static final String HEADER_KEY_USER_AGENT = "User-Agent";
   private static final String DEFAULT_CONTENT_TYPE = "application/json";
 
-  private static RequestSignature requestSignature = new GeneralRequestSignature();
+  private static volatile RequestSignature requestSignature = new GeneralRequestSignature();
+
+  /**
+   * headers which only depend on configuration, rebuilt when any of configuration value changes.
+   */
+  private static class ConstantHeaders {
+    final String applicationId;
+    final String hookKey;
+    final boolean production;
+    final Headers headers;
+
+    ConstantHeaders(String applicationId, String hookKey, boolean production) {
+      this.applicationId = applicationId;
+      this.hookKey = hookKey;
+      this.production = production;
+      Headers.Builder builder = new Headers.Builder()
+              .set(HEADER_KEY_LC_PROD_MODE, production?"1":"0")
+              .set(HEADER_KEY_LC_APPID, applicationId)
+              .set(HEADER_KEY_ACCEPT, DEFAULT_CONTENT_TYPE)
+              .set(HEADER_KEY_CONTENT_TYPE, DEFAULT_CONTENT_TYPE)
+              .set(HEADER_KEY_USER_AGENT, AppConfiguration.getUserAgent());
+      if (!StringUtil.isEmpty(hookKey)) {
+        builder.set(HEADER_KEY_LC_HOOKKEY, hookKey);
+      }
+      this.headers = builder.build();
+    }
+
+    boolean matches(String applicationId, String hookKey, boolean production) {
+      return this.applicationId == applicationId && this.hookKey == hookKey && this.production == production;
+    }
+  }
+
+  private static volatile ConstantHeaders constantHeaders = null;
 
   public static void changeRequestSignature(RequestSignature signature) {
     requestSignature = signature;
   }
 
+  static Headers getConstantHeaders() {
+    String applicationId = AVOSCloud.getApplicationId();
+    String hookKey = AVOSCloud.getHookKey();
+    boolean production = AVCloud.isProductionMode();
+    ConstantHeaders current = constantHeaders;
+    if (null == current || !current.matches(applicationId, hookKey, production)) {
+      current = new ConstantHeaders(applicationId, hookKey, production);
+      constantHeaders = current;
+    }
+    return current.headers;
+  }
+
+  private static String getSessionToken() {
+    StorageClient storageClient = PaasClient.getStorageClient();
+    // use snapshot in memory, archive file is read only before current user was loaded.
+    AVUser currentUser = storageClient.isCurrentUserLoaded() ? storageClient.getCurrentUser() : AVUser.getCurrentUser();
+    String sessionToken = null == currentUser ? null : currentUser.getSessionToken();
+    return null == sessionToken ? "" : sessionToken;
+  }
+
   public Response intercept(Interceptor.Chain chain) throws IOException {
     Request originalRequest = chain.request();
-    String sessionToken = null == AVUser.getCurrentUser()? "" : AVUser.getCurrentUser().getSessionToken();
-
-    okhttp3.Request.Builder builder = originalRequest.newBuilder()
-            .header(HEADER_KEY_LC_PROD_MODE, AVCloud.isProductionMode()?"1":"0")
-            .header(HEADER_KEY_LC_APPID, AVOSCloud.getApplicationId())
-            .header(HEADER_KEY_LC_SIGN, requestSignature.generateSign())
-            .header(HEADER_KEY_ACCEPT, DEFAULT_CONTENT_TYPE)
-            .header(HEADER_KEY_CONTENT_TYPE, DEFAULT_CONTENT_TYPE)
-            .header(HEADER_KEY_USER_AGENT, AppConfiguration.getUserAgent())
-            .header(HEADER_KEY_LC_SESSIONTOKEN, null == sessionToken ? "":sessionToken);
-    if (!StringUtil.isEmpty(AVOSCloud.getHookKey())) {
-      builder = builder.header(HEADER_KEY_LC_HOOKKEY, AVOSCloud.getHookKey());
+
+    okhttp3.Request.Builder builder = originalRequest.newBuilder();
+    Headers headers = getConstantHeaders();
+    for (int i = 0; i < headers.size(); i++) {
+      builder.header(headers.name(i), headers.value(i));
     }
+    builder.header(HEADER_KEY_LC_SIGN, requestSignature.generateSign())
+            .header(HEADER_KEY_LC_SESSIONTOKEN, getSessionToken());
 
     Request newRequest = builder.build();
     return chain.proceed(newRequest);
@@ -0,0 +1,126 @@
+package cn.leancloud.core;
+
+/**
+ * token bucket whose rate adapts to server side limit responses.
+ *
+ * rate is cut multiplicatively when server reports rate limited, and raised additively (every second)
+ * while requests succeed, until it reaches the configured rate again. the rate where the last limit
+ * was hit is remembered, so recovery is fast below it and cautious above it.
+ * limit responses of requests which were sent before the last cut are ignored, they reflect the old rate,
+ * so concurrent responses of one burst cut the rate only once.
+ * all time values are in nanoseconds, so that the bucket can be driven by a fake clock.
+ */
+class RequestRateLimiter {
+  static final double DECREASE_FACTOR = 0.7;
+  static final double INCREASE_RATIO = 0.05;
+  static final double MIN_RATE = 0.5;
+  private static final long NANOS_PER_SECOND = 1000000000l;
+
+  private double maxRate;
+  private double rate;
+  private double limitedRate = 0;
+  private double tokens;
+  private long lastRefill;
+  private long lastIncrease;
+  private long pausedUntil = 0;
+  private long lastDecrease = Long.MIN_VALUE;
+
+  RequestRateLimiter(double maxRate, long now) {
+    this.maxRate = maxRate;
+    this.rate = maxRate;
+    this.tokens = capacity();
+    this.lastRefill = now;
+    this.lastIncrease = now;
+  }
+
+  /**
+   * reserve one permit.
+   * @param now current time.
+   * @param maxWait longest acceptable wait.
+   * @return nanoseconds to wait before sending request, or -1 if the permit can not be granted within maxWait.
+   */
+  synchronized long reserve(long now, long maxWait) {
+    refill(now);
+    long wait = 0;
+    if (tokens < 1) {
+      wait = (long) Math.ceil((1 - tokens) * NANOS_PER_SECOND / rate);
+    }
+    wait = Math.max(wait, pausedUntil - now);
+    if (wait > maxWait) {
+      return -1;
+    }
+    tokens -= 1;
+    return wait;
+  }
+
+  /**
+   * server reports rate limited.
+   * @param now current time.
+   * @param sentAt time when the limited request was sent.
+   * @param retryAfter nanoseconds server asks to wait, 0 if not specified.
+   * @return true if rate is cut.
+   */
+  synchronized boolean onRateLimited(long now, long sentAt, long retryAfter) {
+    if (retryAfter > 0) {
+      pausedUntil = Math.max(pausedUntil, now + retryAfter);
+    }
+    if (sentAt < lastDecrease) {
+      return false;
+    }
+    refill(now);
+    lastDecrease = now;
+    limitedRate = rate;
+    rate = Math.max(MIN_RATE, rate * DECREASE_FACTOR);
+    tokens = Math.min(tokens, 0);
+    lastIncrease = now;
+    return true;
+  }
+
+  synchronized void onSuccess(long now) {
+    if (rate >= maxRate || now - lastIncrease < NANOS_PER_SECOND) {
+      return;
+    }
+    refill(now);
+    double step = Math.max(MIN_RATE, maxRate * INCREASE_RATIO);
+    if (rate < limitedRate * DECREASE_FACTOR) {
+      // far below the rate where last limit was hit, come back quickly.
+      rate = Math.min(limitedRate * DECREASE_FACTOR, rate * 2);
+    } else {
+      rate += step;
+    }
+    rate = Math.min(maxRate, rate);
+    lastIncrease = now;
+  }
+
+  synchronized void setMaxRate(double maxRate) {
+    if (this.maxRate == maxRate) {
+      return;
+    }
+    this.maxRate = maxRate;
+    this.rate = Math.min(rate, maxRate);
+    if (limitedRate <= 0) {
+      this.rate = maxRate;
+    }
+    this.tokens = Math.min(tokens, capacity());
+  }
+
+  synchronized double getRate() {
+    return rate;
+  }
+
+  synchronized double getMaxRate() {
+    return maxRate;
+  }
+
+  private double capacity() {
+    // one second worth of burst.
+    return Math.max(1, rate);
+  }
+
+  private void refill(long now) {
+    if (now > lastRefill) {
+      tokens = Math.min(capacity(), tokens + (now - lastRefill) * rate / NANOS_PER_SECOND);
+      lastRefill = now;
+    }
+  }
+}
@@ -0,0 +1,222 @@
+package cn.leancloud.core;
+
+import cn.leancloud.AVException;
+import cn.leancloud.AVLogger;
+import cn.leancloud.utils.LogUtil;
+import okhttp3.*;
+import okio.Buffer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * retry idempotent requests with exponential backoff and jitter, and fail fast by per host circuit breaker.
+ *
+ * GET/HEAD/OPTIONS/DELETE are always idempotent, PUT and batch requests are idempotent only if none of
+ * Increment/Decrement/Add/BitXor operation is included. only network errors and 502/503/504 responses
+ * are retried, 429 is left to RateLimitInterceptor.
+ * retries are limited by a global budget, so that retries can not multiply the load when server is unhealthy.
+ */
+public class RetryInterceptor implements Interceptor {
+  private static AVLogger LOGGER = LogUtil.getLogger(RetryInterceptor.class);
+
+  static final long BASE_BACKOFF_MILLIS = 200;
+  static final long MAX_BACKOFF_MILLIS = 5000;
+  private static final long MAX_INSPECT_BODY_SIZE = 1024 * 1024;
+  private static final MediaType JSON_TYPE = MediaType.parse("application/json; charset=utf-8");
+  private static final Set<String> NON_IDEMPOTENT_OPS =
+          new HashSet<String>(Arrays.asList("Increment", "Decrement", "Add", "BitXor"));
+
+  private static final RetryBudget budget = new RetryBudget(10, 0.1);
+  private static final Random random = new Random();
+
+  /**
+   * every request deposits some tokens, and every retry withdraws one.
+   */
+  static class RetryBudget {
+    private final double maxTokens;
+    private final double tokensPerRequest;
+    private double tokens;
+
+    RetryBudget(double maxTokens, double tokensPerRequest) {
+      this.maxTokens = maxTokens;
+      this.tokensPerRequest = tokensPerRequest;
+      this.tokens = maxTokens;
+    }
+
+    synchronized void deposit() {
+      tokens = Math.min(maxTokens, tokens + tokensPerRequest);
+    }
+
+    synchronized boolean tryWithdraw() {
+      if (tokens < 1) {
+        return false;
+      }
+      tokens -= 1;
+      return true;
+    }
+  }
+
+  public Response intercept(Interceptor.Chain chain) throws IOException {
+    Request request = chain.request();
+    int maxRetries = AppConfiguration.getMaxRetries();
+    int failureThreshold = AppConfiguration.getCircuitBreakerThreshold();
+    if (maxRetries <= 0 && failureThreshold <= 0) {
+      return chain.proceed(request);
+    }
+    long openDuration = TimeUnit.MILLISECONDS.toNanos(AppConfiguration.getCircuitBreakerOpenDuration());
+    CircuitBreaker breaker = failureThreshold > 0 ? CircuitBreaker.forHost(request.url().host()) : null;
+    boolean retryable = maxRetries > 0 && isIdempotent(request);
+    budget.deposit();
+
+    for (int attempt = 0; ; attempt++) {
+      if (null != breaker && !breaker.allowRequest(System.nanoTime(), openDuration)) {
+        LOGGER.w("circuit is open, request is rejected. host=" + request.url().host());
+        return circuitOpenResponse(request);
+      }
+      Response response = null;
+      IOException error = null;
+      try {
+        response = chain.proceed(request);
+      } catch (IOException ex) {
+        error = ex;
+      }
+      boolean failed = null != error || isServerUnavailable(response.code());
+      boolean canceled = chain.call().isCanceled();
+      if (null != breaker) {
+        if (!failed) {
+          breaker.onSuccess();
+        } else if (canceled) {
+          breaker.onIgnored();
+        } else {
+          breaker.onFailure(System.nanoTime(), failureThreshold);
+        }
+      }
+      if (!failed) {
+        return response;
+      }
+      if (!retryable || canceled || attempt >= maxRetries || !budget.tryWithdraw()) {
+        if (null != error) {
+          throw error;
+        }
+        return response;
+      }
+      if (null != response) {
+        response.close();
+      }
+      long backoff = backoffMillis(attempt, random);
+      LOGGER.d("request failed, retry after " + backoff + "ms. url=" + request.url()
+              + ", cause: " + (null != error ? error.getMessage() : response.code()));
+      try {
+        TimeUnit.MILLISECONDS.sleep(backoff);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted while waiting for retry.");
+      }
+    }
+  }
+
+  static boolean isServerUnavailable(int code) {
+    return code == 502 || code == 503 || code == 504;
+  }
+
+  /**
+   * exponential backoff with equal jitter.
+   * @param attempt attempt index, starts from 0.
+   * @param random random generator.
+   * @return milliseconds to wait before next attempt.
+   */
+  public static long backoffMillis(int attempt, Random random) {
+    long ceiling = MAX_BACKOFF_MILLIS;
+    if (attempt < 16) {
+      ceiling = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << attempt);
+    }
+    long half = ceiling / 2;
+    return half + (long) (random.nextDouble() * (ceiling - half));
+  }
+
+  static boolean isIdempotent(Request request) {
+    String method = request.method();
+    if ("GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method) || "DELETE".equals(method)) {
+      return true;
+    }
+    boolean isBatch = "POST".equals(method) && request.url().encodedPath().startsWith("/1.1/batch");
+    if (!"PUT".equals(method) && !isBatch) {
+      return false;
+    }
+    Object body = parseBody(request.body());
+    if (null == body) {
+      return false;
+    }
+    if (!isBatch) {
+      return !containsNonIdempotentOperation(body);
+    }
+    if (!(body instanceof Map) || !(((Map) body).get("requests") instanceof Collection)) {
+      return false;
+    }
+    for (Object item : (Collection) ((Map) body).get("requests")) {
+      if (!(item instanceof Map)) {
+        return false;
+      }
+      Object itemMethod = ((Map) item).get("method");
+      if ("GET".equals(itemMethod) || "DELETE".equals(itemMethod)) {
+        continue;
+      }
+      if (!"PUT".equals(itemMethod) || containsNonIdempotentOperation(((Map) item).get("body"))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static Object parseBody(RequestBody body) {
+    try {
+      if (null == body || body.isOneShot() || body.contentLength() < 0
+              || body.contentLength() > MAX_INSPECT_BODY_SIZE) {
+        return null;
+      }
+      Buffer buffer = new Buffer();
+      body.writeTo(buffer);
+      return AppConfiguration.getJSONCodec().parse(buffer.readUtf8());
+    } catch (Exception ex) {
+      return null;
+    }
+  }
+
+  private static boolean containsNonIdempotentOperation(Object value) {
+    if (value instanceof Map) {
+      Map map = (Map) value;
+      if (NON_IDEMPOTENT_OPS.contains(map.get("__op"))) {
+        return true;
+      }
+      value = map.values();
+    }
+    if (value instanceof Collection) {
+      for (Object item : (Collection) value) {
+        if (containsNonIdempotentOperation(item)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static Response circuitOpenResponse(Request request) {
+    String body = "{\"code\":" + AVException.CONNECTION_FAILED + ",\"error\":\"Circuit breaker is open for host "
+            + request.url().host() + ".\"}";
+    return new Response.Builder()
+            .request(request)
+            .protocol(Protocol.HTTP_1_1)
+            .code(503)
+            .message("Service Unavailable")
+            .body(ResponseBody.create(JSON_TYPE, body))
+            .build();
+  }
+}
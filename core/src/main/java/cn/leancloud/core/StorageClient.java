@@ -1,9 +1,16 @@
 package cn.leancloud.core;
 
 import cn.leancloud.*;
+import cn.leancloud.execution.DirectExecution;
+import cn.leancloud.metrics.MetricsCollector;
+import cn.leancloud.cache.ObjectStore;
 import cn.leancloud.cache.QueryResultCache;
+import cn.leancloud.ops.BaseOperation;
 import cn.leancloud.ops.Utils;
 import cn.leancloud.query.AVQueryResult;
+import cn.leancloud.query.ProjectionMapping;
+import cn.leancloud.query.QueryColumnConsumer;
+import cn.leancloud.query.QueryResultStreamReader;
 import cn.leancloud.search.AVSearchResponse;
 import cn.leancloud.service.APIService;
 import cn.leancloud.sms.AVCaptchaDigest;
@@ -15,19 +22,26 @@ import cn.leancloud.upload.FileUploadToken;
 import cn.leancloud.utils.ErrorUtils;
 import cn.leancloud.utils.LogUtil;
 import cn.leancloud.utils.StringUtil;
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
 import io.reactivex.ObservableSource;
 import io.reactivex.Observer;
 import io.reactivex.Scheduler;
+import io.reactivex.functions.Action;
 import io.reactivex.functions.Consumer;
 import io.reactivex.functions.Function;
-import io.reactivex.schedulers.Schedulers;
+import okhttp3.ResponseBody;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class StorageClient {
   private static AVLogger LOGGER = LogUtil.getLogger(StorageClient.class);
@@ -36,7 +50,9 @@ public class StorageClient {
   private boolean asynchronized = false;
   private AppConfiguration.SchedulerCreator defaultCreator = null;
   private QueryResultCache queryResultCache = QueryResultCache.getInstance();
-  private AVUser currentUser = null;
+  private volatile AVUser currentUser = null;
+  private volatile boolean currentUserLoaded = false;
+  private final Set<String> revalidatingKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
   public StorageClient(APIService apiService, boolean asyncRequest, AppConfiguration.SchedulerCreator observerSchedulerCreator) {
     this.apiService = apiService;
@@ -46,20 +62,32 @@ public class StorageClient {
 
   public void setCurrentUser(AVUser newUser) {
     this.currentUser = newUser;
+    this.currentUserLoaded = true;
   }
 
   public AVUser getCurrentUser() {
     return this.currentUser;
   }
 
+  /**
+   * whether current user has been resolved(from memory or archive file), so that getCurrentUser is reliable
+   * even if it returns null.
+   * @return flag.
+   */
+  public boolean isCurrentUserLoaded() {
+    return this.currentUserLoaded;
+  }
+
   public Observable wrapObservable(Observable observable) {
     if (null == observable) {
       return null;
     }
-    if (asynchronized) {
-      observable = observable.subscribeOn(Schedulers.io());
+    // blocking api executes request on caller thread directly.
+    boolean direct = DirectExecution.isActive();
+    if (asynchronized && !direct) {
+      observable = observable.subscribeOn(AppConfiguration.getSubscribeScheduler());
     }
-    if (null != defaultCreator) {
+    if (null != defaultCreator && !direct) {
       observable = observable.observeOn(defaultCreator.create());
     }
     observable = observable.onErrorResumeNext(new Function<Throwable, ObservableSource>() {
@@ -71,11 +99,64 @@ public class StorageClient {
     return observable;
   }
 
+  /**
+   * report duration and error of operation to metrics collector, it includes response conversion and cache
+   * maintenance, which are not covered by http call metrics.
+   * operation is reported once, on the first result(blockingFirst disposes before completion), error, completion
+   * or disposal, whichever comes first.
+   */
+  private <T> Observable<T> measure(final String operation, final Observable<T> observable) {
+    final MetricsCollector collector = AppConfiguration.getMetricsCollector();
+    if (null == observable || !collector.isEnabled()) {
+      return observable;
+    }
+    return Observable.defer(new Callable<ObservableSource<T>>() {
+      @Override
+      public ObservableSource<T> call() throws Exception {
+        final long start = System.nanoTime();
+        final AtomicBoolean reported = new AtomicBoolean(false);
+        return observable.doOnNext(new Consumer<T>() {
+          @Override
+          public void accept(T t) throws Exception {
+            if (reported.compareAndSet(false, true)) {
+              collector.onOperation(operation, System.nanoTime() - start, null);
+            }
+          }
+        }).doOnError(new Consumer<Throwable>() {
+          @Override
+          public void accept(Throwable throwable) throws Exception {
+            if (reported.compareAndSet(false, true)) {
+              collector.onOperation(operation, System.nanoTime() - start, throwable);
+            }
+          }
+        }).doOnComplete(new Action() {
+          @Override
+          public void run() throws Exception {
+            if (reported.compareAndSet(false, true)) {
+              collector.onOperation(operation, System.nanoTime() - start, null);
+            }
+          }
+        }).doOnDispose(new Action() {
+          @Override
+          public void run() throws Exception {
+            if (reported.compareAndSet(false, true)) {
+              collector.onOperation(operation, System.nanoTime() - start,
+                      new CancellationException(operation + " is disposed."));
+            }
+          }
+        });
+      }
+    });
+  }
+
   private Observable wrapObservableInBackground(Observable observable) {
     if (null == observable) {
       return null;
     }
-    Scheduler scheduler = Schedulers.io();
+    if (DirectExecution.isActive()) {
+      return observable;
+    }
+    Scheduler scheduler = AppConfiguration.getSubscribeScheduler();
     if (asynchronized) {
       observable = observable.subscribeOn(scheduler);
     }
@@ -100,11 +181,11 @@ public class StorageClient {
     if (null == object) {
       return object;
     }
-    return object.map(new Function<AVObject, AVObject>() {
+    return measure("fetchObject", object.map(new Function<AVObject, AVObject>() {
               public AVObject apply(AVObject avObject) throws Exception {
                 return Transformer.transform(avObject, className);
               }
-            });
+            }));
   }
 
   public boolean hasCachedResult(String className, Map<String, String> query, long maxAgeInMilliseconds) {
@@ -123,7 +204,6 @@ public class StorageClient {
                                                  AVQuery.CachePolicy cachePolicy, final long maxAgeInMilliseconds) {
     final String cacheKey = QueryResultCache.generateKeyForQueryCondition(className, query);
     Observable<List<AVObject>> result = null;
-    Observable<AVQueryResult> queryResult = null;
     switch (cachePolicy) {
       case CACHE_ONLY:
         result = wrapObservable(
@@ -137,37 +217,14 @@ public class StorageClient {
                   public ObservableSource<? extends List<AVObject>> apply(Throwable throwable) throws Exception {
                     LOGGER.d("failed to query local cache, cause: " + throwable.getMessage() + ", try to query networking");
 
-                    return queryRemoteServer(className, query)
-                            .map(new Function<AVQueryResult, List<AVObject>>() {
-                              public List<AVObject> apply(AVQueryResult o) throws Exception {
-                                o.setClassName(className);
-                                for (AVObject obj: o.getResults()) {
-                                  obj.setClassName(className);
-                                }
-                                QueryResultCache.getInstance().cacheResult(cacheKey, o.toJSONString());
-                                LOGGER.d("invoke within StorageClient.queryObjects(). resultSize:"
-                                        + ((null != o.getResults())? o.getResults().size(): 0));
-                                return o.getResults();
-                              }
-                            });
+                    return queryRemoteServerAndCache(className, query, cacheKey);
                   }
                 });
         break;
       case NETWORK_ELSE_CACHE:
-        queryResult =  queryRemoteServer(className, query);
-        if (null != queryResult) {
-          result = queryResult.map(new Function<AVQueryResult, List<AVObject>>() {
-            public List<AVObject> apply(AVQueryResult o) throws Exception {
-              o.setClassName(className);
-              for (AVObject obj : o.getResults()) {
-                obj.setClassName(className);
-              }
-              QueryResultCache.getInstance().cacheResult(cacheKey, o.toJSONString());
-              LOGGER.d("invoke within StorageClient.queryObjects(). resultSize:"
-                      + ((null != o.getResults()) ? o.getResults().size() : 0));
-              return o.getResults();
-            }
-          }).onErrorResumeNext(new Function<Throwable, ObservableSource<? extends List<AVObject>>>() {
+        result = queryRemoteServerAndCache(className, query, cacheKey);
+        if (null != result) {
+          result = result.onErrorResumeNext(new Function<Throwable, ObservableSource<? extends List<AVObject>>>() {
             @Override
             public ObservableSource<? extends List<AVObject>> apply(Throwable throwable) throws Exception {
               LOGGER.d("failed to query networking, cause: " + throwable.getMessage()
@@ -177,26 +234,183 @@ public class StorageClient {
           });
         }
         break;
+      case STALE_WHILE_REVALIDATE:
+        result = wrapObservable(
+                QueryResultCache.getInstance().getCacheResult(className, query, maxAgeInMilliseconds, false))
+                .doOnNext(new Consumer<List<AVObject>>() {
+                  @Override
+                  public void accept(List<AVObject> avObjects) throws Exception {
+                    if (!isFresh(cacheKey)) {
+                      revalidateInBackground(cacheKey, queryRemoteServerAndCache(className, query, cacheKey));
+                    }
+                  }
+                })
+                .onErrorResumeNext(new Function<Throwable, ObservableSource<? extends List<AVObject>>>() {
+                  @Override
+                  public ObservableSource<? extends List<AVObject>> apply(Throwable throwable) throws Exception {
+                    LOGGER.d("no usable local cache, cause: " + throwable.getMessage() + ", try to query networking");
+                    return queryRemoteServerAndCache(className, query, cacheKey);
+                  }
+                });
+        break;
       case IGNORE_CACHE:
       default:
-        queryResult = queryRemoteServer(className, query);
-        if (null != queryResult) {
-          result = queryResult.map(new Function<AVQueryResult, List<AVObject>>() {
-            public List<AVObject> apply(AVQueryResult o) throws Exception {
-              o.setClassName(className);
-              for (AVObject obj: o.getResults()) {
-                obj.setClassName(className);
+        result = queryRemoteServerAndCache(className, query, cacheKey);
+        break;
+    }
+    return measure("queryObjects", result);
+  }
+
+  private Observable<List<AVObject>> queryRemoteServerAndCache(final String className, Map<String, String> query,
+                                                               final String cacheKey) {
+    Observable<AVQueryResult> queryResult = queryRemoteServer(className, query);
+    if (null == queryResult) {
+      return null;
+    }
+    return queryResult.map(new Function<AVQueryResult, List<AVObject>>() {
+      public List<AVObject> apply(AVQueryResult o) throws Exception {
+        o.setClassName(className);
+        for (AVObject obj: o.getResults()) {
+          obj.setClassName(className);
+        }
+        QueryResultCache.getInstance().cacheResult(className, cacheKey, o.toJSONString());
+        LOGGER.d("invoke within StorageClient.queryObjects(). resultSize:"
+                + ((null != o.getResults())? o.getResults().size(): 0));
+        return o.getResults();
+      }
+    });
+  }
+
+  /**
+   * whether cached entry is younger than fresh age of STALE_WHILE_REVALIDATE, which needs no refresh.
+   */
+  boolean isFresh(String cacheKey) {
+    long age = queryResultCache.getCacheAge(cacheKey);
+    return age >= 0 && age < AppConfiguration.getStaleWhileRevalidateFreshAge();
+  }
+
+  /**
+   * refresh cache in background, at most one refresh is running for the same cache key.
+   * @param cacheKey cache key.
+   * @param refresher remote request which will update cache when succeed.
+   * @return true if refresh is started.
+   */
+  boolean revalidateInBackground(final String cacheKey, Observable<?> refresher) {
+    if (null == refresher || !revalidatingKeys.add(cacheKey)) {
+      return false;
+    }
+    LOGGER.d("start to revalidate cache. key=" + cacheKey);
+    // always in background, even if it is triggered by blocking api.
+    refresher.subscribeOn(AppConfiguration.getExecutionProvider().getScheduler())
+            .doFinally(new Action() {
+              @Override
+              public void run() throws Exception {
+                revalidatingKeys.remove(cacheKey);
+              }
+            })
+            .subscribe(new Consumer<Object>() {
+              @Override
+              public void accept(Object o) throws Exception {
+                LOGGER.d("cache is revalidated. key=" + cacheKey);
+              }
+            }, new Consumer<Throwable>() {
+              @Override
+              public void accept(Throwable throwable) throws Exception {
+                LOGGER.w("failed to revalidate cache. key=" + cacheKey + ", cause: " + throwable.getMessage());
               }
-              QueryResultCache.getInstance().cacheResult(cacheKey, o.toJSONString());
-              LOGGER.d("invoke within StorageClient.queryObjects(). resultSize:"
-                      + ((null != o.getResults())? o.getResults().size(): 0));
-              return o.getResults();
+            });
+    return true;
+  }
+
+  private Observable<ResponseBody> queryRemoteServerStream(String className, Map<String, String> query) {
+    if (AVUser.CLASS_NAME.equalsIgnoreCase(className)) {
+      return apiService.queryUsersStream(query);
+    } else {
+      return apiService.queryObjectsStream(className, query);
+    }
+  }
+
+  /**
+   * query objects and emit every object as soon as it is decoded from response stream.
+   * @param className class name.
+   * @param query query parameters.
+   * @return observable instance.
+   */
+  public Observable<AVObject> queryObjectsInStream(final String className, Map<String, String> query) {
+    return wrapObservable(queryRemoteServerStream(className, query).flatMap(
+            new Function<ResponseBody, ObservableSource<AVObject>>() {
+      public ObservableSource<AVObject> apply(final ResponseBody responseBody) throws Exception {
+        return Observable.create(new ObservableOnSubscribe<AVObject>() {
+          public void subscribe(final ObservableEmitter<AVObject> emitter) throws Exception {
+            try {
+              int count = QueryResultStreamReader.readObjects(responseBody.charStream(), new Consumer<AVObject>() {
+                public void accept(AVObject avObject) throws Exception {
+                  if (emitter.isDisposed()) {
+                    throw new InterruptedIOException("query stream is disposed.");
+                  }
+                  avObject.setClassName(className);
+                  emitter.onNext(avObject);
+                }
+              });
+              LOGGER.d("invoke within StorageClient.queryObjectsInStream(). resultSize:" + count);
+              emitter.onComplete();
+            } catch (Exception ex) {
+              emitter.tryOnError(ex);
+            } finally {
+              responseBody.close();
+            }
+          }
+        });
+      }
+    }));
+  }
+
+  /**
+   * query objects and decode results into projection class directly, without AVObject materialization.
+   * @param className class name.
+   * @param query query parameters.
+   * @param clazz projection class.
+   * @param <E> template type.
+   * @return observable instance.
+   */
+  public <E> Observable<List<E>> queryProjection(String className, Map<String, String> query, Class<E> clazz) {
+    final ProjectionMapping<E> mapping = ProjectionMapping.forClass(clazz);
+    return wrapObservable(queryRemoteServerStream(className, query).map(new Function<ResponseBody, List<E>>() {
+      public List<E> apply(ResponseBody responseBody) throws Exception {
+        final List<E> result = new ArrayList<E>();
+        try {
+          QueryResultStreamReader.readProjection(responseBody.charStream(), mapping, new Consumer<E>() {
+            public void accept(E e) throws Exception {
+              result.add(e);
             }
           });
+        } finally {
+          responseBody.close();
         }
-        break;
-    }
-    return result;
+        LOGGER.d("invoke within StorageClient.queryProjection(). resultSize:" + result.size());
+        return result;
+      }
+    }));
+  }
+
+  /**
+   * query objects and send result columns to consumer directly, without AVObject materialization.
+   * @param className class name.
+   * @param query query parameters.
+   * @param consumer column consumer.
+   * @return observable instance, which emits row count.
+   */
+  public Observable<Integer> queryColumns(String className, Map<String, String> query,
+                                          final QueryColumnConsumer consumer) {
+    return wrapObservable(queryRemoteServerStream(className, query).map(new Function<ResponseBody, Integer>() {
+      public Integer apply(ResponseBody responseBody) throws Exception {
+        try {
+          return QueryResultStreamReader.readColumns(responseBody.charStream(), consumer);
+        } finally {
+          responseBody.close();
+        }
+      }
+    }));
   }
 
   public Observable<AVQueryResult> cloudQuery(Map<String, String> query) {
@@ -216,36 +430,108 @@ public class StorageClient {
     });
   }
 
-  public Observable<AVNull> deleteObject(final String className, String objectId, Map<String, Object> param) {
-    return wrapObservable(apiService.deleteObject(className, objectId, param));
+  private <T> Observable<T> invalidateQueryCache(Observable<T> observable, final String... classNames) {
+    if (null == observable) {
+      return null;
+    }
+    return observable.doOnNext(new Consumer<T>() {
+      public void accept(T t) throws Exception {
+        for (String className : classNames) {
+          queryResultCache.invalidate(className);
+        }
+      }
+    });
+  }
+
+  static String[] classNamesInBatchRequest(JSONObject parameter) {
+    Set<String> result = new HashSet<String>();
+    Object requests = null == parameter ? null : parameter.get("requests");
+    if (requests instanceof Collection) {
+      for (Object request : (Collection) requests) {
+        if (!(request instanceof Map)) {
+          continue;
+        }
+        Object path = ((Map) request).get(BaseOperation.KEY_PATH);
+        if (path instanceof String) {
+          String className = classNameFromPath((String) path);
+          if (!StringUtil.isEmpty(className)) {
+            result.add(className);
+          }
+        }
+      }
+    }
+    return result.toArray(new String[result.size()]);
+  }
+
+  static String classNameFromPath(String path) {
+    String[] segments = path.split("/");
+    for (int i = 0; i < segments.length; i++) {
+      if ("classes".equals(segments[i]) && i + 1 < segments.length) {
+        return segments[i + 1];
+      } else if ("users".equals(segments[i])) {
+        return AVUser.CLASS_NAME;
+      } else if ("roles".equals(segments[i])) {
+        return AVRole.CLASS_NAME;
+      } else if ("installations".equals(segments[i])) {
+        return AVInstallation.CLASS_NAME;
+      } else if ("statuses".equals(segments[i])) {
+        return AVStatus.CLASS_NAME;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * map endpoint of saveWholeObject/deleteWholeObject(e.g. "installations") to class name of cached queries.
+   */
+  static String classNameOfEndpoint(String endpointClass) {
+    String className = classNameFromPath(endpointClass);
+    return StringUtil.isEmpty(className) ? endpointClass : className;
+  }
+
+  public Observable<AVNull> deleteObject(final String className, final String objectId, Map<String, Object> param) {
+    Observable<AVNull> result = invalidateQueryCache(apiService.deleteObject(className, objectId, param), className);
+    if (null == result) {
+      return null;
+    }
+    return measure("deleteObject", wrapObservable(result.doOnNext(new Consumer<AVNull>() {
+      public void accept(AVNull avNull) throws Exception {
+        ObjectStore objectStore = ObjectStore.peekInstance();
+        if (null != objectStore) {
+          objectStore.remove(className, objectId);
+        }
+      }
+    })));
   }
 
   public Observable<? extends AVObject> createObject(final String className, JSONObject data, boolean fetchFlag,
                                                      JSONObject where) {
-    Observable<AVObject> object = wrapObservable(apiService.createObject(className, data, fetchFlag, where));
+    Observable<AVObject> object = wrapObservable(
+            invalidateQueryCache(apiService.createObject(className, data, fetchFlag, where), className));
     if (null == object) {
       return null;
     }
-    return object.map(new Function<AVObject, AVObject>() {
+    return measure("createObject", object.map(new Function<AVObject, AVObject>() {
       public AVObject apply(AVObject avObject) {
         LOGGER.d(avObject.toString());
         return Transformer.transform(avObject, className);
       }
-    });
+    }));
   }
 
   public Observable<? extends AVObject> saveObject(final String className, String objectId, JSONObject data,
                                                    boolean fetchFlag, JSONObject where) {
-    Observable<AVObject> object = wrapObservable(apiService.updateObject(className, objectId, data, fetchFlag, where));
+    Observable<AVObject> object = wrapObservable(
+            invalidateQueryCache(apiService.updateObject(className, objectId, data, fetchFlag, where), className));
     if (null == object) {
       return null;
     }
-    return object.map(new Function<AVObject, AVObject>() {
+    return measure("saveObject", object.map(new Function<AVObject, AVObject>() {
       public AVObject apply(AVObject avObject) {
         LOGGER.d("saveObject finished. intermediaObj=" + avObject.toString() + ", convert to " + className);
         return Transformer.transform(avObject, className);
       }
-    });
+    }));
   }
 
   public <E extends AVObject> Observable<E> saveWholeObject(final Class<E> clazz, final String endpointClass,
@@ -253,9 +539,13 @@ public class StorageClient {
                                                             JSONObject object, boolean fetchFlag, JSONObject where) {
     Observable<AVObject> result = null;
     if (StringUtil.isEmpty(objectId)) {
-      result = wrapObservable(apiService.saveWholeObject(endpointClass, object, fetchFlag, where));
+      result = wrapObservable(invalidateQueryCache(
+              apiService.saveWholeObject(endpointClass, object, fetchFlag, where),
+              classNameOfEndpoint(endpointClass)));
     } else {
-      result = wrapObservable(apiService.saveWholeObject(endpointClass, objectId, object, fetchFlag, where));
+      result = wrapObservable(invalidateQueryCache(
+              apiService.saveWholeObject(endpointClass, objectId, object, fetchFlag, where),
+              classNameOfEndpoint(endpointClass)));
     }
 
     if (null == result) {
@@ -274,7 +564,8 @@ public class StorageClient {
   }
 
   public Observable<AVNull> deleteWholeObject(final String endpointClass, String objectId, Map<String, Object> param) {
-    return wrapObservable(apiService.deleteWholeObject(endpointClass, objectId, param));
+    return wrapObservable(invalidateQueryCache(apiService.deleteWholeObject(endpointClass, objectId, param),
+            classNameOfEndpoint(endpointClass)));
   }
 
   public Observable<AVFile> fetchFile(String objectId) {
@@ -304,15 +595,17 @@ public class StorageClient {
     // [{"success":{"updatedAt":"2018-03-30T06:21:08.052Z","objectId":"5abd026d9f54540038791715"}},
     //  {"success":{"updatedAt":"2018-03-30T06:21:08.092Z","objectId":"5abd026d9f54540038791715"}},
     //  {"success":{"updatedAt":"2018-03-30T06:21:08.106Z","objectId":"5abd026d9f54540038791715"}}]
-    Observable<JSONArray> result = wrapObservable(apiService.batchCreate(parameter));
-    return result;
+    Observable<JSONArray> result = wrapObservable(invalidateQueryCache(apiService.batchCreate(parameter),
+            classNamesInBatchRequest(parameter)));
+    return measure("batchSave", result);
   }
 
   public Observable<JSONObject> batchUpdate(JSONObject parameter) {
     // response is:
     // {"5abd026d9f54540038791715":{"updatedAt":"2018-03-30T06:21:46.084Z","objectId":"5abd026d9f54540038791715"}}
-    Observable<JSONObject> result = wrapObservable(apiService.batchUpdate(parameter));
-    return result;
+    Observable<JSONObject> result = wrapObservable(invalidateQueryCache(apiService.batchUpdate(parameter),
+            classNamesInBatchRequest(parameter)));
+    return measure("batchUpdate", result);
   }
 
   public Observable<AVUser> signUp(JSONObject data) {
@@ -550,13 +843,13 @@ public class StorageClient {
     if (null == cloudCall) {
       return null;
     }
-    return cloudCall.map(new Function<Map<String, ?>, T>() {
+    return measure("callRPC", cloudCall.map(new Function<Map<String, ?>, T>() {
       public T apply(Map<String, ?> resultMap) throws Exception {
         try {
           Object resultValue = resultMap.get("result");
           if (enableCache && !StringUtil.isEmpty(cacheKey)) {
-            LOGGER.d("cache rpc result:" + JSON.toJSONString(resultValue));
-            QueryResultCache.getInstance().cacheResult(cacheKey, JSON.toJSONString(resultValue));
+            LOGGER.d("cache rpc result:" + AppConfiguration.getJSONCodec().toJSONString(resultValue));
+            QueryResultCache.getInstance().cacheResult(cacheKey, AppConfiguration.getJSONCodec().toJSONString(resultValue));
           }
           if (resultValue instanceof Collection) {
             return (T) Utils.getObjectFrom((Collection) resultValue);
@@ -570,7 +863,7 @@ public class StorageClient {
           return null;
         }
       }
-    });
+    }));
   }
 
   public <T> Observable<T> callFunction(String name, Map<String, Object> params) {
@@ -582,13 +875,13 @@ public class StorageClient {
     if (null == cloudCall) {
       return null;
     }
-    return cloudCall.map(new Function<Map<String, ?>, T>() {
+    return measure("callFunction", cloudCall.map(new Function<Map<String, ?>, T>() {
       public T apply(Map<String, ?> resultMap) throws Exception {
         try {
           Object resultValue = resultMap.get("result");
           if (enableCache && !StringUtil.isEmpty(cacheKey)) {
-            LOGGER.d("cache cloud function result:" + JSON.toJSONString(resultValue));
-            QueryResultCache.getInstance().cacheResult(cacheKey, JSON.toJSONString(resultValue));
+            LOGGER.d("cache cloud function result:" + AppConfiguration.getJSONCodec().toJSONString(resultValue));
+            QueryResultCache.getInstance().cacheResult(cacheKey, AppConfiguration.getJSONCodec().toJSONString(resultValue));
           }
           if (resultValue instanceof Collection) {
             return (T) Utils.getObjectFrom((Collection) resultValue);
@@ -602,7 +895,7 @@ public class StorageClient {
           return null;
         }
       }
-    });
+    }));
   }
 
   interface QueryExecutor {
@@ -638,6 +931,24 @@ public class StorageClient {
           }
         });
         break;
+      case STALE_WHILE_REVALIDATE:
+        final String cacheKey = QueryResultCache.generateCachedKey(clazz, query);
+        result = cacheQueryExecutor.executor();
+        result = result.doOnNext(new Consumer<T>() {
+          @Override
+          public void accept(T t) throws Exception {
+            if (!isFresh(cacheKey)) {
+              revalidateInBackground(cacheKey, remoteQueryExecutor.executor());
+            }
+          }
+        }).onErrorResumeNext(new Function<Throwable, Observable<T>>() {
+          @Override
+          public Observable<T> apply(Throwable throwable) throws Exception {
+            LOGGER.d("no usable local cache, cause: " + throwable.getMessage() + ", try to query networking");
+            return remoteQueryExecutor.executor();
+          }
+        });
+        break;
       case IGNORE_CACHE:
       default:
         result = remoteQueryExecutor.executor();
@@ -661,7 +972,7 @@ public class StorageClient {
                               return null;
                             }
                             LOGGER.d("found cached rpc result: " + s);
-                            Object parsedObject = JSON.parse(s);
+                            Object parsedObject = AppConfiguration.getJSONCodec().parse(s);
                             if (parsedObject instanceof Collection) {
                               return (T) Utils.getObjectFrom((Collection) parsedObject);
                             } else if (parsedObject instanceof Map) {
@@ -698,7 +1009,7 @@ public class StorageClient {
                               return null;
                             }
                             LOGGER.d("found cached function result: " + s);
-                            Object parsedObject = JSON.parse(s);
+                            Object parsedObject = AppConfiguration.getJSONCodec().parse(s);
                             if (parsedObject instanceof Collection) {
                               return (T) Utils.getObjectFrom((Collection) parsedObject);
                             } else if (parsedObject instanceof Map) {
@@ -0,0 +1,104 @@
+package cn.leancloud.execution;
+
+import cn.leancloud.AVLogger;
+import cn.leancloud.utils.LogUtil;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-size thread pool with a bounded queue.
+ *
+ * When both threads and queue are exhausted, the task is run in the caller thread, which throttles
+ * callers instead of creating more threads. Rejections are counted and can be read with getRejectedCount.
+ */
+public class BoundedExecutionProvider implements ExecutionProvider {
+  private static final AVLogger LOGGER = LogUtil.getLogger(BoundedExecutionProvider.class);
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  private final ThreadPoolExecutor executor;
+  private final Scheduler scheduler;
+  private final AtomicLong submittedCount = new AtomicLong(0);
+  private final AtomicLong rejectedCount = new AtomicLong(0);
+
+  /**
+   * constructor.
+   * @param maxThreads max count of worker threads.
+   * @param queueCapacity max count of waiting tasks.
+   */
+  public BoundedExecutionProvider(int maxThreads, int queueCapacity) {
+    if (maxThreads < 1 || queueCapacity < 1) {
+      throw new IllegalArgumentException("maxThreads and queueCapacity must be positive.");
+    }
+    final AtomicInteger threadIndex = new AtomicInteger(0);
+    this.executor = new ThreadPoolExecutor(maxThreads, maxThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(queueCapacity),
+            new ThreadFactory() {
+              public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "leancloud-io-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+              }
+            },
+            new RejectedExecutionHandler() {
+              public void rejectedExecution(Runnable runnable, ThreadPoolExecutor pool) {
+                rejectedCount.incrementAndGet();
+                LOGGER.w("execution queue is full, run task in caller thread. active="
+                        + pool.getActiveCount() + ", queued=" + pool.getQueue().size());
+                if (!pool.isShutdown()) {
+                  runnable.run();
+                }
+              }
+            }) {
+      @Override
+      public void execute(Runnable command) {
+        submittedCount.incrementAndGet();
+        super.execute(command);
+      }
+    };
+    this.executor.allowCoreThreadTimeOut(true);
+    this.scheduler = Schedulers.from(this.executor);
+  }
+
+  public Scheduler getScheduler() {
+    return this.scheduler;
+  }
+
+  public long getSubmittedCount() {
+    return submittedCount.get();
+  }
+
+  public long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+  public int getQueueSize() {
+    return executor.getQueue().size();
+  }
+
+  public int getActiveCount() {
+    return executor.getActiveCount();
+  }
+
+  public int getLargestPoolSize() {
+    return executor.getLargestPoolSize();
+  }
+
+  public long getCompletedTaskCount() {
+    return executor.getCompletedTaskCount();
+  }
+
+  /**
+   * stop accepting new tasks, queued tasks are still executed.
+   */
+  public void shutdown() {
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,13 @@
+package cn.leancloud.execution;
+
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * RxJava io scheduler, which is unbounded and creates a new thread whenever all workers are busy.
+ */
+public class DefaultExecutionProvider implements ExecutionProvider {
+  public Scheduler getScheduler() {
+    return Schedulers.io();
+  }
+}
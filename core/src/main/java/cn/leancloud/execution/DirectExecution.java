@@ -0,0 +1,43 @@
+package cn.leancloud.execution;
+
+/**
+ * Marks current thread as running a blocking api.
+ *
+ * Within the scope, request observables are not subscribed on execution provider nor observed on the
+ * default scheduler, so that Retrofit call is executed on the caller thread without thread hops.
+ * Usage:
+ * <pre>
+ *   DirectExecution.enter();
+ *   try {
+ *     xxxInBackground().blockingSubscribe();
+ *   } finally {
+ *     DirectExecution.exit();
+ *   }
+ * </pre>
+ */
+public final class DirectExecution {
+  private static final ThreadLocal<int[]> depth = new ThreadLocal<int[]>() {
+    @Override
+    protected int[] initialValue() {
+      return new int[1];
+    }
+  };
+
+  private DirectExecution() {
+  }
+
+  public static void enter() {
+    depth.get()[0]++;
+  }
+
+  public static void exit() {
+    int[] current = depth.get();
+    if (current[0] > 0) {
+      current[0]--;
+    }
+  }
+
+  public static boolean isActive() {
+    return depth.get()[0] > 0;
+  }
+}
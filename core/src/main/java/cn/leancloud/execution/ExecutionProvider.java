@@ -0,0 +1,15 @@
+package cn.leancloud.execution;
+
+import io.reactivex.Scheduler;
+
+/**
+ * Supplier of the scheduler on which blocking network and disk calls are subscribed.
+ * Install an implementation with AppConfiguration.setExecutionProvider.
+ */
+public interface ExecutionProvider {
+  /**
+   * get scheduler for subscribe side, the same instance should be returned for every call.
+   * @return scheduler.
+   */
+  Scheduler getScheduler();
+}
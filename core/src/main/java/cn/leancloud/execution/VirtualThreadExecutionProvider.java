@@ -0,0 +1,58 @@
+package cn.leancloud.execution;
+
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * One virtual thread per task, blocked calls don't hold platform threads. Requires JDK 21+.
+ */
+public class VirtualThreadExecutionProvider implements ExecutionProvider {
+  private final ExecutorService executor;
+  private final Scheduler scheduler;
+
+  /**
+   * constructor.
+   * @throws UnsupportedOperationException if virtual thread is not available in current runtime.
+   */
+  public VirtualThreadExecutionProvider() {
+    Method factory = getFactoryMethod();
+    if (null == factory) {
+      throw new UnsupportedOperationException("virtual thread requires JDK 21+.");
+    }
+    try {
+      this.executor = (ExecutorService) factory.invoke(null);
+    } catch (Exception ex) {
+      throw new UnsupportedOperationException("failed to create virtual thread executor.", ex);
+    }
+    this.scheduler = Schedulers.from(this.executor);
+  }
+
+  /**
+   * whether virtual thread is available in current runtime or not.
+   * @return flag.
+   */
+  public static boolean isSupported() {
+    return null != getFactoryMethod();
+  }
+
+  private static Method getFactoryMethod() {
+    try {
+      // sdk is built for old java version, so the method is looked up at runtime.
+      return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException ex) {
+      return null;
+    }
+  }
+
+  public Scheduler getScheduler() {
+    return this.scheduler;
+  }
+
+  public void shutdown() {
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,62 @@
+package cn.leancloud.json;
+
+import cn.leancloud.ObjectValueFilter;
+import cn.leancloud.core.AVOSCloud;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.parser.Feature;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import retrofit2.Converter;
+import retrofit2.converter.fastjson.FastJsonConverterFactory;
+
+import java.util.List;
+
+/**
+ * default codec, which is based on fastjson.
+ */
+public class FastJsonCodec implements JSONCodec {
+  public Converter.Factory createConverterFactory() {
+    return FastJsonConverterFactory.create();
+  }
+
+  public String toJSONString(Object object) {
+    return JSON.toJSONString(object);
+  }
+
+  public String toJSONStringWithType(Object object) {
+    if (AVOSCloud.isEnableCircularReferenceDetect()) {
+      return JSON.toJSONString(object, ObjectValueFilter.instance,
+              SerializerFeature.WriteClassName);
+    } else {
+      return JSON.toJSONString(object, ObjectValueFilter.instance,
+              SerializerFeature.WriteClassName,
+              SerializerFeature.DisableCircularReferenceDetect);
+    }
+  }
+
+  public String toJSONStringWithTypeAndDefaults(Object object) {
+    return JSON.toJSONString(object, SerializerFeature.SkipTransientField,
+            SerializerFeature.WriteClassName, SerializerFeature.QuoteFieldNames,
+            SerializerFeature.WriteNullNumberAsZero, SerializerFeature.WriteNullBooleanAsFalse);
+  }
+
+  public String toJSONStringWithNull(Object object) {
+    return JSON.toJSONString(object, SerializerFeature.WriteMapNullValue,
+            SerializerFeature.WriteNullBooleanAsFalse, SerializerFeature.WriteNullNumberAsZero);
+  }
+
+  public Object parse(String text) {
+    return JSON.parse(text);
+  }
+
+  public <T> T parseObject(String text, Class<T> clazz) {
+    return JSON.parseObject(text, clazz);
+  }
+
+  public <T> T parseObjectWithType(String text, Class<T> clazz) {
+    return JSON.parseObject(text, clazz, Feature.SupportAutoType);
+  }
+
+  public <T> List<T> parseArray(String text, Class<T> clazz) {
+    return JSON.parseArray(text, clazz);
+  }
+}
@@ -0,0 +1,86 @@
+package cn.leancloud.json;
+
+import retrofit2.Converter;
+
+import java.util.List;
+
+/**
+ * JSON encoder/decoder used by the storage and engine layers.
+ *
+ * Retrofit conversion, AVObject serialization and local cache persistence go through
+ * this interface, so an alternative implementation can be installed with
+ * AppConfiguration.setJSONCodec without touching the rest of SDK.
+ *
+ * Bytes values are handed to implementations other than FastJsonCodec as plain Base64 String,
+ * the streaming cn.leancloud.ops.Base64Bytes wrapper is only used with fastjson.
+ */
+public interface JSONCodec {
+  /**
+   * create converter factory for Retrofit services.
+   * @return converter factory.
+   */
+  Converter.Factory createConverterFactory();
+
+  /**
+   * encode object to plain json string.
+   * @param object target object.
+   * @return json string.
+   */
+  String toJSONString(Object object);
+
+  /**
+   * encode object with type hints, so it can be restored by parseObjectWithType later.
+   * @param object target object.
+   * @return json string.
+   */
+  String toJSONStringWithType(Object object);
+
+  /**
+   * encode object with type hints, and write null numbers/booleans as 0/false.
+   * it is the format of persistent message queues, so implementations must keep it stable.
+   * @param object target object.
+   * @return json string.
+   */
+  String toJSONStringWithTypeAndDefaults(Object object);
+
+  /**
+   * encode object and write null values explicitly.
+   * @param object target object.
+   * @return json string.
+   */
+  String toJSONStringWithNull(Object object);
+
+  /**
+   * decode json string to Map/List/primitive value.
+   * @param text json string.
+   * @return parsed value.
+   */
+  Object parse(String text);
+
+  /**
+   * decode json string to specified class.
+   * @param text json string.
+   * @param clazz target class.
+   * @param <T> template type.
+   * @return parsed object.
+   */
+  <T> T parseObject(String text, Class<T> clazz);
+
+  /**
+   * decode json string which generated by toJSONStringWithType.
+   * @param text json string.
+   * @param clazz target class.
+   * @param <T> template type.
+   * @return parsed object.
+   */
+  <T> T parseObjectWithType(String text, Class<T> clazz);
+
+  /**
+   * decode json array string to list of specified class.
+   * @param text json string.
+   * @param clazz element class.
+   * @param <T> template type.
+   * @return parsed list.
+   */
+  <T> List<T> parseArray(String text, Class<T> clazz);
+}
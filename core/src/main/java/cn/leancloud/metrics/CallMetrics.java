@@ -0,0 +1,106 @@
+package cn.leancloud.metrics;
+
+/**
+ * Latency breakdown of one http call, all durations are in nanoseconds.
+ * If the call is retried within interceptors, phases of all attempts are summed up.
+ */
+public class CallMetrics {
+  String endpoint;
+  int statusCode = 0;
+  boolean failed = false;
+  boolean cancelled = false;
+  boolean network = false;
+  long totalNanos = 0;
+  long queueNanos = 0;
+  long dnsNanos = 0;
+  long connectNanos = 0;
+  long tlsNanos = 0;
+  long serverNanos = 0;
+  long decodeNanos = 0;
+  long bytesSent = 0;
+  long bytesReceived = 0;
+
+  CallMetrics(String endpoint) {
+    this.endpoint = endpoint;
+  }
+
+  public String getEndpoint() {
+    return endpoint;
+  }
+
+  /**
+   * @return http status code of last response, 0 if no response is received.
+   */
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  /**
+   * @return true if call failed with IOException.
+   */
+  public boolean isFailed() {
+    return failed;
+  }
+
+  /**
+   * @return true if call is cancelled, e.g. the losing call of hedged request.
+   */
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * @return false if response is produced locally by interceptor(e.g. rate limiter) without connection.
+   */
+  public boolean isNetwork() {
+    return network;
+  }
+
+  public long getTotalNanos() {
+    return totalNanos;
+  }
+
+  /**
+   * @return time waiting for dispatcher, interceptors and connection pool before connection is acquired.
+   */
+  public long getQueueNanos() {
+    return queueNanos;
+  }
+
+  public long getDnsNanos() {
+    return dnsNanos;
+  }
+
+  /**
+   * @return connect time, including tls handshake.
+   */
+  public long getConnectNanos() {
+    return connectNanos;
+  }
+
+  public long getTlsNanos() {
+    return tlsNanos;
+  }
+
+  /**
+   * @return time from request sent to response headers received.
+   */
+  public long getServerNanos() {
+    return serverNanos;
+  }
+
+  /**
+   * @return time from response headers received to call end, which includes body reading and conversion.
+   */
+  public long getDecodeNanos() {
+    return decodeNanos;
+  }
+
+  public long getBytesSent() {
+    return bytesSent;
+  }
+
+  public long getBytesReceived() {
+    return bytesReceived;
+  }
+}
@@ -0,0 +1,170 @@
+package cn.leancloud.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aggregated metrics of one endpoint.
+ */
+public class EndpointMetrics {
+  private final LatencyHistogram total = new LatencyHistogram();
+  private final LatencyHistogram queue = new LatencyHistogram();
+  private final LatencyHistogram dns = new LatencyHistogram();
+  private final LatencyHistogram connect = new LatencyHistogram();
+  private final LatencyHistogram tls = new LatencyHistogram();
+  private final LatencyHistogram server = new LatencyHistogram();
+  private final LatencyHistogram decode = new LatencyHistogram();
+  private final AtomicInteger inFlight = new AtomicInteger(0);
+  private final AtomicLong failures = new AtomicLong(0);
+  private final AtomicLong cancellations = new AtomicLong(0);
+  private final AtomicLong localResponses = new AtomicLong(0);
+  private final AtomicLong bytesSent = new AtomicLong(0);
+  private final AtomicLong bytesReceived = new AtomicLong(0);
+  private final ConcurrentMap<Integer, AtomicLong> statusCodes = new ConcurrentHashMap<Integer, AtomicLong>();
+
+  void onStart() {
+    inFlight.incrementAndGet();
+  }
+
+  void onEnd(CallMetrics metrics) {
+    inFlight.decrementAndGet();
+    if (metrics.isCancelled()) {
+      // latency of cancelled call is not meaningful.
+      cancellations.incrementAndGet();
+      return;
+    }
+    if (metrics.isFailed()) {
+      failures.incrementAndGet();
+    }
+    if (metrics.getStatusCode() > 0) {
+      increase(statusCodes, metrics.getStatusCode());
+    }
+    if (!metrics.isNetwork()) {
+      localResponses.incrementAndGet();
+      return;
+    }
+    total.recordNanos(metrics.getTotalNanos());
+    queue.recordNanos(metrics.getQueueNanos());
+    dns.recordNanos(metrics.getDnsNanos());
+    connect.recordNanos(metrics.getConnectNanos());
+    tls.recordNanos(metrics.getTlsNanos());
+    server.recordNanos(metrics.getServerNanos());
+    decode.recordNanos(metrics.getDecodeNanos());
+    bytesSent.addAndGet(metrics.getBytesSent());
+    bytesReceived.addAndGet(metrics.getBytesReceived());
+  }
+
+  static void increase(ConcurrentMap<Integer, AtomicLong> counters, int key) {
+    AtomicLong counter = counters.get(key);
+    if (null == counter) {
+      AtomicLong newCounter = new AtomicLong(0);
+      counter = counters.putIfAbsent(key, newCounter);
+      if (null == counter) {
+        counter = newCounter;
+      }
+    }
+    counter.incrementAndGet();
+  }
+
+  static Map<Integer, Long> snapshot(ConcurrentMap<Integer, AtomicLong> counters) {
+    Map<Integer, Long> result = new HashMap<Integer, Long>();
+    for (Map.Entry<Integer, AtomicLong> entry : counters.entrySet()) {
+      result.put(entry.getKey(), entry.getValue().get());
+    }
+    return result;
+  }
+
+  /**
+   * reset all except in flight count.
+   */
+  void reset() {
+    total.reset();
+    queue.reset();
+    dns.reset();
+    connect.reset();
+    tls.reset();
+    server.reset();
+    decode.reset();
+    failures.set(0);
+    cancellations.set(0);
+    localResponses.set(0);
+    bytesSent.set(0);
+    bytesReceived.set(0);
+    statusCodes.clear();
+  }
+
+  /**
+   * @return latency of network calls from start to end.
+   */
+  public LatencyHistogram getTotal() {
+    return total;
+  }
+
+  public LatencyHistogram getQueue() {
+    return queue;
+  }
+
+  public LatencyHistogram getDns() {
+    return dns;
+  }
+
+  public LatencyHistogram getConnect() {
+    return connect;
+  }
+
+  public LatencyHistogram getTls() {
+    return tls;
+  }
+
+  public LatencyHistogram getServer() {
+    return server;
+  }
+
+  public LatencyHistogram getDecode() {
+    return decode;
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  /**
+   * @return count of calls failed with IOException.
+   */
+  public long getFailures() {
+    return failures.get();
+  }
+
+  /**
+   * @return count of cancelled calls, e.g. losing calls of hedged requests.
+   */
+  public long getCancellations() {
+    return cancellations.get();
+  }
+
+  /**
+   * @return count of responses produced by interceptor without connection, e.g. rejected by rate limiter.
+   */
+  public long getLocalResponses() {
+    return localResponses.get();
+  }
+
+  public long getBytesSent() {
+    return bytesSent.get();
+  }
+
+  public long getBytesReceived() {
+    return bytesReceived.get();
+  }
+
+  /**
+   * @return map from http status code to count.
+   */
+  public Map<Integer, Long> getStatusCodes() {
+    return snapshot(statusCodes);
+  }
+}
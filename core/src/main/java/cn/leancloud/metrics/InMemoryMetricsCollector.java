@@ -0,0 +1,79 @@
+package cn.leancloud.metrics;
+
+import cn.leancloud.core.CircuitBreaker;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Collector which aggregates metrics in memory by endpoint and operation.
+ * Recording is lock free and allocation free except for the first call of each endpoint, so it can stay enabled
+ * in production.
+ */
+public class InMemoryMetricsCollector implements MetricsCollector {
+  private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<String, EndpointMetrics>();
+  private final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentHashMap<String, OperationMetrics>();
+
+  public boolean isEnabled() {
+    return true;
+  }
+
+  public void onCallStart(String endpoint) {
+    getEndpointMetrics(endpoint).onStart();
+  }
+
+  public void onCallEnd(CallMetrics metrics) {
+    getEndpointMetrics(metrics.getEndpoint()).onEnd(metrics);
+  }
+
+  public void onOperation(String operation, long durationNanos, Throwable error) {
+    OperationMetrics metrics = operations.get(operation);
+    if (null == metrics) {
+      OperationMetrics newMetrics = new OperationMetrics();
+      metrics = operations.putIfAbsent(operation, newMetrics);
+      if (null == metrics) {
+        metrics = newMetrics;
+      }
+    }
+    metrics.onEnd(durationNanos, error);
+  }
+
+  public EndpointMetrics getEndpointMetrics(String endpoint) {
+    EndpointMetrics metrics = endpoints.get(endpoint);
+    if (null == metrics) {
+      EndpointMetrics newMetrics = new EndpointMetrics();
+      metrics = endpoints.putIfAbsent(endpoint, newMetrics);
+      if (null == metrics) {
+        metrics = newMetrics;
+      }
+    }
+    return metrics;
+  }
+
+  public Map<String, EndpointMetrics> getEndpoints() {
+    return new HashMap<String, EndpointMetrics>(endpoints);
+  }
+
+  public Map<String, OperationMetrics> getOperations() {
+    return new HashMap<String, OperationMetrics>(operations);
+  }
+
+  /**
+   * @return circuit breaker state of every host, empty if circuit breaker is disabled.
+   */
+  public Map<String, CircuitBreaker.State> getCircuitStates() {
+    return CircuitBreaker.getStates();
+  }
+
+  /**
+   * reset all metrics, in flight counts are kept since calls are still running.
+   */
+  public void reset() {
+    for (EndpointMetrics metrics : endpoints.values()) {
+      metrics.reset();
+    }
+    operations.clear();
+  }
+}
@@ -0,0 +1,113 @@
+package cn.leancloud.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram with log-linear buckets(in the way of HdrHistogram), values are recorded in microseconds.
+ *
+ * Values below 32 have exact buckets, larger ones are split into 16 linear sub buckets per power of two, so
+ * relative error is within 1/16. Values larger than 2^36 microseconds(about 19 hours) are clamped.
+ */
+public class LatencyHistogram {
+  private static final int LINEAR_LIMIT = 32;
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MIN_EXPONENT = 5;
+  private static final int MAX_EXPONENT = 36;
+  private static final int BUCKET_COUNT = LINEAR_LIMIT + (MAX_EXPONENT - MIN_EXPONENT + 1) * SUB_BUCKETS;
+  private static final long MAX_VALUE = (1l << (MAX_EXPONENT + 1)) - 1;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong count = new AtomicLong(0);
+  private final AtomicLong sum = new AtomicLong(0);
+  private final AtomicLong max = new AtomicLong(0);
+
+  static int bucketIndex(long value) {
+    if (value < LINEAR_LIMIT) {
+      return (int) Math.max(0, value);
+    }
+    value = Math.min(value, MAX_VALUE);
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return LINEAR_LIMIT + (exponent - MIN_EXPONENT) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * @return highest value which falls into bucket.
+   */
+  static long bucketUpperBound(int index) {
+    if (index < LINEAR_LIMIT) {
+      return index;
+    }
+    int exponent = (index - LINEAR_LIMIT) / SUB_BUCKETS + MIN_EXPONENT;
+    long subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+    long width = 1l << (exponent - SUB_BUCKET_BITS);
+    return (1l << exponent) + (subBucket + 1) * width - 1;
+  }
+
+  public void recordNanos(long nanos) {
+    record(nanos / 1000);
+  }
+
+  public void record(long micros) {
+    micros = Math.max(0, micros);
+    buckets.incrementAndGet(bucketIndex(micros));
+    count.incrementAndGet();
+    sum.addAndGet(micros);
+    long current;
+    while (micros > (current = max.get())) {
+      if (max.compareAndSet(current, micros)) {
+        break;
+      }
+    }
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  public long getMaxMicros() {
+    return max.get();
+  }
+
+  public double getMeanMicros() {
+    long total = count.get();
+    return 0 == total ? 0 : (double) sum.get() / total;
+  }
+
+  /**
+   * get value at percentile.
+   * @param percentile percentile in [0, 100].
+   * @return upper bound of the bucket where percentile falls in, in microseconds. 0 if nothing is recorded.
+   */
+  public long getPercentileMicros(double percentile) {
+    long total = 0;
+    long[] snapshot = new long[BUCKET_COUNT];
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      snapshot[i] = buckets.get(i);
+      total += snapshot[i];
+    }
+    if (0 == total) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    long accumulated = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      accumulated += snapshot[i];
+      if (accumulated >= rank) {
+        return Math.min(bucketUpperBound(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  public void reset() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      buckets.set(i, 0);
+    }
+    count.set(0);
+    sum.set(0);
+    max.set(0);
+  }
+}
@@ -0,0 +1,34 @@
+package cn.leancloud.metrics;
+
+/**
+ * Receiver of SDK metrics, fed by MetricsEventListener on the shared OkHttp client and by StorageClient.
+ * Install an implementation with AppConfiguration.setMetricsCollector, methods are called on network threads
+ * and must not block.
+ */
+public interface MetricsCollector {
+  /**
+   * whether metrics should be collected, no event is reported if it returns false.
+   * @return flag.
+   */
+  boolean isEnabled();
+
+  /**
+   * http call is started(or enqueued).
+   * @param endpoint endpoint name, e.g. "GET /1.1/classes/Student".
+   */
+  void onCallStart(String endpoint);
+
+  /**
+   * http call is finished or failed, it is paired with onCallStart.
+   * @param metrics call metrics.
+   */
+  void onCallEnd(CallMetrics metrics);
+
+  /**
+   * StorageClient operation is finished, which includes response conversion and cache maintenance.
+   * @param operation operation name, e.g. "fetchObject".
+   * @param durationNanos duration from subscription to termination.
+   * @param error error, null if succeed, or CancellationException if it is disposed before any result.
+   */
+  void onOperation(String operation, long durationNanos, Throwable error);
+}
@@ -0,0 +1,182 @@
+package cn.leancloud.metrics;
+
+import cn.leancloud.core.AppConfiguration;
+import cn.leancloud.core.HedgingInterceptor;
+import okhttp3.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+/**
+ * OkHttp event listener which measures latency breakdown of every call and reports it to the collector from
+ * AppConfiguration.getMetricsCollector(). No listener is created while collector is disabled.
+ * For hedged requests, only delegate calls(which really go to network) are measured, the outer call which waits
+ * for them is skipped, and the losing call cancelled by hedging is reported as cancelled instead of failed.
+ */
+public class MetricsEventListener extends EventListener {
+  public static final EventListener.Factory FACTORY = new EventListener.Factory() {
+    public EventListener create(Call call) {
+      MetricsCollector collector = AppConfiguration.getMetricsCollector();
+      if (!collector.isEnabled() || HedgingInterceptor.isHedged(call.request())) {
+        return EventListener.NONE;
+      }
+      return new MetricsEventListener(collector, endpointOf(call.request()));
+    }
+  };
+
+  private final MetricsCollector collector;
+  private final CallMetrics metrics;
+  private long callStartAt = 0;
+  private long dnsStartAt = 0;
+  private long connectStartAt = 0;
+  private long secureConnectStartAt = 0;
+  private long requestSentAt = 0;
+  private long responseHeadersAt = 0;
+  private boolean connectionAcquired = false;
+
+  MetricsEventListener(MetricsCollector collector, String endpoint) {
+    this.collector = collector;
+    this.metrics = new CallMetrics(endpoint);
+  }
+
+  /**
+   * endpoint name is method and at most 3 path segments, object id like segment is replaced with ":id",
+   * e.g. "GET /1.1/classes/Student", "GET /1.1/users/:id".
+   * @param request request.
+   * @return endpoint name.
+   */
+  static String endpointOf(Request request) {
+    StringBuilder sb = new StringBuilder(request.method()).append(' ');
+    List<String> segments = request.url().pathSegments();
+    int count = Math.min(3, segments.size());
+    for (int i = 0; i < count; i++) {
+      String segment = segments.get(i);
+      sb.append('/').append(i > 0 && isIdentifier(segment) ? ":id" : segment);
+    }
+    if (0 == count) {
+      sb.append('/');
+    }
+    return sb.toString();
+  }
+
+  private static boolean isIdentifier(String segment) {
+    if (segment.length() != 24) {
+      return false;
+    }
+    for (int i = 0; i < segment.length(); i++) {
+      char c = segment.charAt(i);
+      if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void callStart(Call call) {
+    callStartAt = System.nanoTime();
+    collector.onCallStart(metrics.endpoint);
+  }
+
+  @Override
+  public void dnsStart(Call call, String domainName) {
+    dnsStartAt = System.nanoTime();
+  }
+
+  @Override
+  public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+    metrics.dnsNanos += System.nanoTime() - dnsStartAt;
+  }
+
+  @Override
+  public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+    connectStartAt = System.nanoTime();
+  }
+
+  @Override
+  public void secureConnectStart(Call call) {
+    secureConnectStartAt = System.nanoTime();
+  }
+
+  @Override
+  public void secureConnectEnd(Call call, Handshake handshake) {
+    metrics.tlsNanos += System.nanoTime() - secureConnectStartAt;
+  }
+
+  @Override
+  public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+    metrics.connectNanos += System.nanoTime() - connectStartAt;
+  }
+
+  @Override
+  public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol,
+                            IOException ioe) {
+    metrics.connectNanos += System.nanoTime() - connectStartAt;
+  }
+
+  @Override
+  public void connectionAcquired(Call call, Connection connection) {
+    if (!connectionAcquired) {
+      connectionAcquired = true;
+      metrics.network = true;
+      metrics.queueNanos = Math.max(0,
+              System.nanoTime() - callStartAt - metrics.dnsNanos - metrics.connectNanos);
+    }
+  }
+
+  @Override
+  public void requestHeadersEnd(Call call, Request request) {
+    requestSentAt = System.nanoTime();
+  }
+
+  @Override
+  public void requestBodyEnd(Call call, long byteCount) {
+    requestSentAt = System.nanoTime();
+    metrics.bytesSent += byteCount;
+  }
+
+  @Override
+  public void responseHeadersStart(Call call) {
+    if (requestSentAt > 0) {
+      metrics.serverNanos += System.nanoTime() - requestSentAt;
+    }
+  }
+
+  @Override
+  public void responseHeadersEnd(Call call, Response response) {
+    responseHeadersAt = System.nanoTime();
+    metrics.statusCode = response.code();
+  }
+
+  @Override
+  public void responseBodyEnd(Call call, long byteCount) {
+    metrics.bytesReceived += byteCount;
+  }
+
+  @Override
+  public void callEnd(Call call) {
+    finish();
+  }
+
+  @Override
+  public void callFailed(Call call, IOException ioe) {
+    if (call.isCanceled()) {
+      metrics.cancelled = true;
+    } else {
+      metrics.failed = true;
+    }
+    finish();
+  }
+
+  private void finish() {
+    long now = System.nanoTime();
+    metrics.totalNanos = now - callStartAt;
+    if (responseHeadersAt > 0) {
+      metrics.decodeNanos = now - responseHeadersAt;
+    }
+    collector.onCallEnd(metrics);
+  }
+}
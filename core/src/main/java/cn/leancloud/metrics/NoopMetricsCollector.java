@@ -0,0 +1,19 @@
+package cn.leancloud.metrics;
+
+/**
+ * Default collector, nothing is collected.
+ */
+public class NoopMetricsCollector implements MetricsCollector {
+  public boolean isEnabled() {
+    return false;
+  }
+
+  public void onCallStart(String endpoint) {
+  }
+
+  public void onCallEnd(CallMetrics metrics) {
+  }
+
+  public void onOperation(String operation, long durationNanos, Throwable error) {
+  }
+}
@@ -0,0 +1,49 @@
+package cn.leancloud.metrics;
+
+import cn.leancloud.AVException;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aggregated metrics of one StorageClient operation.
+ */
+public class OperationMetrics {
+  private final LatencyHistogram latency = new LatencyHistogram();
+  private final ConcurrentMap<Integer, AtomicLong> errorCodes = new ConcurrentHashMap<Integer, AtomicLong>();
+  private final AtomicLong cancellations = new AtomicLong(0);
+
+  void onEnd(long durationNanos, Throwable error) {
+    if (error instanceof CancellationException) {
+      // latency of cancelled operation is not meaningful.
+      cancellations.incrementAndGet();
+      return;
+    }
+    latency.recordNanos(durationNanos);
+    if (null != error) {
+      int code = error instanceof AVException ? ((AVException) error).getCode() : AVException.UNKNOWN;
+      EndpointMetrics.increase(errorCodes, code);
+    }
+  }
+
+  public LatencyHistogram getLatency() {
+    return latency;
+  }
+
+  /**
+   * @return map from AVException code to count.
+   */
+  public Map<Integer, Long> getErrorCodes() {
+    return EndpointMetrics.snapshot(errorCodes);
+  }
+
+  /**
+   * @return count of operations disposed before any result.
+   */
+  public long getCancellations() {
+    return cancellations.get();
+  }
+}
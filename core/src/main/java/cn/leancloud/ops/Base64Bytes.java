@@ -0,0 +1,71 @@
+package cn.leancloud.ops;
+
+import cn.leancloud.codec.StreamingBase64;
+import cn.leancloud.core.AppConfiguration;
+import cn.leancloud.json.FastJsonCodec;
+import com.alibaba.fastjson.serializer.JSONSerializable;
+import com.alibaba.fastjson.serializer.JSONSerializer;
+import com.alibaba.fastjson.serializer.SerializeWriter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+
+/**
+ * "base64" value of Bytes type, data is encoded into json writer directly while serializing,
+ * so that no full Base64 String is created for large binary.
+ *
+ * streaming relies on fastjson JSONSerializable, other JSONCodec implementations would write it
+ * as a bean, so create values with {@link #encode(byte[])} instead of the constructor.
+ */
+public class Base64Bytes implements JSONSerializable {
+  private final byte[] data;
+
+  public Base64Bytes(byte[] data) {
+    this.data = data;
+  }
+
+  /**
+   * encode binary as "base64" value of Bytes type.
+   * @param data binary data.
+   * @return Base64Bytes when fastjson codec is installed, otherwise plain Base64 String.
+   */
+  public static Object encode(byte[] data) {
+    if (AppConfiguration.getJSONCodec() instanceof FastJsonCodec) {
+      return new Base64Bytes(data);
+    }
+    return StreamingBase64.encodeToString(data);
+  }
+
+  public byte[] getData() {
+    return data;
+  }
+
+  public void write(JSONSerializer serializer, Object fieldName, Type fieldType, int features) throws IOException {
+    SerializeWriter writer = serializer.getWriter();
+    writer.write('"');
+    StreamingBase64.encode(data, 0, data.length, writer);
+    writer.write('"');
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o instanceof Base64Bytes) {
+      return Arrays.equals(data, ((Base64Bytes) o).data);
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(data);
+  }
+
+  @Override
+  public String toString() {
+    return StreamingBase64.encodeToString(data);
+  }
+}
@@ -1,7 +1,6 @@
 package cn.leancloud.ops;
 
 import cn.leancloud.*;
-import cn.leancloud.codec.Base64;
 import cn.leancloud.types.AVGeoPoint;
 import cn.leancloud.utils.LogUtil;
 import cn.leancloud.utils.StringUtil;
@@ -229,7 +228,7 @@ public abstract class BaseOperation implements ObjectFieldOperation {
   protected static Object encodeByteArray(byte[] o) {
     Map<String, Object> result = new HashMap<String, Object>();
     result.put("__type", "Bytes");
-    result.put("base64", Base64.encodeToString(o, Base64.NO_WRAP));
+    result.put("base64", Base64Bytes.encode(o));
     return result;
   }
 
@@ -6,7 +6,7 @@ import cn.leancloud.*;
 import cn.leancloud.types.AVGeoPoint;
 import cn.leancloud.utils.StringUtil;
 
-import cn.leancloud.codec.Base64;
+import cn.leancloud.codec.StreamingBase64;
 import com.alibaba.fastjson.JSONObject;
 
 public class Utils {
@@ -53,8 +53,11 @@ public class Utils {
   }
 
   public static byte[] dataFromMap(Map<String, Object> map) {
-    String value = (String) map.get("base64");
-    return Base64.decode(value, Base64.NO_WRAP);
+    Object value = map.get("base64");
+    if (value instanceof Base64Bytes) {
+      return ((Base64Bytes) value).getData();
+    }
+    return StreamingBase64.decode((CharSequence) value);
   }
   public static Date dateFromMap(Map<String, Object> map) {
     String value = (String) map.get("iso");
@@ -72,7 +75,7 @@ public class Utils {
   public static Map<String, Object> mapFromByteArray(byte[] data) {
     Map<String, Object> result = new HashMap<String, Object>();
     result.put(typeTag, "Bytes");
-    result.put("base64", Base64.encodeToString(data, Base64.NO_WRAP));
+    result.put("base64", Base64Bytes.encode(data));
     return result;
   }
 
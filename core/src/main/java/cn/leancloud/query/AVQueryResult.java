@@ -1,9 +1,8 @@
 package cn.leancloud.query;
 
 import cn.leancloud.AVObject;
-import com.alibaba.fastjson.JSON;
+import cn.leancloud.core.AppConfiguration;
 import com.alibaba.fastjson.annotation.JSONField;
-import com.alibaba.fastjson.parser.Feature;
 
 import java.util.List;
 
@@ -46,10 +45,10 @@ public class AVQueryResult {
   }
 
   public String toJSONString() {
-    return JSON.toJSONString(this);
+    return AppConfiguration.getJSONCodec().toJSONString(this);
   }
 
   public static AVQueryResult fromJSONString(String content) {
-    return JSON.parseObject(content, AVQueryResult.class, Feature.SupportAutoType);
+    return AppConfiguration.getJSONCodec().parseObjectWithType(content, AVQueryResult.class);
   }
 }
@@ -0,0 +1,196 @@
+package cn.leancloud.query;
+
+import cn.leancloud.AVLogger;
+import cn.leancloud.ops.Utils;
+import cn.leancloud.types.AVGeoPoint;
+import cn.leancloud.utils.LogUtil;
+import cn.leancloud.utils.StringUtil;
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.alibaba.fastjson.util.TypeUtils;
+
+import java.lang.reflect.*;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pre-computed mapping from query result columns to POJO fields.
+ *
+ * Columns are matched to public setters(setXxx) first, then to declared fields(including
+ * private and final ones) with the same name. Target class must have a no-arg constructor,
+ * which can be private.
+ *
+ * @param <T> template type.
+ */
+public class ProjectionMapping<T> {
+  private static final AVLogger LOGGER = LogUtil.getLogger(ProjectionMapping.class);
+  private static final String KEY_TYPE = "__type";
+  private static final Map<Class<?>, ProjectionMapping<?>> mappingCache =
+          new ConcurrentHashMap<Class<?>, ProjectionMapping<?>>();
+
+  interface Setter {
+    Type getType();
+    void set(Object target, Object value) throws Exception;
+  }
+
+  private final Class<T> clazz;
+  private final Constructor<T> constructor;
+  private final Map<String, Setter> setters;
+
+  private ProjectionMapping(Class<T> clazz) {
+    this.clazz = clazz;
+    try {
+      this.constructor = clazz.getDeclaredConstructor();
+      this.constructor.setAccessible(true);
+    } catch (NoSuchMethodException ex) {
+      throw new IllegalArgumentException("projection class must have no-arg constructor: " + clazz.getName());
+    }
+    this.setters = buildSetters(clazz);
+  }
+
+  /**
+   * get mapping for specified class, which will be computed at the first time and cached.
+   * @param clazz target class.
+   * @param <T> template type.
+   * @return mapping instance.
+   */
+  public static <T> ProjectionMapping<T> forClass(Class<T> clazz) {
+    ProjectionMapping<?> result = mappingCache.get(clazz);
+    if (null == result) {
+      result = new ProjectionMapping<T>(clazz);
+      mappingCache.put(clazz, result);
+    }
+    return (ProjectionMapping<T>) result;
+  }
+
+  private static Map<String, Setter> buildSetters(Class<?> clazz) {
+    Map<String, Setter> result = new HashMap<String, Setter>();
+    for (Class<?> c = clazz; null != c && Object.class != c; c = c.getSuperclass()) {
+      for (final Field field : c.getDeclaredFields()) {
+        int modifiers = field.getModifiers();
+        if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || result.containsKey(field.getName())) {
+          continue;
+        }
+        field.setAccessible(true);
+        result.put(field.getName(), new Setter() {
+          public Type getType() {
+            return field.getGenericType();
+          }
+
+          public void set(Object target, Object value) throws Exception {
+            field.set(target, value);
+          }
+        });
+      }
+    }
+    for (final Method method : clazz.getMethods()) {
+      String name = method.getName();
+      if (Modifier.isStatic(method.getModifiers()) || name.length() <= 3 || !name.startsWith("set")
+              || method.getParameterTypes().length != 1) {
+        continue;
+      }
+      String column = Character.toLowerCase(name.charAt(3)) + name.substring(4);
+      result.put(column, new Setter() {
+        public Type getType() {
+          return method.getGenericParameterTypes()[0];
+        }
+
+        public void set(Object target, Object value) throws Exception {
+          method.invoke(target, value);
+        }
+      });
+    }
+    return result;
+  }
+
+  public Class<T> getProjectionClass() {
+    return this.clazz;
+  }
+
+  T newInstance() throws Exception {
+    return this.constructor.newInstance();
+  }
+
+  /**
+   * set column value to target.
+   * @param target target instance.
+   * @param column column name.
+   * @param rawValue json value of column.
+   * @return false if column is not mapped.
+   * @throws Exception if value is not compatible with field type.
+   */
+  boolean set(T target, String column, Object rawValue) throws Exception {
+    Setter setter = this.setters.get(column);
+    if (null == setter) {
+      return false;
+    }
+    Type type = setter.getType();
+    Object value = decodeValue(rawValue, type);
+    if (null == value && type instanceof Class && ((Class) type).isPrimitive()) {
+      return true;
+    }
+    setter.set(target, value);
+    return true;
+  }
+
+  /**
+   * decode LeanCloud typed value(Date/Bytes/GeoPoint/Pointer) without creating AVObject.
+   * @param rawValue json value.
+   * @return decoded value, pointer and other objects are kept as map.
+   */
+  public static Object decodeValue(Object rawValue) {
+    if (!(rawValue instanceof Map)) {
+      return rawValue;
+    }
+    Map<String, Object> map = (Map<String, Object>) rawValue;
+    Object type = map.get(KEY_TYPE);
+    if ("Date".equals(type)) {
+      return Utils.dateFromMap(map);
+    } else if ("Bytes".equals(type)) {
+      return Utils.dataFromMap(map);
+    } else if ("GeoPoint".equals(type)) {
+      return Utils.geoPointFromMap(map);
+    }
+    return map;
+  }
+
+  private static Object decodeValue(Object rawValue, Type type) {
+    if (null == rawValue) {
+      return null;
+    }
+    if (rawValue instanceof Map) {
+      Map<String, Object> map = (Map<String, Object>) rawValue;
+      Object valueType = map.get(KEY_TYPE);
+      if (String.class == type) {
+        if ("Date".equals(valueType)) {
+          return map.get("iso");
+        } else if ("Pointer".equals(valueType) || "Object".equals(valueType)) {
+          return map.get("objectId");
+        } else if ("File".equals(valueType)) {
+          return map.get("url");
+        }
+      }
+      Object decoded = decodeValue(map);
+      if (decoded != map) {
+        if (type instanceof Class && ((Class) type).isInstance(decoded)) {
+          return decoded;
+        }
+        if (decoded instanceof Date && (Long.class == type || long.class == type)) {
+          return ((Date) decoded).getTime();
+        }
+        rawValue = decoded;
+      }
+    } else if (rawValue instanceof String && Date.class == type) {
+      return StringUtil.dateFromString((String) rawValue);
+    }
+    if (Object.class == type || (type instanceof Class && ((Class) type).isInstance(rawValue))) {
+      return rawValue;
+    }
+    if (AVGeoPoint.class == type) {
+      LOGGER.w("unexpected value for GeoPoint: " + rawValue);
+      return null;
+    }
+    return TypeUtils.cast(rawValue, type, ParserConfig.getGlobalInstance());
+  }
+}
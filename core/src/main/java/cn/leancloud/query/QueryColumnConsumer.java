@@ -0,0 +1,27 @@
+package cn.leancloud.query;
+
+/**
+ * Column-oriented consumer of query results, which receives values row by row without
+ * creating any intermediate object.
+ */
+public interface QueryColumnConsumer {
+  /**
+   * notified before the first column of a row.
+   * @param row row index(begin with 0).
+   */
+  void onRowStart(int row);
+
+  /**
+   * notified for every column of current row.
+   * @param row row index.
+   * @param column column name.
+   * @param value column value, Date/Bytes/GeoPoint are decoded, Pointer and other objects are kept as Map.
+   */
+  void onColumn(int row, String column, Object value);
+
+  /**
+   * notified after the last column of a row.
+   * @param row row index.
+   */
+  void onRowEnd(int row);
+}
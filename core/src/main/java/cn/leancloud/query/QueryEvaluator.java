@@ -0,0 +1,573 @@
+package cn.leancloud.query;
+
+import cn.leancloud.AVObject;
+import cn.leancloud.Transformer;
+import cn.leancloud.ops.Utils;
+import cn.leancloud.types.AVGeoPoint;
+import cn.leancloud.utils.AVUtils;
+import cn.leancloud.utils.StringUtil;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * In-process evaluator of QueryConditions.
+ *
+ * The where-tree is compiled only once into matchers(predicate) and a comparator, then can be
+ * applied to any collection of AVObjects without round-trip to server.
+ * Supported operators: equal, $ne, $lt, $lte, $gt, $gte, $in, $nin, $all, $size, $exists,
+ * $regex/$options, $nearSphere(with max/min distance), $within($box), $or and $and.
+ * Sub-queries($inQuery, $select, $relatedTo, etc.) need server data, so compile() throws
+ * UnsupportedOperationException for them.
+ */
+public class QueryEvaluator {
+  private static final String KEY_TYPE = "__type";
+  private static final double KM_PER_MILE = 1.609344;
+
+  public interface Matcher {
+    boolean matches(AVObject object);
+  }
+
+  private final Matcher matcher;
+  private final Comparator<AVObject> comparator;
+  private final int skip;
+  private final int limit;
+  private final Set<String> selectedKeys;
+
+  private QueryEvaluator(Matcher matcher, Comparator<AVObject> comparator, int skip, int limit,
+                         Set<String> selectedKeys) {
+    this.matcher = matcher;
+    this.comparator = comparator;
+    this.skip = skip;
+    this.limit = limit;
+    this.selectedKeys = selectedKeys;
+  }
+
+  /**
+   * compile query conditions.
+   * @param conditions query conditions.
+   * @return evaluator instance.
+   * @throws UnsupportedOperationException if conditions contain operator which can not be evaluated locally.
+   */
+  public static QueryEvaluator compile(QueryConditions conditions) {
+    Map<String, Object> where = conditions.compileWhereOperationMap();
+    List<GeoDistance> nearPoints = new ArrayList<GeoDistance>();
+    Matcher matcher = compileWhere(where, nearPoints);
+    Comparator<AVObject> comparator = compileOrder(conditions.getOrder());
+    if (null == comparator && !nearPoints.isEmpty()) {
+      // results of $nearSphere are sorted by distance as default.
+      comparator = nearPoints.get(0);
+    }
+    Set<String> selectedKeys = null;
+    if (null != conditions.getSelectedKeys() && !conditions.getSelectedKeys().isEmpty()) {
+      selectedKeys = new HashSet<String>();
+      for (String key : conditions.getSelectedKeys()) {
+        int dot = key.indexOf('.');
+        selectedKeys.add(dot > 0 ? key.substring(0, dot) : key);
+      }
+      selectedKeys.add(AVObject.KEY_OBJECT_ID);
+      selectedKeys.add(AVObject.KEY_CREATED_AT);
+      selectedKeys.add(AVObject.KEY_UPDATED_AT);
+    }
+    return new QueryEvaluator(matcher, comparator, conditions.getSkip(), conditions.getLimit(), selectedKeys);
+  }
+
+  /**
+   * test object against where conditions.
+   * @param object target object.
+   * @return true if matched.
+   */
+  public boolean matches(AVObject object) {
+    return null != object && matcher.matches(object);
+  }
+
+  /**
+   * evaluate query(where/order/skip/limit/selectKeys) against objects.
+   * @param objects source objects, which will not be changed.
+   * @param <T> template type.
+   * @return matched objects.
+   */
+  public <T extends AVObject> List<T> evaluate(Collection<T> objects) {
+    List<T> result = new ArrayList<T>();
+    if (null == objects) {
+      return result;
+    }
+    for (T object : objects) {
+      if (matches(object)) {
+        result.add(object);
+      }
+    }
+    if (null != comparator) {
+      Collections.sort(result, comparator);
+    }
+    int from = Math.max(0, skip);
+    if (from >= result.size()) {
+      return new ArrayList<T>();
+    }
+    int to = limit > 0 ? Math.min(result.size(), from + limit) : result.size();
+    result = new ArrayList<T>(result.subList(from, to));
+    if (null != selectedKeys) {
+      for (int i = 0; i < result.size(); i++) {
+        result.set(i, (T) project(result.get(i)));
+      }
+    }
+    return result;
+  }
+
+  private AVObject project(AVObject object) {
+    Map<String, Object> data = new HashMap<String, Object>();
+    for (Map.Entry<String, Object> entry : object.getServerData().entrySet()) {
+      if (selectedKeys.contains(entry.getKey())) {
+        data.put(entry.getKey(), entry.getValue());
+      }
+    }
+    AVObject result = Transformer.objectFromClassName(object.getClassName());
+    result.resetServerData(data);
+    return result;
+  }
+
+  /**
+   * where compile.
+   */
+  private static Matcher compileWhere(Map<String, Object> where, List<GeoDistance> nearPoints) {
+    final List<Matcher> matchers = new ArrayList<Matcher>();
+    for (Map.Entry<String, Object> entry : where.entrySet()) {
+      String key = entry.getKey();
+      Object value = entry.getValue();
+      if (QueryOperation.OR_OP.equals(key)) {
+        final List<Matcher> subMatchers = compileSubQueries(value, nearPoints);
+        matchers.add(new Matcher() {
+          public boolean matches(AVObject object) {
+            for (Matcher m : subMatchers) {
+              if (m.matches(object)) {
+                return true;
+              }
+            }
+            return false;
+          }
+        });
+      } else if (QueryOperation.AND_OP.equals(key)) {
+        matchers.addAll(compileSubQueries(value, nearPoints));
+      } else if (key.startsWith("$")) {
+        throw new UnsupportedOperationException("unsupported operator: " + key);
+      } else if (isOperatorMap(value)) {
+        matchers.addAll(compileOperators(key, (Map<String, Object>) value, nearPoints));
+      } else {
+        final String field = key;
+        final Object expected = normalize(value);
+        matchers.add(new Matcher() {
+          public boolean matches(AVObject object) {
+            return valueEquals(fieldValue(object, field), expected);
+          }
+        });
+      }
+    }
+    if (matchers.size() == 1) {
+      return matchers.get(0);
+    }
+    return new Matcher() {
+      public boolean matches(AVObject object) {
+        for (Matcher m : matchers) {
+          if (!m.matches(object)) {
+            return false;
+          }
+        }
+        return true;
+      }
+    };
+  }
+
+  private static List<Matcher> compileSubQueries(Object value, List<GeoDistance> nearPoints) {
+    List<Matcher> result = new ArrayList<Matcher>();
+    if (value instanceof Map) {
+      result.add(compileWhere((Map<String, Object>) value, nearPoints));
+    } else if (value instanceof Collection) {
+      for (Object item : (Collection) value) {
+        result.add(compileWhere((Map<String, Object>) item, nearPoints));
+      }
+    }
+    return result;
+  }
+
+  private static boolean isOperatorMap(Object value) {
+    if (!(value instanceof Map) || ((Map) value).isEmpty()) {
+      return false;
+    }
+    for (Object k : ((Map) value).keySet()) {
+      if (!(k instanceof String) || !((String) k).startsWith("$")) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static List<Matcher> compileOperators(final String field, Map<String, Object> operators,
+                                                List<GeoDistance> nearPoints) {
+    List<Matcher> result = new ArrayList<Matcher>();
+    for (Map.Entry<String, Object> entry : operators.entrySet()) {
+      final String op = entry.getKey();
+      final Object operand = normalize(entry.getValue());
+      if ("$ne".equals(op)) {
+        result.add(new Matcher() {
+          public boolean matches(AVObject object) {
+            return !valueEquals(fieldValue(object, field), operand);
+          }
+        });
+      } else if ("$lt".equals(op)) {
+        result.add(new Comparison(field, operand) {
+          boolean accept(int c) {
+            return c < 0;
+          }
+        });
+      } else if ("$lte".equals(op)) {
+        result.add(new Comparison(field, operand) {
+          boolean accept(int c) {
+            return c <= 0;
+          }
+        });
+      } else if ("$gt".equals(op)) {
+        result.add(new Comparison(field, operand) {
+          boolean accept(int c) {
+            return c > 0;
+          }
+        });
+      } else if ("$gte".equals(op)) {
+        result.add(new Comparison(field, operand) {
+          boolean accept(int c) {
+            return c >= 0;
+          }
+        });
+      } else if ("$in".equals(op) || "$nin".equals(op)) {
+        final List<Object> candidates = normalizeList(operand);
+        final boolean expected = "$in".equals(op);
+        result.add(new Matcher() {
+          public boolean matches(AVObject object) {
+            Object actual = fieldValue(object, field);
+            for (Object candidate : candidates) {
+              if (valueEquals(actual, candidate)) {
+                return expected;
+              }
+            }
+            return !expected;
+          }
+        });
+      } else if ("$all".equals(op)) {
+        final List<Object> candidates = normalizeList(operand);
+        result.add(new Matcher() {
+          public boolean matches(AVObject object) {
+            Object actual = fieldValue(object, field);
+            if (!(actual instanceof Collection)) {
+              return false;
+            }
+            for (Object candidate : candidates) {
+              if (!valueEquals(actual, candidate)) {
+                return false;
+              }
+            }
+            return true;
+          }
+        });
+      } else if ("$size".equals(op)) {
+        final int size = ((Number) operand).intValue();
+        result.add(new Matcher() {
+          public boolean matches(AVObject object) {
+            Object actual = fieldValue(object, field);
+            return actual instanceof Collection && ((Collection) actual).size() == size;
+          }
+        });
+      } else if ("$exists".equals(op)) {
+        final boolean expected = Boolean.TRUE.equals(operand);
+        result.add(new Matcher() {
+          public boolean matches(AVObject object) {
+            return expected == (null != fieldValue(object, field));
+          }
+        });
+      } else if ("$regex".equals(op)) {
+        String options = (String) operators.get("$options");
+        int flags = 0;
+        if (null != options) {
+          if (options.contains("i")) {
+            flags |= Pattern.CASE_INSENSITIVE;
+          }
+          if (options.contains("m")) {
+            flags |= Pattern.MULTILINE;
+          }
+          if (options.contains("s")) {
+            flags |= Pattern.DOTALL;
+          }
+          if (options.contains("x")) {
+            flags |= Pattern.COMMENTS;
+          }
+        }
+        final Pattern pattern = Pattern.compile((String) operand, flags);
+        result.add(new Matcher() {
+          public boolean matches(AVObject object) {
+            Object actual = fieldValue(object, field);
+            return actual instanceof String && pattern.matcher((String) actual).find();
+          }
+        });
+      } else if ("$options".equals(op)) {
+        // handled by $regex.
+      } else if ("$nearSphere".equals(op)) {
+        GeoDistance distance = new GeoDistance(field, (AVGeoPoint) operand, operators);
+        nearPoints.add(distance);
+        result.add(distance);
+      } else if (op.startsWith("$maxDistance") || op.startsWith("$minDistance")) {
+        // handled by $nearSphere.
+      } else if ("$within".equals(op)) {
+        List<Object> box = normalizeList(((Map<String, Object>) entry.getValue()).get("$box"));
+        final AVGeoPoint southwest = (AVGeoPoint) box.get(0);
+        final AVGeoPoint northeast = (AVGeoPoint) box.get(1);
+        result.add(new Matcher() {
+          public boolean matches(AVObject object) {
+            Object actual = fieldValue(object, field);
+            if (!(actual instanceof AVGeoPoint)) {
+              return false;
+            }
+            AVGeoPoint point = (AVGeoPoint) actual;
+            return point.getLatitude() >= southwest.getLatitude() && point.getLatitude() <= northeast.getLatitude()
+                    && point.getLongitude() >= southwest.getLongitude() && point.getLongitude() <= northeast.getLongitude();
+          }
+        });
+      } else {
+        throw new UnsupportedOperationException("unsupported operator: " + op);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * comparison operator, which is chosen at compile time.
+   */
+  abstract static class Comparison implements Matcher {
+    private final String field;
+    private final Object operand;
+
+    Comparison(String field, Object operand) {
+      this.field = field;
+      this.operand = operand;
+    }
+
+    abstract boolean accept(int c);
+
+    public boolean matches(AVObject object) {
+      Integer c = compareValues(fieldValue(object, field), operand);
+      return null != c && accept(c);
+    }
+  }
+
+  static class GeoDistance implements Matcher, Comparator<AVObject> {
+    private final String field;
+    private final AVGeoPoint center;
+    private final double maxRadians;
+    private final double minRadians;
+
+    GeoDistance(String field, AVGeoPoint center, Map<String, Object> operators) {
+      this.field = field;
+      this.center = center;
+      this.maxRadians = radians(operators, "$maxDistance", Double.MAX_VALUE);
+      this.minRadians = radians(operators, "$minDistance", -1);
+    }
+
+    private static double radians(Map<String, Object> operators, String prefix, double defaultValue) {
+      Object value = operators.get(prefix + "InRadians");
+      if (value instanceof Number) {
+        return ((Number) value).doubleValue();
+      }
+      value = operators.get(prefix + "InKilometers");
+      if (value instanceof Number) {
+        return ((Number) value).doubleValue() / AVUtils.earthMeanRadiusInKM;
+      }
+      value = operators.get(prefix + "InMiles");
+      if (value instanceof Number) {
+        return ((Number) value).doubleValue() * KM_PER_MILE / AVUtils.earthMeanRadiusInKM;
+      }
+      return defaultValue;
+    }
+
+    private double distance(AVObject object) {
+      Object actual = fieldValue(object, field);
+      if (!(actual instanceof AVGeoPoint)) {
+        return Double.MAX_VALUE;
+      }
+      // haversine formula, AVGeoPoint.distanceInKilometersTo is not used since its unit is meter.
+      AVGeoPoint point = (AVGeoPoint) actual;
+      double latDistance = Math.toRadians(point.getLatitude() - center.getLatitude());
+      double lonDistance = Math.toRadians(point.getLongitude() - center.getLongitude());
+      double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
+              + Math.cos(Math.toRadians(center.getLatitude())) * Math.cos(Math.toRadians(point.getLatitude()))
+              * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
+      return 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    public boolean matches(AVObject object) {
+      double d = distance(object);
+      return d != Double.MAX_VALUE && d <= maxRadians && d >= minRadians;
+    }
+
+    public int compare(AVObject o1, AVObject o2) {
+      return Double.compare(distance(o1), distance(o2));
+    }
+  }
+
+  /**
+   * order compile.
+   */
+  private static Comparator<AVObject> compileOrder(String order) {
+    if (StringUtil.isEmpty(order)) {
+      return null;
+    }
+    final List<String> fields = new ArrayList<String>();
+    final List<Boolean> descending = new ArrayList<Boolean>();
+    for (String item : order.split(",")) {
+      item = item.trim();
+      if (item.isEmpty()) {
+        continue;
+      }
+      boolean desc = item.startsWith("-");
+      fields.add(desc ? item.substring(1) : item);
+      descending.add(desc);
+    }
+    if (fields.isEmpty()) {
+      return null;
+    }
+    return new Comparator<AVObject>() {
+      public int compare(AVObject o1, AVObject o2) {
+        for (int i = 0; i < fields.size(); i++) {
+          Object v1 = fieldValue(o1, fields.get(i));
+          Object v2 = fieldValue(o2, fields.get(i));
+          int c;
+          if (null == v1 || null == v2) {
+            c = (null == v1 ? 0 : 1) - (null == v2 ? 0 : 1);
+          } else {
+            Integer tmp = compareValues(v1, v2);
+            c = null == tmp ? 0 : tmp;
+          }
+          if (c != 0) {
+            return descending.get(i) ? -c : c;
+          }
+        }
+        return 0;
+      }
+    };
+  }
+
+  /**
+   * value helpers.
+   */
+  static Object fieldValue(AVObject object, String field) {
+    if (null == object) {
+      return null;
+    }
+    int dot = field.indexOf('.');
+    if (dot > 0) {
+      Object parent = fieldValue(object, field.substring(0, dot));
+      String child = field.substring(dot + 1);
+      if (parent instanceof AVObject) {
+        return fieldValue((AVObject) parent, child);
+      } else if (parent instanceof Map) {
+        return normalize(((Map) parent).get(child));
+      }
+      return null;
+    }
+    if (AVObject.KEY_CREATED_AT.equals(field)) {
+      return object.getCreatedAt();
+    } else if (AVObject.KEY_UPDATED_AT.equals(field)) {
+      return object.getUpdatedAt();
+    } else if (AVObject.KEY_OBJECT_ID.equals(field)) {
+      return StringUtil.isEmpty(object.getObjectId()) ? null : object.getObjectId();
+    }
+    return normalize(object.get(field));
+  }
+
+  private static List<Object> normalizeList(Object value) {
+    List<Object> result = new ArrayList<Object>();
+    if (value instanceof Collection) {
+      for (Object item : (Collection) value) {
+        result.add(normalize(item));
+      }
+    } else if (value instanceof Object[]) {
+      for (Object item : (Object[]) value) {
+        result.add(normalize(item));
+      }
+    } else if (null != value) {
+      result.add(value);
+    }
+    return result;
+  }
+
+  /**
+   * convert pointer/date/geopoint to comparable form: objectId/Date/AVGeoPoint.
+   */
+  static Object normalize(Object value) {
+    if (value instanceof AVObject) {
+      return ((AVObject) value).getObjectId();
+    }
+    if (value instanceof Map) {
+      Map<String, Object> map = (Map<String, Object>) value;
+      Object type = map.get(KEY_TYPE);
+      if ("Pointer".equals(type) || "Object".equals(type)) {
+        return map.get(AVObject.KEY_OBJECT_ID);
+      } else if ("Date".equals(type)) {
+        return Utils.dateFromMap(map);
+      } else if ("GeoPoint".equals(type)) {
+        return Utils.geoPointFromMap(map);
+      }
+      return value;
+    }
+    if (value instanceof Collection && !(value instanceof List)) {
+      return normalizeList(value);
+    }
+    if (value instanceof List) {
+      List<Object> list = (List<Object>) value;
+      for (Object item : list) {
+        if (item instanceof AVObject || item instanceof Map) {
+          return normalizeList(value);
+        }
+      }
+    }
+    return value;
+  }
+
+  static boolean valueEquals(Object actual, Object expected) {
+    if (null == actual || null == expected) {
+      return actual == expected;
+    }
+    if (actual instanceof Number && expected instanceof Number) {
+      return Double.compare(((Number) actual).doubleValue(), ((Number) expected).doubleValue()) == 0;
+    }
+    if (actual instanceof AVGeoPoint && expected instanceof AVGeoPoint) {
+      return ((AVGeoPoint) actual).getLatitude() == ((AVGeoPoint) expected).getLatitude()
+              && ((AVGeoPoint) actual).getLongitude() == ((AVGeoPoint) expected).getLongitude();
+    }
+    if (actual instanceof Collection && !(expected instanceof Collection)) {
+      // array field matches if any element equals to expected value.
+      for (Object item : (Collection) actual) {
+        if (valueEquals(item, expected)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    return actual.equals(expected);
+  }
+
+  static Integer compareValues(Object left, Object right) {
+    if (null == left || null == right) {
+      return null;
+    }
+    if (left instanceof Number && right instanceof Number) {
+      return Double.compare(((Number) left).doubleValue(), ((Number) right).doubleValue());
+    }
+    if (left instanceof Date && right instanceof Date) {
+      return ((Date) left).compareTo((Date) right);
+    }
+    if (left instanceof String && right instanceof String) {
+      return ((String) left).compareTo((String) right);
+    }
+    if (left instanceof Boolean && right instanceof Boolean) {
+      return ((Boolean) left).compareTo((Boolean) right);
+    }
+    return null;
+  }
+}
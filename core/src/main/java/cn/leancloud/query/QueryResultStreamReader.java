@@ -0,0 +1,111 @@
+package cn.leancloud.query;
+
+import cn.leancloud.AVObject;
+import com.alibaba.fastjson.JSONReader;
+import io.reactivex.functions.Consumer;
+
+import java.io.Reader;
+
+/**
+ * Incremental reader of query response({"results": [...]}), which decodes rows one by one
+ * from the response stream instead of building the whole json tree at first.
+ */
+public class QueryResultStreamReader {
+  private static final String KEY_RESULTS = "results";
+
+  interface RowReader {
+    void readRow(JSONReader reader, int row) throws Exception;
+  }
+
+  private QueryResultStreamReader() {
+  }
+
+  static int readResults(Reader source, RowReader rowReader) throws Exception {
+    JSONReader reader = new JSONReader(source);
+    try {
+      int count = 0;
+      reader.startObject();
+      while (reader.hasNext()) {
+        String key = reader.readString();
+        if (KEY_RESULTS.equals(key)) {
+          reader.startArray();
+          while (reader.hasNext()) {
+            rowReader.readRow(reader, count);
+            count++;
+          }
+          reader.endArray();
+        } else {
+          // skip other attributes, such as count/className.
+          reader.readObject();
+        }
+      }
+      reader.endObject();
+      return count;
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * decode every row to specified class.
+   * @param source response content.
+   * @param mapping projection mapping.
+   * @param consumer row consumer.
+   * @param <T> template type.
+   * @return row count.
+   * @throws Exception if response is malformed or consumer failed.
+   */
+  public static <T> int readProjection(Reader source, final ProjectionMapping<T> mapping,
+                                       final Consumer<T> consumer) throws Exception {
+    return readResults(source, new RowReader() {
+      public void readRow(JSONReader reader, int row) throws Exception {
+        T target = mapping.newInstance();
+        reader.startObject();
+        while (reader.hasNext()) {
+          String column = reader.readString();
+          mapping.set(target, column, reader.readObject());
+        }
+        reader.endObject();
+        consumer.accept(target);
+      }
+    });
+  }
+
+  /**
+   * decode every row to AVObject.
+   * @param source response content.
+   * @param consumer object consumer.
+   * @return row count.
+   * @throws Exception if response is malformed or consumer failed.
+   */
+  public static int readObjects(Reader source, final Consumer<AVObject> consumer)
+          throws Exception {
+    return readResults(source, new RowReader() {
+      public void readRow(JSONReader reader, int row) throws Exception {
+        consumer.accept(reader.readObject(AVObject.class));
+      }
+    });
+  }
+
+  /**
+   * send every column to consumer.
+   * @param source response content.
+   * @param consumer column consumer.
+   * @return row count.
+   * @throws Exception if response is malformed or consumer failed.
+   */
+  public static int readColumns(Reader source, final QueryColumnConsumer consumer) throws Exception {
+    return readResults(source, new RowReader() {
+      public void readRow(JSONReader reader, int row) throws Exception {
+        consumer.onRowStart(row);
+        reader.startObject();
+        while (reader.hasNext()) {
+          String column = reader.readString();
+          consumer.onColumn(row, column, ProjectionMapping.decodeValue(reader.readObject()));
+        }
+        reader.endObject();
+        consumer.onRowEnd(row);
+      }
+    });
+  }
+}
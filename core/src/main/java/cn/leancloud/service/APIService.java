@@ -9,6 +9,7 @@ import cn.leancloud.types.AVDate;
 import cn.leancloud.types.AVNull;
 import cn.leancloud.upload.FileUploadToken;
 import io.reactivex.Observable;
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.http.*;
 
@@ -28,6 +29,10 @@ public interface APIService {
   @GET("/1.1/classes/{className}")
   Observable<AVQueryResult> queryObjects(@Path("className") String className, @QueryMap Map<String, String> query);
 
+  @Streaming
+  @GET("/1.1/classes/{className}")
+  Observable<ResponseBody> queryObjectsStream(@Path("className") String className, @QueryMap Map<String, String> query);
+
   @GET("/1.1/cloudQuery")
   Observable<AVQueryResult> cloudQuery(@QueryMap Map<String, String> query);
 
@@ -135,6 +140,10 @@ public interface APIService {
   @GET("/1.1/users")
   Observable<AVQueryResult> queryUsers(@QueryMap Map<String, String> query);
 
+  @Streaming
+  @GET("/1.1/users")
+  Observable<ResponseBody> queryUsersStream(@QueryMap Map<String, String> query);
+
   @POST("/1.1/usersByMobilePhone")
   Observable<AVUser> signupByMobilePhone(@Body JSONObject object);
 
@@ -0,0 +1,53 @@
+package cn.leancloud.service;
+
+import cn.leancloud.AVObject;
+import cn.leancloud.query.AVQueryResult;
+import cn.leancloud.types.AVNull;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import retrofit2.Call;
+import retrofit2.http.*;
+
+import java.util.Map;
+
+/**
+ * Storage endpoints returning raw Retrofit Call, which are enqueued to OkHttp directly by AsyncStorageClient.
+ * Paths and parameters are the same as APIService.
+ */
+public interface AsyncAPIService {
+  @GET("/1.1/classes/{className}")
+  Call<AVQueryResult> queryObjects(@Path("className") String className, @QueryMap Map<String, String> query);
+
+  @GET("/1.1/users")
+  Call<AVQueryResult> queryUsers(@QueryMap Map<String, String> query);
+
+  @GET("/1.1/classes/{className}/{objectId}")
+  Call<AVObject> fetchObject(@Path("className") String className, @Path("objectId") String objectId,
+                             @Query("include") String includeKeys);
+
+  @POST("/1.1/classes/{className}")
+  Call<AVObject> createObject(@Path("className") String className, @Body JSONObject object,
+                              @Query("fetchWhenSave") boolean fetchFlag,
+                              @Query("where") JSONObject where);
+
+  @PUT("/1.1/classes/{className}/{objectId}")
+  Call<AVObject> updateObject(@Path("className") String className, @Path("objectId") String objectId,
+                              @Body JSONObject object, @Query("fetchWhenSave") boolean fetchFlag,
+                              @Query("where") JSONObject where);
+
+  @HTTP(method = "DELETE", path = "/1.1/classes/{className}/{objectId}", hasBody = true)
+  Call<AVNull> deleteObject(@Path("className") String className, @Path("objectId") String objectId,
+                            @Body Map<String, Object> param);
+
+  @POST("/1.1/batch")
+  Call<JSONArray> batchCreate(@Body JSONObject param);
+
+  @POST("/1.1/batch/save")
+  Call<JSONObject> batchUpdate(@Body JSONObject param);
+
+  @POST("/1.1/functions/{name}")
+  Call<Map<String, Object>> cloudFunction(@Path("name") String functionName, @Body Map<String, Object> param);
+
+  @POST("/1.1/call/{name}")
+  Call<Map<String, Object>> cloudRPC(@Path("name") String functionName, @Body Object param);
+}
@@ -3,92 +3,380 @@ package cn.leancloud.upload;
 import cn.leancloud.AVException;
 import cn.leancloud.AVLogger;
 import cn.leancloud.cache.PersistenceUtil;
-import cn.leancloud.core.PaasClient;
 import cn.leancloud.utils.LogUtil;
 import cn.leancloud.utils.StringUtil;
-import okhttp3.Headers;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 import java.io.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 
+/**
+ * Download remote file into local cache.
+ *
+ * Downloads are deduplicated per cache file, data is written into a temporary file which is
+ * renamed to cache file after completed, and interrupted download is resumed with http Range request.
+ */
 public class FileDownloader {
   private static final AVLogger gLogger = LogUtil.getLogger(FileDownloader.class);
 
   private static final int READ_BUF_SIZE = 1024*8;
+  static final String TEMP_SUFFIX = ".tmp";
+  static final String VALIDATOR_SUFFIX = ".validator";
 
-  public AVException execute(final String url, File localFile) {
+  private static final int HTTP_PARTIAL_CONTENT = 206;
+  private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+  private static final ConcurrentMap<String, FutureTask<AVException>> inflightDownloads =
+          new ConcurrentHashMap<String, FutureTask<AVException>>();
+
+  private static class HttpClientHolder {
+    private static final OkHttpClient CLIENT = new OkHttpClient.Builder()
+            .connectTimeout(15, TimeUnit.SECONDS)
+            .readTimeout(10, TimeUnit.SECONDS)
+            .writeTimeout(10, TimeUnit.SECONDS)
+            .build();
+  }
+
+  static OkHttpClient getHttpClient() {
+    return HttpClientHolder.CLIENT;
+  }
+
+  /**
+   * download url into localFile. concurrent calls for the same file share one download.
+   * @param url remote url.
+   * @param localFile cache file.
+   * @return null if succeed, otherwise the error.
+   */
+  public AVException execute(final String url, final File localFile) {
     if (StringUtil.isEmpty(url)) {
       return new AVException(new IllegalArgumentException("url is null"));
     }
+    if (null == localFile) {
+      return new AVException(new IllegalArgumentException("local file is null"));
+    }
     if (localFile.exists()) {
-      return new AVException(new FileNotFoundException("local file is not existed."));
+      return null;
+    }
+    String key = localFile.getAbsolutePath();
+    FutureTask<AVException> task = new FutureTask<AVException>(new Callable<AVException>() {
+      @Override
+      public AVException call() throws Exception {
+        if (localFile.exists()) {
+          return null;
+        }
+        return downloadFileFromNetwork(url, localFile);
+      }
+    });
+    FutureTask<AVException> existed = inflightDownloads.putIfAbsent(key, task);
+    if (null != existed) {
+      gLogger.d("wait for downloading in progress. url=" + url);
+      return waitFor(existed);
+    }
+    try {
+      task.run();
+      return waitFor(task);
+    } finally {
+      inflightDownloads.remove(key, task);
     }
-    return downloadFileFromNetwork(url, localFile);
   }
 
-  private OkHttpClient getHttpClient() {
-    return new OkHttpClient.Builder()
-            .connectTimeout(15, TimeUnit.SECONDS)
-            .readTimeout(10, TimeUnit.SECONDS)
-            .writeTimeout(10, TimeUnit.SECONDS)
-            .build();
+  /**
+   * open data stream of url. if local file is not cached yet, data is read from network directly and
+   * written into cache file at the same time.
+   * @param url remote url.
+   * @param localFile cache file, null if local cache is disabled.
+   * @return data stream.
+   * @throws IOException for io problem.
+   */
+  public InputStream openStream(final String url, final File localFile) throws IOException {
+    if (StringUtil.isEmpty(url)) {
+      throw new IllegalArgumentException("url is null");
+    }
+    if (null != localFile) {
+      FutureTask<AVException> existed = inflightDownloads.get(localFile.getAbsolutePath());
+      if (null != existed) {
+        waitFor(existed);
+      }
+      if (localFile.exists()) {
+        return PersistenceUtil.getInputStreamFromFile(localFile);
+      }
+    }
+    Response response = getHttpClient().newCall(new Request.Builder().url(url).build()).execute();
+    ResponseBody body = response.body();
+    if (!response.isSuccessful() || null == body) {
+      response.close();
+      throw new IOException("status code is invalid: " + response.code());
+    }
+    if (null == localFile) {
+      return body.byteStream();
+    }
+    File teeFile = null;
+    OutputStream teeOutput = null;
+    try {
+      File parent = localFile.getAbsoluteFile().getParentFile();
+      teeFile = File.createTempFile(localFile.getName(), TEMP_SUFFIX, parent);
+      teeOutput = new FileOutputStream(teeFile, false);
+    } catch (IOException ex) {
+      gLogger.w("failed to create temp file, skip to save network streaming to local cache. cause: "
+              + ex.getMessage());
+      if (null != teeFile) {
+        teeFile.delete();
+      }
+      return body.byteStream();
+    }
+    return new TeeInputStream(body.byteStream(), body.contentLength(), teeOutput, teeFile, localFile);
+  }
+
+  private static AVException waitFor(FutureTask<AVException> task) {
+    try {
+      return task.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return new AVException(ex);
+    } catch (ExecutionException ex) {
+      return new AVException(ex.getCause());
+    }
   }
 
   private AVException downloadFileFromNetwork(final String url, File cacheFile) {
+    File tempFile = new File(cacheFile.getAbsolutePath() + TEMP_SUFFIX);
+    File validatorFile = new File(cacheFile.getAbsolutePath() + VALIDATOR_SUFFIX);
+
+    long resumeOffset = 0;
+    String validator = null;
+    if (tempFile.exists() && tempFile.length() > 0) {
+      validator = PersistenceUtil.sharedInstance().readContentFromFile(validatorFile);
+      if (!StringUtil.isEmpty(validator)) {
+        resumeOffset = tempFile.length();
+      }
+    }
 
-    AVException errors = null;
     Request.Builder requestBuilder = new Request.Builder();
     requestBuilder.url(url);
+    if (resumeOffset > 0) {
+      // If-Range makes server send whole content again if remote file was changed.
+      requestBuilder.header("Range", "bytes=" + resumeOffset + "-");
+      requestBuilder.header("If-Range", validator);
+      gLogger.d("resume downloading from offset " + resumeOffset + ". url=" + url);
+    }
 
-    OkHttpClient client = getHttpClient();
+    Response response = null;
     try {
-      Response response = client.newCall(requestBuilder.build()).execute();
+      response = getHttpClient().newCall(requestBuilder.build()).execute();
       int statusCode = response.code();
-      InputStream data = response.body().byteStream();
-      if (statusCode / 100 == 2 && null != data) {
-        // read data from InputStream and save to cache File
-        byte[] content = new byte[READ_BUF_SIZE];
-
-        FileOutputStream out = null;
-        Lock writeLock = PersistenceUtil.sharedInstance().getLock(cacheFile.getAbsolutePath()).writeLock();
-        if (writeLock.tryLock()) {
-          try {
-            out = new FileOutputStream(cacheFile, false);
-            int currentReadSize = data.read(content);
-            while (currentReadSize > 0) {
-              out.write(content, 0, currentReadSize);
-              currentReadSize = data.read(content);
-            }
-          } catch (Exception e) {
-            gLogger.w(e);
-            errors = new AVException(e);
-          } finally {
-            try {
-              data.close();
-            } catch (IOException e) {
-            }
-            if (out != null) {
-              try {
-                out.close();
-              } catch (IOException e) {
-              }
-            }
-            writeLock.unlock();
-          }
+      ResponseBody body = response.body();
+      if (statusCode == HTTP_RANGE_NOT_SATISFIABLE && resumeOffset > 0) {
+        // temp file is broken or larger than remote file.
+        discardTempFile(tempFile, validatorFile);
+        response.close();
+        return downloadFileFromNetwork(url, cacheFile);
+      }
+      if (statusCode / 100 != 2 || null == body) {
+        AVException error = new AVException(statusCode, "status code is invalid");
+        gLogger.w(error);
+        return error;
+      }
+      boolean append = resumeOffset > 0 && statusCode == HTTP_PARTIAL_CONTENT;
+      if (!append) {
+        resumeOffset = 0;
+        String newValidator = getValidator(response);
+        if (StringUtil.isEmpty(newValidator)) {
+          validatorFile.delete();
         } else {
-          gLogger.w("failed to lock writeLocker, skip to save network streaming to local cache.");
+          PersistenceUtil.sharedInstance().saveContentToFile(newValidator, validatorFile);
         }
-      } else {
-        errors = new AVException(statusCode, "status code is invalid");
-        gLogger.w(errors);
       }
+
+      long expectedLength = body.contentLength() < 0 ? -1 : resumeOffset + body.contentLength();
+      InputStream data = body.byteStream();
+      OutputStream out = new FileOutputStream(tempFile, append);
+      try {
+        byte[] content = new byte[READ_BUF_SIZE];
+        int currentReadSize = data.read(content);
+        while (currentReadSize > 0) {
+          out.write(content, 0, currentReadSize);
+          currentReadSize = data.read(content);
+        }
+      } finally {
+        try {
+          out.close();
+        } catch (IOException e) {
+        }
+      }
+      if (expectedLength >= 0 && tempFile.length() != expectedLength) {
+        return new AVException(new IOException("download is incomplete, expected " + expectedLength
+                + " bytes but got " + tempFile.length()));
+      }
+      if (!installCacheFile(tempFile, cacheFile)) {
+        return new AVException(new IOException("failed to move temp file to " + cacheFile.getAbsolutePath()));
+      }
+      validatorFile.delete();
+      return null;
     } catch (IOException ex) {
-      errors = new AVException(ex);
+      // keep temp file, so that next download can resume from here.
+      gLogger.w("failed to download file. cause: " + ex.getMessage());
+      return new AVException(ex);
+    } finally {
+      if (null != response) {
+        response.close();
+      }
+    }
+  }
+
+  private static String getValidator(Response response) {
+    String etag = response.header("ETag");
+    if (!StringUtil.isEmpty(etag) && !etag.startsWith("W/")) {
+      // weak etag is not allowed in If-Range.
+      return etag;
+    }
+    return response.header("Last-Modified");
+  }
+
+  private static void discardTempFile(File tempFile, File validatorFile) {
+    tempFile.delete();
+    validatorFile.delete();
+  }
+
+  static boolean installCacheFile(File tempFile, File cacheFile) {
+    if (tempFile.renameTo(cacheFile)) {
+      return true;
+    }
+    // some platforms can't rename to an existing file.
+    Lock writeLock = PersistenceUtil.sharedInstance().getLock(cacheFile.getAbsolutePath()).writeLock();
+    writeLock.lock();
+    try {
+      if (cacheFile.exists() && !cacheFile.delete()) {
+        return false;
+      }
+      return tempFile.renameTo(cacheFile);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * stream which returns network data to caller, and writes the same data to temp file,
+   * temp file is installed as cache file only if all data is consumed.
+   */
+  static class TeeInputStream extends FilterInputStream {
+    private final long expectedLength;
+    private final File tempFile;
+    private final File cacheFile;
+    private OutputStream teeOutput;
+    private long received = 0;
+    private boolean completed = false;
+
+    TeeInputStream(InputStream in, long expectedLength, OutputStream teeOutput, File tempFile, File cacheFile) {
+      super(in);
+      this.expectedLength = expectedLength;
+      this.teeOutput = teeOutput;
+      this.tempFile = tempFile;
+      this.cacheFile = cacheFile;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int result = super.read();
+      if (result < 0) {
+        onEnd();
+      } else {
+        tee(new byte[]{(byte) result}, 0, 1);
+      }
+      return result;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int count = super.read(b, off, len);
+      if (count < 0) {
+        onEnd();
+      } else {
+        tee(b, off, count);
+      }
+      return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      // skipped data has to be written into cache as well.
+      byte[] buffer = new byte[(int) Math.min(READ_BUF_SIZE, Math.max(n, 0))];
+      long skipped = 0;
+      while (skipped < n) {
+        int count = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+        if (count < 0) {
+          break;
+        }
+        skipped += count;
+      }
+      return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        if (!completed) {
+          abandon();
+        }
+      }
+    }
+
+    private void tee(byte[] b, int off, int len) {
+      if (null == teeOutput || len <= 0) {
+        return;
+      }
+      try {
+        teeOutput.write(b, off, len);
+        received += len;
+      } catch (IOException ex) {
+        gLogger.w("failed to write cache file, skip it. cause: " + ex.getMessage());
+        abandon();
+      }
+    }
+
+    private void onEnd() {
+      if (completed || null == teeOutput) {
+        return;
+      }
+      completed = true;
+      closeQuietly();
+      if (expectedLength >= 0 && received != expectedLength) {
+        tempFile.delete();
+        return;
+      }
+      if (!installCacheFile(tempFile, cacheFile)) {
+        tempFile.delete();
+      }
+    }
+
+    private void abandon() {
+      closeQuietly();
+      tempFile.delete();
+    }
+
+    private void closeQuietly() {
+      if (null != teeOutput) {
+        try {
+          teeOutput.close();
+        } catch (IOException e) {
+        }
+        teeOutput = null;
+      }
     }
-    return errors;
   }
 }
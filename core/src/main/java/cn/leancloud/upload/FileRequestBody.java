@@ -0,0 +1,79 @@
+package cn.leancloud.upload;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+/**
+ * Request body which streams a range of local file, so memory usage doesn't depend on file size.
+ * File is re-opened on every writeTo, so the body can be written again by retry.
+ */
+class FileRequestBody extends RequestBody {
+  private static final long SEGMENT_SIZE = 64 * 1024;
+
+  interface ProgressListener {
+    void onProgress(long bytesWritten, long contentLength);
+  }
+
+  private final MediaType contentType;
+  private final File file;
+  private final long offset;
+  private final long length;
+  private final ProgressListener listener;
+
+  FileRequestBody(MediaType contentType, File file, ProgressListener listener) {
+    this(contentType, file, 0, file.length(), listener);
+  }
+
+  FileRequestBody(MediaType contentType, File file, long offset, long length, ProgressListener listener) {
+    this.contentType = contentType;
+    this.file = file;
+    this.offset = offset;
+    this.length = length;
+    this.listener = listener;
+  }
+
+  @Override
+  public MediaType contentType() {
+    return contentType;
+  }
+
+  @Override
+  public long contentLength() {
+    return length;
+  }
+
+  @Override
+  public void writeTo(BufferedSink sink) throws IOException {
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+    Source source = null;
+    try {
+      FileChannel channel = randomAccessFile.getChannel();
+      channel.position(offset);
+      source = Okio.source(Channels.newInputStream(channel));
+      long written = 0;
+      while (written < length) {
+        long count = Math.min(SEGMENT_SIZE, length - written);
+        sink.write(source, count);
+        sink.emit();
+        written += count;
+        if (null != listener) {
+          listener.onProgress(written, length);
+        }
+      }
+    } finally {
+      if (null != source) {
+        source.close();
+      }
+      randomAccessFile.close();
+    }
+  }
+}
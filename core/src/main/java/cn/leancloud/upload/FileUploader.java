@@ -105,6 +105,14 @@ public class FileUploader extends HttpClientUploader {
     UPLOAD_HEADERS.put(key, value);
   }
 
+  /**
+   * set max count of blocks which are uploaded concurrently in slicing upload(qiniu).
+   * @param count concurrent block count, default is 3.
+   */
+  public static void setSlicingUploadConcurrency(int count) {
+    QiniuSlicingUploader.setConcurrency(count);
+  }
+
   public static interface FileUploadProgressCallback {
     void onProgress(int progress);
   }
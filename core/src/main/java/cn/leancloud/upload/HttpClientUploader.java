@@ -4,6 +4,7 @@ import cn.leancloud.AVException;
 import cn.leancloud.AVLogger;
 import cn.leancloud.callback.ProgressCallback;
 import cn.leancloud.AVFile;
+import cn.leancloud.core.RetryInterceptor;
 import cn.leancloud.network.DNSDetoxicant;
 import cn.leancloud.utils.LogUtil;
 import okhttp3.OkHttpClient;
@@ -11,6 +12,7 @@ import okhttp3.Request;
 import okhttp3.Response;
 
 import java.io.IOException;
+import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
 public abstract class HttpClientUploader implements Uploader {
@@ -32,6 +34,7 @@ public abstract class HttpClientUploader implements Uploader {
 //  private static final int MAX_POOL_SIZE = CPU_COUNT * 2 + 1;
 //  private static final long KEEP_ALIVE_TIME = 1L;
   protected static final int DEFAULT_RETRY_TIMES = 6;
+  private static final Random random = new Random();
 
 //  static {
 //    executor = new ThreadPoolExecutor(
@@ -54,20 +57,33 @@ public abstract class HttpClientUploader implements Uploader {
   }
 
   protected Response executeWithRetry(Request request, int retry) throws AVException {
-    if (retry > 0 && !isCancelled()) {
+    IOException lastError = null;
+    for (int attempt = 0; attempt < retry && !isCancelled(); attempt++) {
+      if (attempt > 0) {
+        try {
+          Thread.sleep(RetryInterceptor.backoffMillis(attempt - 1, random));
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
       try {
         Response response = getOKHttpClient().newCall(request).execute();
         if (response.code() / 100 == 2) {
           return response;
-        } else {
-          return executeWithRetry(request, retry - 1);
         }
+        logger.w("upload request failed. code=" + response.code() + ", attempt=" + attempt);
+        response.close();
       } catch (IOException e) {
-        return executeWithRetry(request, retry - 1);
+        logger.w(e);
+        lastError = e;
       }
-    } else {
-      throw new AVException(AVException.OTHER_CAUSE, "Upload File failure");
     }
+    AVException exception = new AVException(AVException.OTHER_CAUSE, "Upload File failure");
+    if (null != lastError) {
+      exception.initCause(lastError);
+    }
+    throw exception;
   }
 
   public void publishProgress(int progress) {
@@ -9,6 +9,7 @@ import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import okhttp3.*;
 
+import java.io.File;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
@@ -48,13 +49,17 @@ public class QCloudUploader extends HttpClientUploader {
 
   public AVException execute() {
     try {
-      byte[] bytes = avFile.getData();
+      File localFile = avFile.getLocalFile();
+      if (null == localFile) {
+        return new AVException(AVException.FILE_UPLOAD_FAILURE, "local data of file is not available.");
+      }
+      int fileSize = (int) localFile.length();
       int sliceCount =
-              (bytes.length / DEFAULT_SLICE_LEN) + (bytes.length % DEFAULT_SLICE_LEN == 0 ? 0 : 1);
+              (fileSize / DEFAULT_SLICE_LEN) + (fileSize % DEFAULT_SLICE_LEN == 0 ? 0 : 1);
 
       // 如果文件太小就没必要分片了
       if (sliceCount > 1) {
-        JSONObject result = uploadControlSlice(token, uploadUrl, bytes);
+        JSONObject result = uploadControlSlice(token, uploadUrl, localFile);
         if (null == result) {
           return new AVException(new RuntimeException("Exception during file upload"));
         }
@@ -74,13 +79,13 @@ public class QCloudUploader extends HttpClientUploader {
         int sliceOffset = 0;
         for (; sliceOffset < sliceCount && null != sliceUploadResult; sliceOffset++) {
           sliceUploadResult = new SliceUploadTask(this, fileKey, token, uploadUrl,
-                  bytes, sliceOffset, sessionId, progressCalculator, null).upload();
+                  localFile, sliceOffset, sessionId, progressCalculator, null).upload();
         }
-        if (sliceOffset < sliceCount) {
+        if (sliceOffset < sliceCount || null == sliceUploadResult) {
           return new AVException(AVException.OTHER_CAUSE, "failed to upload slice.");
         }
       } else {
-        uploadFile(bytes);
+        uploadFile(localFile);
       }
     } catch (Exception e) {
       return new AVException(e);
@@ -89,14 +94,12 @@ public class QCloudUploader extends HttpClientUploader {
     return null;
   }
 
-  private void uploadFile(byte[] bytes) throws AVException {
+  private void uploadFile(File localFile) throws AVException {
 
     try {
-      fileSha = SHA1.compute(bytes);
+      fileSha = SHA1.compute(localFile);
       MultipartBody.Builder builder = new MultipartBody.Builder();
-      RequestBody fileBody =
-              RequestBody.create(MediaType.parse(APPLICATION_OCTET_STREAM), bytes, 0,
-                      getCurrentSliceLength(0, bytes.length));
+      RequestBody fileBody = new FileRequestBody(MediaType.parse(APPLICATION_OCTET_STREAM), localFile, null);
       builder.addFormDataPart(FILE_CONTENT, fileKey, fileBody);
       builder.addFormDataPart(PARAM_OP, OP_UPLOAD);
       builder.addFormDataPart(PARAM_SHA, fileSha);
@@ -147,14 +150,14 @@ public class QCloudUploader extends HttpClientUploader {
     return leftSize >= DEFAULT_SLICE_LEN ? DEFAULT_SLICE_LEN : leftSize;
   }
 
-  private JSONObject uploadControlSlice(String token, String url, byte[] wholeFile)
+  private JSONObject uploadControlSlice(String token, String url, File wholeFile)
           throws AVException {
     MultipartBody.Builder builder = new MultipartBody.Builder();
     try {
       String fileSha = SHA1.compute(wholeFile);
       builder.addFormDataPart(PARAM_SHA, fileSha);
       builder.addFormDataPart(PARAM_OP, OP_UPLOAD_SLICE);
-      builder.addFormDataPart(PARAM_FILE_SIZE, String.valueOf(wholeFile.length));
+      builder.addFormDataPart(PARAM_FILE_SIZE, String.valueOf(wholeFile.length()));
       builder.addFormDataPart(PARAM_SLICE_SIZE, String.valueOf(DEFAULT_SLICE_LEN));
 
       MediaType type = MediaType.parse(MULTIPART_FORM_DATA);
@@ -182,6 +185,7 @@ public class QCloudUploader extends HttpClientUploader {
 
   public static class SliceUploadTask implements Runnable {
     byte[] data;
+    File file;
     int sliceOffset;
     FileUploader.ProgressCalculator progress;
     String session;
@@ -204,6 +208,15 @@ public class QCloudUploader extends HttpClientUploader {
       this.parent = parent;
     }
 
+    /**
+     * constructor with local file, slice content is streamed from file directly.
+     */
+    public SliceUploadTask(QCloudUploader parent, String key, String token, String url, File wholeFile, int sliceOffset,
+                           String session, FileUploader.ProgressCalculator progressCalculator, CountDownLatch latch) {
+      this(parent, key, token, url, (byte[]) null, sliceOffset, session, progressCalculator, latch);
+      this.file = wholeFile;
+    }
+
     public void run() {
       this.upload();
     }
@@ -211,10 +224,15 @@ public class QCloudUploader extends HttpClientUploader {
     public String upload() {
       try {
         MultipartBody.Builder builder = new MultipartBody.Builder();
-        RequestBody fileBody =
-                RequestBody.create(MediaType.parse(APPLICATION_OCTET_STREAM), data, sliceOffset
-                                * DEFAULT_SLICE_LEN,
-                        getCurrentSliceLength(sliceOffset, data.length));
+        RequestBody fileBody;
+        if (null != file) {
+          fileBody = new FileRequestBody(MediaType.parse(APPLICATION_OCTET_STREAM), file,
+                  (long) sliceOffset * DEFAULT_SLICE_LEN, getCurrentSliceLength(sliceOffset, (int) file.length()), null);
+        } else {
+          fileBody = RequestBody.create(MediaType.parse(APPLICATION_OCTET_STREAM), data, sliceOffset
+                          * DEFAULT_SLICE_LEN,
+                  getCurrentSliceLength(sliceOffset, data.length));
+        }
         builder.addFormDataPart(FILE_CONTENT, key, fileBody);
         builder.addFormDataPart(PARAM_OP, OP_UPLOAD_SLICE);
         builder.addFormDataPart(PARAM_OFFSET,
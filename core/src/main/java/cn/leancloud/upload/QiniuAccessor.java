@@ -205,26 +205,27 @@ class QiniuAccessor {
    */
   public QiniuBlockResponseData createBlockInQiniu(int blockSize, int firstChunkSize,
                                                    final byte[] firstChunkData, int retry) {
-    try {
-
-      String endPoint = String.format(QINIU_CREATE_BLOCK_EP, this.uploadUrl, blockSize);
-      Request.Builder builder = new Request.Builder();
-      builder.url(endPoint);
-      builder.addHeader(HEAD_CONTENT_TYPE, DEFAULT_CONTENT_TYPE);
-      builder.addHeader(HEAD_CONTENT_LENGTH, String.valueOf(firstChunkSize));
-      builder.addHeader(HEAD_AUTHORIZATION, "UpToken " + this.uploadToken);
-
-      LOGGER.d("createBlockInQiniu with uploadUrl: " + endPoint);
-      RequestBody requestBody = RequestBody.create(MediaType.parse(DEFAULT_CONTENT_TYPE), firstChunkData, 0, firstChunkSize);
-      builder = builder.post(requestBody);
-
-      Response response = this.client.newCall(builder.build()).execute();
-      return parseQiniuResponse(response, QiniuBlockResponseData.class);
-    } catch (Exception e) {
-      if (retry-- > 0) {
-        return createBlockInQiniu(blockSize, firstChunkSize, firstChunkData, retry);
-      } else {
-        LOGGER.w(e);
+    for (; retry >= 0 && !Thread.currentThread().isInterrupted(); retry--) {
+      try {
+        String endPoint = String.format(QINIU_CREATE_BLOCK_EP, this.uploadUrl, blockSize);
+        Request.Builder builder = new Request.Builder();
+        builder.url(endPoint);
+        builder.addHeader(HEAD_CONTENT_TYPE, DEFAULT_CONTENT_TYPE);
+        builder.addHeader(HEAD_CONTENT_LENGTH, String.valueOf(firstChunkSize));
+        builder.addHeader(HEAD_AUTHORIZATION, "UpToken " + this.uploadToken);
+
+        LOGGER.d("createBlockInQiniu with uploadUrl: " + endPoint);
+        RequestBody requestBody = RequestBody.create(MediaType.parse(DEFAULT_CONTENT_TYPE), firstChunkData, 0, firstChunkSize);
+        builder = builder.post(requestBody);
+
+        Response response = this.client.newCall(builder.build()).execute();
+        return parseQiniuResponse(response, QiniuBlockResponseData.class);
+      } catch (Exception e) {
+        if (retry > 0) {
+          LOGGER.d("request failed, retry left: " + retry + ", cause: " + e.getMessage());
+        } else {
+          LOGGER.w(e);
+        }
       }
     }
     return null;
@@ -265,28 +266,30 @@ class QiniuAccessor {
                                                      final int blockOffset,
                                                      final byte[] currentChunkData,
                                                      int currentChunkSize, int retry) {
-    try {
-      String endPoint = String.format(QINIU_BRICK_UPLOAD_EP, this.uploadUrl, lastChunk.ctx, lastChunk.offset);
-      Request.Builder builder = new Request.Builder();
-      builder.url(endPoint);
-      builder.addHeader(HEAD_CONTENT_TYPE, DEFAULT_CONTENT_TYPE);
-      builder.addHeader(HEAD_CONTENT_LENGTH, String.valueOf(currentChunkSize));
-      builder.addHeader(HEAD_AUTHORIZATION, "UpToken " + this.uploadToken);
-
-      LOGGER.d("putFileBlocksToQiniu with uploadUrl: " + endPoint);
-
-      RequestBody requestBody = RequestBody.create(MediaType.parse(DEFAULT_CONTENT_TYPE),
-              currentChunkData, 0, currentChunkSize);
-      builder = builder.post(requestBody);
-      Response response = this.client.newCall(builder.build()).execute();
-      QiniuBlockResponseData respData = parseQiniuResponse(response, QiniuBlockResponseData.class);
-      validateCrc32Value(respData, currentChunkData, 0, currentChunkSize);
-      return respData;
-    } catch (Exception e) {
-      if (retry-- > 0) {
-        return putFileBlocksToQiniu(lastChunk, blockOffset, currentChunkData, currentChunkSize, retry);
-      } else {
-        LOGGER.w(e);
+    for (; retry >= 0 && !Thread.currentThread().isInterrupted(); retry--) {
+      try {
+        String endPoint = String.format(QINIU_BRICK_UPLOAD_EP, this.uploadUrl, lastChunk.ctx, lastChunk.offset);
+        Request.Builder builder = new Request.Builder();
+        builder.url(endPoint);
+        builder.addHeader(HEAD_CONTENT_TYPE, DEFAULT_CONTENT_TYPE);
+        builder.addHeader(HEAD_CONTENT_LENGTH, String.valueOf(currentChunkSize));
+        builder.addHeader(HEAD_AUTHORIZATION, "UpToken " + this.uploadToken);
+
+        LOGGER.d("putFileBlocksToQiniu with uploadUrl: " + endPoint);
+
+        RequestBody requestBody = RequestBody.create(MediaType.parse(DEFAULT_CONTENT_TYPE),
+                currentChunkData, 0, currentChunkSize);
+        builder = builder.post(requestBody);
+        Response response = this.client.newCall(builder.build()).execute();
+        QiniuBlockResponseData respData = parseQiniuResponse(response, QiniuBlockResponseData.class);
+        validateCrc32Value(respData, currentChunkData, 0, currentChunkSize);
+        return respData;
+      } catch (Exception e) {
+        if (retry > 0) {
+          LOGGER.d("request failed, retry left: " + retry + ", cause: " + e.getMessage());
+        } else {
+          LOGGER.w(e);
+        }
       }
     }
     return null;
@@ -331,25 +334,27 @@ class QiniuAccessor {
    */
   public QiniuMKFileResponseData makeFile(int fileTotalSize, List<String> uploadFileCtxs, int retry)
           throws Exception {
-    try {
-      String endPoint = String.format(QINIU_MKFILE_EP, this.uploadUrl, fileTotalSize,
-              Base64.encodeToString(this.fileKey.getBytes(), Base64.URL_SAFE | Base64.NO_WRAP));
-      final String joinedFileCtx = StringUtil.join(",", uploadFileCtxs);
-      Request.Builder builder = new Request.Builder();
-      builder.url(endPoint);
-      builder.addHeader(HEAD_CONTENT_TYPE, TEXT_CONTENT_TYPE);
-      builder.addHeader(HEAD_CONTENT_LENGTH, String.valueOf(joinedFileCtx.length()));
-      builder.addHeader(HEAD_AUTHORIZATION, "UpToken " + this.uploadToken);
-
-      LOGGER.d("makeFile to qiniu with uploadUrl: " + endPoint);
-      builder = builder.post(RequestBody.create(MediaType.parse(TEXT_CONTENT_TYPE), joinedFileCtx));
-      Response response = this.client.newCall(builder.build()).execute();
-      return parseQiniuResponse(response, QiniuMKFileResponseData.class);
-    } catch (Exception e) {
-      if (retry-- > 0) {
-        return makeFile(fileTotalSize, uploadFileCtxs, retry);
-      } else {
-        LOGGER.w(e);
+    for (; retry >= 0 && !Thread.currentThread().isInterrupted(); retry--) {
+      try {
+        String endPoint = String.format(QINIU_MKFILE_EP, this.uploadUrl, fileTotalSize,
+                Base64.encodeToString(this.fileKey.getBytes(), Base64.URL_SAFE | Base64.NO_WRAP));
+        final String joinedFileCtx = StringUtil.join(",", uploadFileCtxs);
+        Request.Builder builder = new Request.Builder();
+        builder.url(endPoint);
+        builder.addHeader(HEAD_CONTENT_TYPE, TEXT_CONTENT_TYPE);
+        builder.addHeader(HEAD_CONTENT_LENGTH, String.valueOf(joinedFileCtx.length()));
+        builder.addHeader(HEAD_AUTHORIZATION, "UpToken " + this.uploadToken);
+
+        LOGGER.d("makeFile to qiniu with uploadUrl: " + endPoint);
+        builder = builder.post(RequestBody.create(MediaType.parse(TEXT_CONTENT_TYPE), joinedFileCtx));
+        Response response = this.client.newCall(builder.build()).execute();
+        return parseQiniuResponse(response, QiniuMKFileResponseData.class);
+      } catch (Exception e) {
+        if (retry > 0) {
+          LOGGER.d("request failed, retry left: " + retry + ", cause: " + e.getMessage());
+        } else {
+          LOGGER.w(e);
+        }
       }
     }
     return null;
@@ -2,49 +2,78 @@ package cn.leancloud.upload;
 
 import cn.leancloud.AVException;
 import cn.leancloud.AVLogger;
+import cn.leancloud.cache.LocalStorage;
 import cn.leancloud.callback.ProgressCallback;
 import cn.leancloud.AVFile;
+import cn.leancloud.codec.MD5;
+import cn.leancloud.core.AppConfiguration;
 import cn.leancloud.utils.LogUtil;
 
-import java.io.InputStream;
-
-import java.util.List;
-import java.util.ArrayList;
+import java.io.EOFException;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
- * Use one thread to upload file to qiniu, slicing with 4MB chunk.
+ * Upload file to qiniu, slicing with 4MB block and 256KB chunk.
+ *
+ * Blocks are uploaded concurrently(see FileUploader.setSlicingUploadConcurrency), every block reads
+ * its own range of local file through FileChannel. Contexts of finished blocks are persisted, so an
+ * interrupted upload of the same file resumes with remaining blocks and makeFile.
  *
  * Created by fengjunwen on 2017/8/14.
  */
 
 class QiniuSlicingUploader extends HttpClientUploader {
   private static AVLogger LOGGER = LogUtil.getLogger(QiniuSlicingUploader.class);
+  private static final String RECORD_DIR = "qiniuUpload/";
+  private static final String RECORD_CREATED_AT = "createdAt";
+  private static final String RECORD_CONTEXTS = "contexts";
+  // block context is only valid for limited time on qiniu side, so stale record is dropped.
+  private static final long RECORD_MAX_AGE = 24 * 3600 * 1000L;
+  static final int DEFAULT_CONCURRENCY = 3;
+
+  private static volatile int concurrency = DEFAULT_CONCURRENCY;
 
   private final String token;
   private FileUploader.ProgressCalculator progressCalculator;
   private int uploadChunkSize = QiniuAccessor.WIFI_CHUNK_SIZE;
   private String fileKey = null;
+  private String uploadUrl = null;
   private QiniuAccessor qiniuAccessor;
 
   QiniuSlicingUploader(AVFile avFile, String token, String uploadUrl, ProgressCallback progressCallback) {
     super(avFile, progressCallback);
     this.token = token;
     this.fileKey = avFile.getKey();
+    this.uploadUrl = uploadUrl;
     this.qiniuAccessor = new QiniuAccessor(getOKHttpClient(), this.token, this.fileKey, uploadUrl);
     LOGGER.d("Constructor with token=" + token + ", key=" + fileKey + ", accessor=" + qiniuAccessor);
   }
 
+  static void setConcurrency(int count) {
+    concurrency = Math.max(1, count);
+  }
+
+  static int getConcurrency() {
+    return concurrency;
+  }
+
   public AVException execute() {
     boolean isWifi = true;
     if (!isWifi) {
       // 从七牛的接口来看block size为4M不可变，但是chunkSize是可以调整的
       uploadChunkSize = QiniuAccessor.NONWIFI_CHUNK_SIZE;
     }
-    InputStream is = null;
-    byte buf[] = new byte[uploadChunkSize];
-    int fileSize = this.avFile.getSize();
+    final File localFile = this.avFile.getLocalFile();
+    if (null == localFile) {
+      return new AVException(AVException.FILE_UPLOAD_FAILURE, "local data of file is not available.");
+    }
+    final int fileSize = this.avFile.getSize();
     int blockCount = (fileSize / QiniuAccessor.BLOCK_SIZE) + (fileSize % QiniuAccessor.BLOCK_SIZE > 0 ? 1 : 0);
-    List<String> uploadFileCtxs = new ArrayList<String>(blockCount);
 
     progressCalculator = new FileUploader.ProgressCalculator(blockCount, new FileUploader.FileUploadProgressCallback() {
       public void onProgress(int progress) {
@@ -52,65 +81,72 @@ class QiniuSlicingUploader extends HttpClientUploader {
       }
     });
 
+    final LocalStorage recordStorage = getRecordStorage();
+    final String recordKey = MD5.computeMD5(localFile.getAbsolutePath() + ":" + fileSize + ":"
+            + localFile.lastModified() + ":" + uploadUrl);
+    final Map<Integer, String> blockContexts = loadRecord(recordStorage, recordKey, blockCount);
+    final long recordCreatedAt = blockContexts.isEmpty() ? System.currentTimeMillis() : loadRecordTime(recordStorage, recordKey);
+    for (Integer finishedBlock : blockContexts.keySet()) {
+      progressCalculator.publishProgress(finishedBlock, 100);
+    }
+
+    RandomAccessFile randomAccessFile = null;
+    ExecutorService executor = null;
     try {
-      is = this.avFile.getDataStream();
-      LOGGER.d("begin to upload qiniu. chunkSize=" + uploadChunkSize + ", blockCount=" + blockCount + ", is=" + is);
-      // loop for read, upload block to qiniu.
-      for (int i = 0; i< blockCount; i++) {
-        int currentBlockSize = QiniuAccessor.BLOCK_SIZE;
-        int currentBlockOffset = i * QiniuAccessor.BLOCK_SIZE;
-        if (i == blockCount - 1) {
-          // last block.
-          currentBlockSize = fileSize - currentBlockOffset;
-        }
-        int chunkCount = currentBlockSize / uploadChunkSize + (currentBlockSize % uploadChunkSize > 0? 1 : 0);
-        QiniuAccessor.QiniuBlockResponseData lastResponse = null;
-        for (int j = 0; j < chunkCount; j++) {
-          int currentChunkOffset = j * uploadChunkSize;
-          int currentChunkSize = (j == chunkCount -1)? (currentBlockSize - currentChunkOffset): uploadChunkSize;
-
-          // read BLOCK_SIZE content to buf until reach out block size or end-of-file.
-          int totalReadCnt = 0;
-          int curReadCnt = is.read(buf, totalReadCnt, currentChunkSize - totalReadCnt);
-          totalReadCnt += curReadCnt;
-          while (curReadCnt > 0 && totalReadCnt < currentChunkSize) {
-            curReadCnt = is.read(buf, totalReadCnt, currentChunkSize - totalReadCnt);
-            totalReadCnt += curReadCnt;
+      randomAccessFile = new RandomAccessFile(localFile, "r");
+      final FileChannel channel = randomAccessFile.getChannel();
+      int pendingCount = blockCount - blockContexts.size();
+      LOGGER.d("begin to upload qiniu. chunkSize=" + uploadChunkSize + ", blockCount=" + blockCount
+              + ", resumedBlocks=" + blockContexts.size() + ", concurrency=" + concurrency);
+      if (pendingCount > 0) {
+        executor = Executors.newFixedThreadPool(Math.min(concurrency, pendingCount));
+        List<Future<String>> futures = new ArrayList<Future<String>>(pendingCount);
+        for (int i = 0; i < blockCount; i++) {
+          if (blockContexts.containsKey(i)) {
+            continue;
           }
-
-          if (j == 0) {
-            // 1.创建一个block,并且会上传第一个block的第一个chunk的数据
-            lastResponse = this.qiniuAccessor.createBlockInQiniu(currentBlockSize, currentChunkSize, buf, DEFAULT_RETRY_TIMES);
-            LOGGER.d("createBlockInQiniu(curBlockSize=" + currentBlockSize + ", curChunkSize=" + currentChunkSize + ") result=" + lastResponse);
-          } else {
-            // 2.分片上传
-            QiniuAccessor.QiniuBlockResponseData tmpResponse = lastResponse;
-            lastResponse = this.qiniuAccessor.putFileBlocksToQiniu(lastResponse, currentBlockOffset, buf, currentChunkSize, DEFAULT_RETRY_TIMES);
-            LOGGER.d("putFileBlocksToQiniu(lastRes=" + tmpResponse + ", curBlockOffset=" + currentBlockOffset + ", curChunkSize=" + currentChunkSize
-              + ") result=" + lastResponse);
+          final int blockIndex = i;
+          final int blockOffset = i * QiniuAccessor.BLOCK_SIZE;
+          final int blockSize = (i == blockCount - 1) ? (fileSize - blockOffset) : QiniuAccessor.BLOCK_SIZE;
+          futures.add(executor.submit(new Callable<String>() {
+            public String call() throws Exception {
+              String ctx = uploadBlock(channel, blockIndex, blockOffset, blockSize);
+              blockContexts.put(blockIndex, ctx);
+              saveRecord(recordStorage, recordKey, recordCreatedAt, blockContexts);
+              return ctx;
+            }
+          }));
+        }
+        for (Future<String> future : futures) {
+          try {
+            future.get();
+          } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            return cause instanceof AVException ? (AVException) cause : new AVException(cause);
           }
         }
+      }
 
-        if (null != lastResponse){
-          uploadFileCtxs.add(lastResponse.getCtx());
-          progressCalculator.publishProgress(i, 100);
-          LOGGER.d("finished to upload block(" + i + "), ctx=" + lastResponse.getCtx());
-        } else {
-          // error.
-          return new AVException(AVException.FILE_UPLOAD_FAILURE, "failed to upload file to qiniu.");
-        }
+      List<String> uploadFileCtxs = new ArrayList<String>(blockCount);
+      for (int i = 0; i < blockCount; i++) {
+        uploadFileCtxs.add(blockContexts.get(i));
       }
       QiniuAccessor.QiniuMKFileResponseData finalResponse = this.qiniuAccessor.makeFile(fileSize, uploadFileCtxs, DEFAULT_RETRY_TIMES);
       LOGGER.d("makeFile(fileSize=" + fileSize + ") result=" + finalResponse);
+      // contexts are useless no matter makeFile succeed or not(maybe they are expired).
+      removeRecord(recordStorage, recordKey);
       if (finalResponse == null || !finalResponse.key.equals(fileKey)) {
         return new AVException(AVException.OTHER_CAUSE, "upload file failure");
       }
     } catch (Exception ex) {
       return new AVException(ex);
     } finally {
+      if (null != executor) {
+        executor.shutdownNow();
+      }
       try {
-        if (null != is) {
-          is.close();
+        if (null != randomAccessFile) {
+          randomAccessFile.close();
         }
       } catch (Exception e) {
         ;
@@ -119,4 +155,127 @@ class QiniuSlicingUploader extends HttpClientUploader {
 
     return null;
   }
+
+  private String uploadBlock(FileChannel channel, int blockIndex, int blockOffset, int blockSize) throws Exception {
+    byte buf[] = new byte[uploadChunkSize];
+    int chunkCount = blockSize / uploadChunkSize + (blockSize % uploadChunkSize > 0? 1 : 0);
+    QiniuAccessor.QiniuBlockResponseData lastResponse = null;
+    for (int j = 0; j < chunkCount; j++) {
+      if (isCancelled()) {
+        throw new AVException(AVException.OTHER_CAUSE, "upload is cancelled.");
+      }
+      int currentChunkOffset = j * uploadChunkSize;
+      int currentChunkSize = (j == chunkCount -1)? (blockSize - currentChunkOffset): uploadChunkSize;
+      readFully(channel, buf, currentChunkSize, (long) blockOffset + currentChunkOffset);
+
+      if (j == 0) {
+        // 1.创建一个block,并且会上传第一个block的第一个chunk的数据
+        lastResponse = this.qiniuAccessor.createBlockInQiniu(blockSize, currentChunkSize, buf, DEFAULT_RETRY_TIMES);
+        LOGGER.d("createBlockInQiniu(block=" + blockIndex + ", curBlockSize=" + blockSize + ", curChunkSize="
+                + currentChunkSize + ") result=" + lastResponse);
+      } else {
+        // 2.分片上传
+        lastResponse = this.qiniuAccessor.putFileBlocksToQiniu(lastResponse, blockOffset, buf, currentChunkSize, DEFAULT_RETRY_TIMES);
+        LOGGER.d("putFileBlocksToQiniu(block=" + blockIndex + ", curChunkOffset=" + currentChunkOffset
+                + ", curChunkSize=" + currentChunkSize + ") result=" + lastResponse);
+      }
+      if (null == lastResponse) {
+        throw new AVException(AVException.FILE_UPLOAD_FAILURE, "failed to upload file to qiniu.");
+      }
+      progressCalculator.publishProgress(blockIndex, 100 * (j + 1) / chunkCount);
+    }
+    LOGGER.d("finished to upload block(" + blockIndex + "), ctx=" + lastResponse.getCtx());
+    return lastResponse.getCtx();
+  }
+
+  private static void readFully(FileChannel channel, byte[] buf, int length, long position) throws Exception {
+    ByteBuffer buffer = ByteBuffer.wrap(buf, 0, length);
+    while (buffer.hasRemaining()) {
+      int count = channel.read(buffer, position + buffer.position());
+      if (count < 0) {
+        throw new EOFException("unexpected end of file at " + (position + buffer.position()));
+      }
+    }
+  }
+
+  private static LocalStorage getRecordStorage() {
+    String documentDir = AppConfiguration.getDocumentDir();
+    return null == documentDir ? null : new LocalStorage(documentDir + RECORD_DIR);
+  }
+
+  private static Map<String, Object> readRecord(LocalStorage storage, String recordKey) {
+    if (null == storage) {
+      return null;
+    }
+    byte[] data = storage.readData(recordKey);
+    if (null == data || data.length < 1) {
+      return null;
+    }
+    try {
+      Object record = AppConfiguration.getJSONCodec().parse(new String(data, "UTF-8"));
+      return record instanceof Map ? (Map<String, Object>) record : null;
+    } catch (Exception ex) {
+      LOGGER.w("failed to parse upload record. cause: " + ex.getMessage());
+      return null;
+    }
+  }
+
+  private static long loadRecordTime(LocalStorage storage, String recordKey) {
+    Map<String, Object> record = readRecord(storage, recordKey);
+    Object createdAt = null == record ? null : record.get(RECORD_CREATED_AT);
+    return createdAt instanceof Number ? ((Number) createdAt).longValue() : System.currentTimeMillis();
+  }
+
+  private static Map<Integer, String> loadRecord(LocalStorage storage, String recordKey, int blockCount) {
+    Map<Integer, String> result = new ConcurrentHashMap<Integer, String>();
+    Map<String, Object> record = readRecord(storage, recordKey);
+    if (null == record) {
+      return result;
+    }
+    Object createdAt = record.get(RECORD_CREATED_AT);
+    Object contexts = record.get(RECORD_CONTEXTS);
+    if (!(createdAt instanceof Number) || !(contexts instanceof Map)
+            || System.currentTimeMillis() - ((Number) createdAt).longValue() > RECORD_MAX_AGE) {
+      LOGGER.d("ignore stale upload record. key=" + recordKey);
+      removeRecord(storage, recordKey);
+      return result;
+    }
+    for (Map.Entry<String, Object> entry : ((Map<String, Object>) contexts).entrySet()) {
+      try {
+        int index = Integer.parseInt(entry.getKey());
+        if (index >= 0 && index < blockCount && entry.getValue() instanceof String) {
+          result.put(index, (String) entry.getValue());
+        }
+      } catch (NumberFormatException ex) {
+        LOGGER.w("invalid block index in upload record: " + entry.getKey());
+      }
+    }
+    return result;
+  }
+
+  private static synchronized void saveRecord(LocalStorage storage, String recordKey, long createdAt,
+                                              Map<Integer, String> blockContexts) {
+    if (null == storage) {
+      return;
+    }
+    Map<String, String> contexts = new HashMap<String, String>();
+    for (Map.Entry<Integer, String> entry : blockContexts.entrySet()) {
+      contexts.put(String.valueOf(entry.getKey()), entry.getValue());
+    }
+    Map<String, Object> record = new HashMap<String, Object>();
+    record.put(RECORD_CREATED_AT, createdAt);
+    record.put(RECORD_CONTEXTS, contexts);
+    try {
+      storage.saveData(recordKey, AppConfiguration.getJSONCodec().toJSONString(record).getBytes("UTF-8"));
+    } catch (Exception ex) {
+      LOGGER.w("failed to save upload record. cause: " + ex.getMessage());
+    }
+  }
+
+  private static void removeRecord(LocalStorage storage, String recordKey) {
+    File recordFile = null == storage ? null : storage.getCacheFile(recordKey);
+    if (null != recordFile && recordFile.exists()) {
+      recordFile.delete();
+    }
+  }
 }
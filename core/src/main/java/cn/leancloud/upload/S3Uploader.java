@@ -7,6 +7,7 @@ import cn.leancloud.utils.FileUtil;
 import cn.leancloud.utils.StringUtil;
 import okhttp3.*;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.Map;
@@ -46,73 +47,93 @@ class S3Uploader extends HttpClientUploader {
   }
 
   public AVException execute() {
+    String mimeType = FileUtil.getFileMimeType(avFile);
+    RequestBody requestBody = null;
+    long contentLength = 0;
     try {
-      byte[] bytes = avFile.getData();
-
-      return executeWithRetry(bytes);
+      File localFile = avFile.getLocalFile();
+      if (null != localFile) {
+        // stream from local file, so memory usage doesn't depend on file size.
+        contentLength = localFile.length();
+        requestBody = new FileRequestBody(MediaType.parse(mimeType), localFile, new FileRequestBody.ProgressListener() {
+          private int lastProgress = -1;
+          public void onProgress(long bytesWritten, long total) {
+            int progress = (int) (FileUploader.gProgressGotToken
+                    + (FileUploader.gProgressUploadedFile - FileUploader.gProgressGotToken) * bytesWritten / total);
+            if (progress != lastProgress) {
+              lastProgress = progress;
+              publishProgress(progress);
+            }
+          }
+        });
+      } else {
+        byte[] bytes = avFile.getData();
+        contentLength = null == bytes ? 0 : bytes.length;
+        if (contentLength > 0) {
+          requestBody = RequestBody.create(MediaType.parse(mimeType), bytes);
+        }
+      }
     } catch (Exception e) {
       return new AVException(e.getCause());
     }
+    if (null == requestBody || contentLength <= 0) {
+      return null;
+    }
+    return executeWithRetry(requestBody, mimeType, contentLength);
   }
 
-  private AVException executeWithRetry(byte[] data){
-    if (null != data && data.length > 0) {
-      OkHttpClient.Builder okhttpBuilder = getOKHttpClient().newBuilder();
-
-      int timeout = (writeTimeout > 0 ? writeTimeout : getWriteTimeoutByLength(data.length));
-      okhttpBuilder.writeTimeout(timeout, TimeUnit.SECONDS);
-
-      final OkHttpClient httpClient = okhttpBuilder.build();
+  private AVException executeWithRetry(RequestBody requestBody, String mimeType, long contentLength) {
+    OkHttpClient.Builder okhttpBuilder = getOKHttpClient().newBuilder();
+    int timeout = (writeTimeout > 0 ? writeTimeout : getWriteTimeoutByLength(contentLength));
+    okhttpBuilder.writeTimeout(timeout, TimeUnit.SECONDS);
+    final OkHttpClient httpClient = okhttpBuilder.build();
+
+    // upload to s3
+    Request.Builder builder = new Request.Builder();
+    builder.url(uploadUrl);
+    builder.put(requestBody);
+    builder.addHeader("Content-Type", mimeType);
+    if (!FileUploader.UPLOAD_HEADERS.containsKey(DEFAULT_HEADER_CACHE_CONTROL)) {
+      builder.addHeader(DEFAULT_HEADER_CACHE_CONTROL, DEFAULT_HEADER_CACHE_CONTROL_VALUE);
+    }
+    for (Map.Entry<String, String> entry : FileUploader.UPLOAD_HEADERS.entrySet()) {
+      builder.addHeader(entry.getKey(), entry.getValue());
+    }
+    Request request = builder.build();
 
+    AVException lastException = null;
+    for (int i = 0; i <= retryTimes; i++) {
+      if (isCancelled()) {
+        return new AVException(AVException.OTHER_CAUSE, "upload is cancelled.");
+      }
       Response response = null;
-      String serverResponse = null;
-      try{
-        // decide file mimetype.
-        String mimeType = FileUtil.getFileMimeType(avFile);
-
-        // upload to s3
-        Request.Builder builder = new Request.Builder();
-        builder.url(uploadUrl);
-        // ================================================================================
-        // setup multi part
-        // ================================================================================
-
-        // support file for future
-
-        RequestBody requestBody = RequestBody.create(MediaType.parse(mimeType), data);
-
-        builder.put(requestBody);
-        builder.addHeader("Content-Type", mimeType);
-        if (!FileUploader.UPLOAD_HEADERS.containsKey(DEFAULT_HEADER_CACHE_CONTROL)) {
-          builder.addHeader(DEFAULT_HEADER_CACHE_CONTROL, DEFAULT_HEADER_CACHE_CONTROL_VALUE);
-        }
-        for (Map.Entry<String, String> entry : FileUploader.UPLOAD_HEADERS.entrySet()) {
-          builder.addHeader(entry.getKey(), entry.getValue());
-        }
-
-        // Send it
-        call = httpClient.newCall(builder.build());
-
+      try {
+        // request body is re-opened for every call.
+        call = httpClient.newCall(request);
         response = call.execute();
         // The 204 status code implies no response is needed
-        if (2 != (response.code() / 100)) {
-          if(retryTimes>0){
-            retryTimes -- ;
-            executeWithRetry(data);
-          }else {
-            return new AVException(AVException.OTHER_CAUSE, "upload file failure:" + response.code());
-          }
+        if (2 == (response.code() / 100)) {
+          return null;
         }
-      }catch (IOException exception){
-        if(retryTimes >0){
-          retryTimes -- ;
-          return executeWithRetry(data);
-        }else {
-          return new AVException(exception.getCause());
+        lastException = new AVException(AVException.OTHER_CAUSE, "upload file failure:" + response.code());
+      } catch (IOException exception) {
+        lastException = new AVException(exception.getCause());
+      } finally {
+        if (null != response) {
+          response.close();
         }
       }
     }
-    return null;
+    return lastException;
+  }
+
+  @Override
+  public void interruptImmediately() {
+    super.interruptImmediately();
+    Call currentCall = call;
+    if (null != currentCall) {
+      currentCall.cancel();
+    }
   }
 
   /**
@@ -121,8 +142,8 @@ class S3Uploader extends HttpClientUploader {
    * @param dataLength
    * @return
    */
-  private int getWriteTimeoutByLength(int dataLength) {
-    int writeSecond = dataLength / DEFAULT_MIN_UPLOAD_RATE;
+  private int getWriteTimeoutByLength(long dataLength) {
+    int writeSecond = (int) Math.min(Integer.MAX_VALUE, dataLength / DEFAULT_MIN_UPLOAD_RATE);
     if (writeSecond < DEFAULT_MIN_WRITE_TIMEOUT) {
       writeSecond = DEFAULT_MIN_WRITE_TIMEOUT;
     } else if (writeSecond > DEFAULT_MAX_WRITE_TIMEOUT) {
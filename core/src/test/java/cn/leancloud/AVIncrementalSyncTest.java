@@ -0,0 +1,137 @@
+package cn.leancloud;
+
+import cn.leancloud.cache.LocalStorage;
+import cn.leancloud.cache.SystemSetting;
+import cn.leancloud.codec.MD5;
+import cn.leancloud.core.AppConfiguration;
+import io.reactivex.Observable;
+import junit.framework.TestCase;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class AVIncrementalSyncTest extends TestCase {
+  public AVIncrementalSyncTest(String name) {
+    super(name);
+  }
+
+  public void testDeltaQuery() throws Exception {
+    AVQuery<AVObject> query = new AVQuery<AVObject>("Student");
+    query.whereEqualTo("grade", 3);
+    query.orderByDescending("age");
+    query.skip(20);
+
+    Map<String, String> first = query.generateDeltaQuery(null, null, 50).assembleParameters();
+    assertEquals("updatedAt,objectId", first.get("order"));
+    assertEquals("50", first.get("limit"));
+    assertTrue(null == first.get("skip") || "0".equals(first.get("skip")));
+    assertFalse(first.get("where").contains("$or"));
+
+    Map<String, String> next = query.generateDeltaQuery(new Date(1600000000000L), "5f5e1000", 50)
+            .assembleParameters();
+    String where = next.get("where");
+    assertTrue(where.contains("\"grade\":3"));
+    assertTrue(where.contains("$and"));
+    assertTrue(where.contains("$or"));
+    assertTrue(where.contains("5f5e1000"));
+    assertTrue(where.contains("2020-09-13T12:26:40.000Z"));
+
+    // base query is not changed.
+    assertFalse(query.assembleParameters().get("where").contains("$and"));
+  }
+
+  private static String row(String objectId, String name, String updatedAt) {
+    return row("Student", objectId, name, updatedAt);
+  }
+
+  private static String row(String className, String objectId, String name, String updatedAt) {
+    AVObject object = new AVObject(className);
+    Map<String, Object> data = new HashMap<String, Object>();
+    data.put(AVObject.KEY_OBJECT_ID, objectId);
+    data.put(AVObject.KEY_UPDATED_AT, updatedAt);
+    data.put("name", name);
+    object.resetServerData(data);
+    return object.toJSONString() + "\n";
+  }
+
+  public void testRestoreFromLog() throws Exception {
+    String syncName = "StudentLogTest";
+    String zone = "com.avoscloud.incrementalSync";
+    SystemSetting setting = AppConfiguration.getDefaultSetting();
+    setting.saveLong(zone, syncName + ".updatedAt", 1600000000000L);
+    setting.saveString(zone, syncName + ".objectId", "s2");
+
+    // two syncs appended their changes, and the last append was interrupted.
+    String log = row("s1", "Tom", "2020-09-13T12:00:00.000Z") + row("s2", "Jerry", "2020-09-13T12:10:00.000Z")
+        + row("s1", "Tommy", "2020-09-13T12:26:40.000Z") + "{\"className\":\"Stud";
+    LocalStorage storage = new LocalStorage(AppConfiguration.getDocumentDir() + "sync/");
+    storage.saveData(MD5.computeMD5(zone + ":" + syncName), log.getBytes("UTF-8"));
+
+    AVIncrementalSync<AVObject> sync = new AVIncrementalSync<AVObject>(new AVQuery<AVObject>("Student"), syncName)
+        .setPersistent(true);
+    assertEquals(2, sync.size());
+    assertEquals("Tommy", sync.get("s1").getString("name"));
+    assertEquals("Jerry", sync.get("s2").getString("name"));
+    assertEquals(3, sync.getLogLines());
+    assertEquals(1600000000000L, sync.getLastUpdatedAt().getTime());
+    assertEquals("s2", sync.getLastObjectId());
+
+    sync.reset();
+    assertEquals(0, sync.size());
+    assertNull(storage.readData(MD5.computeMD5(zone + ":" + syncName)));
+  }
+
+  public void testCacheOnlyQueryFromMirror() throws Exception {
+    String syncName = "CourseMirrorTest";
+    String zone = "com.avoscloud.incrementalSync";
+    SystemSetting setting = AppConfiguration.getDefaultSetting();
+    setting.saveLong(zone, syncName + ".updatedAt", 1600000000000L);
+    setting.saveString(zone, syncName + ".objectId", "c3");
+    String log = row("Course", "c1", "Art", "2020-09-13T12:00:00.000Z")
+        + row("Course", "c2", "Math", "2020-09-13T12:10:00.000Z")
+        + row("Course", "c3", "Music", "2020-09-13T12:26:40.000Z");
+    LocalStorage storage = new LocalStorage(AppConfiguration.getDocumentDir() + "sync/");
+    String snapshotKey = MD5.computeMD5(zone + ":" + syncName);
+    storage.saveData(snapshotKey, log.getBytes("UTF-8"));
+    // snapshot was written one minute ago.
+    storage.getCacheFile(snapshotKey).setLastModified(System.currentTimeMillis() - 60000);
+
+    AVIncrementalSync<AVObject> sync = new AVIncrementalSync<AVObject>(new AVQuery<AVObject>("Course"), syncName)
+        .setPersistent(true);
+    assertEquals(3, sync.size());
+
+    AVQuery<AVObject> query = new AVQuery<AVObject>("Course");
+    query.setCachePolicy(AVQuery.CachePolicy.CACHE_ONLY);
+    query.whereStartsWith("name", "M");
+    query.orderByDescending("name");
+    // mirror is evaluated at subscription.
+    Observable<List<AVObject>> deferred = query.findInBackground();
+    sync.get("c3").getServerData().put("name", "Drama");
+    List<AVObject> result = deferred.blockingFirst();
+    assertEquals(1, result.size());
+    sync.get("c3").getServerData().put("name", "Music");
+
+    result = query.find();
+    assertEquals(2, result.size());
+    assertEquals("Music", result.get(0).getString("name"));
+    assertEquals("c2", result.get(1).getObjectId());
+    // results are copies, mirror is not changed by caller.
+    assertNotSame(sync.get("c2"), result.get(1));
+    result.get(1).getServerData().put("name", "Physics");
+    assertEquals("Math", sync.get("c2").getString("name"));
+
+    assertNull(AVIncrementalSync.findInMirror(query, 30000));
+    assertEquals(2, AVIncrementalSync.findInMirror(query, 120000).size());
+
+    // sub-queries can not be evaluated locally.
+    AVQuery<AVObject> inner = new AVQuery<AVObject>("Student");
+    AVQuery<AVObject> subQuery = new AVQuery<AVObject>("Course");
+    subQuery.whereMatchesQuery("students", inner);
+    assertNull(AVIncrementalSync.findInMirror(subQuery, 0));
+
+    sync.reset();
+    assertNull(AVIncrementalSync.findInMirror(query, 0));
+  }
+}
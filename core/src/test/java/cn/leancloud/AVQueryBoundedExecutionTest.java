@@ -0,0 +1,58 @@
+package cn.leancloud;
+
+import cn.leancloud.core.AppConfiguration;
+import cn.leancloud.execution.BoundedExecutionProvider;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+import junit.framework.TestCase;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class AVQueryBoundedExecutionTest extends TestCase {
+  private BoundedExecutionProvider provider;
+
+  public AVQueryBoundedExecutionTest(String testName) {
+    super(testName);
+    AppConfiguration.config(true, new AppConfiguration.SchedulerCreator() {
+      public Scheduler create() {
+        return Schedulers.newThread();
+      }
+    });
+    Configure.initializeRuntime();
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    AVObject object = new AVObject("Student");
+    object.put("name", "Automatic Tester");
+    object.put("age", 18);
+    object.save();
+    // single worker, pages must not be queued behind the generator which occupies it.
+    provider = new BoundedExecutionProvider(1, 10);
+    AppConfiguration.setExecutionProvider(provider);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    AppConfiguration.setExecutionProvider(null);
+    provider.shutdown();
+  }
+
+  public void testFindAllOnSingleWorker() throws Exception {
+    AVQuery<AVObject> query = new AVQuery<AVObject>("Student");
+    query.whereEqualTo("name", "Automatic Tester");
+    List<AVObject> objects = query.findAllInBackground(10).toList().timeout(30, TimeUnit.SECONDS).blockingGet();
+    assertTrue(objects.size() > 0);
+  }
+
+  public void testSyncOnSingleWorker() throws Exception {
+    AVQuery<AVObject> query = new AVQuery<AVObject>("Student");
+    query.whereEqualTo("name", "Automatic Tester");
+    AVIncrementalSync<AVObject> sync = new AVIncrementalSync<AVObject>(query, "boundedExecutionTest");
+    sync.reset();
+    int changed = sync.syncInBackground().timeout(30, TimeUnit.SECONDS).blockingFirst();
+    assertTrue(changed > 0);
+    assertEquals(changed, sync.size());
+  }
+}
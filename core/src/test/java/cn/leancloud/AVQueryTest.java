@@ -480,4 +480,19 @@ public class AVQueryTest extends TestCase {
     }
 
   }
+
+  public void testFindAllWithCursor() throws Exception {
+    AVQuery<AVObject> query = new AVQuery<>("Student");
+    query.whereEqualTo("name", "Automatic Tester");
+    query.selectKeys(Arrays.asList("name", "age"));
+    String lastObjectId = "";
+    int count = 0;
+    for (AVObject object: query.findAll(10)) {
+      assertTrue(object.getObjectId().compareTo(lastObjectId) > 0);
+      assertEquals("Automatic Tester", object.getString("name"));
+      lastObjectId = object.getObjectId();
+      count++;
+    }
+    assertTrue(count > 0);
+  }
 }
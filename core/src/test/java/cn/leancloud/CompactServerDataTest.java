@@ -0,0 +1,79 @@
+package cn.leancloud;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class CompactServerDataTest extends TestCase {
+  public CompactServerDataTest(String name) {
+    super(name);
+  }
+
+  private static AVObject createStudent(String objectId, String name, int age) {
+    AVObject object = new AVObject("Student");
+    Map<String, Object> data = new HashMap<String, Object>();
+    data.put(AVObject.KEY_OBJECT_ID, objectId);
+    data.put("name", name);
+    data.put("age", age);
+    object.resetServerData(data);
+    return object;
+  }
+
+  public void testCompactRead() {
+    AVObject object = createStudent("5e8ebb6b7796d9006a5c2c1c", "Tom", 18);
+    object.compactServerData();
+    assertTrue(object.serverData instanceof CompactServerData);
+    assertEquals("5e8ebb6b7796d9006a5c2c1c", object.getObjectId());
+    assertEquals("Tom", object.getString("name"));
+    assertEquals(18, object.getInt("age"));
+    assertNull(object.get("course"));
+    assertEquals(3, object.getServerData().size());
+    assertEquals(createStudent("5e8ebb6b7796d9006a5c2c1c", "Tom", 18).getServerData(), object.getServerData());
+  }
+
+  public void testSharedLayout() {
+    CompactServerData.clearLayouts();
+    AVObject first = createStudent("5e8ebb6b7796d9006a5c2c1c", "Tom", 18);
+    AVObject second = createStudent("5e8ebb6b7796d9006a5c2c1d", "Jerry", 20);
+    first.compactServerData();
+    second.compactServerData();
+    assertSame(CompactServerData.layoutFor("Student", first.getServerData().keySet()),
+            CompactServerData.layoutFor("Student", second.getServerData().keySet()));
+  }
+
+  public void testUpgradeOnModify() {
+    AVObject object = createStudent("5e8ebb6b7796d9006a5c2c1c", "Tom", 18);
+    object.compactServerData();
+    CompactServerData compact = (CompactServerData) object.serverData;
+    object.increment("age");
+    object.put("course", Arrays.asList("Math", "Art"));
+    assertFalse(object.serverData instanceof CompactServerData);
+    assertEquals(19, object.getInt("age"));
+    assertEquals(2, object.getList("course").size());
+    assertEquals("Tom", object.getString("name"));
+    assertTrue(compact.isUpgraded());
+  }
+
+  public void testSerialize() {
+    AVObject object = createStudent("5e8ebb6b7796d9006a5c2c1c", "Tom", 18);
+    object.compactServerData();
+    AVObject restored = AVObject.parseAVObject(object.toJSONString());
+    assertFalse(restored.serverData instanceof CompactServerData);
+    assertEquals("Tom", restored.getString("name"));
+    assertEquals(18, restored.getInt("age"));
+  }
+
+  public void testCyclicGraph() {
+    AVObject student = createStudent("5e8ebb6b7796d9006a5c2c1c", "Tom", 18);
+    AVObject teacher = createStudent("5e8ebb6b7796d9006a5c2c1d", "Jerry", 40);
+    student.getServerData().put("teacher", teacher);
+    teacher.getServerData().put("students", Arrays.asList(student));
+    student.compactServerData();
+    assertTrue(student.serverData instanceof CompactServerData);
+    assertTrue(teacher.serverData instanceof CompactServerData);
+    assertSame(teacher, student.getAVObject("teacher"));
+    assertSame(student, teacher.getList("students").get(0));
+  }
+}
@@ -0,0 +1,70 @@
+package cn.leancloud;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * http server on a random port of loopback address, every request is served by the given handler.
+ * test-support depends on storage-core, so tests of core use this instead of LocalServer.
+ */
+public class StubHttpServer {
+  private final HttpServer server;
+  private final ExecutorService executor;
+
+  public StubHttpServer(HttpHandler handler) throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", handler);
+    executor = Executors.newCachedThreadPool();
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  /**
+   * @return server url, e.g. "http://127.0.0.1:8080".
+   */
+  public String getUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  public void stop() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  public static byte[] readAll(InputStream is) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int length;
+    while ((length = is.read(buffer)) > 0) {
+      os.write(buffer, 0, length);
+    }
+    is.close();
+    return os.toByteArray();
+  }
+
+  public static void respond(HttpExchange exchange, int code, String body) throws IOException {
+    byte[] bytes = body.getBytes("UTF-8");
+    respond(exchange, code, bytes, 0, bytes.length);
+  }
+
+  public static void respond(HttpExchange exchange, int code, byte[] body, int offset, int length)
+          throws IOException {
+    exchange.sendResponseHeaders(code, length);
+    OutputStream os = exchange.getResponseBody();
+    os.write(body, offset, length);
+    os.close();
+  }
+}
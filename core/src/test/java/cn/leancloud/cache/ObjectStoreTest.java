@@ -0,0 +1,134 @@
+package cn.leancloud.cache;
+
+import cn.leancloud.AVObject;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ObjectStoreTest extends TestCase {
+  private static final String STORE_DIR = "./ObjectStoreTest/";
+
+  public ObjectStoreTest(String caseName) {
+    super(caseName);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    PersistenceUtil.sharedInstance().clearDir(STORE_DIR, System.currentTimeMillis() + 1000);
+  }
+
+  private static AVObject createObject(String className, String objectId, String updatedAt, String name) {
+    Map<String, Object> data = new HashMap<String, Object>();
+    data.put(AVObject.KEY_OBJECT_ID, objectId);
+    data.put(AVObject.KEY_UPDATED_AT, updatedAt);
+    data.put("name", name);
+    AVObject result = new AVObject(className);
+    result.resetServerData(data);
+    return result;
+  }
+
+  public void testIdentityMap() throws Exception {
+    ObjectStore store = new ObjectStore(STORE_DIR);
+    store.setIdentityMapCapacity(10);
+
+    AVObject author = createObject("Author", "a1", "2020-01-01T00:00:00.000Z", "Tom");
+    AVObject book = createObject("Book", "b1", "2020-01-01T00:00:00.000Z", "first");
+    book.getServerData().put("author", author);
+    assertSame(book, store.merge(book));
+
+    // the same author included by another page.
+    AVObject newerAuthor = createObject("Author", "a1", "2020-02-01T00:00:00.000Z", "Jerry");
+    AVObject anotherBook = createObject("Book", "b2", "2020-01-01T00:00:00.000Z", "second");
+    anotherBook.getServerData().put("author", newerAuthor);
+    List<AVObject> results = store.mergeAll(Arrays.asList(anotherBook));
+    assertSame(anotherBook, results.get(0));
+    assertSame(author, anotherBook.getServerData().get("author"));
+    assertEquals("Jerry", author.getString("name"));
+
+    // outdated data doesn't overwrite current instance.
+    AVObject olderAuthor = createObject("Author", "a1", "2019-01-01T00:00:00.000Z", "Old");
+    assertSame(author, store.merge(olderAuthor));
+    assertEquals("Jerry", author.getString("name"));
+
+    assertSame(author, store.get("Author", "a1"));
+    store.remove("Author", "a1");
+    assertNull(store.get("Author", "a1"));
+  }
+
+  public void testPersistentStore() throws Exception {
+    ObjectStore store = new ObjectStore(STORE_DIR);
+    store.setPersistentMaxAge(60000);
+
+    store.merge(createObject("Author", "a2", "2020-02-01T00:00:00.000Z", "Jerry"));
+    store.merge(createObject("Author", "a2", "2020-01-01T00:00:00.000Z", "Old"));
+    AVObject stored = store.get("Author", "a2");
+    assertNotNull(stored);
+    assertEquals("Jerry", stored.getString("name"));
+
+    // entry is written in background and can be loaded by another store.
+    store.flush();
+    ObjectStore anotherStore = new ObjectStore(STORE_DIR);
+    anotherStore.setPersistentMaxAge(60000);
+    AVObject loaded = anotherStore.get("Author", "a2");
+    assertNotNull(loaded);
+    assertEquals("Jerry", loaded.getString("name"));
+
+    store.remove("Author", "a2");
+    assertNull(store.get("Author", "a2"));
+    store.flush();
+    assertNull(anotherStore.get("Author", "a2"));
+  }
+
+  public void testCompleteMerge() throws Exception {
+    ObjectStore store = new ObjectStore(STORE_DIR);
+    store.setIdentityMapCapacity(10);
+
+    AVObject author = createObject("Author", "a3", "2020-01-01T00:00:00.000Z", "Tom");
+    author.getServerData().put("nickname", "tommy");
+    store.merge(author);
+
+    // partial data(e.g. query with selected keys) only overwrites returned fields.
+    AVObject partial = createObject("Author", "a3", "2020-02-01T00:00:00.000Z", "Jerry");
+    assertSame(author, store.merge(partial));
+    assertEquals("Jerry", author.getString("name"));
+    assertEquals("tommy", author.getString("nickname"));
+
+    // complete data replaces current one, so that fields unset on server are removed.
+    AVObject complete = createObject("Author", "a3", "2020-03-01T00:00:00.000Z", "Lucy");
+    assertSame(author, store.merge(complete, true));
+    assertEquals("Lucy", author.getString("name"));
+    assertFalse(author.getServerData().containsKey("nickname"));
+  }
+
+  public void testCompleteMergeIsAtomicForReaders() throws Exception {
+    final ObjectStore store = new ObjectStore(STORE_DIR);
+    store.setIdentityMapCapacity(10);
+    store.merge(createObject("Author", "a4", "2020-01-01T00:00:00.000Z", "Tom"));
+
+    final AtomicBoolean running = new AtomicBoolean(true);
+    final AtomicInteger partialReads = new AtomicInteger(0);
+    Thread reader = new Thread(new Runnable() {
+      public void run() {
+        while (running.get()) {
+          AVObject current = store.get("Author", "a4");
+          if (null == current.getString("name") || null == current.getUpdatedAt()) {
+            partialReads.incrementAndGet();
+          }
+        }
+      }
+    });
+    reader.start();
+    for (int i = 0; i < 20000; i++) {
+      store.merge(createObject("Author", "a4", "2020-01-01T00:00:00.000Z", "Tom" + i), true);
+    }
+    running.set(false);
+    reader.join();
+    assertEquals(0, partialReads.get());
+    assertEquals("Tom19999", store.get("Author", "a4").getString("name"));
+  }
+}
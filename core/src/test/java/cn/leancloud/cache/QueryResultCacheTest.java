@@ -0,0 +1,36 @@
+package cn.leancloud.cache;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class QueryResultCacheTest extends TestCase {
+  public QueryResultCacheTest(String caseName) {
+    super(caseName);
+  }
+
+  public void testInvalidateByClass() throws Exception {
+    QueryResultCache cache = QueryResultCache.getInstance();
+    Map<String, String> query = new HashMap<String, String>();
+    query.put("limit", "10");
+    String studentKey = QueryResultCache.generateKeyForQueryCondition("Student", query);
+    String teacherKey = QueryResultCache.generateKeyForQueryCondition("Teacher", query);
+    cache.cacheResult("Student", studentKey, "{\"results\":[]}");
+    cache.cacheResult("Teacher", teacherKey, "{\"results\":[]}");
+    assertTrue(cache.hasCachedResult("Student", query, 60000));
+    assertTrue(cache.hasCachedResult("Teacher", query, 60000));
+
+    cache.invalidate("Student");
+    assertFalse(cache.hasCachedResult("Student", query, 60000));
+    assertTrue(cache.hasCachedResult("Teacher", query, 60000));
+    assertTrue(cache.getCacheResult("Student", query, 60000, true).blockingFirst().isEmpty());
+
+    // entries written after invalidation are available again, even in the same second.
+    cache.cacheResult("Student", studentKey, "{\"results\":[]}");
+    assertTrue(cache.hasCachedResult("Student", query, 60000));
+
+    cache.invalidate("Student");
+    assertFalse(cache.hasCachedResult("Student", query, 60000));
+  }
+}
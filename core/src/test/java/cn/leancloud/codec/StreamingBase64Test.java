@@ -0,0 +1,60 @@
+package cn.leancloud.codec;
+
+import cn.leancloud.ops.Utils;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import junit.framework.TestCase;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+public class StreamingBase64Test extends TestCase {
+  public StreamingBase64Test(String name) {
+    super(name);
+  }
+
+  public void testCompatibleWithBase64() throws Exception {
+    Random random = new Random(3);
+    int[] sizes = {0, 1, 2, 3, 4, 5, 3 * 1024 - 1, 3 * 1024, 3 * 1024 + 1, 100 * 1024 + 2};
+    for (int size : sizes) {
+      byte[] data = new byte[size];
+      random.nextBytes(data);
+      String expected = Base64.encodeToString(data, Base64.NO_WRAP);
+
+      StringWriter writer = new StringWriter();
+      StreamingBase64.encode(data, 0, data.length, writer);
+      assertEquals(expected, writer.toString());
+      assertEquals(expected, StreamingBase64.encodeToString(data));
+      assertEquals(expected.length(), StreamingBase64.encodedLength(size));
+
+      assertTrue(Arrays.equals(data, StreamingBase64.decode(expected)));
+      // padding is optional.
+      assertTrue(Arrays.equals(data, StreamingBase64.decode(Base64.encodeToString(data,
+              Base64.NO_WRAP | Base64.NO_PADDING))));
+      // wrapped text goes through general decoder.
+      assertTrue(Arrays.equals(data, StreamingBase64.decode(Base64.encodeToString(data, Base64.DEFAULT))));
+    }
+  }
+
+  public void testInvalidInput() throws Exception {
+    try {
+      StreamingBase64.decode("a===");
+      fail();
+    } catch (IllegalArgumentException ex) {
+    }
+  }
+
+  public void testBytesJsonRoundTrip() throws Exception {
+    byte[] data = new byte[10 * 1024 + 1];
+    new Random(4).nextBytes(data);
+    Map<String, Object> map = Utils.mapFromByteArray(data);
+    String json = JSON.toJSONString(map);
+    assertTrue(json.contains("\"" + Base64.encodeToString(data, Base64.NO_WRAP) + "\""));
+
+    Object parsed = Utils.getObjectFrom(JSON.parseObject(json, JSONObject.class));
+    assertTrue(Arrays.equals(data, (byte[]) parsed));
+    assertTrue(Arrays.equals(data, Utils.dataFromMap(map)));
+  }
+}
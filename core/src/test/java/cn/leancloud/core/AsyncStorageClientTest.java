@@ -0,0 +1,98 @@
+package cn.leancloud.core;
+
+import cn.leancloud.AVException;
+import cn.leancloud.AVObject;
+import cn.leancloud.ObjectTypeAdapter;
+import cn.leancloud.StubHttpServer;
+import cn.leancloud.json.FastJsonCodec;
+import cn.leancloud.service.AsyncAPIService;
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import junit.framework.TestCase;
+import okhttp3.OkHttpClient;
+import retrofit2.Retrofit;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncStorageClientTest extends TestCase {
+  private StubHttpServer server;
+  private AsyncStorageClient client;
+
+  public AsyncStorageClientTest(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    ParserConfig.getGlobalInstance().putDeserializer(AVObject.class, new ObjectTypeAdapter());
+    server = new StubHttpServer(new HttpHandler() {
+      public void handle(HttpExchange exchange) throws java.io.IOException {
+        String path = exchange.getRequestURI().getPath();
+        int code = 200;
+        String response;
+        if (path.equals("/1.1/classes/Student/s1")) {
+          response = "{\"objectId\":\"s1\",\"name\":\"Tom\",\"updatedAt\":\"2020-09-13T12:26:40.000Z\"}";
+        } else if (path.equals("/1.1/classes/Student")) {
+          response = "{\"results\":[{\"objectId\":\"s1\",\"name\":\"Tom\"},{\"objectId\":\"s2\",\"name\":\"Jerry\"}]}";
+        } else if (path.equals("/1.1/functions/hello")) {
+          response = "{\"result\":\"hello world\"}";
+        } else {
+          code = 404;
+          response = "{\"code\":101,\"error\":\"Object not found.\"}";
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        StubHttpServer.respond(exchange, code, response);
+      }
+    });
+
+    Retrofit retrofit = new Retrofit.Builder()
+            .baseUrl(server.getUrl())
+            .addConverterFactory(new FastJsonCodec().createConverterFactory())
+            .client(new OkHttpClient())
+            .build();
+    client = new AsyncStorageClient(retrofit.create(AsyncAPIService.class));
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    server.stop();
+  }
+
+  public void testFetchAndQuery() throws Exception {
+    AVObject object = client.fetchObject("Student", "s1", null).get(5, TimeUnit.SECONDS);
+    assertEquals("Student", object.getClassName());
+    assertEquals("s1", object.getObjectId());
+    assertEquals("Tom", object.getString("name"));
+
+    Map<String, String> query = new HashMap<String, String>();
+    query.put("limit", "2");
+    List<AVObject> results = client.queryObjects("Student", query).get(5, TimeUnit.SECONDS);
+    assertEquals(2, results.size());
+    assertEquals("Student", results.get(1).getClassName());
+    assertEquals("Jerry", results.get(1).getString("name"));
+  }
+
+  public void testFanOut() throws Exception {
+    CompletableFuture<AVObject> fetch = client.fetchObject("Student", "s1", null);
+    CompletableFuture<String> function = client.callFunction("hello", new HashMap<String, Object>());
+    CompletableFuture.allOf(fetch, function).get(5, TimeUnit.SECONDS);
+    assertEquals("hello world", function.get());
+    assertEquals("s1", fetch.get().getObjectId());
+  }
+
+  public void testErrorPropagation() throws Exception {
+    try {
+      client.fetchObject("Student", "missing", null).get(5, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException ex) {
+      assertTrue(ex.getCause() instanceof AVException);
+      assertEquals(101, ((AVException) ex.getCause()).getCode());
+    }
+  }
+}
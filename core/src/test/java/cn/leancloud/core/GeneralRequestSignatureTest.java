@@ -0,0 +1,50 @@
+package cn.leancloud.core;
+
+import cn.leancloud.codec.MD5;
+import junit.framework.TestCase;
+import okhttp3.Headers;
+
+public class GeneralRequestSignatureTest extends TestCase {
+  public GeneralRequestSignatureTest(String name) {
+    super(name);
+  }
+
+  public void testSignValue() {
+    assertEquals("a0002d2a403f35f1fdff02bec956567e,1585203244677,ax-sig-1",
+            GeneralRequestSignature.requestSign("c7906aff685238709c47416140534f3e", 1585203244677l, "ax-sig-1"));
+    assertEquals("b892d60c5a3e68fb05c89d80b6c0a772,1574842473675,ax-sig-1",
+            GeneralRequestSignature.requestSign("4aaaa58afe61ac6b1ee49378fe8589e8", 1574842473675l, "ax-sig-1"));
+    assertEquals("d41d8cd98f00b204e9800998ecf8427e", MD5.computeMD5(""));
+  }
+
+  public void testSignIsReusedInSameMillisecond() {
+    String first = GeneralRequestSignature.requestSign(1600000000000l, false);
+    assertSame(first, GeneralRequestSignature.requestSign(1600000000000l, false));
+    assertNotSame(first, GeneralRequestSignature.requestSign(1600000000001l, false));
+
+    GeneralRequestSignature.setMasterKey("masterKeyForTest");
+    try {
+      String masterSign = GeneralRequestSignature.requestSign(1600000000000l, true);
+      assertTrue(masterSign.endsWith(",master"));
+      assertEquals(GeneralRequestSignature.requestSign("masterKeyForTest", 1600000000000l, "master"), masterSign);
+    } finally {
+      GeneralRequestSignature.setMasterKey(null);
+    }
+  }
+
+  public void testConstantHeadersFollowConfiguration() {
+    Headers headers = RequestPaddingInterceptor.getConstantHeaders();
+    assertSame(headers, RequestPaddingInterceptor.getConstantHeaders());
+    assertEquals(AVOSCloud.getApplicationId(), headers.get(RequestPaddingInterceptor.HEADER_KEY_LC_APPID));
+
+    String hookKey = AVOSCloud.getHookKey();
+    AVOSCloud.setHookKey("hookKeyForTest");
+    try {
+      Headers changed = RequestPaddingInterceptor.getConstantHeaders();
+      assertNotSame(headers, changed);
+      assertEquals("hookKeyForTest", changed.get(RequestPaddingInterceptor.HEADER_KEY_LC_HOOKKEY));
+    } finally {
+      AVOSCloud.setHookKey(hookKey);
+    }
+  }
+}
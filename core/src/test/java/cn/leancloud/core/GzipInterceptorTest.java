@@ -0,0 +1,104 @@
+package cn.leancloud.core;
+
+import cn.leancloud.StubHttpServer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import junit.framework.TestCase;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class GzipInterceptorTest extends TestCase {
+  private StubHttpServer server;
+  private OkHttpClient client;
+  private String baseUrl;
+  private volatile String receivedEncoding;
+  private volatile String receivedBody;
+
+  public GzipInterceptorTest(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    server = new StubHttpServer(new HttpHandler() {
+      public void handle(HttpExchange exchange) throws java.io.IOException {
+        receivedEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        InputStream is = exchange.getRequestBody();
+        if ("gzip".equals(receivedEncoding)) {
+          is = new GZIPInputStream(is);
+        }
+        receivedBody = new String(StubHttpServer.readAll(is), "UTF-8");
+
+        byte[] bytes = "{\"result\":\"ok\"}".getBytes("UTF-8");
+        if ("gzip".equals(exchange.getRequestHeaders().getFirst("Accept-Encoding"))) {
+          ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+          GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+          gzip.write(bytes);
+          gzip.close();
+          bytes = compressed.toByteArray();
+          exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+        StubHttpServer.respond(exchange, 200, bytes, 0, bytes.length);
+      }
+    });
+    baseUrl = server.getUrl();
+    client = new OkHttpClient.Builder().addInterceptor(new GzipInterceptor()).build();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    AppConfiguration.setRequestCompression(AVOSService.API, false);
+    AppConfiguration.setRequestCompressionThreshold(16 * 1024);
+    server.stop();
+  }
+
+  private String post(String path, String body) throws Exception {
+    Request request = new Request.Builder().url(baseUrl + path)
+            .post(RequestBody.create(MediaType.parse("application/json"), body)).build();
+    Response response = client.newCall(request).execute();
+    try {
+      assertNull(response.header("Content-Encoding"));
+      return response.body().string();
+    } finally {
+      response.close();
+    }
+  }
+
+  private static String largeBody() {
+    StringBuilder sb = new StringBuilder("{\"requests\":[");
+    for (int i = 0; i < 1000; i++) {
+      sb.append(i > 0 ? "," : "").append("{\"method\":\"PUT\",\"path\":\"/1.1/classes/A/").append(i).append("\"}");
+    }
+    return sb.append("]}").toString();
+  }
+
+  public void testLargeBodyIsCompressed() throws Exception {
+    AppConfiguration.setRequestCompression(AVOSService.API, true);
+    String body = largeBody();
+    assertEquals("{\"result\":\"ok\"}", post("/1.1/batch", body));
+    assertEquals("gzip", receivedEncoding);
+    assertEquals(body, receivedBody);
+
+    assertEquals("{\"result\":\"ok\"}", post("/1.1/batch", "{}"));
+    assertNull(receivedEncoding);
+    assertEquals("{}", receivedBody);
+  }
+
+  public void testCompressionIsPerService() throws Exception {
+    AppConfiguration.setRequestCompression(AVOSService.API, true);
+    AppConfiguration.setRequestCompressionThreshold(0);
+    post("/1.1/functions/hello", largeBody());
+    assertNull(receivedEncoding);
+    post("/1.1/classes/A", "{\"name\":\"a\"}");
+    assertEquals("gzip", receivedEncoding);
+    assertEquals("{\"name\":\"a\"}", receivedBody);
+  }
+}
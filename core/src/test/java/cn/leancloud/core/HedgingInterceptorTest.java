@@ -0,0 +1,211 @@
+package cn.leancloud.core;
+
+import cn.leancloud.StubHttpServer;
+import cn.leancloud.metrics.EndpointMetrics;
+import cn.leancloud.metrics.InMemoryMetricsCollector;
+import cn.leancloud.metrics.MetricsEventListener;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import junit.framework.TestCase;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HedgingInterceptorTest extends TestCase {
+  private StubHttpServer server;
+  private OkHttpClient client;
+  private String baseUrl;
+  private final AtomicInteger requestCount = new AtomicInteger(0);
+  private volatile long firstDelayMillis = 0;
+  private volatile CountDownLatch arrivals = null;
+  private final AtomicInteger missedArrivals = new AtomicInteger(0);
+  private String frozenApiEndpoint;
+
+  public HedgingInterceptorTest(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    server = new StubHttpServer(new HttpHandler() {
+      public void handle(HttpExchange exchange) throws java.io.IOException {
+        String response = "fast";
+        CountDownLatch barrier = arrivals;
+        if (null != barrier) {
+          // hold every request until all of them arrive.
+          barrier.countDown();
+          try {
+            if (!barrier.await(5, TimeUnit.SECONDS)) {
+              missedArrivals.incrementAndGet();
+            }
+          } catch (InterruptedException ex) {
+            ;
+          }
+        }
+        if (requestCount.incrementAndGet() == 1 && firstDelayMillis > 0) {
+          try {
+            Thread.sleep(firstDelayMillis);
+          } catch (InterruptedException ex) {
+            ;
+          }
+          response = "slow";
+        }
+        try {
+          StubHttpServer.respond(exchange, 200, response);
+        } catch (java.io.IOException ex) {
+          // client cancelled.
+        }
+      }
+    });
+    baseUrl = server.getUrl();
+    frozenApiEndpoint = AppRouter.getInstance().getFrozenEndpoint(AVOSService.API);
+    AppRouter.getInstance().freezeEndpoint(AVOSService.API, baseUrl);
+
+    OkHttpClient baseClient = new OkHttpClient();
+    OkHttpClient.Builder builder = baseClient.newBuilder();
+    builder.interceptors().add(0, new HedgingInterceptor(baseClient));
+    client = builder.build();
+
+    HedgingInterceptor.latencyTracker.reset();
+    HedgingInterceptor.budget.reset();
+    for (int i = 0; i < HedgingInterceptor.MIN_SAMPLES; i++) {
+      HedgingInterceptor.latencyTracker.record(TimeUnit.MILLISECONDS.toNanos(20));
+    }
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    AppConfiguration.setRequestHedging(0, 0.05);
+    HedgingInterceptor.latencyTracker.reset();
+    HedgingInterceptor.budget.reset();
+    AppRouter.getInstance().freezeEndpoint(AVOSService.API, frozenApiEndpoint);
+    server.stop();
+  }
+
+  private String get(String path) throws Exception {
+    return getUrl(baseUrl + path);
+  }
+
+  private String getUrl(String url) throws Exception {
+    Response response = client.newCall(new Request.Builder().url(url).build()).execute();
+    try {
+      return response.body().string();
+    } finally {
+      response.close();
+    }
+  }
+
+  public void testPercentile() {
+    HedgingInterceptor.LatencyTracker tracker = new HedgingInterceptor.LatencyTracker(128);
+    for (int i = 1; i < HedgingInterceptor.MIN_SAMPLES; i++) {
+      tracker.record(i);
+    }
+    assertEquals(-1, tracker.percentile(95));
+    for (int i = HedgingInterceptor.MIN_SAMPLES; i <= 100; i++) {
+      tracker.record(i);
+    }
+    assertEquals(95, tracker.percentile(95));
+    assertEquals(50, tracker.percentile(50));
+    assertEquals(100, tracker.percentile(100));
+  }
+
+  public void testSlowRequestIsHedged() throws Exception {
+    AppConfiguration.setRequestHedging(95, 1);
+    firstDelayMillis = 3000;
+    long start = System.currentTimeMillis();
+    assertEquals("fast", get("/1.1/classes/Student"));
+    assertTrue(System.currentTimeMillis() - start < 2000);
+    assertEquals(2, requestCount.get());
+  }
+
+  public void testHedgeIsLimitedByBudget() throws Exception {
+    AppConfiguration.setRequestHedging(95, 0);
+    firstDelayMillis = 300;
+    assertEquals("slow", get("/1.1/classes/Student"));
+    assertEquals(1, requestCount.get());
+  }
+
+  public void testOnlyApiReadsAreHedged() throws Exception {
+    AppConfiguration.setRequestHedging(95, 1);
+    firstDelayMillis = 300;
+    assertEquals("slow", get("/1.1/functions/hello"));
+    assertEquals(1, requestCount.get());
+  }
+
+  public void testOtherHostsAreNotHedged() throws Exception {
+    AppConfiguration.setRequestHedging(95, 1);
+    AppConfiguration.setRequestHedgingToAlternateEndpoint(true);
+    try {
+      firstDelayMillis = 300;
+      // e.g. file metadata on CDN, which has the same path style as API.
+      String cdnUrl = "http://localhost:" + server.getPort() + "/1.1/classes/Student";
+      assertFalse(HedgingInterceptor.isApiHost(HttpUrl.get(cdnUrl)));
+      assertEquals("slow", getUrl(cdnUrl));
+      assertEquals(1, requestCount.get());
+    } finally {
+      AppConfiguration.setRequestHedgingToAlternateEndpoint(false);
+    }
+  }
+
+  public void testConcurrencyIsNotLimited() throws Exception {
+    AppConfiguration.setRequestHedging(95, 0);
+    final int count = 8;
+    arrivals = new CountDownLatch(count);
+    ExecutorService executor = Executors.newFixedThreadPool(count);
+    try {
+      List<Future<String>> results = new ArrayList<Future<String>>();
+      for (int i = 0; i < count; i++) {
+        results.add(executor.submit(new Callable<String>() {
+          public String call() throws Exception {
+            return get("/1.1/classes/Student");
+          }
+        }));
+      }
+      for (Future<String> result : results) {
+        assertEquals("fast", result.get(10, TimeUnit.SECONDS));
+      }
+      // all requests are sent at the same time, beyond 5 per host of default dispatcher.
+      assertEquals(0, missedArrivals.get());
+      assertEquals(count, requestCount.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void testHedgedCallMetrics() throws Exception {
+    InMemoryMetricsCollector collector = new InMemoryMetricsCollector();
+    AppConfiguration.setMetricsCollector(collector);
+    try {
+      OkHttpClient baseClient = new OkHttpClient.Builder().eventListenerFactory(MetricsEventListener.FACTORY).build();
+      OkHttpClient.Builder builder = baseClient.newBuilder();
+      builder.interceptors().add(0, new HedgingInterceptor(baseClient));
+      client = builder.build();
+      AppConfiguration.setRequestHedging(95, 1);
+      firstDelayMillis = 3000;
+      assertEquals("fast", get("/1.1/classes/Student"));
+
+      // outer call is not measured, the losing call is cancelled instead of failed.
+      EndpointMetrics metrics = collector.getEndpointMetrics("GET /1.1/classes/Student");
+      for (int i = 0; i < 50 && metrics.getInFlight() > 0; i++) {
+        Thread.sleep(100);
+      }
+      assertEquals(0, metrics.getInFlight());
+      assertEquals(1, metrics.getTotal().getCount());
+      assertEquals(1, metrics.getCancellations());
+      assertEquals(0, metrics.getFailures());
+    } finally {
+      AppConfiguration.setMetricsCollector(null);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package cn.leancloud.core;
+
+import cn.leancloud.AVException;
+import cn.leancloud.StubHttpServer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import junit.framework.TestCase;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RateLimitInterceptorTest extends TestCase {
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  public RateLimitInterceptorTest(String name) {
+    super(name);
+  }
+
+  public void testTokenBucket() {
+    RequestRateLimiter limiter = new RequestRateLimiter(10, 0);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(0, limiter.reserve(0, 0));
+    }
+    assertEquals(-1, limiter.reserve(0, 0));
+    assertEquals(SECOND / 10, limiter.reserve(0, SECOND));
+    assertEquals(SECOND / 10, limiter.reserve(SECOND / 10, SECOND));
+  }
+
+  public void testAdaptToRateLimited() {
+    RequestRateLimiter limiter = new RequestRateLimiter(100, 0);
+    limiter.onRateLimited(0, 0, 2 * SECOND);
+    assertEquals(70.0, limiter.getRate(), 0.001);
+    assertEquals(-1, limiter.reserve(SECOND, SECOND / 2));
+    assertEquals(SECOND, limiter.reserve(SECOND, 2 * SECOND));
+
+    limiter.onRateLimited(3 * SECOND, 3 * SECOND, 0);
+    assertEquals(49.0, limiter.getRate(), 0.001);
+    limiter.onSuccess(3 * SECOND + 1);
+    assertEquals(49.0, limiter.getRate(), 0.001);
+    limiter.onSuccess(4 * SECOND);
+    assertEquals(54.0, limiter.getRate(), 0.001);
+    for (int i = 5; i < 20; i++) {
+      limiter.onSuccess(i * SECOND);
+    }
+    assertEquals(100.0, limiter.getRate(), 0.001);
+  }
+
+  public void testConcurrentRateLimited() {
+    RequestRateLimiter limiter = new RequestRateLimiter(100, 0);
+    // requests sent in the same burst are limited together, the rate is cut only once.
+    assertTrue(limiter.onRateLimited(SECOND / 10, 0, 0));
+    for (int i = 0; i < 10; i++) {
+      assertFalse(limiter.onRateLimited(SECOND / 10 + i, i, 0));
+    }
+    assertEquals(70.0, limiter.getRate(), 0.001);
+
+    // request sent after the cut is limited again, the rate where it is hit is remembered.
+    assertTrue(limiter.onRateLimited(SECOND, SECOND / 2, 0));
+    assertEquals(49.0, limiter.getRate(), 0.001);
+    limiter.onSuccess(2 * SECOND);
+    assertEquals(54.0, limiter.getRate(), 0.001);
+    limiter.onSuccess(3 * SECOND);
+    assertEquals(59.0, limiter.getRate(), 0.001);
+  }
+
+  public void testServiceOfPath() {
+    assertEquals(AVOSService.ENGINE, RateLimitInterceptor.serviceOf(HttpUrl.get("https://a.b/1.1/functions/hello")));
+    assertEquals(AVOSService.ENGINE, RateLimitInterceptor.serviceOf(HttpUrl.get("https://a.b/1.1/call/hello")));
+    assertEquals(AVOSService.PUSH, RateLimitInterceptor.serviceOf(HttpUrl.get("https://a.b/1.1/push")));
+    assertEquals(AVOSService.API, RateLimitInterceptor.serviceOf(HttpUrl.get("https://a.b/1.1/classes/Student")));
+    assertEquals(SECOND * 3, RateLimitInterceptor.parseRetryAfter(" 3"));
+    assertEquals(0, RateLimitInterceptor.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+  }
+
+  public void testInterceptor() throws Exception {
+    final AtomicInteger counter = new AtomicInteger(0);
+    StubHttpServer server = new StubHttpServer(new HttpHandler() {
+      public void handle(HttpExchange exchange) throws java.io.IOException {
+        exchange.getResponseHeaders().add("Retry-After", "60");
+        StubHttpServer.respond(exchange, counter.incrementAndGet() == 1 ? 429 : 200, "{}");
+      }
+    });
+    AppConfiguration.setRequestRateLimit(AVOSService.PUSH, 1000);
+    AppConfiguration.setRequestRateLimitMaxWait(100);
+    try {
+      OkHttpClient client = new OkHttpClient.Builder().addInterceptor(new RateLimitInterceptor()).build();
+      Request request = new Request.Builder()
+              .url(server.getUrl() + "/1.1/push")
+              .header(RequestPaddingInterceptor.HEADER_KEY_LC_APPID, "rateLimitTestApp")
+              .build();
+      Response first = client.newCall(request).execute();
+      assertEquals(429, first.code());
+      first.close();
+
+      // bucket is paused by Retry-After, next request is rejected locally.
+      Response second = client.newCall(request).execute();
+      assertEquals(429, second.code());
+      assertTrue(second.body().string().contains(String.valueOf(AVException.RATE_LIMITED)));
+      assertEquals(1, counter.get());
+      assertEquals(700.0,
+              RateLimitInterceptor.getLimiter("rateLimitTestApp", AVOSService.PUSH, 1000).getRate(), 0.001);
+    } finally {
+      AppConfiguration.setRequestRateLimit(AVOSService.PUSH, 0);
+      AppConfiguration.setRequestRateLimitMaxWait(5000);
+      server.stop();
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package cn.leancloud.core;
+
+import cn.leancloud.AVException;
+import cn.leancloud.StubHttpServer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import junit.framework.TestCase;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RetryInterceptorTest extends TestCase {
+  private static final MediaType JSON = MediaType.parse("application/json");
+
+  private StubHttpServer server;
+  private OkHttpClient client;
+  private String baseUrl;
+  private final AtomicInteger requestCount = new AtomicInteger(0);
+  private volatile int failures = 0;
+
+  public RetryInterceptorTest(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    server = new StubHttpServer(new HttpHandler() {
+      public void handle(HttpExchange exchange) throws java.io.IOException {
+        StubHttpServer.respond(exchange, requestCount.incrementAndGet() <= failures ? 503 : 200, "{}");
+      }
+    });
+    baseUrl = server.getUrl();
+    client = new OkHttpClient.Builder().addInterceptor(new RetryInterceptor()).build();
+    CircuitBreaker.resetAll();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    AppConfiguration.setMaxRetries(0);
+    AppConfiguration.setCircuitBreaker(0, 30000);
+    CircuitBreaker.resetAll();
+    server.stop();
+  }
+
+  private int execute(Request request) throws Exception {
+    Response response = client.newCall(request).execute();
+    try {
+      return response.code();
+    } finally {
+      response.close();
+    }
+  }
+
+  public void testIdempotency() {
+    assertTrue(RetryInterceptor.isIdempotent(new Request.Builder().url(baseUrl + "/1.1/classes/A").build()));
+    assertTrue(RetryInterceptor.isIdempotent(new Request.Builder().url(baseUrl + "/1.1/classes/A/1")
+            .put(RequestBody.create(JSON, "{\"name\":\"a\",\"tags\":{\"__op\":\"AddUnique\",\"objects\":[1]}}")).build()));
+    assertFalse(RetryInterceptor.isIdempotent(new Request.Builder().url(baseUrl + "/1.1/classes/A/1")
+            .put(RequestBody.create(JSON, "{\"count\":{\"__op\":\"Increment\",\"amount\":1}}")).build()));
+    assertFalse(RetryInterceptor.isIdempotent(new Request.Builder().url(baseUrl + "/1.1/classes/A")
+            .post(RequestBody.create(JSON, "{\"name\":\"a\"}")).build()));
+    assertTrue(RetryInterceptor.isIdempotent(new Request.Builder().url(baseUrl + "/1.1/batch")
+            .post(RequestBody.create(JSON, "{\"requests\":[{\"method\":\"PUT\",\"path\":\"/1.1/classes/A/1\","
+                    + "\"body\":{\"name\":\"a\"}},{\"method\":\"DELETE\",\"path\":\"/1.1/classes/A/2\"}]}")).build()));
+    assertFalse(RetryInterceptor.isIdempotent(new Request.Builder().url(baseUrl + "/1.1/batch")
+            .post(RequestBody.create(JSON, "{\"requests\":[{\"method\":\"POST\",\"path\":\"/1.1/classes/A\","
+                    + "\"body\":{\"name\":\"a\"}}]}")).build()));
+  }
+
+  public void testBackoff() {
+    Random random = new Random(1);
+    for (int i = 0; i < 100; i++) {
+      long backoff = RetryInterceptor.backoffMillis(0, random);
+      assertTrue(backoff >= 100 && backoff <= 200);
+      backoff = RetryInterceptor.backoffMillis(30, random);
+      assertTrue(backoff >= 2500 && backoff <= 5000);
+    }
+  }
+
+  public void testRetryIdempotentOnly() throws Exception {
+    AppConfiguration.setMaxRetries(2);
+    failures = 2;
+    assertEquals(200, execute(new Request.Builder().url(baseUrl + "/1.1/classes/A").build()));
+    assertEquals(3, requestCount.get());
+
+    requestCount.set(0);
+    assertEquals(503, execute(new Request.Builder().url(baseUrl + "/1.1/classes/A")
+            .post(RequestBody.create(JSON, "{\"name\":\"a\"}")).build()));
+    assertEquals(1, requestCount.get());
+  }
+
+  public void testCircuitBreaker() throws Exception {
+    AppConfiguration.setCircuitBreaker(2, 200);
+    failures = 2;
+    Request request = new Request.Builder().url(baseUrl + "/1.1/classes/A").build();
+    assertEquals(503, execute(request));
+    assertEquals(503, execute(request));
+    assertEquals(CircuitBreaker.State.OPEN, CircuitBreaker.getStates().get("127.0.0.1"));
+
+    Response rejected = client.newCall(request).execute();
+    assertEquals(503, rejected.code());
+    assertTrue(rejected.body().string().contains(String.valueOf(AVException.CONNECTION_FAILED)));
+    assertEquals(2, requestCount.get());
+
+    TimeUnit.MILLISECONDS.sleep(250);
+    assertEquals(200, execute(request));
+    assertEquals(CircuitBreaker.State.CLOSED, CircuitBreaker.getStates().get("127.0.0.1"));
+  }
+}
@@ -0,0 +1,165 @@
+package cn.leancloud.core;
+
+import cn.leancloud.AVInstallation;
+import cn.leancloud.AVObject;
+import cn.leancloud.AVQuery;
+import cn.leancloud.AVStatus;
+import cn.leancloud.cache.QueryResultCache;
+import cn.leancloud.service.APIService;
+import cn.leancloud.types.AVNull;
+import com.alibaba.fastjson.JSONObject;
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.subjects.PublishSubject;
+import junit.framework.TestCase;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StorageClientCachePolicyTest extends TestCase {
+  public StorageClientCachePolicyTest(String caseName) {
+    super(caseName);
+  }
+
+  public void testStaleWhileRevalidate() throws Exception {
+    StorageClient client = new StorageClient(null, false, null);
+    final PublishSubject<Object> remote = PublishSubject.create();
+    final AtomicInteger subscriptions = new AtomicInteger(0);
+    StorageClient.QueryExecutor cacheExecutor = new StorageClient.QueryExecutor() {
+      public <T> Observable<T> executor() {
+        return (Observable<T>) Observable.just((Object) "cached");
+      }
+    };
+    StorageClient.QueryExecutor remoteExecutor = new StorageClient.QueryExecutor() {
+      public <T> Observable<T> executor() {
+        return (Observable<T>) remote.doOnSubscribe(new Consumer<Disposable>() {
+          public void accept(Disposable d) throws Exception {
+            subscriptions.incrementAndGet();
+          }
+        });
+      }
+    };
+    Map<String, Object> params = new HashMap<String, Object>();
+    params.put("limit", 10);
+
+    Object first = client.executeCachedQuery("hello", params, AVQuery.CachePolicy.STALE_WHILE_REVALIDATE,
+            60000, cacheExecutor, remoteExecutor).blockingFirst();
+    Object second = client.executeCachedQuery("hello", params, AVQuery.CachePolicy.STALE_WHILE_REVALIDATE,
+            60000, cacheExecutor, remoteExecutor).blockingFirst();
+    assertEquals("cached", first);
+    assertEquals("cached", second);
+
+    // only one background refresh is running for the same key.
+    long deadline = System.currentTimeMillis() + 5000;
+    while (subscriptions.get() < 1 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(1, subscriptions.get());
+
+    remote.onNext("fresh");
+    remote.onComplete();
+    final String cacheKey = QueryResultCache.generateCachedKey("hello", params);
+    deadline = System.currentTimeMillis() + 5000;
+    boolean started = false;
+    while (!started && System.currentTimeMillis() < deadline) {
+      started = client.revalidateInBackground(cacheKey, Observable.empty());
+      Thread.sleep(10);
+    }
+    assertTrue(started);
+  }
+
+  public void testFreshCacheIsNotRevalidated() throws Exception {
+    StorageClient client = new StorageClient(null, false, null);
+    final AtomicInteger subscriptions = new AtomicInteger(0);
+    StorageClient.QueryExecutor cacheExecutor = new StorageClient.QueryExecutor() {
+      public <T> Observable<T> executor() {
+        return (Observable<T>) Observable.just((Object) "cached");
+      }
+    };
+    StorageClient.QueryExecutor remoteExecutor = new StorageClient.QueryExecutor() {
+      public <T> Observable<T> executor() {
+        return (Observable<T>) Observable.never().doOnSubscribe(new Consumer<Disposable>() {
+          public void accept(Disposable d) throws Exception {
+            subscriptions.incrementAndGet();
+          }
+        });
+      }
+    };
+    Map<String, Object> params = new HashMap<String, Object>();
+    params.put("limit", 20);
+    String cacheKey = QueryResultCache.generateCachedKey("fresh", params);
+    QueryResultCache.getInstance().cacheResult(cacheKey, "\"cached\"");
+    try {
+      for (int i = 0; i < 3; i++) {
+        assertEquals("cached", client.executeCachedQuery("fresh", params,
+                AVQuery.CachePolicy.STALE_WHILE_REVALIDATE, 60000, cacheExecutor, remoteExecutor).blockingFirst());
+      }
+      assertEquals(0, subscriptions.get());
+
+      // entry is stale once it is older than fresh age.
+      AppConfiguration.setStaleWhileRevalidateFreshAge(0);
+      client.executeCachedQuery("fresh", params, AVQuery.CachePolicy.STALE_WHILE_REVALIDATE, 60000,
+              cacheExecutor, remoteExecutor).blockingFirst();
+      long deadline = System.currentTimeMillis() + 5000;
+      while (subscriptions.get() < 1 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(1, subscriptions.get());
+    } finally {
+      AppConfiguration.setStaleWhileRevalidateFreshAge(10000);
+      QueryResultCache.getInstance().clearCachedFile(cacheKey);
+    }
+  }
+
+  public void testStaleWhileRevalidateWithoutCache() throws Exception {
+    StorageClient client = new StorageClient(null, false, null);
+    StorageClient.QueryExecutor cacheExecutor = new StorageClient.QueryExecutor() {
+      public <T> Observable<T> executor() {
+        return Observable.error(new java.io.FileNotFoundException("cache is not existed."));
+      }
+    };
+    StorageClient.QueryExecutor remoteExecutor = new StorageClient.QueryExecutor() {
+      public <T> Observable<T> executor() {
+        return (Observable<T>) Observable.just((Object) "fresh");
+      }
+    };
+    Object result = client.executeCachedQuery("world", new HashMap<String, Object>(),
+            AVQuery.CachePolicy.STALE_WHILE_REVALIDATE, 60000, cacheExecutor, remoteExecutor).blockingFirst();
+    assertEquals("fresh", result);
+  }
+
+  public void testWholeObjectInvalidatesCache() throws Exception {
+    APIService apiService = (APIService) Proxy.newProxyInstance(APIService.class.getClassLoader(),
+            new Class[]{APIService.class}, new InvocationHandler() {
+              public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if ("saveWholeObject".equals(method.getName())) {
+                  return Observable.just(new AVObject(AVInstallation.CLASS_NAME));
+                } else if ("deleteWholeObject".equals(method.getName())) {
+                  return Observable.just(AVNull.getINSTANCE());
+                }
+                throw new UnsupportedOperationException(method.getName());
+              }
+            });
+    StorageClient client = new StorageClient(apiService, false, null);
+    QueryResultCache cache = QueryResultCache.getInstance();
+    Map<String, String> query = new HashMap<String, String>();
+    query.put("limit", "10");
+    String installationKey = QueryResultCache.generateKeyForQueryCondition(AVInstallation.CLASS_NAME, query);
+    String statusKey = QueryResultCache.generateKeyForQueryCondition(AVStatus.CLASS_NAME, query);
+    cache.cacheResult(AVInstallation.CLASS_NAME, installationKey, "{\"results\":[]}");
+    cache.cacheResult(AVStatus.CLASS_NAME, statusKey, "{\"results\":[]}");
+
+    // endpoint is the path segment, cached queries are keyed by class name.
+    client.saveWholeObject(AVObject.class, "installations", null, new JSONObject(), false, null).blockingFirst();
+    assertFalse(cache.hasCachedResult(AVInstallation.CLASS_NAME, query, 60000));
+    assertTrue(cache.hasCachedResult(AVStatus.CLASS_NAME, query, 60000));
+
+    client.deleteWholeObject("statuses", "s1", null).blockingFirst();
+    assertFalse(cache.hasCachedResult(AVStatus.CLASS_NAME, query, 60000));
+  }
+}
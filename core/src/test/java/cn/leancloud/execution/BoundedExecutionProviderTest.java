@@ -0,0 +1,89 @@
+package cn.leancloud.execution;
+
+import cn.leancloud.core.AppConfiguration;
+import io.reactivex.Observable;
+import junit.framework.TestCase;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class BoundedExecutionProviderTest extends TestCase {
+  public BoundedExecutionProviderTest(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    AppConfiguration.setExecutionProvider(null);
+  }
+
+  public void testSaturatedPoolRunsInCaller() throws Exception {
+    final BoundedExecutionProvider provider = new BoundedExecutionProvider(1, 1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch finished = new CountDownLatch(2);
+    Runnable blocking = new Runnable() {
+      public void run() {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+        }
+        finished.countDown();
+      }
+    };
+    // one task occupies the thread and one waits in queue.
+    provider.getScheduler().scheduleDirect(blocking);
+    provider.getScheduler().scheduleDirect(blocking);
+
+    final Thread caller = Thread.currentThread();
+    final Thread[] executedOn = new Thread[1];
+    provider.getScheduler().scheduleDirect(new Runnable() {
+      public void run() {
+        executedOn[0] = Thread.currentThread();
+      }
+    });
+    assertSame(caller, executedOn[0]);
+    assertEquals(1, provider.getRejectedCount());
+    assertEquals(3, provider.getSubmittedCount());
+    assertEquals(1, provider.getLargestPoolSize());
+
+    release.countDown();
+    assertTrue(finished.await(5, TimeUnit.SECONDS));
+    provider.shutdown();
+  }
+
+  public void testConfiguredScheduler() throws Exception {
+    BoundedExecutionProvider provider = new BoundedExecutionProvider(2, 10);
+    AppConfiguration.setExecutionProvider(provider);
+    assertSame(provider.getScheduler(), AppConfiguration.getSubscribeScheduler());
+    String threadName = Observable.fromCallable(new Callable<String>() {
+      public String call() throws Exception {
+        return Thread.currentThread().getName();
+      }
+    }).subscribeOn(AppConfiguration.getSubscribeScheduler()).blockingFirst();
+    assertTrue(threadName.startsWith("leancloud-io-"));
+
+    AppConfiguration.setExecutionProvider(null);
+    assertTrue(AppConfiguration.getExecutionProvider() instanceof DefaultExecutionProvider);
+    provider.shutdown();
+  }
+
+  public void testVirtualThreadProvider() throws Exception {
+    if (!VirtualThreadExecutionProvider.isSupported()) {
+      try {
+        new VirtualThreadExecutionProvider();
+        fail();
+      } catch (UnsupportedOperationException ex) {
+      }
+      return;
+    }
+    VirtualThreadExecutionProvider provider = new VirtualThreadExecutionProvider();
+    Boolean isVirtual = Observable.fromCallable(new Callable<Boolean>() {
+      public Boolean call() throws Exception {
+        return (Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread());
+      }
+    }).subscribeOn(provider.getScheduler()).blockingFirst();
+    assertTrue(isVirtual);
+    provider.shutdown();
+  }
+}
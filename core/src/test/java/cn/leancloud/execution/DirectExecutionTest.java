@@ -0,0 +1,50 @@
+package cn.leancloud.execution;
+
+import cn.leancloud.core.AppConfiguration;
+import cn.leancloud.core.StorageClient;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+import junit.framework.TestCase;
+
+import java.util.concurrent.Callable;
+
+public class DirectExecutionTest extends TestCase {
+  public DirectExecutionTest(String name) {
+    super(name);
+  }
+
+  private static Observable<Thread> currentThread() {
+    return Observable.fromCallable(new Callable<Thread>() {
+      public Thread call() throws Exception {
+        return Thread.currentThread();
+      }
+    });
+  }
+
+  public void testBlockingCallStaysOnCallerThread() throws Exception {
+    StorageClient client = new StorageClient(null, true, new AppConfiguration.SchedulerCreator() {
+      public Scheduler create() {
+        return Schedulers.single();
+      }
+    });
+    Thread caller = Thread.currentThread();
+
+    Thread asyncThread = ((Observable<Thread>) client.wrapObservable(currentThread())).blockingFirst();
+    assertNotSame(caller, asyncThread);
+
+    DirectExecution.enter();
+    try {
+      // nested scope is allowed.
+      DirectExecution.enter();
+      DirectExecution.exit();
+      assertTrue(DirectExecution.isActive());
+      Thread directThread = ((Observable<Thread>) client.wrapObservable(currentThread())).blockingFirst();
+      assertSame(caller, directThread);
+      assertSame(caller, currentThread().subscribeOn(AppConfiguration.getSubscribeScheduler()).blockingFirst());
+    } finally {
+      DirectExecution.exit();
+    }
+    assertFalse(DirectExecution.isActive());
+  }
+}
@@ -0,0 +1,109 @@
+package cn.leancloud.json;
+
+import cn.leancloud.AVObject;
+import cn.leancloud.core.AppConfiguration;
+import cn.leancloud.query.AVQueryResult;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class FastJsonCodecTest extends TestCase {
+  public FastJsonCodecTest(String name) {
+    super(name);
+  }
+
+  public void testDefaultCodec() {
+    assertTrue(AppConfiguration.getJSONCodec() instanceof FastJsonCodec);
+    assertNotNull(AppConfiguration.getJSONCodec().createConverterFactory());
+  }
+
+  public void testMapRoundTrip() {
+    JSONCodec codec = new FastJsonCodec();
+    Map<String, Object> data = new HashMap<String, Object>();
+    data.put("name", "Jerry");
+    data.put("age", 20);
+    String text = codec.toJSONString(data);
+    Map<String, Object> result = codec.parseObject(text, Map.class);
+    assertEquals("Jerry", result.get("name"));
+    assertEquals(20, result.get("age"));
+  }
+
+  public void testNullValue() {
+    JSONCodec codec = new FastJsonCodec();
+    Map<String, Object> data = new HashMap<String, Object>();
+    data.put("name", null);
+    assertEquals("{}", codec.toJSONString(data));
+    assertEquals("{\"name\":null}", codec.toJSONStringWithNull(data));
+  }
+
+  public static class QueueItem {
+    private String id;
+    private Integer retries;
+    private Boolean acked;
+
+    public String getId() {
+      return id;
+    }
+    public void setId(String id) {
+      this.id = id;
+    }
+    public Integer getRetries() {
+      return retries;
+    }
+    public void setRetries(Integer retries) {
+      this.retries = retries;
+    }
+    public Boolean getAcked() {
+      return acked;
+    }
+    public void setAcked(Boolean acked) {
+      this.acked = acked;
+    }
+  }
+
+  public void testTypeAndDefaultsFormat() {
+    JSONCodec codec = new FastJsonCodec();
+    List<QueueItem> items = new ArrayList<QueueItem>();
+    QueueItem item = new QueueItem();
+    item.setId("1");
+    items.add(item);
+
+    // same format as persistent message queue files written by previous versions.
+    String expected = JSON.toJSONString(items, SerializerFeature.SkipTransientField,
+        SerializerFeature.WriteClassName, SerializerFeature.QuoteFieldNames,
+        SerializerFeature.WriteNullNumberAsZero, SerializerFeature.WriteNullBooleanAsFalse);
+    String text = codec.toJSONStringWithTypeAndDefaults(items);
+    assertEquals(expected, text);
+
+    List<QueueItem> restored = codec.parseArray(text, QueueItem.class);
+    assertEquals(1, restored.size());
+    assertEquals("1", restored.get(0).getId());
+    assertEquals(Integer.valueOf(0), restored.get(0).getRetries());
+    assertEquals(Boolean.FALSE, restored.get(0).getAcked());
+  }
+
+  public void testQueryResultRoundTrip() {
+    AVObject object = new AVObject("Student");
+    Map<String, Object> serverData = new HashMap<String, Object>();
+    serverData.put("objectId", "5e8ebb6b7796d9006a5c2c1c");
+    serverData.put("name", "Tom");
+    object.resetServerData(serverData);
+    List<AVObject> results = new ArrayList<AVObject>();
+    results.add(object);
+    AVQueryResult queryResult = new AVQueryResult();
+    queryResult.setClassName("Student");
+    queryResult.setResults(results);
+    queryResult.setCount(1);
+
+    AVQueryResult restored = AVQueryResult.fromJSONString(queryResult.toJSONString());
+    assertEquals("Student", restored.getClassName());
+    assertEquals(1, restored.getCount());
+    assertEquals(1, restored.getResults().size());
+    assertEquals("Tom", restored.getResults().get(0).getString("name"));
+  }
+}
@@ -0,0 +1,133 @@
+package cn.leancloud.metrics;
+
+import cn.leancloud.AVException;
+import cn.leancloud.AVObject;
+import cn.leancloud.StubHttpServer;
+import cn.leancloud.core.AppConfiguration;
+import cn.leancloud.core.StorageClient;
+import cn.leancloud.service.APIService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import junit.framework.TestCase;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+public class InMemoryMetricsCollectorTest extends TestCase {
+  public InMemoryMetricsCollectorTest(String name) {
+    super(name);
+  }
+
+  public void testHistogram() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getPercentileMicros(50));
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i);
+    }
+    assertEquals(1000, histogram.getCount());
+    assertEquals(1000, histogram.getMaxMicros());
+    assertEquals(500.5, histogram.getMeanMicros(), 0.001);
+    long p50 = histogram.getPercentileMicros(50);
+    assertTrue(p50 >= 500 && p50 <= 500 * 17 / 16);
+    long p99 = histogram.getPercentileMicros(99);
+    assertTrue(p99 >= 990 && p99 <= 1000);
+    assertEquals(10, histogram.getPercentileMicros(1));
+
+    for (long value = 1; value < Long.MAX_VALUE / 4 && value > 0; value = value * 3 + 1) {
+      int index = LatencyHistogram.bucketIndex(value);
+      if (value < (1l << 36)) {
+        assertTrue(LatencyHistogram.bucketUpperBound(index) >= value);
+        assertTrue(index == 0 || LatencyHistogram.bucketUpperBound(index - 1) < value);
+      }
+    }
+  }
+
+  public void testEndpointName() {
+    assertEquals("GET /1.1/classes/Student", MetricsEventListener.endpointOf(
+            new Request.Builder().url("https://a.b/1.1/classes/Student/5f5e1a2b3c4d5e6f7a8b9c0d?include=a").build()));
+    assertEquals("GET /1.1/users/:id", MetricsEventListener.endpointOf(
+            new Request.Builder().url("https://a.b/1.1/users/5f5e1a2b3c4d5e6f7a8b9c0d").build()));
+    assertEquals("GET /1.1/users/me", MetricsEventListener.endpointOf(
+            new Request.Builder().url("https://a.b/1.1/users/me").build()));
+  }
+
+  public void testCallMetrics() throws Exception {
+    StubHttpServer server = new StubHttpServer(new HttpHandler() {
+      public void handle(HttpExchange exchange) throws java.io.IOException {
+        StubHttpServer.respond(exchange, 404, "{\"code\":101,\"error\":\"Object not found.\"}");
+      }
+    });
+    InMemoryMetricsCollector collector = new InMemoryMetricsCollector();
+    AppConfiguration.setMetricsCollector(collector);
+    try {
+      OkHttpClient client = new OkHttpClient.Builder().eventListenerFactory(MetricsEventListener.FACTORY).build();
+      String url = server.getUrl() + "/1.1/classes/Student";
+      for (int i = 0; i < 3; i++) {
+        Response response = client.newCall(new Request.Builder().url(url)
+                .post(RequestBody.create(MediaType.parse("application/json"), "{\"name\":\"a\"}")).build()).execute();
+        assertEquals(404, response.code());
+        response.body().string();
+        response.close();
+      }
+
+      EndpointMetrics metrics = collector.getEndpointMetrics("POST /1.1/classes/Student");
+      assertEquals(3, metrics.getTotal().getCount());
+      assertEquals(0, metrics.getInFlight());
+      assertEquals(Long.valueOf(3), metrics.getStatusCodes().get(404));
+      assertEquals(36, metrics.getBytesSent());
+      assertTrue(metrics.getBytesReceived() > 0);
+      assertTrue(metrics.getTotal().getMaxMicros() >= metrics.getServer().getMaxMicros());
+    } finally {
+      AppConfiguration.setMetricsCollector(null);
+      server.stop();
+    }
+  }
+
+  public void testBlockingOperationMetrics() throws Exception {
+    APIService apiService = (APIService) Proxy.newProxyInstance(APIService.class.getClassLoader(),
+            new Class[]{APIService.class}, new InvocationHandler() {
+              public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if ("never".equals(args[1])) {
+                  return Observable.never();
+                }
+                // like retrofit, onComplete is skipped once the consumer disposes after the first result.
+                return Observable.just(new AVObject("Student")).concatWith(Observable.<AVObject>never());
+              }
+            });
+    InMemoryMetricsCollector collector = new InMemoryMetricsCollector();
+    AppConfiguration.setMetricsCollector(collector);
+    try {
+      StorageClient client = new StorageClient(apiService, false, null);
+      assertEquals("Student", client.fetchObject("Student", "s1", null).blockingFirst().getClassName());
+      OperationMetrics metrics = collector.getOperations().get("fetchObject");
+      assertEquals(1, metrics.getLatency().getCount());
+      assertTrue(metrics.getErrorCodes().isEmpty());
+
+      Disposable disposable = client.fetchObject("Student", "never", null).subscribe();
+      disposable.dispose();
+      assertEquals(1, metrics.getLatency().getCount());
+      assertEquals(1, metrics.getCancellations());
+    } finally {
+      AppConfiguration.setMetricsCollector(null);
+    }
+  }
+
+  public void testOperationMetrics() {
+    InMemoryMetricsCollector collector = new InMemoryMetricsCollector();
+    collector.onOperation("fetchObject", 2000000, null);
+    collector.onOperation("fetchObject", 4000000, new AVException(AVException.OBJECT_NOT_FOUND, "not found"));
+    OperationMetrics metrics = collector.getOperations().get("fetchObject");
+    assertEquals(2, metrics.getLatency().getCount());
+    assertEquals(Long.valueOf(1), metrics.getErrorCodes().get(AVException.OBJECT_NOT_FOUND));
+    collector.reset();
+    assertTrue(collector.getOperations().isEmpty());
+  }
+}
@@ -0,0 +1,53 @@
+package cn.leancloud.ops;
+
+import cn.leancloud.core.AppConfiguration;
+import cn.leancloud.json.JSONCodec;
+import junit.framework.TestCase;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Map;
+
+public class Base64BytesTest extends TestCase {
+  private JSONCodec defaultCodec;
+
+  public Base64BytesTest(String testName) {
+    super(testName);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    defaultCodec = AppConfiguration.getJSONCodec();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    AppConfiguration.setJSONCodec(defaultCodec);
+  }
+
+  public void testStreamingWithFastJson() throws Exception {
+    byte[] data = "Hello, LeanCloud".getBytes("UTF-8");
+    Map<String, Object> bytes = Utils.mapFromByteArray(data);
+    assertTrue(bytes.get("base64") instanceof Base64Bytes);
+    assertTrue(AppConfiguration.getJSONCodec().toJSONString(bytes).contains("\"SGVsbG8sIExlYW5DbG91ZA==\""));
+    assertTrue(Arrays.equals(data, Utils.dataFromMap(bytes)));
+  }
+
+  public void testPlainStringWithOtherCodec() throws Exception {
+    JSONCodec otherCodec = (JSONCodec) Proxy.newProxyInstance(JSONCodec.class.getClassLoader(),
+            new Class[]{JSONCodec.class}, new InvocationHandler() {
+              public Object invoke(Object proxy, Method method, Object[] args) {
+                throw new UnsupportedOperationException(method.getName());
+              }
+            });
+    AppConfiguration.setJSONCodec(otherCodec);
+
+    byte[] data = "Hello, LeanCloud".getBytes("UTF-8");
+    Map<String, Object> bytes = Utils.mapFromByteArray(data);
+    assertEquals("SGVsbG8sIExlYW5DbG91ZA==", bytes.get("base64"));
+    assertEquals("SGVsbG8sIExlYW5DbG91ZA==", ((Map) BaseOperation.encodeByteArray(data)).get("base64"));
+    assertTrue(Arrays.equals(data, Utils.dataFromMap(bytes)));
+  }
+}
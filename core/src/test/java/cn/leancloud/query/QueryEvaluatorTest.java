@@ -0,0 +1,141 @@
+package cn.leancloud.query;
+
+import cn.leancloud.AVObject;
+import cn.leancloud.AVQuery;
+import cn.leancloud.types.AVGeoPoint;
+import junit.framework.TestCase;
+
+import java.util.*;
+
+public class QueryEvaluatorTest extends TestCase {
+  private List<AVObject> students = new ArrayList<AVObject>();
+
+  public QueryEvaluatorTest(String name) {
+    super(name);
+  }
+
+  private static AVObject createStudent(String objectId, String name, int age, List<String> courses,
+                                        AVGeoPoint location) {
+    AVObject object = new AVObject("Student");
+    Map<String, Object> data = new HashMap<String, Object>();
+    data.put(AVObject.KEY_OBJECT_ID, objectId);
+    data.put(AVObject.KEY_CREATED_AT, "2020-04-0" + objectId.charAt(objectId.length() - 1) + "T08:00:00.000Z");
+    data.put("name", name);
+    data.put("age", age);
+    data.put("courses", courses);
+    data.put("location", location);
+    data.put("teacher", AVObject.createWithoutData("Teacher", "5e8ebb6b7796d9006a5c2c10"));
+    object.resetServerData(data);
+    return object;
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    students.clear();
+    students.add(createStudent("5e8ebb6b7796d9006a5c2c11", "Tom", 18, Arrays.asList("Math", "Art"),
+            new AVGeoPoint(39.9, 116.3)));
+    students.add(createStudent("5e8ebb6b7796d9006a5c2c12", "Jerry", 20, Arrays.asList("Math"),
+            new AVGeoPoint(31.2, 121.4)));
+    students.add(createStudent("5e8ebb6b7796d9006a5c2c13", "tony", 22, Arrays.asList("History"),
+            new AVGeoPoint(39.8, 116.4)));
+  }
+
+  public void testCompare() {
+    AVQuery<AVObject> query = new AVQuery<AVObject>("Student");
+    query.whereGreaterThan("age", 18);
+    query.whereLessThanOrEqualTo("age", 22);
+    query.whereNotEqualTo("name", "Jerry");
+    List<AVObject> result = query.findInCollection(students);
+    assertEquals(1, result.size());
+    assertEquals("tony", result.get(0).getString("name"));
+  }
+
+  public void testCompareBoundary() {
+    AVQuery<AVObject> query = new AVQuery<AVObject>("Student");
+    query.whereGreaterThanOrEqualTo("age", 20);
+    assertEquals(2, query.findInCollection(students).size());
+    query = new AVQuery<AVObject>("Student");
+    query.whereGreaterThan("age", 20);
+    assertEquals(1, query.findInCollection(students).size());
+    query = new AVQuery<AVObject>("Student");
+    query.whereLessThanOrEqualTo("age", 20);
+    assertEquals(2, query.findInCollection(students).size());
+    query = new AVQuery<AVObject>("Student");
+    query.whereLessThan("age", 20);
+    assertEquals(1, query.findInCollection(students).size());
+    // values which can not be compared never match.
+    query = new AVQuery<AVObject>("Student");
+    query.whereLessThan("name", 20);
+    assertEquals(0, query.findInCollection(students).size());
+  }
+
+  public void testContainedAndRegex() {
+    AVQuery<AVObject> query = new AVQuery<AVObject>("Student");
+    query.whereContainedIn("name", Arrays.asList("Tom", "tony", "Lily"));
+    query.whereMatches("name", "^t", "i");
+    query.whereEqualTo("courses", "Math");
+    List<AVObject> result = query.findInCollection(students);
+    assertEquals(1, result.size());
+    assertEquals("Tom", result.get(0).getString("name"));
+
+    query = new AVQuery<AVObject>("Student");
+    query.whereContainsAll("courses", Arrays.asList("Math", "Art"));
+    assertEquals(1, query.findInCollection(students).size());
+    query = new AVQuery<AVObject>("Student");
+    query.whereSizeEqual("courses", 1);
+    assertEquals(2, query.findInCollection(students).size());
+  }
+
+  public void testOrAndPointer() {
+    AVQuery<AVObject> young = new AVQuery<AVObject>("Student");
+    young.whereLessThan("age", 19);
+    AVQuery<AVObject> old = new AVQuery<AVObject>("Student");
+    old.whereGreaterThan("age", 21);
+    AVQuery<AVObject> query = AVQuery.or(Arrays.asList(young, old));
+    query.whereEqualTo("teacher", AVObject.createWithoutData("Teacher", "5e8ebb6b7796d9006a5c2c10"));
+    query.orderByDescending("age");
+    List<AVObject> result = query.findInCollection(students);
+    assertEquals(2, result.size());
+    assertEquals("tony", result.get(0).getString("name"));
+    assertEquals("Tom", result.get(1).getString("name"));
+  }
+
+  public void testGeo() {
+    AVQuery<AVObject> query = new AVQuery<AVObject>("Student");
+    query.whereWithinKilometers("location", new AVGeoPoint(39.9, 116.4), 50);
+    List<AVObject> result = query.findInCollection(students);
+    assertEquals(2, result.size());
+    // sorted by distance.
+    assertEquals("Tom", result.get(0).getString("name"));
+    assertEquals("tony", result.get(1).getString("name"));
+
+    query = new AVQuery<AVObject>("Student");
+    query.whereWithinGeoBox("location", new AVGeoPoint(30, 120), new AVGeoPoint(32, 122));
+    assertEquals("Jerry", query.findInCollection(students).get(0).getString("name"));
+  }
+
+  public void testOrderSkipLimitSelect() throws Exception {
+    AVQuery<AVObject> query = new AVQuery<AVObject>("Student");
+    query.whereGreaterThan(AVObject.KEY_CREATED_AT, students.get(0).getCreatedAt());
+    query.orderByAscending("name");
+    query.skip(1);
+    query.limit(1);
+    query.selectKeys(Arrays.asList("name"));
+    List<AVObject> result = query.findInCollection(students);
+    assertEquals(1, result.size());
+    assertEquals("tony", result.get(0).getString("name"));
+    assertNull(result.get(0).get("age"));
+    assertEquals("5e8ebb6b7796d9006a5c2c13", result.get(0).getObjectId());
+  }
+
+  public void testUnsupported() {
+    AVQuery<AVObject> query = new AVQuery<AVObject>("Student");
+    query.whereMatchesQuery("teacher", new AVQuery<AVObject>("Teacher"));
+    try {
+      query.findInCollection(students);
+      fail();
+    } catch (UnsupportedOperationException ex) {
+      // expected.
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package cn.leancloud.query;
+
+import cn.leancloud.AVObject;
+import cn.leancloud.types.AVGeoPoint;
+import io.reactivex.functions.Consumer;
+import junit.framework.TestCase;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class QueryResultStreamReaderTest extends TestCase {
+  private static final String RESPONSE = "{\"results\":[" +
+          "{\"objectId\":\"5e8ebb6b7796d9006a5c2c1c\",\"name\":\"Tom\",\"age\":18,\"score\":90.5," +
+          "\"birthday\":{\"__type\":\"Date\",\"iso\":\"2002-03-01T08:00:00.000Z\"}," +
+          "\"location\":{\"__type\":\"GeoPoint\",\"latitude\":39.9,\"longitude\":116.3}," +
+          "\"teacher\":{\"__type\":\"Pointer\",\"className\":\"Teacher\",\"objectId\":\"5e8ebb6b7796d9006a5c2c1d\"}," +
+          "\"courses\":[\"Math\",\"Art\"],\"unknown\":{\"a\":1}}," +
+          "{\"objectId\":\"5e8ebb6b7796d9006a5c2c1e\",\"name\":\"Jerry\"}" +
+          "],\"count\":2}";
+
+  public static class Student {
+    private String objectId;
+    private String name;
+    private int age;
+    private double score;
+    private Date birthday;
+    private AVGeoPoint location;
+    private String teacher;
+    private List<String> courses;
+    private boolean nameSet = false;
+
+    public void setName(String name) {
+      this.name = name;
+      this.nameSet = true;
+    }
+  }
+
+  public QueryResultStreamReaderTest(String name) {
+    super(name);
+  }
+
+  public void testReadProjection() throws Exception {
+    final List<Student> students = new ArrayList<Student>();
+    int count = QueryResultStreamReader.readProjection(new StringReader(RESPONSE),
+            ProjectionMapping.forClass(Student.class), new Consumer<Student>() {
+              public void accept(Student student) throws Exception {
+                students.add(student);
+              }
+            });
+    assertEquals(2, count);
+    assertEquals(2, students.size());
+    Student first = students.get(0);
+    assertEquals("5e8ebb6b7796d9006a5c2c1c", first.objectId);
+    assertEquals("Tom", first.name);
+    assertTrue(first.nameSet);
+    assertEquals(18, first.age);
+    assertEquals(90.5, first.score);
+    assertNotNull(first.birthday);
+    assertEquals(39.9, first.location.getLatitude());
+    assertEquals("5e8ebb6b7796d9006a5c2c1d", first.teacher);
+    assertEquals(2, first.courses.size());
+    Student second = students.get(1);
+    assertEquals("Jerry", second.name);
+    assertEquals(0, second.age);
+    assertNull(second.birthday);
+  }
+
+  public void testReadColumns() throws Exception {
+    final List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+    int count = QueryResultStreamReader.readColumns(new StringReader(RESPONSE), new QueryColumnConsumer() {
+      public void onRowStart(int row) {
+        rows.add(new HashMap<String, Object>());
+      }
+
+      public void onColumn(int row, String column, Object value) {
+        rows.get(row).put(column, value);
+      }
+
+      public void onRowEnd(int row) {
+      }
+    });
+    assertEquals(2, count);
+    assertTrue(rows.get(0).get("birthday") instanceof Date);
+    assertTrue(rows.get(0).get("location") instanceof AVGeoPoint);
+    assertTrue(rows.get(0).get("teacher") instanceof Map);
+    assertEquals("Jerry", rows.get(1).get("name"));
+  }
+
+  public void testReadObjects() throws Exception {
+    final List<AVObject> objects = new ArrayList<AVObject>();
+    int count = QueryResultStreamReader.readObjects(new StringReader(RESPONSE), new Consumer<AVObject>() {
+      public void accept(AVObject object) throws Exception {
+        objects.add(object);
+      }
+    });
+    assertEquals(2, count);
+    assertEquals("5e8ebb6b7796d9006a5c2c1c", objects.get(0).getObjectId());
+    assertEquals("Tom", objects.get(0).getString("name"));
+    assertNotNull(objects.get(0).getDate("birthday"));
+    assertEquals("5e8ebb6b7796d9006a5c2c1d", objects.get(0).getAVObject("teacher").getObjectId());
+    assertEquals("Jerry", objects.get(1).getString("name"));
+  }
+
+  public void testEmptyResults() throws Exception {
+    int count = QueryResultStreamReader.readColumns(new StringReader("{\"results\":[]}"), null);
+    assertEquals(0, count);
+  }
+}
@@ -0,0 +1,136 @@
+package cn.leancloud.upload;
+
+import cn.leancloud.AVException;
+import cn.leancloud.StubHttpServer;
+import cn.leancloud.cache.PersistenceUtil;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class FileDownloaderTest extends TestCase {
+  private static final String ETAG = "\"v1\"";
+
+  private StubHttpServer server;
+  private byte[] data;
+  private File cacheDir;
+  private final AtomicInteger requestCount = new AtomicInteger(0);
+  private final AtomicReference<String> lastRange = new AtomicReference<String>();
+
+  public FileDownloaderTest(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    data = new byte[200 * 1024 + 3];
+    new Random(5).nextBytes(data);
+    cacheDir = new File("./FileDownloaderTest/");
+    cacheDir.mkdirs();
+
+    server = new StubHttpServer(new HttpHandler() {
+      public void handle(HttpExchange exchange) throws java.io.IOException {
+        requestCount.incrementAndGet();
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        lastRange.set(range);
+        int offset = 0;
+        int code = 200;
+        if (null != range && ETAG.equals(exchange.getRequestHeaders().getFirst("If-Range"))) {
+          offset = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+          code = 206;
+          exchange.getResponseHeaders().add("Content-Range",
+                  "bytes " + offset + "-" + (data.length - 1) + "/" + data.length);
+        }
+        exchange.getResponseHeaders().add("ETag", ETAG);
+        try {
+          // slow enough to make concurrent callers overlap.
+          Thread.sleep(200);
+        } catch (InterruptedException e) {
+        }
+        StubHttpServer.respond(exchange, code, data, offset, data.length - offset);
+      }
+    });
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    server.stop();
+    PersistenceUtil.sharedInstance().clearDir(cacheDir.getAbsolutePath(), Long.MAX_VALUE);
+    cacheDir.delete();
+  }
+
+  private String url() {
+    return server.getUrl() + "/file.bin";
+  }
+
+  public void testConcurrentDownloadIsShared() throws Exception {
+    final File cacheFile = new File(cacheDir, "shared");
+    final int threadCount = 4;
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(threadCount);
+    final AtomicInteger failures = new AtomicInteger(0);
+    for (int i = 0; i < threadCount; i++) {
+      new Thread(new Runnable() {
+        public void run() {
+          try {
+            start.await();
+            if (null != new FileDownloader().execute(url(), cacheFile)) {
+              failures.incrementAndGet();
+            }
+          } catch (InterruptedException e) {
+            failures.incrementAndGet();
+          } finally {
+            done.countDown();
+          }
+        }
+      }).start();
+    }
+    start.countDown();
+    done.await();
+    assertEquals(0, failures.get());
+    assertEquals(1, requestCount.get());
+    assertTrue(Arrays.equals(data, PersistenceUtil.sharedInstance().readContentBytesFromFile(cacheFile)));
+    assertFalse(new File(cacheFile.getAbsolutePath() + FileDownloader.TEMP_SUFFIX).exists());
+  }
+
+  public void testResumeFromTempFile() throws Exception {
+    File cacheFile = new File(cacheDir, "resume");
+    FileOutputStream fos = new FileOutputStream(cacheFile.getAbsolutePath() + FileDownloader.TEMP_SUFFIX);
+    fos.write(data, 0, 1000);
+    fos.close();
+    PersistenceUtil.sharedInstance().saveContentToFile(ETAG,
+            new File(cacheFile.getAbsolutePath() + FileDownloader.VALIDATOR_SUFFIX));
+
+    AVException error = new FileDownloader().execute(url(), cacheFile);
+    assertNull(error);
+    assertEquals("bytes=1000-", lastRange.get());
+    assertTrue(Arrays.equals(data, PersistenceUtil.sharedInstance().readContentBytesFromFile(cacheFile)));
+    assertFalse(new File(cacheFile.getAbsolutePath() + FileDownloader.VALIDATOR_SUFFIX).exists());
+  }
+
+  public void testStreamTeeIntoCache() throws Exception {
+    File cacheFile = new File(cacheDir, "tee");
+    InputStream partial = new FileDownloader().openStream(url(), cacheFile);
+    partial.read(new byte[100]);
+    partial.close();
+    assertFalse(cacheFile.exists());
+
+    InputStream stream = new FileDownloader().openStream(url(), cacheFile);
+    assertTrue(Arrays.equals(data, StubHttpServer.readAll(stream)));
+    assertTrue(Arrays.equals(data, PersistenceUtil.sharedInstance().readContentBytesFromFile(cacheFile)));
+    assertEquals(1, cacheDir.list().length);
+
+    // cached file is used later.
+    requestCount.set(0);
+    assertTrue(Arrays.equals(data, StubHttpServer.readAll(new FileDownloader().openStream(url(), cacheFile))));
+    assertEquals(0, requestCount.get());
+  }
+}
@@ -0,0 +1,63 @@
+package cn.leancloud.upload;
+
+import junit.framework.TestCase;
+import okhttp3.MediaType;
+import okio.Buffer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class FileRequestBodyTest extends TestCase {
+  private File localFile;
+  private byte[] data;
+
+  public FileRequestBodyTest(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    data = new byte[300 * 1024 + 17];
+    new Random(11).nextBytes(data);
+    localFile = File.createTempFile("body", ".bin");
+    FileOutputStream fos = new FileOutputStream(localFile);
+    fos.write(data);
+    fos.close();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    localFile.delete();
+  }
+
+  public void testStreamRange() throws Exception {
+    final AtomicLong progress = new AtomicLong(0);
+    FileRequestBody body = new FileRequestBody(MediaType.parse("application/octet-stream"), localFile,
+            1000, 200 * 1024, new FileRequestBody.ProgressListener() {
+      public void onProgress(long bytesWritten, long contentLength) {
+        assertTrue(bytesWritten > progress.get());
+        progress.set(bytesWritten);
+      }
+    });
+    assertEquals(200 * 1024, body.contentLength());
+
+    // body can be written repeatedly, such as retry.
+    for (int i = 0; i < 2; i++) {
+      progress.set(0);
+      Buffer buffer = new Buffer();
+      body.writeTo(buffer);
+      assertTrue(Arrays.equals(Arrays.copyOfRange(data, 1000, 1000 + 200 * 1024), buffer.readByteArray()));
+      assertEquals(200 * 1024, progress.get());
+    }
+  }
+
+  public void testWholeFile() throws Exception {
+    FileRequestBody body = new FileRequestBody(MediaType.parse("application/octet-stream"), localFile, null);
+    Buffer buffer = new Buffer();
+    body.writeTo(buffer);
+    assertTrue(Arrays.equals(data, buffer.readByteArray()));
+  }
+}
@@ -0,0 +1,108 @@
+package cn.leancloud.upload;
+
+import cn.leancloud.AVException;
+import cn.leancloud.AVFile;
+import cn.leancloud.StubHttpServer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+public class QiniuSlicingUploaderTest extends TestCase {
+  private static final int FILE_SIZE = QiniuAccessor.BLOCK_SIZE * 2 + 1024;
+  private static final String FILE_KEY = "slicing/test.bin";
+
+  private StubHttpServer server;
+  private File localFile;
+  private final AtomicInteger createdBlocks = new AtomicInteger(0);
+  private volatile int failingBlockSize = -1;
+  private volatile String madeContexts = null;
+
+  public QiniuSlicingUploaderTest(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    localFile = File.createTempFile("qiniu", ".bin");
+    byte[] data = new byte[FILE_SIZE];
+    new Random(7).nextBytes(data);
+    FileOutputStream fos = new FileOutputStream(localFile);
+    fos.write(data);
+    fos.close();
+
+    server = new StubHttpServer(new HttpHandler() {
+      public void handle(HttpExchange exchange) throws java.io.IOException {
+        byte[] body = StubHttpServer.readAll(exchange.getRequestBody());
+        String path = exchange.getRequestURI().getPath();
+        String response;
+        int code = 200;
+        if (path.startsWith("/mkfile/")) {
+          madeContexts = new String(body, "UTF-8");
+          response = "{\"key\":\"" + FILE_KEY + "\",\"hash\":\"h\"}";
+        } else {
+          String ctx;
+          if (path.startsWith("/mkblk/")) {
+            int blockSize = Integer.parseInt(path.substring("/mkblk/".length()));
+            if (blockSize == failingBlockSize) {
+              code = 500;
+            } else {
+              createdBlocks.incrementAndGet();
+            }
+            ctx = "blk" + blockSize + "-";
+          } else {
+            // /bput/<ctx>/<offset>
+            ctx = path.split("/")[2];
+          }
+          CRC32 crc32 = new CRC32();
+          crc32.update(body, 0, body.length);
+          response = "{\"ctx\":\"" + ctx + "\",\"crc32\":" + crc32.getValue() + ",\"offset\":" + body.length + "}";
+        }
+        StubHttpServer.respond(exchange, code, response);
+      }
+    });
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    server.stop();
+    localFile.delete();
+    QiniuSlicingUploader.setConcurrency(QiniuSlicingUploader.DEFAULT_CONCURRENCY);
+  }
+
+  private QiniuSlicingUploader createUploader() {
+    AVFile file = new AVFile("test.bin", localFile);
+    file.getServerData().put("key", FILE_KEY);
+    return new QiniuSlicingUploader(file, "token", server.getUrl(), null);
+  }
+
+  public void testResumeAfterFailure() throws Exception {
+    QiniuSlicingUploader.setConcurrency(2);
+    // the last block always fails.
+    failingBlockSize = 1024;
+    AVException exception = createUploader().execute();
+    assertNotNull(exception);
+    assertEquals(2, createdBlocks.get());
+    assertNull(madeContexts);
+
+    // only the last block is uploaded again.
+    failingBlockSize = -1;
+    createdBlocks.set(0);
+    assertNull(createUploader().execute());
+    assertEquals(1, createdBlocks.get());
+    String[] contexts = madeContexts.split(",");
+    assertEquals(3, contexts.length);
+    assertTrue(contexts[0].startsWith("blk" + QiniuAccessor.BLOCK_SIZE));
+    assertTrue(contexts[2].startsWith("blk1024"));
+
+    // record is removed after makeFile.
+    createdBlocks.set(0);
+    assertNull(createUploader().execute());
+    assertEquals(3, createdBlocks.get());
+  }
+}
@@ -1,12 +1,11 @@
 package cn.leancloud;
 
 
+import cn.leancloud.core.AppConfiguration;
 import cn.leancloud.ops.Utils;
 import cn.leancloud.types.AVGeoPoint;
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
-import com.alibaba.fastjson.serializer.SerializerFeature;
 
 import java.util.Collection;
 import java.util.Date;
@@ -16,21 +15,21 @@ public class ResponseUtil {
   private static final String TYPE = "__type";
 
   public static String filterResponse(String response) {
-    JSONObject resp = JSON.parseObject(response, JSONObject.class);
+    Map<String, Object> resp = AppConfiguration.getJSONCodec().parseObject(response, Map.class);
     Object result = resp.get("result");
-    if (result instanceof JSONObject) {
-      removeType((JSONObject) result);
-    } else if (result instanceof JSONArray) {
-      for (Object o : (JSONArray) result) {
-        if (o instanceof JSONObject) {
-          removeType((JSONObject) o);
+    if (result instanceof Map) {
+      removeType((Map<String, Object>) result);
+    } else if (result instanceof Collection) {
+      for (Object o : (Collection) result) {
+        if (o instanceof Map) {
+          removeType((Map<String, Object>) o);
         }
       }
     }
     return restfulCloudData(resp);
   }
 
-  private static void removeType(JSONObject object) {
+  private static void removeType(Map<String, Object> object) {
     if (object.containsKey("className") && object.containsKey(TYPE)) {
       object.remove("className");
       object.remove(TYPE);
@@ -55,20 +54,18 @@ public class ResponseUtil {
     } else if (object instanceof AVFile) {
       return jsonStringFromMapWithNull(((AVFile) object).toMap());
     } else if (object instanceof JSONObject) {
-      return jsonStringFromObjectWithNull(JSON.parse(object.toString()));
+      return jsonStringFromObjectWithNull(AppConfiguration.getJSONCodec().parse(object.toString()));
     } else if (object instanceof JSONArray) {
-      return jsonStringFromObjectWithNull(JSON.parse(object.toString()));
+      return jsonStringFromObjectWithNull(AppConfiguration.getJSONCodec().parse(object.toString()));
     } else {
       return jsonStringFromObjectWithNull(object);
     }
   }
   static String jsonStringFromMapWithNull(Object map) {
-    return JSON.toJSONString(map, SerializerFeature.WriteMapNullValue,
-            SerializerFeature.WriteNullBooleanAsFalse, SerializerFeature.WriteNullNumberAsZero);
+    return AppConfiguration.getJSONCodec().toJSONStringWithNull(map);
   }
 
   static String jsonStringFromObjectWithNull(Object map) {
-    return JSON.toJSONString(map, SerializerFeature.WriteMapNullValue,
-            SerializerFeature.WriteNullBooleanAsFalse, SerializerFeature.WriteNullNumberAsZero);
+    return AppConfiguration.getJSONCodec().toJSONStringWithNull(map);
   }
 }
@@ -7,6 +7,7 @@ import cn.leancloud.AVLogger;
 import cn.leancloud.callback.ProgressCallback;
 import cn.leancloud.callback.SaveCallback;
 import cn.leancloud.convertor.ObserverBuilder;
+import cn.leancloud.core.AppConfiguration;
 import cn.leancloud.core.PaasClient;
 import cn.leancloud.im.v2.AVIMTypedMessage;
 import cn.leancloud.im.v2.annotation.AVIMMessageField;
@@ -15,7 +16,6 @@ import cn.leancloud.utils.LogUtil;
 import cn.leancloud.utils.StringUtil;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
-import io.reactivex.schedulers.Schedulers;
 import okhttp3.*;
 import org.jetbrains.annotations.NotNull;
 
@@ -171,7 +171,7 @@ public class AVIMFileMessage extends AVIMTypedMessage {
 
   protected void upload(final SaveCallback callback) {
     if (actualFile != null) {
-      actualFile.saveInBackground(this.keepFileName).subscribeOn(Schedulers.io())
+      actualFile.saveInBackground(this.keepFileName).subscribeOn(AppConfiguration.getSubscribeScheduler())
               .subscribe(ObserverBuilder.buildSingleObserver(new SaveCallback() {
         @Override
         public void done(AVException e) {
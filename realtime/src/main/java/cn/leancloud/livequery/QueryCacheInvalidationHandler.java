@@ -0,0 +1,35 @@
+package cn.leancloud.livequery;
+
+import cn.leancloud.AVObject;
+import cn.leancloud.cache.QueryResultCache;
+
+import java.util.List;
+
+/**
+ * LiveQuery event handler which invalidates cached query results of the subscribed class, so that
+ * writes from other clients/processes are reflected in QueryResultCache too.
+ * Events are forwarded to delegate handler(if present) as usual.
+ */
+public class QueryCacheInvalidationHandler extends AVLiveQueryEventHandler {
+  private final String className;
+  private final AVLiveQueryEventHandler delegate;
+
+  public QueryCacheInvalidationHandler(String className) {
+    this(className, null);
+  }
+
+  public QueryCacheInvalidationHandler(String className, AVLiveQueryEventHandler delegate) {
+    this.className = className;
+    this.delegate = delegate;
+  }
+
+  @Override
+  public void done(AVLiveQuery.EventType eventType, AVObject avObject, List<String> updateKeyList) {
+    if (AVLiveQuery.EventType.LOGIN != eventType && AVLiveQuery.EventType.UNKONWN != eventType) {
+      QueryResultCache.getInstance().invalidate(className);
+    }
+    if (null != delegate) {
+      delegate.done(eventType, avObject, updateKeyList);
+    }
+  }
+}
@@ -9,11 +9,9 @@ import io.reactivex.Observable;
 import io.reactivex.ObservableSource;
 import io.reactivex.functions.Consumer;
 import io.reactivex.functions.Function;
-import io.reactivex.schedulers.Schedulers;
 import okhttp3.OkHttpClient;
 import retrofit2.Retrofit;
 import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
-import retrofit2.converter.fastjson.FastJsonConverterFactory;
 
 import java.util.LinkedList;
 import java.util.List;
@@ -47,7 +45,7 @@ public class RealtimeClient {
               public void accept(String apiHost) throws Exception {
                 Retrofit retrofit = new Retrofit.Builder()
                         .baseUrl(apiHost)
-                        .addConverterFactory(FastJsonConverterFactory.create())
+                        .addConverterFactory(AppConfiguration.getJSONCodec().createConverterFactory())
                         .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
                         .client(httpClient)
                         .build();
@@ -61,7 +59,7 @@ public class RealtimeClient {
       return null;
     }
     if (asynchronized) {
-      observable = observable.subscribeOn(Schedulers.io());
+      observable = observable.subscribeOn(AppConfiguration.getSubscribeScheduler());
     }
     if (null != defaultCreator) {
       observable = observable.observeOn(defaultCreator.create());
@@ -3,8 +3,6 @@ package cn.leancloud.session;
 import cn.leancloud.cache.SystemSetting;
 import cn.leancloud.core.AppConfiguration;
 import cn.leancloud.utils.StringUtil;
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.serializer.SerializerFeature;
 
 import java.util.Collection;
 import java.util.Iterator;
@@ -141,9 +139,7 @@ public class PersistentQueue<E> implements Queue<E> {
   private void storeMessageQueue() {
     // 异步序列化，保证效率
     String queueString =
-            JSON.toJSONString(messages, SerializerFeature.SkipTransientField,
-                    SerializerFeature.WriteClassName, SerializerFeature.QuoteFieldNames,
-                    SerializerFeature.WriteNullNumberAsZero, SerializerFeature.WriteNullBooleanAsFalse);
+            AppConfiguration.getJSONCodec().toJSONStringWithTypeAndDefaults(messages);
     AppConfiguration.getDefaultSetting().saveString(MESSAGE_ZONE, queueKey, queueString);
   }
 
@@ -153,7 +149,7 @@ public class PersistentQueue<E> implements Queue<E> {
     String queueString = setting.getString(MESSAGE_ZONE, queueKey, null);
     if (!StringUtil.isEmpty(queueString)) {
       try {
-        storedMessages.addAll(JSON.parseArray(queueString, type));
+        storedMessages.addAll(AppConfiguration.getJSONCodec().parseArray(queueString, type));
       } catch (Exception e) {
         // clean it since there's parse exception
         setting.removeKey(MESSAGE_ZONE, queueKey);
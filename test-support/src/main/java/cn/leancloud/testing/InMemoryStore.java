@@ -0,0 +1,310 @@
+package cn.leancloud.testing;
+
+import cn.leancloud.AVException;
+import cn.leancloud.utils.StringUtil;
+import com.alibaba.fastjson.JSONObject;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In memory object store which keeps objects in REST API representation, grouped by class name.
+ *
+ * Objects are never mutated after stored, every write replaces the whole object, so readers always see a consistent
+ * snapshot without locking. Returned objects are shared snapshots and must not be modified.
+ */
+public class InMemoryStore {
+  public static final String KEY_OBJECT_ID = "objectId";
+  public static final String KEY_CREATED_AT = "createdAt";
+  public static final String KEY_UPDATED_AT = "updatedAt";
+  private static final String KEY_OP = "__op";
+
+  private final ConcurrentMap<String, ConcurrentMap<String, JSONObject>> classes =
+          new ConcurrentHashMap<String, ConcurrentMap<String, JSONObject>>();
+  private final AtomicLong sequence = new AtomicLong(0);
+
+  private ConcurrentMap<String, JSONObject> getClass(String className) {
+    ConcurrentMap<String, JSONObject> objects = classes.get(className);
+    if (null == objects) {
+      ConcurrentMap<String, JSONObject> newObjects = new ConcurrentHashMap<String, JSONObject>();
+      objects = classes.putIfAbsent(className, newObjects);
+      if (null == objects) {
+        objects = newObjects;
+      }
+    }
+    return objects;
+  }
+
+  /**
+   * @return 24 hex characters object id, ordered by creation time.
+   */
+  private String newObjectId() {
+    return String.format("%08x%016x", System.currentTimeMillis() / 1000, sequence.incrementAndGet());
+  }
+
+  static String now() {
+    return StringUtil.stringFromDate(new Date());
+  }
+
+  /**
+   * create object.
+   * @param className class name.
+   * @param body request body, field operations are applied on empty object.
+   * @return created object.
+   * @throws AVException if body contains invalid operation.
+   */
+  public JSONObject create(String className, Map<String, Object> body) throws AVException {
+    JSONObject object = applyOperations(new JSONObject(), body);
+    String timestamp = now();
+    object.put(KEY_OBJECT_ID, newObjectId());
+    object.put(KEY_CREATED_AT, timestamp);
+    object.put(KEY_UPDATED_AT, timestamp);
+    getClass(className).put(object.getString(KEY_OBJECT_ID), object);
+    return object;
+  }
+
+  /**
+   * update object.
+   * @param className class name.
+   * @param objectId object id.
+   * @param body request body with field values and operations.
+   * @param where optional condition which current object must match.
+   * @return updated object.
+   * @throws AVException OBJECT_NOT_FOUND if object does not exist, 305 if condition is not matched.
+   */
+  public JSONObject update(String className, String objectId, Map<String, Object> body, Map<String, Object> where)
+          throws AVException {
+    ConcurrentMap<String, JSONObject> objects = getClass(className);
+    while (true) {
+      JSONObject current = objects.get(objectId);
+      if (null == current) {
+        throw new AVException(AVException.OBJECT_NOT_FOUND, "Object not found.");
+      }
+      if (!QueryMatcher.matches(current, where)) {
+        throw new AVException(305, "No effect on updating/deleting a document.");
+      }
+      JSONObject updated = applyOperations(new JSONObject(new LinkedHashMap<String, Object>(current)), body);
+      updated.put(KEY_OBJECT_ID, objectId);
+      updated.put(KEY_CREATED_AT, current.get(KEY_CREATED_AT));
+      updated.put(KEY_UPDATED_AT, now());
+      if (objects.replace(objectId, current, updated)) {
+        return updated;
+      }
+    }
+  }
+
+  /**
+   * @param className class name.
+   * @param objectId object id.
+   * @return object, null if not existed.
+   */
+  public JSONObject get(String className, String objectId) {
+    ConcurrentMap<String, JSONObject> objects = classes.get(className);
+    return null == objects ? null : objects.get(objectId);
+  }
+
+  /**
+   * delete object, it is not an error to delete non-existed object.
+   * @param className class name.
+   * @param objectId object id.
+   * @param where optional condition which current object must match.
+   * @throws AVException 305 if condition is not matched.
+   */
+  public void delete(String className, String objectId, Map<String, Object> where) throws AVException {
+    ConcurrentMap<String, JSONObject> objects = getClass(className);
+    JSONObject current = objects.get(objectId);
+    if (null == current) {
+      return;
+    }
+    if (!QueryMatcher.matches(current, where)) {
+      throw new AVException(305, "No effect on updating/deleting a document.");
+    }
+    objects.remove(objectId, current);
+  }
+
+  /**
+   * query objects.
+   * @param className class name.
+   * @param where query condition, null for all objects.
+   * @param order order string, e.g. "-updatedAt,name".
+   * @param skip skip count.
+   * @param limit max count of results.
+   * @return matched objects.
+   * @throws AVException INVALID_QUERY if condition is not supported.
+   */
+  public List<JSONObject> find(String className, Map<String, Object> where, String order, int skip, int limit)
+          throws AVException {
+    List<JSONObject> matched = new ArrayList<JSONObject>();
+    ConcurrentMap<String, JSONObject> objects = classes.get(className);
+    if (null == objects) {
+      return matched;
+    }
+    for (JSONObject object : objects.values()) {
+      if (QueryMatcher.matches(object, where)) {
+        matched.add(object);
+      }
+    }
+    Comparator<Map<String, Object>> comparator = QueryMatcher.comparator(order);
+    if (null == comparator) {
+      comparator = QueryMatcher.comparator(KEY_OBJECT_ID);
+    }
+    Collections.sort(matched, comparator);
+    int from = Math.min(Math.max(0, skip), matched.size());
+    int to = Math.min(from + Math.max(0, limit), matched.size());
+    return new ArrayList<JSONObject>(matched.subList(from, to));
+  }
+
+  /**
+   * count objects.
+   * @param className class name.
+   * @param where query condition, null for all objects.
+   * @return matched count.
+   * @throws AVException INVALID_QUERY if condition is not supported.
+   */
+  public int count(String className, Map<String, Object> where) throws AVException {
+    int count = 0;
+    ConcurrentMap<String, JSONObject> objects = classes.get(className);
+    if (null == objects) {
+      return count;
+    }
+    for (JSONObject object : objects.values()) {
+      if (QueryMatcher.matches(object, where)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * remove all objects.
+   */
+  public void clear() {
+    classes.clear();
+  }
+
+  private static JSONObject applyOperations(JSONObject object, Map<String, Object> body) throws AVException {
+    if (null == body) {
+      return object;
+    }
+    for (Map.Entry<String, Object> entry : body.entrySet()) {
+      String key = entry.getKey();
+      if (key.startsWith("__") || KEY_OBJECT_ID.equals(key) || KEY_CREATED_AT.equals(key)
+              || KEY_UPDATED_AT.equals(key)) {
+        // internal fields of batch request and immutable fields.
+        continue;
+      }
+      Object value = entry.getValue();
+      if (value instanceof Map && ((Map) value).containsKey(KEY_OP)) {
+        Object result = applyOperation(key, object.get(key), (Map<String, Object>) value);
+        if (null == result) {
+          object.remove(key);
+        } else {
+          object.put(key, result);
+        }
+      } else {
+        object.put(key, value);
+      }
+    }
+    return object;
+  }
+
+  private static Object applyOperation(String key, Object current, Map<String, Object> op) throws AVException {
+    String name = String.valueOf(op.get(KEY_OP));
+    if ("Delete".equals(name)) {
+      return null;
+    } else if ("Increment".equals(name) || "Decrement".equals(name)) {
+      Number amount = toNumber(key, op.containsKey("amount") ? op.get("amount") : 1);
+      Number base = null == current ? 0 : toNumber(key, current);
+      return "Increment".equals(name) ? add(base, amount, false) : add(base, amount, true);
+    } else if ("BitAnd".equals(name) || "BitOr".equals(name) || "BitXor".equals(name)) {
+      long value = toNumber(key, op.get("value")).longValue();
+      long base = null == current ? 0 : toNumber(key, current).longValue();
+      if ("BitAnd".equals(name)) {
+        return base & value;
+      }
+      return "BitOr".equals(name) ? base | value : base ^ value;
+    } else if ("Add".equals(name) || "AddUnique".equals(name) || "Remove".equals(name)) {
+      List<Object> result = new ArrayList<Object>();
+      if (current instanceof Collection) {
+        result.addAll((Collection) current);
+      } else if (null != current) {
+        throw new AVException(AVException.INCORRECT_TYPE, "field " + key + " is not an array.");
+      }
+      for (Object element : toList(op.get("objects"))) {
+        if ("Add".equals(name)) {
+          result.add(element);
+        } else if ("AddUnique".equals(name)) {
+          if (!containsValue(result, element)) {
+            result.add(element);
+          }
+        } else {
+          Iterator<Object> it = result.iterator();
+          while (it.hasNext()) {
+            if (QueryMatcher.valueEquals(it.next(), element)) {
+              it.remove();
+            }
+          }
+        }
+      }
+      return result;
+    } else if ("AddRelation".equals(name) || "RemoveRelation".equals(name)) {
+      // relations are not queryable here, only keep the field definition.
+      if (null != current) {
+        return current;
+      }
+      List<Object> objects = toList(op.get("objects"));
+      JSONObject relation = new JSONObject();
+      relation.put("__type", "Relation");
+      if (!objects.isEmpty() && objects.get(0) instanceof Map) {
+        relation.put("className", ((Map) objects.get(0)).get("className"));
+      }
+      return relation;
+    }
+    throw new AVException(AVException.INVALID_JSON, "unsupported operation " + name + " on field " + key);
+  }
+
+  private static boolean containsValue(List<Object> list, Object value) {
+    for (Object element : list) {
+      if (QueryMatcher.valueEquals(element, value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static List<Object> toList(Object objects) {
+    if (objects instanceof Collection) {
+      return new ArrayList<Object>((Collection) objects);
+    }
+    return null == objects ? new ArrayList<Object>() : new ArrayList<Object>(Collections.singletonList(objects));
+  }
+
+  private static Number toNumber(String key, Object value) throws AVException {
+    if (value instanceof Number) {
+      return (Number) value;
+    }
+    throw new AVException(AVException.INCORRECT_TYPE, "field " + key + " is not a number.");
+  }
+
+  private static Number add(Number base, Number amount, boolean subtract) {
+    if (isIntegral(base) && isIntegral(amount)) {
+      long result = subtract ? base.longValue() - amount.longValue() : base.longValue() + amount.longValue();
+      if (result >= Integer.MIN_VALUE && result <= Integer.MAX_VALUE) {
+        return (int) result;
+      }
+      return result;
+    }
+    BigDecimal left = new BigDecimal(base.toString());
+    BigDecimal right = new BigDecimal(amount.toString());
+    return subtract ? left.subtract(right) : left.add(right);
+  }
+
+  private static boolean isIntegral(Number value) {
+    return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte
+            || value instanceof BigInteger;
+  }
+}
@@ -0,0 +1,13 @@
+package cn.leancloud.testing;
+
+/**
+ * cloud function served by LocalServer.
+ */
+public interface LocalFunction {
+  /**
+   * @param params request body, decoded json value.
+   * @return result, which is serialized as "result" field of response.
+   * @throws Exception AVException is returned to client with its code, others as SCRIPT_ERROR.
+   */
+  Object call(Object params) throws Exception;
+}
@@ -0,0 +1,570 @@
+package cn.leancloud.testing;
+
+import cn.leancloud.AVException;
+import cn.leancloud.AVLogger;
+import cn.leancloud.core.AVOSCloud;
+import cn.leancloud.core.AVOSService;
+import cn.leancloud.utils.LogUtil;
+import cn.leancloud.utils.StringUtil;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Embedded stand-in for LeanCloud REST API, backed by InMemoryStore, so that SDK can be tested and load tested
+ * without network.
+ *
+ * Supported api:
+ * <ul>
+ *   <li>/1.1/classes/{className} query(where/limit/skip/order/count/keys/include) and create.</li>
+ *   <li>/1.1/classes/{className}/{objectId} fetch, update and delete.</li>
+ *   <li>/1.1/batch and /1.1/batch/save.</li>
+ *   <li>/1.1/functions/{name} and /1.1/call/{name}, served by registered LocalFunction.</li>
+ *   <li>/1.1/fileTokens, /1.1/fileCallback and /1.1/files/{objectId}, file content is uploaded with s3 provider
+ *   to this server.</li>
+ *   <li>/1.1/date.</li>
+ * </ul>
+ * Latency and failures can be injected to every http request, e.g. to exercise retry and circuit breaker.
+ *
+ * usage:
+ * <pre>
+ *   LocalServer server = new LocalServer();
+ *   server.start();
+ *   server.install();
+ *   AVOSCloud.initialize(appId, appKey);
+ * </pre>
+ * install() must be called before the first request, because api host is resolved only once.
+ */
+public class LocalServer {
+  private static final AVLogger LOGGER = LogUtil.getLogger(LocalServer.class);
+  private static final String API_PREFIX = "/1.1/";
+  private static final String FILE_CONTENT_PREFIX = "/files/";
+  private static final String FILE_CLASS = "_File";
+  private static final int DEFAULT_LIMIT = 100;
+  private static final int MAX_LIMIT = 1000;
+
+  private final HttpServer httpServer;
+  private final ExecutorService executor;
+  private final InMemoryStore store = new InMemoryStore();
+  private final ConcurrentMap<String, LocalFunction> functions = new ConcurrentHashMap<String, LocalFunction>();
+  private final ConcurrentMap<String, byte[]> fileContents = new ConcurrentHashMap<String, byte[]>();
+  private final ConcurrentMap<String, String> uploadTokens = new ConcurrentHashMap<String, String>();
+  private final AtomicLong requestCount = new AtomicLong(0);
+  private final Random random = new Random();
+
+  private volatile long minLatency = 0;
+  private volatile long maxLatency = 0;
+  private volatile double failureRate = 0;
+  private volatile int failureStatus = 503;
+  private volatile int failureCode = AVException.INTERNAL_SERVER_ERROR;
+
+  /**
+   * create server listening on a random port of loopback address.
+   * @throws IOException failed to bind port.
+   */
+  public LocalServer() throws IOException {
+    this(0);
+  }
+
+  /**
+   * @param port port on loopback address, 0 for random port.
+   * @throws IOException failed to bind port.
+   */
+  public LocalServer(int port) throws IOException {
+    httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), port), 0);
+    httpServer.createContext("/", new HttpHandler() {
+      public void handle(HttpExchange exchange) throws IOException {
+        LocalServer.this.handle(exchange);
+      }
+    });
+    executor = Executors.newCachedThreadPool();
+    httpServer.setExecutor(executor);
+  }
+
+  public void start() {
+    httpServer.start();
+  }
+
+  public void stop() {
+    httpServer.stop(0);
+    executor.shutdownNow();
+  }
+
+  /**
+   * @return server url, e.g. "http://127.0.0.1:8080".
+   */
+  public String getServerUrl() {
+    return "http://127.0.0.1:" + httpServer.getAddress().getPort();
+  }
+
+  /**
+   * point api, engine, push and stats service of AppRouter to this server.
+   * realtime service is not supported.
+   */
+  public void install() {
+    String url = getServerUrl();
+    AVOSCloud.setServer(AVOSService.API, url);
+    AVOSCloud.setServer(AVOSService.ENGINE, url);
+    AVOSCloud.setServer(AVOSService.PUSH, url);
+    AVOSCloud.setServer(AVOSService.STATS, url);
+  }
+
+  public InMemoryStore getStore() {
+    return store;
+  }
+
+  /**
+   * register cloud function, which is served for both /1.1/functions/{name} and /1.1/call/{name}.
+   * @param name function name.
+   * @param function function.
+   */
+  public void registerFunction(String name, LocalFunction function) {
+    functions.put(name, function);
+  }
+
+  /**
+   * inject latency to every request, uniformly distributed between min and max.
+   * @param minMillis min latency in milliseconds.
+   * @param maxMillis max latency in milliseconds.
+   */
+  public void setLatency(long minMillis, long maxMillis) {
+    this.minLatency = Math.max(0, minMillis);
+    this.maxLatency = Math.max(this.minLatency, maxMillis);
+  }
+
+  /**
+   * inject failures to requests.
+   * @param rate ratio of failed requests, between 0 and 1.
+   * @param httpStatus http status of failed response, e.g. 503, 429.
+   * @param errorCode code field of failed response body.
+   */
+  public void setFailure(double rate, int httpStatus, int errorCode) {
+    this.failureRate = Math.max(0, Math.min(1, rate));
+    this.failureStatus = httpStatus;
+    this.failureCode = errorCode;
+  }
+
+  /**
+   * @param seed seed of random generator used by latency and failure injection.
+   */
+  public void setRandomSeed(long seed) {
+    synchronized (random) {
+      random.setSeed(seed);
+    }
+  }
+
+  /**
+   * @return count of http requests received, including failed ones.
+   */
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  static class Reply {
+    final int status;
+    final Object body;
+
+    Reply(int status, Object body) {
+      this.status = status;
+      this.body = body;
+    }
+
+    static Reply error(int status, int code, String message) {
+      JSONObject body = new JSONObject();
+      body.put("code", code);
+      body.put("error", message);
+      return new Reply(status, body);
+    }
+
+    boolean isSuccess() {
+      return status / 100 == 2;
+    }
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    requestCount.incrementAndGet();
+    try {
+      byte[] body = readBody(exchange);
+      long latency;
+      boolean failed;
+      synchronized (random) {
+        latency = minLatency + (maxLatency > minLatency ? (long) (random.nextDouble() * (maxLatency - minLatency)) : 0);
+        failed = failureRate > 0 && random.nextDouble() < failureRate;
+      }
+      if (latency > 0) {
+        Thread.sleep(latency);
+      }
+      String method = exchange.getRequestMethod().toUpperCase();
+      String path = exchange.getRequestURI().getRawPath();
+      if (failed) {
+        send(exchange, Reply.error(failureStatus, failureCode, "injected failure."));
+      } else if (path.startsWith(FILE_CONTENT_PREFIX)) {
+        handleFileContent(exchange, method, path.substring(FILE_CONTENT_PREFIX.length()), body);
+      } else {
+        Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+        send(exchange, dispatch(method, path, params, new String(body, "UTF-8")));
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } catch (Exception ex) {
+      LOGGER.w("failed to handle request " + exchange.getRequestURI(), ex);
+      send(exchange, Reply.error(500, AVException.INTERNAL_SERVER_ERROR, String.valueOf(ex.getMessage())));
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private static byte[] readBody(HttpExchange exchange) throws IOException {
+    InputStream is = exchange.getRequestBody();
+    if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+      is = new GZIPInputStream(is);
+    }
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int length;
+    while ((length = is.read(buffer)) > 0) {
+      os.write(buffer, 0, length);
+    }
+    is.close();
+    return os.toByteArray();
+  }
+
+  private static void send(HttpExchange exchange, Reply reply) throws IOException {
+    byte[] bytes = JSON.toJSONString(reply.body).getBytes("UTF-8");
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    exchange.sendResponseHeaders(reply.status, bytes.length);
+    OutputStream os = exchange.getResponseBody();
+    os.write(bytes);
+    os.close();
+  }
+
+  private void handleFileContent(HttpExchange exchange, String method, String key, byte[] body) throws IOException {
+    int status;
+    byte[] content = new byte[0];
+    if ("PUT".equals(method)) {
+      fileContents.put(key, body);
+      status = 200;
+    } else if ("GET".equals(method) && fileContents.containsKey(key)) {
+      content = fileContents.get(key);
+      status = 200;
+    } else {
+      status = 404;
+    }
+    exchange.sendResponseHeaders(status, content.length > 0 ? content.length : -1);
+    if (content.length > 0) {
+      OutputStream os = exchange.getResponseBody();
+      os.write(content);
+      os.close();
+    }
+  }
+
+  private static Map<String, String> parseQuery(String rawQuery) throws IOException {
+    Map<String, String> params = new HashMap<String, String>();
+    if (StringUtil.isEmpty(rawQuery)) {
+      return params;
+    }
+    for (String pair : rawQuery.split("&")) {
+      int index = pair.indexOf('=');
+      String key = index < 0 ? pair : pair.substring(0, index);
+      String value = index < 0 ? "" : pair.substring(index + 1);
+      params.put(URLDecoder.decode(key, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+    }
+    return params;
+  }
+
+  /**
+   * route one request, which is also used for every request in batch.
+   */
+  Reply dispatch(String method, String path, Map<String, String> params, String body) {
+    try {
+      if (!path.startsWith(API_PREFIX)) {
+        return Reply.error(404, AVException.COMMAND_UNAVAILABLE, "unsupported api " + path);
+      }
+      String[] segments = path.substring(API_PREFIX.length()).split("/");
+      String resource = segments[0];
+      if ("classes".equals(resource) && segments.length == 2) {
+        if ("GET".equals(method)) {
+          return query(segments[1], params);
+        } else if ("POST".equals(method)) {
+          JSONObject created = store.create(segments[1], parseObject(body));
+          return new Reply(201, savedResult(created, true, params));
+        }
+      } else if ("classes".equals(resource) && segments.length == 3) {
+        return objectRequest(method, segments[1], segments[2], params, body);
+      } else if ("batch".equals(resource) && "POST".equals(method)) {
+        return batch(segments.length == 2 && "save".equals(segments[1]), parseObject(body));
+      } else if (("functions".equals(resource) || "call".equals(resource)) && segments.length == 2
+              && "POST".equals(method)) {
+        return callFunction(segments[1], body);
+      } else if ("fileTokens".equals(resource) && "POST".equals(method)) {
+        return createFileToken(parseObject(body));
+      } else if ("fileCallback".equals(resource) && "POST".equals(method)) {
+        return fileCallback(parseObject(body));
+      } else if ("files".equals(resource) && segments.length == 2 && "GET".equals(method)) {
+        return objectRequest(method, FILE_CLASS, segments[1], params, body);
+      } else if ("date".equals(resource) && "GET".equals(method)) {
+        JSONObject date = new JSONObject();
+        date.put("__type", "Date");
+        date.put("iso", InMemoryStore.now());
+        return new Reply(200, date);
+      }
+      return Reply.error(404, AVException.COMMAND_UNAVAILABLE, "unsupported api " + method + " " + path);
+    } catch (AVException ex) {
+      return Reply.error(ex.getCode() == AVException.OBJECT_NOT_FOUND ? 404 : 400, ex.getCode(), ex.getMessage());
+    } catch (com.alibaba.fastjson.JSONException ex) {
+      return Reply.error(400, AVException.INVALID_JSON, "invalid json: " + ex.getMessage());
+    }
+  }
+
+  private static JSONObject parseObject(String body) throws AVException {
+    if (StringUtil.isEmpty(body)) {
+      return new JSONObject();
+    }
+    Object value = JSON.parse(body);
+    if (!(value instanceof JSONObject)) {
+      throw new AVException(AVException.INVALID_JSON, "request body must be a json object.");
+    }
+    return (JSONObject) value;
+  }
+
+  private static JSONObject parseWhere(Map<String, String> params) {
+    String where = params.get("where");
+    return StringUtil.isEmpty(where) ? null : JSON.parseObject(where);
+  }
+
+  private static int parseInt(Map<String, String> params, String key, int defaultValue) throws AVException {
+    String value = params.get(key);
+    if (StringUtil.isEmpty(value)) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException ex) {
+      throw new AVException(AVException.INVALID_QUERY, "invalid " + key + ": " + value);
+    }
+  }
+
+  private Reply query(String className, Map<String, String> params) throws AVException {
+    JSONObject where = parseWhere(params);
+    int limit = Math.min(MAX_LIMIT, parseInt(params, "limit", DEFAULT_LIMIT));
+    int skip = parseInt(params, "skip", 0);
+    JSONArray results = new JSONArray();
+    for (JSONObject object : store.find(className, where, params.get("order"), skip, limit)) {
+      results.add(project(object, params));
+    }
+    JSONObject reply = new JSONObject();
+    reply.put("results", results);
+    if ("1".equals(params.get("count"))) {
+      reply.put("count", store.count(className, where));
+    }
+    return new Reply(200, reply);
+  }
+
+  private Reply objectRequest(String method, String className, String objectId, Map<String, String> params,
+                              String body) throws AVException {
+    if ("GET".equals(method)) {
+      JSONObject object = store.get(className, objectId);
+      if (null == object) {
+        throw new AVException(AVException.OBJECT_NOT_FOUND, "Object not found.");
+      }
+      return new Reply(200, project(object, params));
+    } else if ("PUT".equals(method)) {
+      JSONObject updated = store.update(className, objectId, parseObject(body), parseWhere(params));
+      return new Reply(200, savedResult(updated, false, params));
+    } else if ("DELETE".equals(method)) {
+      store.delete(className, objectId, parseWhere(params));
+      return new Reply(200, new JSONObject());
+    }
+    return Reply.error(404, AVException.COMMAND_UNAVAILABLE, "unsupported method " + method);
+  }
+
+  private static JSONObject savedResult(JSONObject object, boolean created, Map<String, String> params) {
+    if ("true".equals(params.get("fetchWhenSave"))) {
+      return new JSONObject(new LinkedHashMap<String, Object>(object));
+    }
+    JSONObject result = new JSONObject();
+    result.put(InMemoryStore.KEY_OBJECT_ID, object.get(InMemoryStore.KEY_OBJECT_ID));
+    result.put(created ? InMemoryStore.KEY_CREATED_AT : InMemoryStore.KEY_UPDATED_AT,
+            object.get(created ? InMemoryStore.KEY_CREATED_AT : InMemoryStore.KEY_UPDATED_AT));
+    return result;
+  }
+
+  /**
+   * apply keys selection and include pointers at top level of object.
+   */
+  private JSONObject project(JSONObject object, Map<String, String> params) {
+    JSONObject result = new JSONObject(new LinkedHashMap<String, Object>(object));
+    String keys = params.get("keys");
+    if (!StringUtil.isEmpty(keys)) {
+      Set<String> selected = new HashSet<String>(Arrays.asList(keys.split(",")));
+      selected.add(InMemoryStore.KEY_OBJECT_ID);
+      selected.add(InMemoryStore.KEY_CREATED_AT);
+      selected.add(InMemoryStore.KEY_UPDATED_AT);
+      result.keySet().retainAll(selected);
+    }
+    String include = params.get("include");
+    if (!StringUtil.isEmpty(include)) {
+      for (String key : include.split(",")) {
+        Object value = result.get(key);
+        if (value instanceof Map && "Pointer".equals(((Map) value).get("__type"))) {
+          String className = (String) ((Map) value).get("className");
+          JSONObject target = store.get(className, (String) ((Map) value).get(InMemoryStore.KEY_OBJECT_ID));
+          if (null != target) {
+            JSONObject included = new JSONObject(new LinkedHashMap<String, Object>(target));
+            included.put("__type", "Object");
+            included.put("className", className);
+            result.put(key, included);
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * requests for the same object in one batch are linked by "__internalId" of body, the first POST creates object
+   * and following ones update it.
+   * /1.1/batch replies an array of success/error for every request, /1.1/batch/save replies objects keyed by
+   * objectId and fails on the first error.
+   */
+  private Reply batch(boolean saveMode, JSONObject body) throws AVException {
+    JSONArray requests = body.getJSONArray("requests");
+    if (null == requests) {
+      throw new AVException(AVException.INVALID_JSON, "requests is required.");
+    }
+    Map<String, String> internalIds = new HashMap<String, String>();
+    JSONArray results = new JSONArray();
+    JSONObject savedObjects = new JSONObject();
+    for (int i = 0; i < requests.size(); i++) {
+      JSONObject request = requests.getJSONObject(i);
+      String method = String.valueOf(request.getString("method")).toUpperCase();
+      String path = request.getString("path");
+      if (StringUtil.isEmpty(path)) {
+        throw new AVException(AVException.INVALID_JSON, "path is required.");
+      }
+      Map<String, String> params = new HashMap<String, String>();
+      int queryIndex = path.indexOf('?');
+      if (queryIndex >= 0) {
+        try {
+          params.putAll(parseQuery(path.substring(queryIndex + 1)));
+        } catch (IOException ex) {
+          throw new AVException(AVException.INVALID_JSON, "invalid path " + path);
+        }
+        path = path.substring(0, queryIndex);
+      }
+      JSONObject requestParams = request.getJSONObject("params");
+      if (null != requestParams) {
+        for (Map.Entry<String, Object> entry : requestParams.entrySet()) {
+          params.put(entry.getKey(), entry.getValue() instanceof String ? (String) entry.getValue()
+                  : JSON.toJSONString(entry.getValue()));
+        }
+      }
+      JSONObject requestBody = request.getJSONObject("body");
+      String internalId = null == requestBody ? null : requestBody.getString("__internalId");
+      if ("POST".equals(method) && !StringUtil.isEmpty(internalId) && internalIds.containsKey(internalId)) {
+        method = "PUT";
+        path = path + "/" + internalIds.get(internalId);
+      }
+      if (saveMode) {
+        params.put("fetchWhenSave", "true");
+      }
+      Reply reply = dispatch(method, path, params, null == requestBody ? null : requestBody.toJSONString());
+      if (!reply.isSuccess()) {
+        if (saveMode) {
+          return reply;
+        }
+        JSONObject error = new JSONObject();
+        error.put("error", reply.body);
+        results.add(error);
+        continue;
+      }
+      JSONObject success = (JSONObject) reply.body;
+      String objectId = success.getString(InMemoryStore.KEY_OBJECT_ID);
+      if ("POST".equals(method) && !StringUtil.isEmpty(internalId) && !StringUtil.isEmpty(objectId)) {
+        internalIds.put(internalId, objectId);
+      }
+      if (saveMode) {
+        savedObjects.put(objectId, success);
+      } else {
+        JSONObject result = new JSONObject();
+        result.put("success", success);
+        results.add(result);
+      }
+    }
+    return new Reply(200, saveMode ? savedObjects : results);
+  }
+
+  private Reply callFunction(String name, String body) {
+    LocalFunction function = functions.get(name);
+    if (null == function) {
+      return Reply.error(404, AVException.SCRIPT_ERROR, "LeanEngine not found function named '" + name + "'.");
+    }
+    try {
+      Object result = function.call(StringUtil.isEmpty(body) ? null : JSON.parse(body));
+      JSONObject reply = new JSONObject();
+      reply.put("result", result);
+      return new Reply(200, reply);
+    } catch (AVException ex) {
+      return Reply.error(400, ex.getCode(), ex.getMessage());
+    } catch (Exception ex) {
+      return Reply.error(400, AVException.SCRIPT_ERROR, String.valueOf(ex.getMessage()));
+    }
+  }
+
+  private Reply createFileToken(JSONObject body) throws AVException {
+    String key = StringUtil.getRandomString(16);
+    String name = body.getString("name");
+    if (!StringUtil.isEmpty(name) && name.lastIndexOf('.') > 0) {
+      key += name.substring(name.lastIndexOf('.'));
+    }
+    String url = getServerUrl() + FILE_CONTENT_PREFIX + key;
+    body.put("url", url);
+    body.put("key", key);
+    body.put("provider", "s3");
+    body.put("bucket", "local");
+    JSONObject file = store.create(FILE_CLASS, body);
+    String token = StringUtil.getRandomString(32);
+    uploadTokens.put(token, file.getString(InMemoryStore.KEY_OBJECT_ID));
+
+    JSONObject reply = new JSONObject();
+    reply.put("objectId", file.getString(InMemoryStore.KEY_OBJECT_ID));
+    reply.put("createdAt", file.getString(InMemoryStore.KEY_CREATED_AT));
+    reply.put("bucket", "local");
+    reply.put("provider", "s3");
+    reply.put("upload_url", url);
+    reply.put("token", token);
+    reply.put("url", url);
+    reply.put("key", key);
+    return new Reply(200, reply);
+  }
+
+  private Reply fileCallback(JSONObject body) throws AVException {
+    String objectId = uploadTokens.remove(String.valueOf(body.getString("token")));
+    if (null != objectId && !body.getBooleanValue("result")) {
+      JSONObject file = store.get(FILE_CLASS, objectId);
+      if (null != file) {
+        fileContents.remove(file.getString("key"));
+      }
+      store.delete(FILE_CLASS, objectId, null);
+    }
+    return new Reply(200, new JSONObject());
+  }
+}
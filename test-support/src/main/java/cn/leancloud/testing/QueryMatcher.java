@@ -0,0 +1,263 @@
+package cn.leancloud.testing;
+
+import cn.leancloud.AVException;
+import com.alibaba.fastjson.JSON;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * evaluate REST API query conditions(where/order) against objects in REST API representation.
+ * supported operators: $ne, $lt, $lte, $gt, $gte, $in, $nin, $all, $exists, $regex(with $options), $or, $and.
+ */
+class QueryMatcher {
+  private static final String TYPE = "__type";
+
+  private QueryMatcher() {
+  }
+
+  static boolean matches(Map<String, Object> object, Map<String, Object> where) throws AVException {
+    if (null == where) {
+      return true;
+    }
+    for (Map.Entry<String, Object> entry : where.entrySet()) {
+      String key = entry.getKey();
+      Object condition = entry.getValue();
+      if ("$or".equals(key)) {
+        boolean any = false;
+        for (Map<String, Object> sub : subConditions(condition)) {
+          if (matches(object, sub)) {
+            any = true;
+            break;
+          }
+        }
+        if (!any) {
+          return false;
+        }
+      } else if ("$and".equals(key)) {
+        for (Map<String, Object> sub : subConditions(condition)) {
+          if (!matches(object, sub)) {
+            return false;
+          }
+        }
+      } else if (!matchField(object.containsKey(key), object.get(key), condition)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static List<Map<String, Object>> subConditions(Object condition) throws AVException {
+    if (!(condition instanceof Collection)) {
+      throw new AVException(AVException.INVALID_QUERY, "$or/$and requires an array.");
+    }
+    List<Map<String, Object>> result = new ArrayList<Map<String, Object>>();
+    for (Object o : (Collection) condition) {
+      if (!(o instanceof Map)) {
+        throw new AVException(AVException.INVALID_QUERY, "$or/$and requires an array of objects.");
+      }
+      result.add((Map<String, Object>) o);
+    }
+    return result;
+  }
+
+  private static boolean isOperatorMap(Object condition) {
+    if (!(condition instanceof Map) || ((Map) condition).isEmpty()) {
+      return false;
+    }
+    for (Object key : ((Map) condition).keySet()) {
+      if (!String.valueOf(key).startsWith("$")) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean matchField(boolean exists, Object value, Object condition) throws AVException {
+    if (!isOperatorMap(condition)) {
+      return equalsOrContains(value, condition);
+    }
+    Map<String, Object> operators = (Map<String, Object>) condition;
+    for (Map.Entry<String, Object> entry : operators.entrySet()) {
+      String op = entry.getKey();
+      Object operand = entry.getValue();
+      boolean matched;
+      if ("$ne".equals(op)) {
+        matched = !equalsOrContains(value, operand);
+      } else if ("$lt".equals(op)) {
+        matched = compareTo(value, operand) < 0;
+      } else if ("$lte".equals(op)) {
+        matched = compareTo(value, operand) <= 0;
+      } else if ("$gt".equals(op)) {
+        matched = compareTo(value, operand) > 0;
+      } else if ("$gte".equals(op)) {
+        matched = compareTo(value, operand) >= 0;
+      } else if ("$in".equals(op)) {
+        matched = containsAny(operand, value);
+      } else if ("$nin".equals(op)) {
+        matched = !containsAny(operand, value);
+      } else if ("$all".equals(op)) {
+        matched = containsAll(value, operand);
+      } else if ("$exists".equals(op)) {
+        matched = exists == Boolean.TRUE.equals(operand);
+      } else if ("$regex".equals(op)) {
+        matched = matchRegex(value, String.valueOf(operand), (String) operators.get("$options"));
+      } else if ("$options".equals(op)) {
+        matched = true;
+      } else {
+        throw new AVException(AVException.INVALID_QUERY, "unsupported query operator " + op);
+      }
+      if (!matched) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * equality with mongodb semantics, an array field matches if any element equals to the operand.
+   */
+  private static boolean equalsOrContains(Object value, Object operand) {
+    if (value instanceof Collection && !(operand instanceof Collection)) {
+      for (Object element : (Collection) value) {
+        if (valueEquals(element, operand)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    return valueEquals(value, operand);
+  }
+
+  private static boolean containsAny(Object operand, Object value) throws AVException {
+    if (!(operand instanceof Collection)) {
+      throw new AVException(AVException.INVALID_QUERY, "$in/$nin requires an array.");
+    }
+    for (Object candidate : (Collection) operand) {
+      if (equalsOrContains(value, candidate)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean containsAll(Object value, Object operand) throws AVException {
+    if (!(operand instanceof Collection)) {
+      throw new AVException(AVException.INVALID_QUERY, "$all requires an array.");
+    }
+    if (!(value instanceof Collection)) {
+      return false;
+    }
+    for (Object candidate : (Collection) operand) {
+      if (!equalsOrContains(value, candidate)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean matchRegex(Object value, String regex, String options) {
+    if (!(value instanceof String)) {
+      return false;
+    }
+    int flags = 0;
+    if (null != options) {
+      if (options.contains("i")) {
+        flags |= Pattern.CASE_INSENSITIVE;
+      }
+      if (options.contains("m")) {
+        flags |= Pattern.MULTILINE;
+      }
+    }
+    return Pattern.compile(regex, flags).matcher((String) value).find();
+  }
+
+  static boolean valueEquals(Object left, Object right) {
+    Object l = normalize(left);
+    Object r = normalize(right);
+    if (null == l || null == r) {
+      return l == r;
+    }
+    if (l instanceof BigDecimal && r instanceof BigDecimal) {
+      return ((BigDecimal) l).compareTo((BigDecimal) r) == 0;
+    }
+    if (l instanceof Map || r instanceof Map || l instanceof Collection || r instanceof Collection) {
+      return JSON.toJSONString(l).equals(JSON.toJSONString(r));
+    }
+    return l.equals(r);
+  }
+
+  /**
+   * compare two values, null and values of different types are ordered before others.
+   */
+  static int compareTo(Object left, Object right) {
+    Object l = normalize(left);
+    Object r = normalize(right);
+    if (null == l || null == r) {
+      return null == l ? (null == r ? 0 : -1) : 1;
+    }
+    if (l instanceof BigDecimal && r instanceof BigDecimal) {
+      return ((BigDecimal) l).compareTo((BigDecimal) r);
+    }
+    if (l instanceof String && r instanceof String) {
+      return ((String) l).compareTo((String) r);
+    }
+    if (l instanceof Boolean && r instanceof Boolean) {
+      return ((Boolean) l).compareTo((Boolean) r);
+    }
+    return l.getClass().getName().compareTo(r.getClass().getName());
+  }
+
+  /**
+   * numbers become BigDecimal, dates become iso string and pointers become "className/objectId".
+   */
+  private static Object normalize(Object value) {
+    if (value instanceof Number) {
+      return new BigDecimal(value.toString());
+    }
+    if (value instanceof Map) {
+      Map map = (Map) value;
+      Object type = map.get(TYPE);
+      if ("Date".equals(type)) {
+        return map.get("iso");
+      }
+      if ("Pointer".equals(type) || "Object".equals(type)) {
+        return map.get("className") + "/" + map.get("objectId");
+      }
+    }
+    return value;
+  }
+
+  /**
+   * @param order order string, e.g. "-updatedAt,name".
+   * @return comparator, null if order is empty.
+   */
+  static Comparator<Map<String, Object>> comparator(String order) {
+    if (null == order || order.trim().isEmpty()) {
+      return null;
+    }
+    final List<String> keys = new ArrayList<String>();
+    final List<Boolean> descending = new ArrayList<Boolean>();
+    for (String key : order.split(",")) {
+      key = key.trim();
+      if (key.isEmpty()) {
+        continue;
+      }
+      boolean desc = key.startsWith("-");
+      keys.add(desc ? key.substring(1) : key);
+      descending.add(desc);
+    }
+    return new Comparator<Map<String, Object>>() {
+      public int compare(Map<String, Object> o1, Map<String, Object> o2) {
+        for (int i = 0; i < keys.size(); i++) {
+          int result = compareTo(o1.get(keys.get(i)), o2.get(keys.get(i)));
+          if (result != 0) {
+            return descending.get(i) ? -result : result;
+          }
+        }
+        return 0;
+      }
+    };
+  }
+}
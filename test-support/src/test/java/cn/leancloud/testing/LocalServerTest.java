@@ -0,0 +1,158 @@
+package cn.leancloud.testing;
+
+import cn.leancloud.AVCloud;
+import cn.leancloud.AVException;
+import cn.leancloud.AVFile;
+import cn.leancloud.AVLogger;
+import cn.leancloud.AVObject;
+import cn.leancloud.AVQuery;
+import cn.leancloud.cache.InMemorySetting;
+import cn.leancloud.core.AVOSCloud;
+import cn.leancloud.core.AppConfiguration;
+import cn.leancloud.types.AVDate;
+import junit.framework.TestCase;
+
+import java.util.*;
+
+public class LocalServerTest extends TestCase {
+  private static final String CLASS_NAME = "LocalStudent";
+  private static LocalServer server;
+
+  static {
+    try {
+      server = new LocalServer();
+    } catch (Exception ex) {
+      throw new IllegalStateException(ex);
+    }
+    server.start();
+    server.install();
+    String base = "./target/local-server/";
+    AppConfiguration.configCacheSettings(base + "persistFiles/", base + "data/", base + "file/",
+            base + "PaasKeyValueCache/", base + "command/", base + "stats/", new InMemorySetting());
+    AVOSCloud.setLogLevel(AVLogger.Level.OFF);
+    AVOSCloud.initialize("localServerAppId-gzGzoHsz", "localServerAppKey");
+  }
+
+  public LocalServerTest(String name) {
+    super(name);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    server.getStore().clear();
+    server.setLatency(0, 0);
+    server.setFailure(0, 503, AVException.INTERNAL_SERVER_ERROR);
+  }
+
+  public void testObjectCrud() throws Exception {
+    AVObject student = new AVObject(CLASS_NAME);
+    student.put("name", "Tom");
+    student.put("age", 18);
+    student.put("tags", Arrays.asList("a", "b"));
+    student.save();
+    String objectId = student.getObjectId();
+    assertNotNull(objectId);
+    assertNotNull(student.getCreatedAt());
+
+    AVObject fetched = AVObject.createWithoutData(CLASS_NAME, objectId);
+    fetched.fetch();
+    assertEquals("Tom", fetched.getString("name"));
+    assertEquals(18, fetched.getInt("age"));
+
+    fetched.increment("age", 2);
+    fetched.addUnique("tags", "c");
+    fetched.setFetchWhenSave(true);
+    fetched.save();
+    assertEquals(20, fetched.getInt("age"));
+    assertEquals(Arrays.asList("a", "b", "c"), fetched.getList("tags"));
+
+    fetched.delete();
+    assertNull(server.getStore().get(CLASS_NAME, objectId));
+    try {
+      AVObject.createWithoutData(CLASS_NAME, objectId).fetch();
+      fail("object is deleted.");
+    } catch (Exception ex) {
+      assertTrue(ex.getMessage().contains("Object not found"));
+    }
+  }
+
+  public void testQuery() throws Exception {
+    List<AVObject> students = new ArrayList<AVObject>();
+    for (int i = 0; i < 10; i++) {
+      AVObject student = new AVObject(CLASS_NAME);
+      student.put("name", "student" + i);
+      student.put("age", 10 + i);
+      student.put("grade", i % 2 == 0 ? "even" : "odd");
+      students.add(student);
+    }
+    AVObject.saveAll(students);
+    assertEquals(10, server.getStore().count(CLASS_NAME, null));
+
+    AVQuery<AVObject> query = new AVQuery<AVObject>(CLASS_NAME);
+    query.whereGreaterThanOrEqualTo("age", 13);
+    query.whereEqualTo("grade", "odd");
+    query.orderByDescending("age");
+    query.skip(1);
+    query.limit(2);
+    List<AVObject> results = query.find();
+    assertEquals(2, results.size());
+    assertEquals(17, results.get(0).getInt("age"));
+    assertEquals(15, results.get(1).getInt("age"));
+
+    AVQuery<AVObject> countQuery = new AVQuery<AVObject>(CLASS_NAME);
+    countQuery.whereContainedIn("name", Arrays.asList("student1", "student2", "none"));
+    assertEquals(2, countQuery.count());
+  }
+
+  public void testBatchUpdate() throws Exception {
+    AVObject student = new AVObject(CLASS_NAME);
+    student.put("name", "Jerry");
+    student.save();
+    // add and remove on the same field is sent as one request per operation to /1.1/batch/save.
+    student.add("tags", "a");
+    student.add("tags", "b");
+    student.removeAll("tags", Arrays.asList("a"));
+    student.save();
+    assertEquals(1, server.getStore().count(CLASS_NAME, null));
+    assertEquals(Arrays.<Object>asList("b"),
+            server.getStore().get(CLASS_NAME, student.getObjectId()).getJSONArray("tags"));
+  }
+
+  public void testFunctionDateAndFile() throws Exception {
+    server.registerFunction("hello", new LocalFunction() {
+      public Object call(Object params) throws Exception {
+        return "hello " + ((Map) params).get("name");
+      }
+    });
+    Map<String, Object> params = new HashMap<String, Object>();
+    params.put("name", "LeanCloud");
+    assertEquals("hello LeanCloud", AVCloud.callFunction("hello", params));
+
+    AVDate date = AVOSCloud.getServerDateInBackground().blockingFirst();
+    assertTrue(Math.abs(date.getDate().getTime() - System.currentTimeMillis()) < 60000);
+
+    AVFile file = new AVFile("hello.txt", "hello world".getBytes("UTF-8"));
+    file.save();
+    assertNotNull(file.getObjectId());
+    assertTrue(file.getUrl().startsWith(server.getServerUrl()));
+    assertEquals("hello.txt", server.getStore().get("_File", file.getObjectId()).getString("name"));
+  }
+
+  public void testFaultInjection() throws Exception {
+    server.setFailure(1, 503, AVException.INTERNAL_SERVER_ERROR);
+    long before = server.getRequestCount();
+    try {
+      new AVQuery<AVObject>(CLASS_NAME).find();
+      fail("failure is injected.");
+    } catch (Exception ex) {
+      assertTrue(ex.getMessage().contains("injected failure"));
+    }
+    assertTrue(server.getRequestCount() > before);
+
+    server.setFailure(0, 503, AVException.INTERNAL_SERVER_ERROR);
+    server.setLatency(100, 100);
+    long start = System.currentTimeMillis();
+    new AVQuery<AVObject>(CLASS_NAME).find();
+    assertTrue(System.currentTimeMillis() - start >= 100);
+  }
+}